@@ -0,0 +1,566 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The diff algorithm used to create the changes of {@link JsonArray
+ * JsonArrays}.<br>
+ * Uses the O(ND) difference algorithm by Eugene W. Myers to find the shortest
+ * sequence of removed and added values, after stripping the common prefix and
+ * suffix. Then removed values equal to added values are turned into moves, and
+ * the remaining removed values are paired with added values at the same
+ * position, to replace them in place. Changed {@link JsonElement JsonElements}
+ * are replaced with their own changes unless that is larger.<br>
+ * The resulting changes array contains one JsonObject per operation, applied in
+ * order to the array being reconstructed, with indices referring to the state
+ * of that array after the previous operations:
+ * <ul>
+ * <li>{@code {"ins": index, "val": value}} inserts a value.</li>
+ * <li>{@code {"del": index, "n": count}} removes count values. The count is
+ * omitted if it is one.</li>
+ * <li>{@code {"set": index, "val": value}} replaces a value.</li>
+ * <li>{@code {"chg": index, "val": changes}} reconstructs a value from its
+ * changes.</li>
+ * <li>{@code {"mv": from, "to": index}} removes a value and inserts it again at
+ * the given index.</li>
+ * </ul>
+ * 
+ * @author ToMe25
+ */
+class ArrayDiff {
+
+	/**
+	 * The max edit distance to search for a shortest edit script.<br>
+	 * If two arrays differ by more than that, the differing range is replaced as
+	 * a whole, to limit the memory usage of the diff to O(MAX_DISTANCE^2).
+	 */
+	private static final int MAX_DISTANCE = 1024;
+
+	/**
+	 * An operation keeping a value.
+	 */
+	private static final byte KEEP = 0;
+
+	/**
+	 * An operation removing a value.
+	 */
+	private static final byte DELETE = 1;
+
+	/**
+	 * An operation adding a value.
+	 */
+	private static final byte INSERT = 2;
+
+	/**
+	 * Creates the changes needed to turn the first list into the second one.
+	 * 
+	 * @param from        the old list.
+	 * @param to          the new list.
+	 * @param recursive   whether changed json elements should be replaced with
+	 *                    their changes, rather than a copy of their new value.
+	 * @param detectMoves whether values that were moved should be turned into
+	 *                    move operations, rather than being removed and inserted.
+	 * @return the changes array.
+	 */
+	static JsonArray diff(List<Object> from, List<Object> to, boolean recursive, boolean detectMoves) {
+		int n = from.size();
+		int m = to.size();
+		int prefix = 0;
+		while (prefix < n && prefix < m && Objects.equals(from.get(prefix), to.get(prefix))) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < n - prefix && suffix < m - prefix
+				&& Objects.equals(from.get(n - suffix - 1), to.get(m - suffix - 1))) {
+			suffix++;
+		}
+
+		JsonArray changes = new JsonArray();
+		if (prefix + suffix == n && prefix + suffix == m) {
+			return changes;
+		}
+
+		Script script = shortestEditScript(from, prefix, n - suffix, to, prefix, m - suffix);
+		new Generator(from, to, script, recursive, detectMoves, changes).generate(prefix);
+		return changes;
+	}
+
+	/**
+	 * Finds the shortest edit script turning a range of the first list into a
+	 * range of the second one.
+	 * 
+	 * @param a      the old list.
+	 * @param aStart the first index of the range of the old list.
+	 * @param aEnd   the index after the range of the old list.
+	 * @param b      the new list.
+	 * @param bStart the first index of the range of the new list.
+	 * @param bEnd   the index after the range of the new list.
+	 * @return the edit script, with each hunk of changes ordered removals first.
+	 */
+	private static Script shortestEditScript(List<Object> a, int aStart, int aEnd, List<Object> b, int bStart,
+			int bEnd) {
+		int n = aEnd - aStart;
+		int m = bEnd - bStart;
+		long[] aHashes = new long[n];
+		for (int i = 0; i < n; i++) {
+			aHashes[i] = JsonDigest.of(a.get(aStart + i));
+		}
+		long[] bHashes = new long[m];
+		for (int i = 0; i < m; i++) {
+			bHashes[i] = JsonDigest.of(b.get(bStart + i));
+		}
+
+		int maxD = Math.min(n + m, MAX_DISTANCE);
+		int offset = maxD + 1;
+		int[] v = new int[2 * maxD + 3];
+		int[][] trace = new int[maxD + 1][];
+		int found = -1;
+		for (int d = 0; d <= maxD && found < 0; d++) {
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+					x = v[offset + k + 1];
+				} else {
+					x = v[offset + k - 1] + 1;
+				}
+				int y = x - k;
+				while (x < n && y < m && aHashes[x] == bHashes[y]
+						&& Objects.equals(a.get(aStart + x), b.get(bStart + y))) {
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+				if (x >= n && y >= m) {
+					found = d;
+					break;
+				}
+			}
+			trace[d] = Arrays.copyOfRange(v, offset - d, offset + d + 1);
+		}
+
+		Script script = new Script(n + m);
+		if (found < 0) {
+			// Too different, replace the whole range.
+			for (int i = 0; i < n; i++) {
+				script.add(DELETE, aStart + i, -1);
+			}
+			for (int i = 0; i < m; i++) {
+				script.add(INSERT, -1, bStart + i);
+			}
+			return script;
+		}
+
+		// Backtrack from the end, collecting the operations in reverse.
+		Script reversed = new Script(n + m);
+		int x = n;
+		int y = m;
+		for (int d = found; d > 0; d--) {
+			int[] prev = trace[d - 1];
+			int k = x - y;
+			int prevK;
+			if (k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1])) {
+				prevK = k + 1;
+			} else {
+				prevK = k - 1;
+			}
+			int prevX = prev[prevK + d - 1];
+			int prevY = prevX - prevK;
+			while (x > prevX && y > prevY) {
+				reversed.add(KEEP, aStart + --x, bStart + --y);
+			}
+			if (prevK == k + 1) {
+				reversed.add(INSERT, -1, bStart + --y);
+			} else {
+				reversed.add(DELETE, aStart + --x, -1);
+			}
+		}
+		while (x > 0 && y > 0) {
+			reversed.add(KEEP, aStart + --x, bStart + --y);
+		}
+
+		// Reverse the operations, moving the removals of each hunk to its start.
+		int i = reversed.size - 1;
+		while (i >= 0) {
+			if (reversed.types[i] == KEEP) {
+				script.add(KEEP, reversed.aIndices[i], reversed.bIndices[i]);
+				i--;
+				continue;
+			}
+
+			int end = i;
+			while (i >= 0 && reversed.types[i] != KEEP) {
+				i--;
+			}
+			for (int j = end; j > i; j--) {
+				if (reversed.types[j] == DELETE) {
+					script.add(DELETE, reversed.aIndices[j], -1);
+				}
+			}
+			for (int j = end; j > i; j--) {
+				if (reversed.types[j] == INSERT) {
+					script.add(INSERT, -1, reversed.bIndices[j]);
+				}
+			}
+		}
+		return script;
+	}
+
+	/**
+	 * A growable sequence of edit operations.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Script {
+
+		/**
+		 * The types of the operations.
+		 */
+		private byte[] types;
+
+		/**
+		 * The indices in the old list of the operations, or -1 for insertions.
+		 */
+		private int[] aIndices;
+
+		/**
+		 * The indices in the new list of the operations, or -1 for removals.
+		 */
+		private int[] bIndices;
+
+		/**
+		 * The number of operations.
+		 */
+		private int size;
+
+		/**
+		 * Creates a new Script.
+		 * 
+		 * @param capacity the initial capacity of the script.
+		 */
+		public Script(int capacity) {
+			capacity = Math.max(capacity, 4);
+			types = new byte[capacity];
+			aIndices = new int[capacity];
+			bIndices = new int[capacity];
+		}
+
+		/**
+		 * Adds an operation to the end of this script.
+		 * 
+		 * @param type   the type of the operation.
+		 * @param aIndex the index in the old list.
+		 * @param bIndex the index in the new list.
+		 */
+		public void add(byte type, int aIndex, int bIndex) {
+			if (size == types.length) {
+				types = Arrays.copyOf(types, size * 2);
+				aIndices = Arrays.copyOf(aIndices, size * 2);
+				bIndices = Arrays.copyOf(bIndices, size * 2);
+			}
+			types[size] = type;
+			aIndices[size] = aIndex;
+			bIndices[size++] = bIndex;
+		}
+
+	}
+
+	/**
+	 * The generator turning an edit script into a changes array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Generator {
+
+		/**
+		 * The old list.
+		 */
+		private final List<Object> from;
+
+		/**
+		 * The new list.
+		 */
+		private final List<Object> to;
+
+		/**
+		 * The edit script to convert.
+		 */
+		private final Script script;
+
+		/**
+		 * Whether to create changes for changed json elements.
+		 */
+		private final boolean recursive;
+
+		/**
+		 * The changes array to write to.
+		 */
+		private final JsonArray changes;
+
+		/**
+		 * A map from the old index of each removed value that was moved to the new
+		 * index it was moved to.
+		 */
+		private final Map<Integer, Integer> movedTo = new HashMap<>();
+
+		/**
+		 * A map from the new index of each moved value to its old index.
+		 */
+		private final Map<Integer, Integer> movedFrom = new HashMap<>();
+
+		/**
+		 * A map from the old index of each removed value replaced in place to the
+		 * new index of its replacement.
+		 */
+		private final Map<Integer, Integer> replacedBy = new HashMap<>();
+
+		/**
+		 * The new indices of the values replacing removed values in place.
+		 */
+		private final Set<Integer> replacements = new HashSet<>();
+
+		/**
+		 * A map from the old index of each moved value that is still in the array at
+		 * the position of its removal to its current index.
+		 */
+		private final Map<Integer, Integer> deferred = new HashMap<>();
+
+		/**
+		 * The old indices of the values that were already moved to an earlier
+		 * position, before their removal was reached.
+		 */
+		private final TreeSet<Integer> movedAhead = new TreeSet<>();
+
+		/**
+		 * The current index in the array being reconstructed.
+		 */
+		private int pos;
+
+		/**
+		 * The old index of the next value in the old list that wasn't handled yet.
+		 */
+		private int cursor;
+
+		/**
+		 * Creates a new Generator.
+		 * 
+		 * @param from        the old list.
+		 * @param to          the new list.
+		 * @param script      the edit script to convert.
+		 * @param recursive   whether to create changes for changed json elements.
+		 * @param detectMoves whether to turn removed and added equal values into
+		 *                    moves.
+		 * @param changes     the changes array to write to.
+		 */
+		public Generator(List<Object> from, List<Object> to, Script script, boolean recursive, boolean detectMoves,
+				JsonArray changes) {
+			this.from = from;
+			this.to = to;
+			this.script = script;
+			this.recursive = recursive;
+			this.changes = changes;
+			if (detectMoves) {
+				findMoves();
+			}
+			findReplacements();
+		}
+
+		/**
+		 * Pairs removed values with equal added values.
+		 */
+		private void findMoves() {
+			Map<Object, ArrayDeque<Integer>> removed = new HashMap<>();
+			for (int i = 0; i < script.size; i++) {
+				if (script.types[i] == DELETE) {
+					removed.computeIfAbsent(from.get(script.aIndices[i]), k -> new ArrayDeque<>())
+							.add(script.aIndices[i]);
+				}
+			}
+			if (removed.isEmpty()) {
+				return;
+			}
+
+			for (int i = 0; i < script.size; i++) {
+				if (script.types[i] == INSERT) {
+					ArrayDeque<Integer> candidates = removed.get(to.get(script.bIndices[i]));
+					if (candidates != null && !candidates.isEmpty()) {
+						int old = candidates.poll();
+						movedTo.put(old, script.bIndices[i]);
+						movedFrom.put(script.bIndices[i], old);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Pairs the removed values of each hunk with the values added to the same
+		 * position.
+		 */
+		private void findReplacements() {
+			int i = 0;
+			while (i < script.size) {
+				if (script.types[i] == KEEP) {
+					i++;
+					continue;
+				}
+
+				int deleteIndex = i;
+				int insertIndex = i;
+				while (insertIndex < script.size && script.types[insertIndex] == DELETE) {
+					insertIndex++;
+				}
+				int end = insertIndex;
+				while (end < script.size && script.types[end] == INSERT) {
+					end++;
+				}
+
+				// Only pair the leading added values, so the replacements stay in order.
+				while (insertIndex < end && !movedFrom.containsKey(script.bIndices[insertIndex])) {
+					while (deleteIndex < end && script.types[deleteIndex] == DELETE
+							&& movedTo.containsKey(script.aIndices[deleteIndex])) {
+						deleteIndex++;
+					}
+					if (deleteIndex >= end || script.types[deleteIndex] != DELETE) {
+						break;
+					}
+					replacements.add(script.bIndices[insertIndex]);
+					replacedBy.put(script.aIndices[deleteIndex++], script.bIndices[insertIndex++]);
+				}
+				i = end;
+			}
+		}
+
+		/**
+		 * Writes the operations to the changes array.
+		 * 
+		 * @param start the index of the first value covered by the script, in both
+		 *              lists.
+		 */
+		public void generate(int start) {
+			pos = start;
+			cursor = start;
+			int deleteStart = -1;
+			int deleteCount = 0;
+			for (int i = 0; i < script.size; i++) {
+				byte type = script.types[i];
+				int old = script.aIndices[i];
+				if (type == DELETE && !movedTo.containsKey(old) && !replacedBy.containsKey(old)) {
+					deleteStart = pos;
+					deleteCount++;
+					cursor++;
+					continue;
+				} else if (deleteCount > 0) {
+					writeDelete(deleteStart, deleteCount);
+					deleteCount = 0;
+				}
+
+				if (type == KEEP) {
+					pos++;
+					cursor++;
+				} else if (type == DELETE) {
+					cursor++;
+					if (replacedBy.containsKey(old)) {
+						writeReplacement(old, replacedBy.get(old));
+						pos++;
+					} else if (!movedAhead.remove(old)) {
+						deferred.put(old, pos++);
+					}
+				} else if (movedFrom.containsKey(script.bIndices[i])) {
+					writeMove(movedFrom.get(script.bIndices[i]));
+				} else if (!replacements.contains(script.bIndices[i])) {
+					changes.add(new JsonObject("ins", pos++, "val", JsonChanges.copy(to.get(script.bIndices[i]))));
+				}
+			}
+			if (deleteCount > 0) {
+				writeDelete(deleteStart, deleteCount);
+			}
+		}
+
+		/**
+		 * Writes a removal operation.
+		 * 
+		 * @param index the index of the first removed value.
+		 * @param count the number of removed values.
+		 */
+		private void writeDelete(int index, int count) {
+			JsonObject delete = new JsonObject("del", index);
+			if (count > 1) {
+				delete.put("n", count);
+			}
+			changes.add(delete);
+		}
+
+		/**
+		 * Writes an operation replacing a value at the current position.
+		 * 
+		 * @param old         the old index of the replaced value.
+		 * @param replacement the new index of the replacement.
+		 */
+		private void writeReplacement(int old, int replacement) {
+			Object oldValue = from.get(old);
+			Object newValue = to.get(replacement);
+			if (recursive && oldValue instanceof JsonElement && newValue instanceof JsonElement) {
+				JsonElement<?> oldJson = (JsonElement<?>) oldValue;
+				JsonElement<?> newJson = (JsonElement<?>) newValue;
+				if (oldJson.supportsChanges() && newJson.supportsChanges()
+						&& oldJson.getKeyType().equals(newJson.getKeyType())) {
+					JsonElement<?> delta = newJson.changes(oldJson, newJson);
+					if (delta.size(true) <= newJson.size(true)) {
+						changes.add(new JsonObject("chg", pos, "val", delta));
+						return;
+					}
+				}
+			}
+			changes.add(new JsonObject("set", pos, "val", JsonChanges.copy(newValue)));
+		}
+
+		/**
+		 * Writes an operation moving a value to the current position.
+		 * 
+		 * @param old the old index of the moved value.
+		 */
+		private void writeMove(int old) {
+			Integer current = deferred.remove(old);
+			if (current != null) {
+				// The value is still at the position it was removed from, before pos.
+				changes.add(new JsonObject("mv", current, "to", pos - 1));
+				for (Map.Entry<Integer, Integer> entry : deferred.entrySet()) {
+					if (entry.getValue() > current) {
+						entry.setValue(entry.getValue() - 1);
+					}
+				}
+			} else {
+				// The value wasn't reached yet, so it is after pos.
+				int index = pos + (old - cursor) - movedAhead.subSet(cursor, old).size();
+				changes.add(new JsonObject("mv", index, "to", pos++));
+				movedAhead.add(old);
+			}
+		}
+
+	}
+
+}
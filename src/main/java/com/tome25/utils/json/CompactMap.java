@@ -0,0 +1,637 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The default {@link Map} implementation used by {@link JsonObject
+ * JsonObjects}.<br>
+ * Stores its keys and values in parallel arrays in insertion order, which for
+ * small maps is a lot more compact than a {@link LinkedHashMap}, and has
+ * better cache locality.<br>
+ * Maps with up to {@link #INDEX_THRESHOLD} entries are searched linearly.
+ * Larger maps additionally use an open addressing hash table with linear
+ * probing, mapping the hashes of the keys to their index in the arrays.
+ * Removed entries leave a gap in the arrays, that is removed the next time the
+ * arrays would have to grow.
+ * 
+ * @author ToMe25
+ */
+class CompactMap extends AbstractMap<String, Object> implements SlotMap, Cloneable {
+
+	/**
+	 * The max number of used slots for which a map is searched linearly.<br>
+	 * A hash index is built once a map uses more slots than this.
+	 */
+	static final int INDEX_THRESHOLD = 8;
+
+	/**
+	 * The capacity used for new maps, if no other capacity is specified.
+	 */
+	private static final int DEFAULT_CAPACITY = 4;
+
+	/**
+	 * The placeholder stored as the key of removed entries.
+	 */
+	private static final Object REMOVED = new Object();
+
+	/**
+	 * The keys of this map, in insertion order.<br>
+	 * Removed entries have the key {@link #REMOVED}.
+	 */
+	private Object[] keys;
+
+	/**
+	 * The values of this map, in the same order as the keys.
+	 */
+	private Object[] values;
+
+	/**
+	 * The hashes of the keys of this map.
+	 */
+	private int[] hashes;
+
+	/**
+	 * The hash index of this map, or null if this map is small enough to be
+	 * searched linearly.<br>
+	 * Each non zero entry is the index of a slot in {@link #keys} plus one.
+	 */
+	private int[] index;
+
+	/**
+	 * The number of slots in the arrays that are in use, including removed
+	 * entries.
+	 */
+	private int used;
+
+	/**
+	 * The number of entries in this map.
+	 */
+	private int size;
+
+	/**
+	 * The number of structural modifications to this map. Used to detect
+	 * concurrent modifications while iterating.
+	 */
+	private int modCount;
+
+	/**
+	 * The cached entry set view of this map.
+	 */
+	private Set<Entry<String, Object>> entrySet;
+
+	/**
+	 * Creates a new empty CompactMap with the default initial capacity.
+	 */
+	CompactMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new empty CompactMap with the given initial capacity.
+	 * 
+	 * @param capacity the number of entries the map can hold before having to
+	 *                 grow.
+	 */
+	CompactMap(int capacity) {
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+	}
+
+	/**
+	 * Calculates the hash to use for the given key.
+	 * 
+	 * @param key the key to get the hash for.
+	 * @return the hash of the key.
+	 */
+	private static int hash(Object key) {
+		if (key == null) {
+			return 0;
+		}
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Finds the slot storing the given key.
+	 * 
+	 * @param key  the key to look for.
+	 * @param hash the hash of the key.
+	 * @return the slot of the key, or -1 if this map doesn't contain it.
+	 */
+	private int findSlot(Object key, int hash) {
+		if (index == null) {
+			for (int i = 0; i < used; i++) {
+				if (hashes[i] == hash && Objects.equals(keys[i], key)) {
+					return i;
+				}
+			}
+		} else {
+			int mask = index.length - 1;
+			for (int i = hash & mask;; i = (i + 1) & mask) {
+				int entry = index[i];
+				if (entry == 0) {
+					break;
+				}
+
+				int slot = entry - 1;
+				if (hashes[slot] == hash && Objects.equals(keys[slot], key)) {
+					return slot;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the given slot to the hash index.
+	 * 
+	 * @param slot the slot to add.
+	 */
+	private void indexSlot(int slot) {
+		int mask = index.length - 1;
+		int i = hashes[slot] & mask;
+		while (index[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		index[i] = slot + 1;
+	}
+
+	/**
+	 * Rebuilds the hash index from scratch if this map uses more slots than
+	 * {@link #INDEX_THRESHOLD}, or removes it if it doesn't.
+	 */
+	private void rebuildIndex() {
+		if (used <= INDEX_THRESHOLD) {
+			index = null;
+			return;
+		}
+
+		int length = Integer.highestOneBit(Math.max(keys.length, INDEX_THRESHOLD) * 2 - 1) << 1;
+		if (index == null || index.length != length) {
+			index = new int[length];
+		} else {
+			Arrays.fill(index, 0);
+		}
+
+		for (int i = 0; i < used; i++) {
+			if (keys[i] != REMOVED) {
+				indexSlot(i);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure there is at least one unused slot at the end of the arrays,
+	 * either by removing the gaps left by removed entries or by growing the
+	 * arrays.
+	 */
+	private void ensureFreeSlot() {
+		if (used < keys.length) {
+			return;
+		}
+
+		if (used - size > used / 4) {
+			compactSlots(keys.length);
+		} else {
+			compactSlots(Math.max(keys.length + (keys.length >> 1), DEFAULT_CAPACITY));
+		}
+	}
+
+	/**
+	 * Moves all entries to the start of arrays of the given length, removing the
+	 * gaps left by removed entries, and rebuilds the hash index.
+	 * 
+	 * @param capacity the length of the new arrays.
+	 */
+	private void compactSlots(int capacity) {
+		Object[] newKeys = new Object[capacity];
+		Object[] newValues = new Object[capacity];
+		int[] newHashes = new int[capacity];
+		int j = 0;
+		for (int i = 0; i < used; i++) {
+			if (keys[i] != REMOVED) {
+				newKeys[j] = keys[i];
+				newValues[j] = values[i];
+				newHashes[j] = hashes[i];
+				j++;
+			}
+		}
+		keys = newKeys;
+		values = newValues;
+		hashes = newHashes;
+		used = j;
+		rebuildIndex();
+	}
+
+	/**
+	 * Shrinks the arrays of this map to the number of entries it contains.
+	 */
+	void trimToSize() {
+		if (keys.length > size) {
+			compactSlots(size);
+			modCount++;
+		}
+	}
+
+	/**
+	 * Estimates the memory used by this map, excluding its keys and values.
+	 * 
+	 * @return the estimated size of this map in bytes.
+	 * @see JsonFootprint
+	 */
+	long footprint() {
+		int reference = JsonFootprint.getReferenceSize();
+		long size = JsonFootprint.object(5, 12) + JsonFootprint.array(keys.length, reference) * 2
+				+ JsonFootprint.array(hashes.length, 4);
+		return index == null ? size : size + JsonFootprint.array(index.length, 4);
+	}
+
+	/**
+	 * Removes the entry in the given slot.
+	 * 
+	 * @param slot the slot to clear.
+	 * @return the value of the removed entry.
+	 */
+	private Object removeSlot(int slot) {
+		Object old = values[slot];
+		keys[slot] = REMOVED;
+		values[slot] = null;
+		size--;
+		modCount++;
+		if (size == 0) {
+			Arrays.fill(keys, 0, used, null);
+			used = 0;
+			index = null;
+		} else if (slot == used - 1 && index == null) {
+			used--;
+			keys[slot] = null;
+		}
+		return old;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		int hash = hash(key);
+		int slot = findSlot(key, hash);
+		if (slot >= 0) {
+			Object old = values[slot];
+			values[slot] = value;
+			return old;
+		}
+
+		ensureFreeSlot();
+		slot = used++;
+		keys[slot] = key;
+		values[slot] = value;
+		hashes[slot] = hash;
+		size++;
+		modCount++;
+		if (index != null) {
+			indexSlot(slot);
+		} else if (used > INDEX_THRESHOLD) {
+			rebuildIndex();
+		}
+		return null;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int slot = findSlot(key, hash(key));
+		return slot < 0 ? null : values[slot];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return findSlot(key, hash(key)) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (int i = 0; i < used; i++) {
+			if (keys[i] != REMOVED && Objects.equals(values[i], value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		int slot = findSlot(key, hash(key));
+		return slot < 0 ? null : removeSlot(slot);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, 0, used, null);
+		Arrays.fill(values, 0, used, null);
+		used = 0;
+		size = 0;
+		index = null;
+		modCount++;
+	}
+
+	@Override
+	public int slotCount() {
+		return used;
+	}
+
+	@Override
+	public boolean isSlotUsed(int slot) {
+		return keys[slot] != REMOVED;
+	}
+
+	@Override
+	public String getSlotKey(int slot) {
+		return (String) keys[slot];
+	}
+
+	@Override
+	public Object getSlotValue(int slot) {
+		return values[slot];
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object> action) {
+		int expectedModCount = modCount;
+		for (int i = 0; i < used; i++) {
+			if (keys[i] != REMOVED) {
+				action.accept((String) keys[i], values[i]);
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	@Override
+	public CompactMap clone() {
+		try {
+			CompactMap clone = (CompactMap) super.clone();
+			clone.keys = keys.clone();
+			clone.values = values.clone();
+			clone.hashes = hashes.clone();
+			clone.index = index == null ? null : index.clone();
+			clone.modCount = 0;
+			clone.entrySet = null;
+			return clone;
+		} catch (CloneNotSupportedException e) {
+			// Can't happen since this class implements Cloneable.
+			throw new InternalError(e);
+		}
+	}
+
+	/**
+	 * The entry set view of a {@link CompactMap}.
+	 * 
+	 * @author ToMe25
+	 */
+	private class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> entry = (Entry<?, ?>) o;
+			int slot = findSlot(entry.getKey(), hash(entry.getKey()));
+			return slot >= 0 && Objects.equals(values[slot], entry.getValue());
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (contains(o)) {
+				CompactMap.this.remove(((Entry<?, ?>) o).getKey());
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void clear() {
+			CompactMap.this.clear();
+		}
+
+	}
+
+	/**
+	 * The iterator used to iterate over the entries of a {@link CompactMap} in
+	 * insertion order.
+	 * 
+	 * @author ToMe25
+	 */
+	private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+		/**
+		 * The slot to check next.
+		 */
+		private int next;
+
+		/**
+		 * The slot of the entry last returned by {@link #next()}, or -1 if there is
+		 * none.
+		 */
+		private int last = -1;
+
+		/**
+		 * The modification count of the map this iterator expects.
+		 */
+		private int expectedModCount = modCount;
+
+		/**
+		 * Creates a new EntryIterator starting at the first entry of the map.
+		 */
+		public EntryIterator() {
+			skipRemoved();
+		}
+
+		/**
+		 * Moves {@link #next} to the next slot that wasn't removed.
+		 */
+		private void skipRemoved() {
+			while (next < used && keys[next] == REMOVED) {
+				next++;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < used;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= used) {
+				throw new NoSuchElementException();
+			}
+
+			last = next++;
+			skipRemoved();
+			return new SlotEntry(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			removeSlot(last);
+			last = -1;
+			if (next > used) {
+				next = used;
+			}
+			expectedModCount = modCount;
+		}
+
+	}
+
+	/**
+	 * A map entry reading from and writing to a slot of a {@link CompactMap}.
+	 * 
+	 * @author ToMe25
+	 */
+	private class SlotEntry implements Entry<String, Object> {
+
+		/**
+		 * The key of this entry.
+		 */
+		private final String key;
+
+		/**
+		 * The slot of this entry in the map arrays.
+		 */
+		private final int slot;
+
+		/**
+		 * The modification count of the map when this entry was created.
+		 */
+		private final int expectedModCount;
+
+		/**
+		 * Creates a new SlotEntry for the given slot.
+		 * 
+		 * @param slot the slot of the new entry.
+		 */
+		public SlotEntry(int slot) {
+			key = (String) keys[slot];
+			this.slot = slot;
+			expectedModCount = modCount;
+		}
+
+		/**
+		 * Gets the slot storing the value of this entry. Looks up the key again if
+		 * the map was structurally modified since this entry was created.
+		 * 
+		 * @return the current slot of this entry, or -1 if it was removed.
+		 */
+		private int currentSlot() {
+			return modCount == expectedModCount ? slot : findSlot(key, hash(key));
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			int current = currentSlot();
+			return current < 0 ? null : values[current];
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			int current = currentSlot();
+			if (current < 0) {
+				throw new IllegalStateException("This entry was removed from the map.");
+			}
+			Object old = values[current];
+			values[current] = value;
+			return old;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> other = (Entry<?, ?>) obj;
+			return Objects.equals(key, other.getKey()) && Objects.equals(getValue(), other.getValue());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+
+	}
+
+}
@@ -0,0 +1,544 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * The base class for the thread safe {@link Map} implementations used by
+ * {@link ConcurrentJsonObject ConcurrentJsonObjects}.<br>
+ * Reading from these maps never blocks, and all of them can create a
+ * consistent snapshot of their content.
+ * 
+ * @author ToMe25
+ */
+abstract class ConcurrentContentMap extends AbstractMap<String, Object> implements Cloneable {
+
+	/**
+	 * The value a function passed to {@link #compute(String, BiFunction)} can
+	 * return to leave the mapping for its key unchanged.
+	 */
+	static final Object UNCHANGED = new Object();
+
+	/**
+	 * Gets a consistent snapshot of the content of this map.<br>
+	 * The returned map must not be modified.
+	 * 
+	 * @return a map containing the content of this map at a single point in time.
+	 */
+	abstract CompactMap snapshot();
+
+	/**
+	 * Atomically computes a new value for the given key.<br>
+	 * If the function returns null the mapping for the key is removed, if it
+	 * returns {@link #UNCHANGED} the map isn't modified.
+	 * 
+	 * @param key      the key to compute the value for.
+	 * @param function the function calculating the new value from the key and the
+	 *                 current value, or null if there is none.
+	 * @return the new value for the key, or {@link #UNCHANGED}.
+	 */
+	@Override
+	public abstract Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> function);
+
+	/**
+	 * Atomically adds the given key value pair, if this map doesn't contain the
+	 * key yet.<br>
+	 * Unlike {@link #putIfAbsent(Object, Object)} this treats keys mapped to null
+	 * as present.
+	 * 
+	 * @param key   the key to add.
+	 * @param value the value to add for the key.
+	 * @return whether the key was added.
+	 */
+	abstract boolean addIfAbsent(String key, Object value);
+
+	@Override
+	public abstract ConcurrentContentMap clone();
+
+	/**
+	 * A {@link ConcurrentContentMap} that replaces its entire content on every
+	 * write.<br>
+	 * The current content is an immutable {@link CompactMap}, so reads and
+	 * snapshots are free, and iteration keeps the insertion order. Writes copy the
+	 * content and publish the copy using compare and set, so they are only cheap
+	 * for small or rarely changing maps.
+	 * 
+	 * @author ToMe25
+	 */
+	static class CopyOnWrite extends ConcurrentContentMap {
+
+		/**
+		 * The current content of this map. Never modified after being published.
+		 */
+		private final AtomicReference<CompactMap> content;
+
+		/**
+		 * Creates a new empty copy on write map.
+		 */
+		CopyOnWrite() {
+			this(new CompactMap(0));
+		}
+
+		/**
+		 * Creates a new copy on write map with the given initial content.
+		 * 
+		 * @param content the initial content of the new map. Must not be modified
+		 *                afterwards.
+		 */
+		private CopyOnWrite(CompactMap content) {
+			this.content = new AtomicReference<>(content);
+		}
+
+		@Override
+		CompactMap snapshot() {
+			return content.get();
+		}
+
+		@Override
+		public Object get(Object key) {
+			return content.get().get(key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return content.get().containsKey(key);
+		}
+
+		@Override
+		public boolean containsValue(Object value) {
+			return content.get().containsValue(value);
+		}
+
+		@Override
+		public int size() {
+			return content.get().size();
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			while (true) {
+				CompactMap current = content.get();
+				CompactMap next = current.clone();
+				Object old = next.put(key, value);
+				if (content.compareAndSet(current, next)) {
+					return old;
+				}
+			}
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ? extends Object> m) {
+			while (true) {
+				CompactMap current = content.get();
+				CompactMap next = current.clone();
+				next.putAll(m);
+				if (content.compareAndSet(current, next)) {
+					return;
+				}
+			}
+		}
+
+		@Override
+		public Object remove(Object key) {
+			while (true) {
+				CompactMap current = content.get();
+				if (!current.containsKey(key)) {
+					return null;
+				}
+				CompactMap next = current.clone();
+				Object old = next.remove(key);
+				if (content.compareAndSet(current, next)) {
+					return old;
+				}
+			}
+		}
+
+		@Override
+		boolean addIfAbsent(String key, Object value) {
+			while (true) {
+				CompactMap current = content.get();
+				if (current.containsKey(key)) {
+					return false;
+				}
+				CompactMap next = current.clone();
+				next.put(key, value);
+				if (content.compareAndSet(current, next)) {
+					return true;
+				}
+			}
+		}
+
+		@Override
+		public void clear() {
+			content.set(new CompactMap(0));
+		}
+
+		/**
+		 * {@inheritDoc}<br>
+		 * The function may be called multiple times, if another thread modifies this
+		 * map at the same time.
+		 */
+		@Override
+		public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> function) {
+			while (true) {
+				CompactMap current = content.get();
+				Object value = function.apply(key, current.get(key));
+				if (value == UNCHANGED) {
+					return value;
+				}
+				CompactMap next = current.clone();
+				if (value == null) {
+					next.remove(key);
+				} else {
+					next.put(key, value);
+				}
+				if (content.compareAndSet(current, next)) {
+					return value;
+				}
+			}
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new EntrySet(this, () -> content.get().entrySet().iterator());
+		}
+
+		@Override
+		public CopyOnWrite clone() {
+			// The content is immutable, so it can be shared.
+			return new CopyOnWrite(content.get());
+		}
+
+	}
+
+	/**
+	 * A {@link ConcurrentContentMap} backed by a {@link ConcurrentHashMap}.<br>
+	 * Writes lock one of multiple lock stripes, chosen based on the key, so writes
+	 * to different keys rarely block each other. Creating a snapshot locks all
+	 * stripes, to get a consistent state.<br>
+	 * Iteration order is unspecified, and iterators are weakly consistent.
+	 * 
+	 * @author ToMe25
+	 */
+	static class Striped extends ConcurrentContentMap {
+
+		/**
+		 * The placeholder used to store null keys and values in the
+		 * {@link ConcurrentHashMap}, since it doesn't support them.
+		 */
+		private static final Object NULL = new Object();
+
+		/**
+		 * The map storing the content of this map.
+		 */
+		private final ConcurrentHashMap<Object, Object> content = new ConcurrentHashMap<>();
+
+		/**
+		 * The locks writes to this map lock based on their key.
+		 */
+		private final ReentrantLock[] stripes;
+
+		/**
+		 * Creates a new empty striped map with one lock stripe per available
+		 * processor, rounded up to the next power of two.
+		 */
+		Striped() {
+			int count = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1) * 2 - 1);
+			stripes = new ReentrantLock[count];
+			for (int i = 0; i < count; i++) {
+				stripes[i] = new ReentrantLock();
+			}
+		}
+
+		/**
+		 * Replaces null with the {@link #NULL} placeholder.
+		 * 
+		 * @param obj the object to mask.
+		 * @return the object to store in the {@link ConcurrentHashMap}.
+		 */
+		private static Object mask(Object obj) {
+			return obj == null ? NULL : obj;
+		}
+
+		/**
+		 * Replaces the {@link #NULL} placeholder with null.
+		 * 
+		 * @param obj the object read from the {@link ConcurrentHashMap}.
+		 * @return the actual object.
+		 */
+		private static Object unmask(Object obj) {
+			return obj == NULL ? null : obj;
+		}
+
+		/**
+		 * Gets the lock stripe for the given key.
+		 * 
+		 * @param key the key to get the lock for.
+		 * @return the lock for the key.
+		 */
+		private ReentrantLock stripe(Object key) {
+			int h = key == null ? 0 : key.hashCode();
+			return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+		}
+
+		/**
+		 * Locks all lock stripes of this map.
+		 */
+		private void lockAll() {
+			for (ReentrantLock lock : stripes) {
+				lock.lock();
+			}
+		}
+
+		/**
+		 * Unlocks all lock stripes of this map.
+		 */
+		private void unlockAll() {
+			for (int i = stripes.length - 1; i >= 0; i--) {
+				stripes[i].unlock();
+			}
+		}
+
+		@Override
+		CompactMap snapshot() {
+			lockAll();
+			try {
+				CompactMap snapshot = new CompactMap(content.size());
+				content.forEach((key, value) -> snapshot.put((String) unmask(key), unmask(value)));
+				return snapshot;
+			} finally {
+				unlockAll();
+			}
+		}
+
+		@Override
+		public Object get(Object key) {
+			return unmask(content.get(mask(key)));
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return content.containsKey(mask(key));
+		}
+
+		@Override
+		public boolean containsValue(Object value) {
+			return content.containsValue(mask(value));
+		}
+
+		@Override
+		public int size() {
+			return content.size();
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			ReentrantLock lock = stripe(key);
+			lock.lock();
+			try {
+				return unmask(content.put(mask(key), mask(value)));
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public Object remove(Object key) {
+			ReentrantLock lock = stripe(key);
+			lock.lock();
+			try {
+				return unmask(content.remove(mask(key)));
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		boolean addIfAbsent(String key, Object value) {
+			ReentrantLock lock = stripe(key);
+			lock.lock();
+			try {
+				return content.putIfAbsent(mask(key), mask(value)) == null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void clear() {
+			lockAll();
+			try {
+				content.clear();
+			} finally {
+				unlockAll();
+			}
+		}
+
+		@Override
+		public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> function) {
+			ReentrantLock lock = stripe(key);
+			lock.lock();
+			try {
+				Object value = function.apply(key, unmask(content.get(mask(key))));
+				if (value == UNCHANGED) {
+					return value;
+				} else if (value == null) {
+					content.remove(mask(key));
+				} else {
+					content.put(mask(key), value);
+				}
+				return value;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new EntrySet(this, () -> {
+				Iterator<Entry<Object, Object>> iterator = content.entrySet().iterator();
+				return new Iterator<Entry<String, Object>>() {
+
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						Entry<Object, Object> next = iterator.next();
+						return new SimpleImmutableEntry<>((String) unmask(next.getKey()), unmask(next.getValue()));
+					}
+
+				};
+			});
+		}
+
+		@Override
+		public Striped clone() {
+			Striped clone = new Striped();
+			clone.putAll(snapshot());
+			return clone;
+		}
+
+	}
+
+	/**
+	 * The entry set view of a {@link ConcurrentContentMap}.<br>
+	 * Its entries and iterators write through to the map using its thread safe
+	 * methods.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+		/**
+		 * The map this is the entry set of.
+		 */
+		private final ConcurrentContentMap map;
+
+		/**
+		 * The supplier creating the iterators over the entries of the map.
+		 */
+		private final Supplier<Iterator<Entry<String, Object>>> iterators;
+
+		/**
+		 * Creates a new entry set for the given map.
+		 * 
+		 * @param map       the map to create the entry set for.
+		 * @param iterators the supplier creating iterators over the entries of the
+		 *                  map.
+		 */
+		public EntrySet(ConcurrentContentMap map, Supplier<Iterator<Entry<String, Object>>> iterators) {
+			this.map = map;
+			this.iterators = iterators;
+		}
+
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			Iterator<Entry<String, Object>> iterator = iterators.get();
+			return new Iterator<Entry<String, Object>>() {
+
+				/**
+				 * The key of the entry last returned by {@link #next()}.
+				 */
+				private String last;
+
+				/**
+				 * Whether {@link #last} is valid.
+				 */
+				private boolean hasLast;
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Entry<String, Object> next() {
+					Entry<String, Object> next = iterator.next();
+					last = next.getKey();
+					hasLast = true;
+					return new SimpleEntry<String, Object>(next.getKey(), next.getValue()) {
+
+						private static final long serialVersionUID = 2406394358216385813L;
+
+						@Override
+						public Object setValue(Object value) {
+							super.setValue(value);
+							return map.put(getKey(), value);
+						}
+
+					};
+				}
+
+				@Override
+				public void remove() {
+					if (!hasLast) {
+						throw new IllegalStateException();
+					}
+					map.remove(last);
+					hasLast = false;
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+
+	}
+
+}
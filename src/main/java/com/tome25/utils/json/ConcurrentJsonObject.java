@@ -0,0 +1,330 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.tome25.utils.exception.InvalidKeyException;
+
+/**
+ * A thread safe {@link JsonObject}, for json objects shared between many
+ * threads.<br>
+ * Reading from a ConcurrentJsonObject never blocks. Writes either replace an
+ * immutable copy of the content using compare and set(insertion ordered mode),
+ * or lock one of multiple lock stripes(unordered mode), so that writes to
+ * different keys can happen in parallel.<br>
+ * The insertion ordered mode is best for objects that are read a lot more often
+ * than they are written, like configurations, while the unordered mode scales
+ * better for frequently written objects.<br>
+ * Iterators and views are weakly consistent, they never throw a
+ * {@link java.util.ConcurrentModificationException}.<br>
+ * {@link #toString()}, {@link #clone()}, {@link #changes(JsonElement)},
+ * {@link #hashCode()} and serialization work on a consistent snapshot of the
+ * content.<br>
+ * The values are not made thread safe by this object, so nested json elements
+ * that are modified by multiple threads have to be ConcurrentJsonObjects as
+ * well.
+ * 
+ * @author ToMe25
+ */
+public class ConcurrentJsonObject extends JsonObject {
+
+	private static final long serialVersionUID = -3304125623413245791L;
+	private final ConcurrentContentMap content;
+
+	/**
+	 * Creates a new empty insertion ordered ConcurrentJsonObject.
+	 */
+	public ConcurrentJsonObject() {
+		this(true);
+	}
+
+	/**
+	 * Creates a new empty ConcurrentJsonObject.
+	 * 
+	 * @param insertionOrdered whether the new object should keep the insertion
+	 *                         order of its keys. Insertion ordered objects copy
+	 *                         their content on every write.
+	 */
+	public ConcurrentJsonObject(boolean insertionOrdered) {
+		this(insertionOrdered ? new ConcurrentContentMap.CopyOnWrite() : new ConcurrentContentMap.Striped());
+	}
+
+	/**
+	 * Creates a new insertion ordered ConcurrentJsonObject and initializes it with
+	 * the given content.
+	 * 
+	 * @param content the content for the new ConcurrentJsonObject.
+	 */
+	public ConcurrentJsonObject(Map<String, Object> content) {
+		this(true);
+		this.content.putAll(content);
+	}
+
+	/**
+	 * Creates a new ConcurrentJsonObject using the given map.
+	 * 
+	 * @param content the map to store the content of the new object.
+	 */
+	private ConcurrentJsonObject(ConcurrentContentMap content) {
+		super(content);
+		this.content = content;
+	}
+
+	/**
+	 * Checks whether this object keeps the insertion order of its keys.
+	 * 
+	 * @return whether this object is insertion ordered.
+	 */
+	public boolean isInsertionOrdered() {
+		return content instanceof ConcurrentContentMap.CopyOnWrite;
+	}
+
+	/**
+	 * Creates a new {@link JsonObject} containing a consistent snapshot of the
+	 * content of this object.<br>
+	 * The returned object is not thread safe, and not affected by later changes
+	 * to this object. The values are not copied.
+	 * 
+	 * @return a snapshot of this object.
+	 */
+	public JsonObject snapshot() {
+		return new JsonObject(content.snapshot().clone());
+	}
+
+	/**
+	 * Gets a {@link JsonObject} view of a consistent snapshot of this object.<br>
+	 * The returned object must not be modified.
+	 * 
+	 * @return a read-only snapshot of this object.
+	 */
+	private JsonObject view() {
+		return new JsonObject(content.snapshot());
+	}
+
+	/**
+	 * Replaces the given {@link JsonElement} with a snapshot of it, if it is a
+	 * ConcurrentJsonObject.
+	 * 
+	 * @param <T>     the key type of the element.
+	 * @param element the element to get a consistent state of.
+	 * @return the element to read from.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> JsonElement<T> view(JsonElement<T> element) {
+		if (element instanceof ConcurrentJsonObject) {
+			return (JsonElement<T>) ((ConcurrentJsonObject) element).view();
+		}
+		return element;
+	}
+
+	@Override
+	public Object add(String key, Object value) throws InvalidKeyException {
+		if (!content.addIfAbsent(key, value)) {
+			throw new InvalidKeyException(String.valueOf(key), "it exists already!");
+		}
+		return null;
+	}
+
+	@Override
+	public Object putIfAbsent(String key, Object value) {
+		Object[] old = new Object[1];
+		content.compute(key, (k, v) -> {
+			old[0] = v;
+			return v == null ? value : ConcurrentContentMap.UNCHANGED;
+		});
+		return old[0];
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		if (!(key instanceof String)) {
+			return false;
+		}
+
+		boolean[] removed = new boolean[1];
+		content.compute((String) key, (k, v) -> {
+			removed[0] = v != null && v.equals(value);
+			return removed[0] ? null : ConcurrentContentMap.UNCHANGED;
+		});
+		return removed[0];
+	}
+
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue) {
+		boolean[] replaced = new boolean[1];
+		content.compute(key, (k, v) -> {
+			replaced[0] = v != null && v.equals(oldValue);
+			return replaced[0] ? newValue : ConcurrentContentMap.UNCHANGED;
+		});
+		return replaced[0];
+	}
+
+	@Override
+	public Object replace(String key, Object value) {
+		Object[] old = new Object[1];
+		content.compute(key, (k, v) -> {
+			old[0] = v;
+			return v == null ? ConcurrentContentMap.UNCHANGED : value;
+		});
+		return old[0];
+	}
+
+	@Override
+	public Object computeIfAbsent(String key, Function<? super String, ? extends Object> mappingFunction) {
+		Object[] value = new Object[1];
+		content.compute(key, (k, v) -> {
+			if (v != null) {
+				value[0] = v;
+				return ConcurrentContentMap.UNCHANGED;
+			}
+			value[0] = mappingFunction.apply(k);
+			return value[0] == null ? ConcurrentContentMap.UNCHANGED : value[0];
+		});
+		return value[0];
+	}
+
+	@Override
+	public Object computeIfPresent(String key,
+			BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+		Object[] value = new Object[1];
+		content.compute(key, (k, v) -> {
+			value[0] = null;
+			if (v == null) {
+				return ConcurrentContentMap.UNCHANGED;
+			}
+			value[0] = remappingFunction.apply(k, v);
+			return value[0];
+		});
+		return value[0];
+	}
+
+	@Override
+	public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+		return content.compute(key, remappingFunction);
+	}
+
+	@Override
+	public Object merge(String key, Object value,
+			BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+		return content.compute(key, (k, v) -> v == null ? value : remappingFunction.apply(v, value));
+	}
+
+	@Override
+	public boolean supportsFreeze() {
+		return false;
+	}
+
+	/**
+	 * ConcurrentJsonObjects can't be frozen, use {@link #snapshot()} to get an
+	 * object that can be frozen instead.
+	 * 
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public JsonObject freeze() throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("ConcurrentJsonObjects can't be frozen!");
+	}
+
+	@Override
+	void compact(JsonCompactor compactor, Collection<JsonElement<?>> queue, boolean trim) {
+		for (String key : content.keySet()) {
+			Object value = content.get(key);
+			Object canonical = compactor.canonicalize(value, queue);
+			if (canonical != value) {
+				replace(key, value, canonical);
+			}
+		}
+	}
+
+	@Override
+	public int size(boolean recursive) {
+		return recursive ? view().size(true) : content.size();
+	}
+
+	@Override
+	public String toString() {
+		return view().toString();
+	}
+
+	@Override
+	public ConcurrentJsonObject clone() {
+		return clone(true);
+	}
+
+	@Override
+	public ConcurrentJsonObject clone(boolean recursive) {
+		if (!recursive) {
+			return new ConcurrentJsonObject(content.clone());
+		}
+
+		ConcurrentJsonObject clone = new ConcurrentJsonObject(isInsertionOrdered());
+		clone.content.putAll(view().clone(true));
+		return clone;
+	}
+
+	@Override
+	public int hashCode() {
+		return view().hashCode();
+	}
+
+	@Override
+	public long digest() {
+		return view().digest();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return view().equals(((ConcurrentJsonObject) obj).view());
+	}
+
+	@Override
+	public JsonObject changes(JsonElement<String> from, boolean recursive) {
+		return view().changes(view(from), recursive);
+	}
+
+	@Override
+	public JsonObject reconstruct(JsonElement<String> from, boolean recursive) {
+		return view().reconstruct(view(from), recursive);
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		view().writeExternal(out);
+	}
+
+	@Override
+	public int compareTo(JsonElement<?> o) {
+		if (o instanceof ConcurrentJsonObject && equals(o)) {
+			return 0;
+		}
+		return view().compareTo(view(o));
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * An interface for objects that can be serialized to json.<br>
+ * All methods have default implementations using the {@link JsonCodec} of the
+ * class of the object, so implementing classes only need a public no-argument
+ * constructor, as required by {@link Externalizable}.<br>
+ * When serialized using an {@link java.io.ObjectOutputStream}, the object is
+ * written as utf-8 encoded json.
+ * 
+ * @author ToMe25
+ */
+public interface IJsonSerializable extends Externalizable {
+
+	/**
+	 * Converts this object to a {@link JsonObject}.
+	 * 
+	 * @return the json representation of this object.
+	 */
+	default JsonObject toJson() {
+		return codec().toJson(this);
+	}
+
+	/**
+	 * Writes this object to the given {@link JsonWriter}.
+	 * 
+	 * @param writer the writer to write to.
+	 * @throws IOException if writing to the target of the writer fails.
+	 */
+	default void writeJson(JsonWriter writer) throws IOException {
+		codec().write(this, writer);
+	}
+
+	/**
+	 * Reads the fields of this object from the json object starting with the
+	 * current token of the given {@link JsonReader}.
+	 * 
+	 * @param reader the reader to read from.
+	 * @throws ParseException if the json is invalid, or doesn't match the fields
+	 *                        of this object.
+	 */
+	default void readJson(JsonReader reader) throws ParseException {
+		codec().readInto(this, reader);
+	}
+
+	@Override
+	default void writeExternal(ObjectOutput out) throws IOException {
+		byte[] json = codec().toJsonString(this).getBytes(StandardCharsets.UTF_8);
+		out.writeInt(json.length);
+		out.write(json);
+	}
+
+	@Override
+	default void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		byte[] json = new byte[in.readInt()];
+		in.readFully(json);
+		try {
+			JsonReader reader = new JsonReader(new String(json, StandardCharsets.UTF_8));
+			readJson(reader);
+			reader.next();
+		} catch (ParseException e) {
+			throw new IOException("Failed to parse serialized json.", e);
+		}
+	}
+
+	/**
+	 * Gets the {@link JsonCodec} used to convert this object.
+	 * 
+	 * @return the codec for the class of this object.
+	 */
+	@SuppressWarnings("unchecked")
+	default JsonCodec<IJsonSerializable> codec() {
+		return (JsonCodec<IJsonSerializable>) JsonCodec.of(getClass());
+	}
+
+}
@@ -20,13 +20,22 @@ package com.tome25.utils.json;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import com.tome25.utils.General;
 import com.tome25.utils.StringUtils;
@@ -34,7 +43,14 @@ import com.tome25.utils.exception.InvalidTypeException;
 
 /**
  * A standard Json list/array, that can store stuff, and be converted to a
- * string.
+ * string.<br>
+ * JsonArrays only containing values of one of the types Integer, Long, Double
+ * or Boolean can store them in a primitive array instead of a list of objects.
+ * The {@link JsonParser} does this automatically, other JsonArrays can be
+ * converted using {@link #usePrimitiveStorage()}. Adding a value of any other
+ * type automatically switches the JsonArray back to a generic list.<br>
+ * Arrays of objects can be indexed by the values of their fields using
+ * {@link #createIndex(boolean, String...)}.
  * 
  * @author ToMe25
  *
@@ -44,6 +60,39 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 	private static final long serialVersionUID = 5205197497094672807L;
 	private List<Object> content;
 
+	/**
+	 * Whether this JsonArray was made immutable using {@link #freeze()}.
+	 */
+	private transient boolean frozen;
+
+	/**
+	 * The cached hash code of this JsonArray. Only used while it is frozen.
+	 */
+	private transient int hash;
+
+	/**
+	 * The cached structural digest of this JsonArray. Only used while it is frozen.
+	 */
+	private transient long digest;
+
+	/**
+	 * The cached recursive size of this JsonArray, or -1 if it wasn't calculated
+	 * yet. Only used while it is frozen.
+	 */
+	private transient int recursiveSize = -1;
+
+	/**
+	 * The cached estimated memory footprint of this JsonArray, or -1 if it wasn't
+	 * estimated yet. Only used while it is frozen.
+	 */
+	private transient long footprint = -1;
+
+	/**
+	 * The {@link JsonIndex JsonIndices} over the elements of this JsonArray, or
+	 * null if there are none.
+	 */
+	private transient List<JsonIndex> indices;
+
 	/**
 	 * Creates a new empty JsonArray.
 	 */
@@ -93,7 +142,10 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 	@Override
 	public Object add(Integer key, Object value) {
+		checkFrozen();
+		checkStorage(value);
 		content.add((int) key, value);
+		indexAdded(value);
 		return null;
 	}
 
@@ -110,18 +162,44 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 	@Override
 	public boolean add(Object value) {
-		return content.add(value);
+		checkFrozen();
+		checkStorage(value);
+		content.add(value);
+		indexAdded(value);
+		return true;
+	}
+
+	/**
+	 * Adds a value parsed by the {@link JsonParser} to this array.<br>
+	 * If this array is still empty this selects a primitive storage based on the
+	 * type of the value, if possible.
+	 * 
+	 * @param value the value to add.
+	 */
+	void addParsed(Object value) {
+		if (content.isEmpty() && content instanceof ArrayList) {
+			PrimitiveList list = PrimitiveList.forValue(value);
+			if (list != null) {
+				content = list;
+			}
+		}
+		add(value);
 	}
 
 	@Override
 	public Object put(Integer key, Object value) {
-		return content.set((int) key, value);
+		checkFrozen();
+		checkStorage(value);
+		Object old = content.set((int) key, value);
+		indexRemoved(old);
+		indexAdded(value);
+		return old;
 	}
 
 	@Override
 	public void putAll(Map<? extends Integer, ? extends Object> m) {
 		m.forEach((key, value) -> {
-			content.set((Integer) key, value);
+			put(key, value);
 		});
 	}
 
@@ -132,12 +210,25 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 	@Override
 	public Object remove(int index) {
-		return content.remove(index);
+		checkFrozen();
+		Object old = content.remove(index);
+		indexRemoved(old);
+		return old;
 	}
 
 	@Override
 	public boolean remove(Object value) {
-		return content.remove(value);
+		checkFrozen();
+		if (indices == null) {
+			return content.remove(value);
+		}
+
+		int index = content.indexOf(value);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
 	}
 
 	@Override
@@ -168,9 +259,212 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 		return content.get(key).toString();
 	}
 
+	/**
+	 * Gets the value at the given index as an int.<br>
+	 * Doesn't have to box the value if this array uses an int array as storage.
+	 * 
+	 * @param index the index of the value to get.
+	 * @return the value at the given index.
+	 * @throws ClassCastException if the value at the given index isn't a
+	 *                            {@link Number}.
+	 */
+	public int getInt(int index) throws ClassCastException {
+		if (content instanceof PrimitiveList.IntList) {
+			return ((PrimitiveList.IntList) content).getInt(index);
+		} else {
+			return ((Number) content.get(index)).intValue();
+		}
+	}
+
+	/**
+	 * Gets the value at the given index as a long.<br>
+	 * Doesn't have to box the value if this array uses a long or int array as
+	 * storage.
+	 * 
+	 * @param index the index of the value to get.
+	 * @return the value at the given index.
+	 * @throws ClassCastException if the value at the given index isn't a
+	 *                            {@link Number}.
+	 */
+	public long getLong(int index) throws ClassCastException {
+		if (content instanceof PrimitiveList.LongList) {
+			return ((PrimitiveList.LongList) content).getLong(index);
+		} else if (content instanceof PrimitiveList.IntList) {
+			return ((PrimitiveList.IntList) content).getInt(index);
+		} else {
+			return ((Number) content.get(index)).longValue();
+		}
+	}
+
+	/**
+	 * Gets the value at the given index as a double.<br>
+	 * Doesn't have to box the value if this array uses a numeric primitive array
+	 * as storage.
+	 * 
+	 * @param index the index of the value to get.
+	 * @return the value at the given index.
+	 * @throws ClassCastException if the value at the given index isn't a
+	 *                            {@link Number}.
+	 */
+	public double getDouble(int index) throws ClassCastException {
+		if (content instanceof PrimitiveList.DoubleList) {
+			return ((PrimitiveList.DoubleList) content).getDouble(index);
+		} else if (content instanceof PrimitiveList.LongList) {
+			return ((PrimitiveList.LongList) content).getLong(index);
+		} else if (content instanceof PrimitiveList.IntList) {
+			return ((PrimitiveList.IntList) content).getInt(index);
+		} else {
+			return ((Number) content.get(index)).doubleValue();
+		}
+	}
+
+	/**
+	 * Gets the value at the given index as a boolean.<br>
+	 * Doesn't have to box the value if this array uses a boolean array as storage.
+	 * 
+	 * @param index the index of the value to get.
+	 * @return the value at the given index.
+	 * @throws ClassCastException if the value at the given index isn't a
+	 *                            {@link Boolean}.
+	 */
+	public boolean getBoolean(int index) throws ClassCastException {
+		if (content instanceof PrimitiveList.BooleanList) {
+			return ((PrimitiveList.BooleanList) content).getBoolean(index);
+		} else {
+			return (Boolean) content.get(index);
+		}
+	}
+
+	/**
+	 * Creates an {@link IntStream} of the values of this array.<br>
+	 * Streams the backing array directly if this array uses an int array as
+	 * storage.
+	 * 
+	 * @return a new {@link IntStream} of the values of this array.
+	 * @throws ClassCastException if this array contains a value that isn't a
+	 *                            {@link Number}. Thrown when the stream reaches
+	 *                            that value.
+	 */
+	public IntStream intStream() throws ClassCastException {
+		if (content instanceof PrimitiveList.IntList) {
+			return Arrays.stream(((PrimitiveList.IntList) content).array(), 0, content.size());
+		} else {
+			return content.stream().mapToInt(value -> ((Number) value).intValue());
+		}
+	}
+
+	/**
+	 * Creates a {@link LongStream} of the values of this array.<br>
+	 * Streams the backing array directly if this array uses a long or int array as
+	 * storage.
+	 * 
+	 * @return a new {@link LongStream} of the values of this array.
+	 * @throws ClassCastException if this array contains a value that isn't a
+	 *                            {@link Number}. Thrown when the stream reaches
+	 *                            that value.
+	 */
+	public LongStream longStream() throws ClassCastException {
+		if (content instanceof PrimitiveList.LongList) {
+			return Arrays.stream(((PrimitiveList.LongList) content).array(), 0, content.size());
+		} else if (content instanceof PrimitiveList.IntList) {
+			return intStream().asLongStream();
+		} else {
+			return content.stream().mapToLong(value -> ((Number) value).longValue());
+		}
+	}
+
+	/**
+	 * Creates a {@link DoubleStream} of the values of this array.<br>
+	 * Streams the backing array directly if this array uses a numeric primitive
+	 * array as storage.
+	 * 
+	 * @return a new {@link DoubleStream} of the values of this array.
+	 * @throws ClassCastException if this array contains a value that isn't a
+	 *                            {@link Number}. Thrown when the stream reaches
+	 *                            that value.
+	 */
+	public DoubleStream doubleStream() throws ClassCastException {
+		if (content instanceof PrimitiveList.DoubleList) {
+			return Arrays.stream(((PrimitiveList.DoubleList) content).array(), 0, content.size());
+		} else if (content instanceof PrimitiveList.LongList) {
+			return longStream().asDoubleStream();
+		} else if (content instanceof PrimitiveList.IntList) {
+			return intStream().asDoubleStream();
+		} else {
+			return content.stream().mapToDouble(value -> ((Number) value).doubleValue());
+		}
+	}
+
+	/**
+	 * Gets the primitive type of the array this JsonArray stores its values in.
+	 * 
+	 * @return the primitive type of the storage of this array, or null if it uses
+	 *         a generic list.
+	 */
+	public Class<?> getPrimitiveType() {
+		if (content instanceof PrimitiveList) {
+			return ((PrimitiveList) content).getPrimitiveType();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Switches this array to a storage backed by a primitive array, if all its
+	 * values are of the same type, and that type is Integer, Long, Double or
+	 * Boolean.<br>
+	 * Does nothing if this array is empty, frozen, or uses a custom list type.
+	 * 
+	 * @return whether this array now uses a primitive array as storage.
+	 */
+	public boolean usePrimitiveStorage() {
+		if (frozen) {
+			return content instanceof PrimitiveList;
+		} else if (content instanceof PrimitiveList) {
+			((PrimitiveList) content).trimToSize();
+			return true;
+		} else if (content instanceof ArrayList) {
+			PrimitiveList list = PrimitiveList.copyOf(content);
+			if (list != null) {
+				content = list;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Switches this array to a generic list if it currently uses a primitive array
+	 * that can't store the given value.
+	 * 
+	 * @param value the value that is about to be stored in this array.
+	 */
+	private void checkStorage(Object value) {
+		if (content instanceof PrimitiveList && !((PrimitiveList) content).accepts(value)) {
+			content = new ArrayList<>(content);
+		}
+	}
+
+	/**
+	 * Switches this array to a generic list if it currently uses a primitive array
+	 * that can't store all of the given values.
+	 * 
+	 * @param values the values that are about to be stored in this array.
+	 */
+	private void checkStorage(Collection<?> values) {
+		if (content instanceof PrimitiveList) {
+			for (Object value : values) {
+				if (!((PrimitiveList) content).accepts(value)) {
+					content = new ArrayList<>(content);
+					return;
+				}
+			}
+		}
+	}
+
 	@Override
 	public Collection<Object> values() {
-		return content;
+		return frozen ? Collections.unmodifiableList(content) : content;
 	}
 
 	/**
@@ -210,7 +504,9 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 	@Override
 	public int size(boolean recursive) {
-		if (recursive) {
+		if (recursive && frozen && recursiveSize >= 0) {
+			return recursiveSize;
+		} else if (recursive && !(content instanceof PrimitiveList)) {
 			int[] size = new int[] { 0 };
 			content.forEach(value -> {
 				if (value instanceof JsonElement) {
@@ -219,6 +515,9 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 					size[0]++;
 				}
 			});
+			if (frozen) {
+				recursiveSize = size[0];
+			}
 			return size[0];
 		} else {
 			return content.size();
@@ -229,12 +528,16 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 	public String toString() {
 		StringBuilder ret = new StringBuilder();
 		ret.append('[');
-		content.forEach(value -> {
-			StringUtils.toEscapedString(ret, value);
-			ret.append(',');
-		});
-		if (ret.length() > 1) {
-			ret.deleteCharAt(ret.length() - 1);
+		if (content instanceof PrimitiveList) {
+			((PrimitiveList) content).appendTo(ret);
+		} else {
+			content.forEach(value -> {
+				StringUtils.toEscapedString(ret, value);
+				ret.append(',');
+			});
+			if (ret.length() > 1) {
+				ret.deleteCharAt(ret.length() - 1);
+			}
 		}
 		ret.append(']');
 		return ret.toString();
@@ -256,7 +559,7 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 		@SuppressWarnings("unchecked")
 		final List<Object> contentClone = (List<Object>) General.reflectiveClone((Cloneable) content);
-		if (recursive) {
+		if (recursive && !(contentClone instanceof PrimitiveList)) {
 			for (int i = 0; i < contentClone.size(); i++) {
 				Object value = contentClone.get(i);
 				if (value instanceof JsonElement && ((JsonElement<?>) value).supportsClone()) {
@@ -271,14 +574,40 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 			}
 		}
 		clone.content = contentClone;
+		clone.frozen = false;
+		clone.hash = 0;
+		clone.digest = 0;
+		clone.recursiveSize = -1;
+		clone.footprint = -1;
+		clone.indices = null;
 		return clone;
 	}
 
 	@Override
 	public int hashCode() {
+		if (frozen && hash != 0) {
+			return hash;
+		}
+
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((content == null) ? 0 : content.hashCode());
+		if (frozen) {
+			hash = result;
+		}
+		return result;
+	}
+
+	@Override
+	public long digest() {
+		if (frozen && digest != 0) {
+			return digest;
+		}
+
+		long result = JsonDigest.ofList(content);
+		if (frozen) {
+			digest = result;
+		}
 		return result;
 	}
 
@@ -294,6 +623,9 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 			return false;
 		}
 		JsonArray other = (JsonArray) obj;
+		if (frozen && other.frozen && digest() != other.digest()) {
+			return false;
+		}
 		if (content == null) {
 			if (other.content != null) {
 				return false;
@@ -311,22 +643,63 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 	@Override
 	public void clear() {
+		checkFrozen();
 		content.clear();
+		if (indices != null) {
+			for (JsonIndex index : indices) {
+				index.clear();
+			}
+		}
+	}
+
+	/**
+	 * Gets the list storing the content of this Json, for the {@link JsonWalker}.
+	 * 
+	 * @return the internal list of this Json.
+	 */
+	List<Object> getContent() {
+		return content;
 	}
 
 	@Override
 	public Iterator<Object> iterator() {
-		return content.iterator();
+		if (frozen) {
+			return Collections.unmodifiableList(content).iterator();
+		} else if (indices != null) {
+			return new JsonArrayIterator(0);
+		} else {
+			return content.iterator();
+		}
 	}
 
 	@Override
 	public boolean addAll(Collection<? extends Object> c) {
-		return content.addAll(c);
+		checkFrozen();
+		checkStorage(c);
+		if (!content.addAll(c)) {
+			return false;
+		}
+		if (indices != null) {
+			for (Object value : c) {
+				indexAdded(value);
+			}
+		}
+		return true;
 	}
 
 	@Override
 	public boolean addAll(int index, Collection<? extends Object> c) {
-		return content.addAll(index, c);
+		checkFrozen();
+		checkStorage(c);
+		if (!content.addAll(index, c)) {
+			return false;
+		}
+		if (indices != null) {
+			for (Object value : c) {
+				indexAdded(value);
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -357,22 +730,201 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 
 	@Override
 	public ListIterator<Object> listIterator() {
-		return content.listIterator();
+		return listIterator(0);
 	}
 
 	@Override
 	public ListIterator<Object> listIterator(int index) {
-		return content.listIterator(index);
+		if (frozen) {
+			return Collections.unmodifiableList(content).listIterator(index);
+		} else if (content instanceof PrimitiveList || indices != null) {
+			return new JsonArrayIterator(index);
+		} else {
+			return content.listIterator(index);
+		}
 	}
 
 	@Override
 	public boolean removeAll(Collection<?> c) {
-		return content.removeAll(c);
+		checkFrozen();
+		if (indices == null) {
+			return content.removeAll(c);
+		}
+		return removeIndexed(c, true);
 	}
 
 	@Override
 	public boolean retainAll(Collection<?> c) {
-		return content.retainAll(c);
+		checkFrozen();
+		if (indices == null) {
+			return content.retainAll(c);
+		}
+		return removeIndexed(c, false);
+	}
+
+	/**
+	 * Removes all values that are, or aren't, contained in the given collection
+	 * from this array, and from its indices.
+	 * 
+	 * @param c        the collection to check the values against.
+	 * @param contains whether to remove the values contained in the collection,
+	 *                 rather than the ones that aren't.
+	 * @return whether any values were removed.
+	 */
+	private boolean removeIndexed(Collection<?> c, boolean contains) {
+		List<Object> removed = new ArrayList<>();
+		for (Object value : content) {
+			if (c.contains(value) == contains) {
+				removed.add(value);
+			}
+		}
+
+		if (removed.isEmpty()) {
+			return false;
+		}
+
+		if (contains) {
+			content.removeAll(c);
+		} else {
+			content.retainAll(c);
+		}
+		for (Object value : removed) {
+			indexRemoved(value);
+		}
+		return true;
+	}
+
+	/**
+	 * Sorts the values of this array in the order defined by the given
+	 * {@link JsonSorter}.<br>
+	 * The sort keys of all values are computed once before sorting. Sorting is
+	 * stable, and large arrays are sorted in parallel.
+	 * 
+	 * @param sorter the sorter defining the order of the values.
+	 * @throws UnsupportedOperationException if this array is frozen.
+	 */
+	public void sortBy(JsonSorter sorter) throws UnsupportedOperationException {
+		checkFrozen();
+		int[] order = sorter.order(content);
+		Object[] values = content.toArray();
+		for (int i = 0; i < order.length; i++) {
+			content.set(i, values[order[i]]);
+		}
+
+		if (indices != null) {
+			for (JsonIndex index : indices) {
+				index.rebuild();
+			}
+		}
+	}
+
+	/**
+	 * Gets the first values of this array in the order defined by the given
+	 * {@link JsonSorter}, without sorting this array.<br>
+	 * For small numbers of values this only keeps the best values seen so far,
+	 * rather than sorting all values.
+	 * 
+	 * @param sorter the sorter defining the order of the values.
+	 * @param k      the max number of values to get.
+	 * @return a new array containing the first {@code k} values in sorted order.
+	 * @throws IllegalArgumentException if {@code k} is negative.
+	 */
+	public JsonArray topK(JsonSorter sorter, int k) throws IllegalArgumentException {
+		if (k < 0) {
+			throw new IllegalArgumentException("The number of values to get can't be negative!");
+		}
+
+		JsonArray top = new JsonArray();
+		for (int index : sorter.top(content, k)) {
+			top.add(content.get(index));
+		}
+		return top;
+	}
+
+	/**
+	 * Creates a new {@link JsonIndex} over the given field paths of the elements
+	 * of this array.<br>
+	 * The index is kept up to date when elements are added to or removed from
+	 * this array, and can be used for fast lookups by the values of the indexed
+	 * paths.
+	 * 
+	 * @param sorted whether to create a sorted index supporting range queries,
+	 *               rather than a hash index.
+	 * @param paths  the {@link JsonPath JsonPaths} of the values to index,
+	 *               relative to the elements. For example {@code "id"} or
+	 *               {@code "address.city"}.
+	 * @return the new index.
+	 * @throws ParseException           if one of the paths is invalid.
+	 * @throws IllegalArgumentException if no paths were given.
+	 */
+	public JsonIndex createIndex(boolean sorted, String... paths) throws ParseException, IllegalArgumentException {
+		if (paths.length == 0) {
+			throw new IllegalArgumentException("An index requires at least one path!");
+		}
+
+		JsonPath[] compiled = new JsonPath[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			compiled[i] = JsonPath.compile(paths[i]);
+		}
+
+		JsonIndex index = new JsonIndex(this, sorted, compiled);
+		if (indices == null) {
+			indices = new ArrayList<>(1);
+		}
+		indices.add(index);
+		return index;
+	}
+
+	/**
+	 * Removes the given {@link JsonIndex} from this array, so that it is no longer
+	 * updated.
+	 * 
+	 * @param index the index to remove.
+	 * @return whether the index belonged to this array.
+	 */
+	public boolean dropIndex(JsonIndex index) {
+		if (indices == null || !indices.remove(index)) {
+			return false;
+		}
+		if (indices.isEmpty()) {
+			indices = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the {@link JsonIndex JsonIndices} of this array.
+	 * 
+	 * @return an unmodifiable list of the indices of this array.
+	 */
+	public List<JsonIndex> getIndices() {
+		return indices == null ? Collections.emptyList() : Collections.unmodifiableList(indices);
+	}
+
+	/**
+	 * Adds a value that was added to this array to its indices.
+	 * 
+	 * @param value the added value.
+	 */
+	private void indexAdded(Object value) {
+		if (indices != null) {
+			for (JsonIndex index : indices) {
+				index.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Removes a value that was removed from this array from its indices.
+	 * 
+	 * @param value the removed value.
+	 */
+	private void indexRemoved(Object value) {
+		if (indices != null) {
+			for (JsonIndex index : indices) {
+				index.remove(value);
+			}
+		}
 	}
 
 	@Override
@@ -380,6 +932,18 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 		return put(index, element);
 	}
 
+	/**
+	 * Creates a {@link Spliterator} over the values of this array, that splits the
+	 * values into halves of equal size using random access.<br>
+	 * This array must not be modified while using the spliterator.
+	 * 
+	 * @return a new spliterator over the values of this array.
+	 */
+	@Override
+	public Spliterator<Object> spliterator() {
+		return JsonSpliterators.list(content, frozen);
+	}
+
 	@Override
 	public List<Object> subList(int fromIndex, int toIndex) {
 		return new JsonArray(content.subList(fromIndex, toIndex));
@@ -396,54 +960,149 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 	}
 
 	@Override
-	public boolean supportsChanges() {
+	public boolean supportsFreeze() {
 		return true;
 	}
 
+	/**
+	 * {@inheritDoc}<br>
+	 * Checks whether all elements inside this array can be frozen before
+	 * freezing any of them, so a failed freeze doesn't change anything.
+	 */
 	@Override
-	public JsonArray changes(JsonElement<Integer> from) {
-		return changes(from, true);
+	public JsonArray freeze() throws UnsupportedOperationException {
+		if (!frozen) {
+			JsonObject.checkFreezable(this);
+			freezeTree();
+		}
+		return this;
+	}
+
+	/**
+	 * Freezes this array and all elements inside it, without checking whether
+	 * they can be frozen first.
+	 */
+	void freezeTree() {
+		if (!frozen) {
+			if (!(content instanceof PrimitiveList)) {
+				for (Object value : content) {
+					JsonObject.freezeTree(value);
+				}
+			}
+			frozen = true;
+		}
 	}
 
 	@Override
-	public JsonArray changes(JsonElement<Integer> from, boolean recursive) {
-		JsonArray last = (JsonArray) from;
-		JsonArray changes = new JsonArray();
-		HashSet<Object> contentCopy;
-		contentCopy = new HashSet<>(Math.max(content.size(), last.content.size()));
-		contentCopy.addAll(last.content);
+	public boolean isFrozen() {
+		return frozen;
+	}
 
-		int[] index = new int[] { 0 };
-		for (Object value : content) {
-			try {
-				if (!contentCopy.contains(value)) {
-					JsonObject val;
-					if (value instanceof JsonElement && ((JsonElement<?>) value).supportsClone()) {
-						val = new JsonObject("val", ((JsonElement<?>) value).clone(true), "after", index[0]);
-					} else if (value instanceof Cloneable) {
-						val = new JsonObject("val", General.reflectiveClone((Cloneable) value), "after", index[0]);
-					} else {
-						val = new JsonObject("val", value, "after", index[0]);
-					}
-					changes.content.add(val);
-				} else {
-					index[0]++;
+	@Override
+	public JsonArray compact() {
+		JsonCompactor.getDefault().compact(this);
+		return this;
+	}
+
+	@Override
+	public long estimateSize() {
+		if (frozen && footprint >= 0) {
+			return footprint;
+		}
+
+		long size = JsonFootprint.retained(this);
+		if (frozen) {
+			footprint = size;
+		}
+		return size;
+	}
+
+	@Override
+	public long estimateShallowSize() {
+		return JsonFootprint.shallow(this);
+	}
+
+	/**
+	 * Replaces the values of this array with their canonical instances from the
+	 * given compactor, and adds the json elements inside it to the given queue.
+	 * <br>
+	 * Doesn't change the content of this array, so this is done for frozen arrays
+	 * as well. If trimming is enabled, arrays that aren't frozen switch to a
+	 * {@link #usePrimitiveStorage() primitive storage} if possible.
+	 * 
+	 * @param compactor the compactor to get the canonical values from.
+	 * @param queue     the queue of elements to compact next.
+	 * @param trim      whether the storage of this array should be shrunk to its
+	 *                  size.
+	 */
+	void compact(JsonCompactor compactor, Collection<JsonElement<?>> queue, boolean trim) {
+		footprint = -1;
+		if (!(content instanceof PrimitiveList)) {
+			for (ListIterator<Object> it = content.listIterator(); it.hasNext();) {
+				Object value = it.next();
+				Object canonical = compactor.canonicalize(value, queue);
+				if (canonical != value) {
+					it.set(canonical);
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
 			}
 		}
 
-		contentCopy.clear();
-		contentCopy.addAll(content);
-		index[0] = 0;
-		last.content.forEach((value) -> {
-			if (!contentCopy.contains(value)) {
-				changes.content.add(new JsonObject("rm", index[0]));
+		if (trim) {
+			if (!usePrimitiveStorage() && content instanceof ArrayList) {
+				((ArrayList<Object>) content).trimToSize();
+			} else if (content instanceof PrimitiveList) {
+				((PrimitiveList) content).trimToSize();
 			}
-			index[0]++;
-		});
-		return changes;
+		}
+	}
+
+	/**
+	 * Throws an {@link UnsupportedOperationException} if this JsonArray is frozen.
+	 * 
+	 * @throws UnsupportedOperationException if this JsonArray is frozen.
+	 */
+	private void checkFrozen() throws UnsupportedOperationException {
+		if (frozen) {
+			throw new UnsupportedOperationException("This JsonArray is frozen!");
+		}
+	}
+
+	@Override
+	public boolean supportsChanges() {
+		return true;
+	}
+
+	@Override
+	public JsonArray changes(JsonElement<Integer> from) {
+		return changes(from, true);
+	}
+
+	@Override
+	public JsonArray changes(JsonElement<Integer> from, boolean recursive) {
+		return changes(from, recursive, true);
+	}
+
+	/**
+	 * Returns a new JsonArray containing the operations needed to turn the given
+	 * JsonArray into this one.<br>
+	 * Uses a shortest edit script, so values that are in both arrays, including
+	 * duplicates, are kept in place. Removed values are replaced in place by the
+	 * values added at their position, and changed {@link JsonElement
+	 * JsonElements} are replaced with their changes if recursive is true, unless
+	 * that is larger than a copy.
+	 * 
+	 * @param from        the JsonArray to get the changes from.
+	 * @param recursive   whether changed json elements should be replaced with
+	 *                    their changes, or a copy of their new value.
+	 * @param detectMoves whether values that were moved to another index should be
+	 *                    moved by the changes, rather than being removed and added
+	 *                    again.
+	 * @return a new JsonArray containing the changes from the given JsonArray to
+	 *         this one.
+	 */
+	public JsonArray changes(JsonElement<Integer> from, boolean recursive, boolean detectMoves) {
+		JsonArray last = (JsonArray) from;
+		return ArrayDiff.diff(last.content, content, recursive, detectMoves);
 	}
 
 	@Override
@@ -451,28 +1110,217 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 		return reconstruct(from, true);
 	}
 
+	/**
+	 * Returns a new JsonArray containing the content of the given JsonArray, with
+	 * the changes contained in this JsonArray applied.<br>
+	 * Changes arrays created by older versions, using the operations
+	 * {@code {"val": value, "after": index}} and {@code {"rm": index}}, are still
+	 * supported.
+	 * 
+	 * @param from      the JsonArray to apply the changes to.
+	 * @param recursive whether changes of json elements should be applied to them,
+	 *                  or the changes should replace the json elements.
+	 * @return a new JsonArray with the changes applied.
+	 */
 	@Override
 	public JsonArray reconstruct(JsonElement<Integer> from, boolean recursive) {
-		JsonArray last = (JsonArray) from;
-		JsonArray reconstructed = last.clone();
-		int[] offset = new int[] { 0 };
-		content.forEach(change -> {
-			if (change instanceof JsonObject) {
-				JsonObject chg = (JsonObject) change;
-				if (chg.containsKey("rm")) {
-					reconstructed.remove(((int) chg.get("rm")) + offset[0]);
-					offset[0]--;
-				} else if (chg.containsKey("after") && chg.containsKey("val")) {
-					reconstructed.add(((int) chg.get("after")) + offset[0], chg.get("val"));
-					offset[0]++;
+		JsonArray reconstructed = ((JsonArray) from).clone();
+		reconstructed.applyChanges(this, recursive, true);
+		return reconstructed;
+	}
+
+	@Override
+	public JsonArray reconstruct(JsonElement<Integer> from, boolean recursive, boolean shareUnchanged) {
+		if (!shareUnchanged) {
+			return reconstruct(from, recursive);
+		}
+
+		JsonArray reconstructed = ((JsonArray) from).clone(false);
+		reconstructed.applyChanges(this, recursive, false);
+		return reconstructed;
+	}
+
+	@Override
+	public JsonArray apply(JsonElement<Integer> changes, boolean recursive) throws UnsupportedOperationException {
+		checkFrozen();
+		applyChanges((JsonArray) changes, recursive, true);
+		return this;
+	}
+
+	/**
+	 * Combines these changes and the given changes made after them into a single
+	 * changes array.<br>
+	 * Since the operations are applied in order, the result contains the
+	 * operations of both, with successive operations on the same index merged
+	 * into one where possible. Operations of older versions are converted to the
+	 * current ones.
+	 * 
+	 * @param from the JsonArray these changes were created from. Not required to
+	 *             combine array changes, so it may be null.
+	 * @param next the changes made after these changes.
+	 * @return a new JsonArray containing the combined changes.
+	 */
+	@Override
+	public JsonArray compose(JsonElement<Integer> from, JsonElement<Integer> next) {
+		JsonArray composed = new JsonArray();
+		addOperations(composed.content, this);
+		addOperations(composed.content, (JsonArray) next);
+		return composed;
+	}
+
+	/**
+	 * Adds copies of the operations of the given changes array to the given list
+	 * of operations.
+	 * 
+	 * @param operations the list to add the operations to.
+	 * @param changes    the changes array to get the operations from.
+	 */
+	private static void addOperations(List<Object> operations, JsonArray changes) {
+		int offset = 0;
+		for (Object change : changes.content) {
+			if (!(change instanceof JsonObject)) {
+				continue;
+			}
+
+			JsonObject chg = (JsonObject) change;
+			if (chg.containsKey("rm")) {
+				addOperation(operations, new JsonObject("del", ((int) chg.get("rm")) + offset));
+				offset--;
+			} else if (chg.containsKey("after") && chg.containsKey("val")) {
+				addOperation(operations, new JsonObject("ins", ((int) chg.get("after")) + offset, "val",
+						JsonChanges.copy(chg.get("val"))));
+				offset++;
+			} else {
+				addOperation(operations, (JsonObject) JsonChanges.copy(chg));
+			}
+		}
+	}
+
+	/**
+	 * Adds the given operation to the given list of operations, merging it into
+	 * the last operation if that is possible.
+	 * 
+	 * @param operations the list to add the operation to.
+	 * @param operation  the operation to add.
+	 */
+	private static void addOperation(List<Object> operations, JsonObject operation) {
+		if (operations.isEmpty()) {
+			operations.add(operation);
+			return;
+		}
+
+		JsonObject last = (JsonObject) operations.get(operations.size() - 1);
+		int lastIndex = operationIndex(last, "ins");
+		boolean inserted = lastIndex >= 0;
+		if (!inserted) {
+			lastIndex = operationIndex(last, "set");
+		}
+
+		if (lastIndex >= 0 && lastIndex == operationIndex(operation, "chg")) {
+			last.put("val", JsonChanges.apply(last.get("val"), operation.get("val"), true, true));
+		} else if (lastIndex >= 0 && lastIndex == operationIndex(operation, "set")) {
+			last.put("val", operation.get("val"));
+		} else if (!inserted && operationIndex(last, "chg") >= 0
+				&& operationIndex(last, "chg") == operationIndex(operation, "set")) {
+			operations.set(operations.size() - 1, operation);
+		} else if (inserted && lastIndex == operationIndex(operation, "del")) {
+			operations.remove(operations.size() - 1);
+			int count = operation.containsKey("n") ? (int) operation.get("n") : 1;
+			if (count > 1) {
+				addOperation(operations, new JsonObject("del", lastIndex, "n", count - 1));
+			}
+		} else if (inserted && lastIndex == operationIndex(operation, "mv")) {
+			operations.remove(operations.size() - 1);
+			addOperation(operations, new JsonObject("ins", operation.get("to"), "val", last.get("val")));
+		} else if (operationIndex(last, "del") >= 0 && operationIndex(last, "del") == operationIndex(operation, "del")) {
+			int count = last.containsKey("n") ? (int) last.get("n") : 1;
+			count += operation.containsKey("n") ? (int) operation.get("n") : 1;
+			last.put("n", count);
+		} else {
+			operations.add(operation);
+		}
+	}
+
+	/**
+	 * Gets the index of the given operation, if it is of the given type.
+	 * 
+	 * @param operation the operation to get the index of.
+	 * @param type      the type of operation to check for.
+	 * @return the index of the operation, or -1 if it is of another type.
+	 */
+	private static int operationIndex(JsonObject operation, String type) {
+		Object index = operation.get(type);
+		return index instanceof Integer ? (int) index : -1;
+	}
+
+	/**
+	 * Applies the operations of the given changes array to this array.
+	 * 
+	 * @param changes   the changes to apply.
+	 * @param recursive whether changes of json elements should be applied to them,
+	 *                  or the changes should replace the json elements.
+	 * @param inPlace   whether changed json elements should be modified, rather
+	 *                  than replaced with new elements sharing their unchanged
+	 *                  values.
+	 */
+	private void applyChanges(JsonArray changes, boolean recursive, boolean inPlace) {
+		int offset = 0;
+		for (Object change : changes.content) {
+			if (!(change instanceof JsonObject)) {
+				continue;
+			}
+
+			JsonObject chg = (JsonObject) change;
+			if (chg.containsKey("ins")) {
+				add((int) chg.get("ins"), JsonChanges.copy(chg.get("val")));
+			} else if (chg.containsKey("del")) {
+				int index = (int) chg.get("del");
+				int count = chg.containsKey("n") ? (int) chg.get("n") : 1;
+				if (count == 1) {
+					remove(index);
+				} else {
+					removeRange(index, index + count);
+				}
+			} else if (chg.containsKey("set")) {
+				set((int) chg.get("set"), JsonChanges.copy(chg.get("val")));
+			} else if (chg.containsKey("chg")) {
+				int index = (int) chg.get("chg");
+				Object value = JsonChanges.apply(get(index), chg.get("val"), recursive, inPlace);
+				if (value != get(index)) {
+					set(index, value);
 				}
+			} else if (chg.containsKey("mv")) {
+				add((int) chg.get("to"), remove((int) chg.get("mv")));
+			} else if (chg.containsKey("rm")) {
+				remove(((int) chg.get("rm")) + offset);
+				offset--;
+			} else if (chg.containsKey("after") && chg.containsKey("val")) {
+				add(((int) chg.get("after")) + offset, JsonChanges.copy(chg.get("val")));
+				offset++;
 			}
-		});
-		return reconstructed;
+		}
+	}
+
+	/**
+	 * Removes all values from the given start index, inclusive, to the given end
+	 * index, exclusive.
+	 * 
+	 * @param fromIndex the index of the first value to remove.
+	 * @param toIndex   the index after the last value to remove.
+	 */
+	private void removeRange(int fromIndex, int toIndex) {
+		checkFrozen();
+		if (indices != null) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				indexRemoved(content.get(i));
+			}
+		}
+		content.subList(fromIndex, toIndex).clear();
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		checkFrozen();
 		int entries = in.readInt();
 		for (int i = 0; i < entries; i++) {
 			content.add(in.readObject());
@@ -496,13 +1344,15 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 		List<Object> diffs1 = new ArrayList<Object>();
 		List<Object> diffs2 = new ArrayList<Object>();
 		int difference = 0;
+		Set<Object> values = new HashSet<Object>(content);
+		Set<Object> otherValues = new HashSet<Object>(o.values());
 		content.forEach((value) -> {
-			if (!o.containsValue(value)) {
+			if (!otherValues.contains(value)) {
 				diffs1.add(value);
 			}
 		});
 		o.values().forEach((value) -> {
-			if (!content.contains(value)) {
+			if (!values.contains(value)) {
 				diffs2.add(value);
 			}
 		});
@@ -585,4 +1435,102 @@ public class JsonArray implements JsonElement<Integer>, List<Object>, Cloneable
 		return Integer.class;
 	}
 
+	/**
+	 * A {@link ListIterator} modifying its {@link JsonArray} using the methods of
+	 * the array itself, rather than those of its content.<br>
+	 * Used for arrays with primitive storage, to make sure setting or adding a
+	 * value of a different type switches the storage type.
+	 * 
+	 * @author ToMe25
+	 */
+	private class JsonArrayIterator implements ListIterator<Object> {
+
+		/**
+		 * The index of the value to be returned by the next call to {@link #next()}.
+		 */
+		private int cursor;
+
+		/**
+		 * The index of the value returned by the last call to {@link #next()} or
+		 * {@link #previous()}. -1 if there is no such value.
+		 */
+		private int lastReturned = -1;
+
+		/**
+		 * Creates a new JsonArrayIterator starting at the given index.
+		 * 
+		 * @param index the index of the first value to be returned by {@link #next()}.
+		 * @throws IndexOutOfBoundsException if the index is out of range.
+		 */
+		public JsonArrayIterator(int index) throws IndexOutOfBoundsException {
+			if (index < 0 || index > content.size()) {
+				throw new IndexOutOfBoundsException("Index: " + index);
+			}
+			cursor = index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor < content.size();
+		}
+
+		@Override
+		public Object next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = cursor++;
+			return content.get(lastReturned);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return cursor > 0;
+		}
+
+		@Override
+		public Object previous() {
+			if (!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = --cursor;
+			return content.get(lastReturned);
+		}
+
+		@Override
+		public int nextIndex() {
+			return cursor;
+		}
+
+		@Override
+		public int previousIndex() {
+			return cursor - 1;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned < 0) {
+				throw new IllegalStateException();
+			}
+			JsonArray.this.remove(lastReturned);
+			cursor = lastReturned;
+			lastReturned = -1;
+		}
+
+		@Override
+		public void set(Object value) {
+			if (lastReturned < 0) {
+				throw new IllegalStateException();
+			}
+			JsonArray.this.set(lastReturned, value);
+		}
+
+		@Override
+		public void add(Object value) {
+			JsonArray.this.add(cursor++, value);
+			lastReturned = -1;
+		}
+
+	}
+
 }
@@ -0,0 +1,272 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.tome25.utils.exception.InvalidTypeException;
+
+/**
+ * A compact binary encoding of json values.<br>
+ * Each value starts with a tag byte. Numbers are stored in binary, strings and
+ * keys as their length followed by their UTF-8 bytes, and objects and arrays
+ * as their size followed by their content. Unlike the text form, the encoding
+ * keeps the types of numbers.
+ * 
+ * @author ToMe25
+ */
+class JsonBinary {
+
+	private static final byte NULL = 0;
+	private static final byte FALSE = 1;
+	private static final byte TRUE = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte STRING = 7;
+	private static final byte OBJECT = 8;
+	private static final byte ARRAY = 9;
+
+	/**
+	 * The buffer the encoded value is written to.
+	 */
+	private byte[] buffer = new byte[64];
+
+	/**
+	 * The number of bytes written to the buffer.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new encoder.
+	 */
+	private JsonBinary() {
+	}
+
+	/**
+	 * Encodes the given json value.
+	 * 
+	 * @param value the value to encode.
+	 * @return the encoded value.
+	 * @throws InvalidTypeException if the value contains a value that isn't a
+	 *                              json value.
+	 */
+	static byte[] encode(Object value) throws InvalidTypeException {
+		JsonBinary encoder = new JsonBinary();
+		encoder.write(value);
+		return Arrays.copyOf(encoder.buffer, encoder.size);
+	}
+
+	/**
+	 * Decodes a json value from the given buffer, starting at its position.
+	 * 
+	 * @param buffer the buffer to read from.
+	 * @return the decoded value.
+	 * @throws ParseException if the buffer doesn't contain a valid value. The
+	 *                        offset is the position in the buffer.
+	 */
+	static Object decode(ByteBuffer buffer) throws ParseException {
+		try {
+			return read(buffer);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+				| NegativeArraySizeException e) {
+			throw new ParseException("Invalid or truncated binary json!", buffer.position());
+		}
+	}
+
+	/**
+	 * Writes the given value to the buffer.
+	 * 
+	 * @param value the value to write.
+	 * @throws InvalidTypeException if the value isn't a json value.
+	 */
+	private void write(Object value) throws InvalidTypeException {
+		if (value == null) {
+			writeByte(NULL);
+		} else if (value instanceof Boolean) {
+			writeByte((Boolean) value ? TRUE : FALSE);
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			writeByte(INT);
+			writeInt(((Number) value).intValue());
+		} else if (value instanceof Long) {
+			writeByte(LONG);
+			writeLong((Long) value);
+		} else if (value instanceof Double) {
+			writeByte(DOUBLE);
+			writeLong(Double.doubleToRawLongBits((Double) value));
+		} else if (value instanceof Float) {
+			writeByte(FLOAT);
+			writeInt(Float.floatToRawIntBits((Float) value));
+		} else if (value instanceof String) {
+			writeByte(STRING);
+			writeString((String) value);
+		} else if (value instanceof JsonObject) {
+			if (value instanceof ConcurrentJsonObject) {
+				value = ((ConcurrentJsonObject) value).snapshot();
+			}
+			Map<String, Object> content = ((JsonObject) value).getContent();
+			writeByte(OBJECT);
+			writeInt(content.size());
+			content.forEach((key, child) -> {
+				writeString(key);
+				write(child);
+			});
+		} else if (value instanceof JsonArray) {
+			JsonArray array = (JsonArray) value;
+			writeByte(ARRAY);
+			writeInt(array.size());
+			for (int i = 0; i < array.size(); i++) {
+				write(array.get(i));
+			}
+		} else {
+			throw new InvalidTypeException("a json value", value.getClass().getName());
+		}
+	}
+
+	/**
+	 * Reads a value from the given buffer.
+	 * 
+	 * @param buffer the buffer to read from.
+	 * @return the read value.
+	 * @throws ParseException if the buffer contains an unknown tag.
+	 */
+	private static Object read(ByteBuffer buffer) throws ParseException {
+		byte tag = buffer.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case FALSE:
+			return false;
+		case TRUE:
+			return true;
+		case INT:
+			return buffer.getInt();
+		case LONG:
+			return buffer.getLong();
+		case DOUBLE:
+			return buffer.getDouble();
+		case FLOAT:
+			return buffer.getFloat();
+		case STRING:
+			return readString(buffer);
+		case OBJECT: {
+			int size = buffer.getInt();
+			JsonObject object = new JsonObject(new ShapedMap());
+			for (int i = 0; i < size; i++) {
+				object.put(readString(buffer), read(buffer));
+			}
+			return object;
+		}
+		case ARRAY: {
+			int size = buffer.getInt();
+			JsonArray array = new JsonArray();
+			for (int i = 0; i < size; i++) {
+				array.addParsed(read(buffer));
+			}
+			return array;
+		}
+		default:
+			throw new ParseException(String.format("Unknown binary json tag %d!", tag), buffer.position() - 1);
+		}
+	}
+
+	/**
+	 * Reads a string from the given buffer.
+	 * 
+	 * @param buffer the buffer to read from.
+	 * @return the read string.
+	 */
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		String string;
+		if (buffer.hasArray()) {
+			string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+					StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			string = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return string;
+	}
+
+	/**
+	 * Makes sure the buffer has space for the given number of additional bytes.
+	 * 
+	 * @param bytes the number of bytes to write.
+	 */
+	private void ensureCapacity(int bytes) {
+		if (size + bytes > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(size + bytes, buffer.length * 2));
+		}
+	}
+
+	/**
+	 * Writes a single byte to the buffer.
+	 * 
+	 * @param value the byte to write.
+	 */
+	private void writeByte(byte value) {
+		ensureCapacity(1);
+		buffer[size++] = value;
+	}
+
+	/**
+	 * Writes a big endian int to the buffer.
+	 * 
+	 * @param value the int to write.
+	 */
+	private void writeInt(int value) {
+		ensureCapacity(4);
+		buffer[size++] = (byte) (value >>> 24);
+		buffer[size++] = (byte) (value >>> 16);
+		buffer[size++] = (byte) (value >>> 8);
+		buffer[size++] = (byte) value;
+	}
+
+	/**
+	 * Writes a big endian long to the buffer.
+	 * 
+	 * @param value the long to write.
+	 */
+	private void writeLong(long value) {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	/**
+	 * Writes the length and UTF-8 bytes of the given string to the buffer.
+	 * 
+	 * @param value the string to write.
+	 */
+	private void writeString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeInt(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+	}
+
+}
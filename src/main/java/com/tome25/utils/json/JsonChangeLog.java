@@ -0,0 +1,256 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A log of successive changes made to a json, for example from
+ * {@link JsonElement#changes(JsonElement)}.<br>
+ * The changes can be {@link #compact() compacted} into a single changes json
+ * using {@link JsonElement#compose(JsonElement, JsonElement)}, either on demand
+ * or by a background thread started using {@link #startCompactor(int, long)}.
+ * That way reconstructing the current json only requires a single
+ * reconstruct, regardless of the number of logged changes.<br>
+ * All methods of this class are thread safe. The base json must not be
+ * modified while it is used by this log.
+ * 
+ * @author ToMe25
+ *
+ * @param <K> the key type of the json.
+ */
+public class JsonChangeLog<K> {
+
+	private static final ThreadGroup COMPACTORS_THREAD_GROUP = new ThreadGroup("Json-Change-Log-Compactors");
+	private static int nr = 0;
+
+	/**
+	 * The json the first changes in this log were created from.
+	 */
+	private JsonElement<K> base;
+
+	/**
+	 * The changes in this log, in the order they were made.
+	 */
+	private final List<JsonElement<K>> changes = new ArrayList<>();
+
+	/**
+	 * The lock making sure only one thread compacts this log at a time.
+	 */
+	private final Object compactLock = new Object();
+
+	/**
+	 * The number of changes at which the compactor thread compacts this log.
+	 */
+	private int threshold;
+
+	/**
+	 * The compactor thread of this log, or null if there is none.
+	 */
+	private Thread compactor;
+
+	/**
+	 * Creates a new empty JsonChangeLog.
+	 * 
+	 * @param base the json the first changes added to this log will be created
+	 *             from.
+	 */
+	public JsonChangeLog(JsonElement<K> base) {
+		this.base = base;
+	}
+
+	/**
+	 * Gets the json the first changes in this log were created from.
+	 * 
+	 * @return the base json of this log.
+	 */
+	public synchronized JsonElement<K> getBase() {
+		return base;
+	}
+
+	/**
+	 * Adds the given changes to the end of this log.<br>
+	 * Wakes the compactor thread, if there is one and this log reached its
+	 * threshold.
+	 * 
+	 * @param changes the changes to add. Have to be created from the result of
+	 *                applying the changes already in this log.
+	 */
+	public synchronized void append(JsonElement<K> changes) {
+		this.changes.add(changes);
+		if (compactor != null && this.changes.size() >= threshold) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Gets the number of changes in this log.
+	 * 
+	 * @return the number of changes.
+	 */
+	public synchronized int size() {
+		return changes.size();
+	}
+
+	/**
+	 * Gets a copy of the list of changes in this log.
+	 * 
+	 * @return the changes in this log, in the order they were made.
+	 */
+	public synchronized List<JsonElement<K>> getChanges() {
+		return new ArrayList<>(changes);
+	}
+
+	/**
+	 * Combines all changes currently in this log into a single changes json.<br>
+	 * Changes appended while compacting are kept after the combined changes.
+	 * 
+	 * @return the combined changes, or null if this log is empty.
+	 */
+	public JsonElement<K> compact() {
+		synchronized (compactLock) {
+			JsonElement<K> from;
+			List<JsonElement<K>> compacting;
+			synchronized (this) {
+				from = base;
+				compacting = new ArrayList<>(changes);
+			}
+
+			if (compacting.size() < 2) {
+				return compacting.isEmpty() ? null : compacting.get(0);
+			}
+
+			JsonElement<K> composed = compacting.get(0);
+			for (int i = 1; i < compacting.size(); i++) {
+				composed = composed.compose(from, compacting.get(i));
+			}
+
+			synchronized (this) {
+				changes.subList(0, compacting.size()).clear();
+				changes.add(0, composed);
+			}
+			return composed;
+		}
+	}
+
+	/**
+	 * Creates the json resulting from applying all changes in this log to its
+	 * base json.<br>
+	 * Compacts this log first, so only a single reconstruct is needed.
+	 * 
+	 * @return the current json.
+	 * @throws CloneNotSupportedException if this log is empty, and the base json
+	 *                                    can't be cloned.
+	 */
+	public JsonElement<K> reconstruct() throws CloneNotSupportedException {
+		synchronized (compactLock) {
+			JsonElement<K> composed = compact();
+			JsonElement<K> from = getBase();
+			return composed == null ? from.clone(true) : composed.reconstruct(from);
+		}
+	}
+
+	/**
+	 * Replaces the base json of this log with the result of applying all changes
+	 * in it, and clears this log.
+	 * 
+	 * @return the new base json.
+	 * @throws CloneNotSupportedException if this log is empty, and the base json
+	 *                                    can't be cloned.
+	 */
+	public JsonElement<K> checkpoint() throws CloneNotSupportedException {
+		synchronized (compactLock) {
+			JsonElement<K> composed = compact();
+			JsonElement<K> from = getBase();
+			JsonElement<K> current = composed == null ? from.clone(true) : composed.reconstruct(from);
+			synchronized (this) {
+				// Changes appended while reconstructing were created from the new base.
+				if (composed != null) {
+					changes.remove(0);
+				}
+				base = current;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Starts a daemon thread compacting this log whenever it contains at least the
+	 * given number of changes, and at least the given interval passed since the
+	 * last compaction.<br>
+	 * Does nothing if there already is a compactor thread.
+	 * 
+	 * @param threshold the number of changes at which to compact this log.
+	 * @param interval  the min number of milliseconds between two compactions.
+	 */
+	public synchronized void startCompactor(int threshold, long interval) {
+		if (compactor != null) {
+			return;
+		}
+
+		this.threshold = Math.max(threshold, 2);
+		compactor = new Thread(COMPACTORS_THREAD_GROUP, () -> {
+			Thread current = Thread.currentThread();
+			try {
+				while (true) {
+					synchronized (this) {
+						while (compactor == current && changes.size() < this.threshold) {
+							wait();
+						}
+						if (compactor != current) {
+							return;
+						}
+					}
+					try {
+						compact();
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+					}
+					Thread.sleep(interval);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+		}, "Json-Change-Log-Compactor-" + nr++);
+		compactor.setDaemon(true);
+		compactor.start();
+	}
+
+	/**
+	 * Stops the compactor thread of this log, if there is one.
+	 */
+	public void stopCompactor() {
+		Thread thread;
+		synchronized (this) {
+			thread = compactor;
+			compactor = null;
+			notifyAll();
+		}
+
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(500);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
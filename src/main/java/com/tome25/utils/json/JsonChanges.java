@@ -0,0 +1,139 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import com.tome25.utils.General;
+
+/**
+ * Utility methods shared by the changes handling of {@link JsonObject
+ * JsonObjects} and {@link JsonArray JsonArrays}.
+ * 
+ * @author ToMe25
+ */
+class JsonChanges {
+
+	/**
+	 * Creates a copy of the given value, to be stored in a changes json or a
+	 * reconstructed json.
+	 * 
+	 * @param value the value to copy.
+	 * @return a copy of the value, or the value itself if it can't be copied.
+	 */
+	static Object copy(Object value) {
+		try {
+			if (value instanceof JsonElement && ((JsonElement<?>) value).supportsClone()) {
+				return ((JsonElement<?>) value).clone(true);
+			} else if (value instanceof Cloneable) {
+				return General.reflectiveClone((Cloneable) value);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return value;
+	}
+
+	/**
+	 * Calculates the value resulting from applying the given changes value to the
+	 * given current value.<br>
+	 * If both are json elements supporting changes, and recursive is true, the
+	 * changes are applied to the current value. Otherwise the changes value is the
+	 * new value.
+	 * 
+	 * @param current   the current value.
+	 * @param changes   the value from the changes json.
+	 * @param recursive whether the changes should be applied to json elements,
+	 *                  rather than replacing them.
+	 * @param inPlace   whether the current value should be modified, if possible,
+	 *                  rather than creating a new value sharing its unchanged
+	 *                  parts with the current value.
+	 * @return the new value. The current value itself, if it was modified in
+	 *         place.
+	 */
+	@SuppressWarnings("unchecked")
+	static Object apply(Object current, Object changes, boolean recursive, boolean inPlace) {
+		if (recursive && current instanceof JsonElement && changes instanceof JsonElement) {
+			JsonElement<Object> currentJson = (JsonElement<Object>) current;
+			JsonElement<Object> changesJson = (JsonElement<Object>) changes;
+			if (currentJson.supportsChanges() && changesJson.supportsChanges()
+					&& currentJson.getKeyType().equals(changesJson.getKeyType())) {
+				if (inPlace && !currentJson.isFrozen()
+						&& (current instanceof JsonObject || current instanceof JsonArray)) {
+					return currentJson.apply(changesJson, true);
+				}
+				return changesJson.reconstruct(currentJson, true, true);
+			}
+		}
+		return copy(changes);
+	}
+
+	/**
+	 * Combines a value from a changes json with the value for the same key from
+	 * the changes json created after it.<br>
+	 * If the first value replaced the base value, and the resulting value has to
+	 * be stored as changes of the base value, only that value is created.
+	 * 
+	 * @param base  the value before both changes. Null if there was none.
+	 * @param first the value from the first changes.
+	 * @param next  the value from the next changes. Can't be null.
+	 * @return the value for the combined changes.
+	 */
+	@SuppressWarnings("unchecked")
+	static Object compose(Object base, Object first, Object next) {
+		if (first != null && first.equals(base)) {
+			// The first value kept the base value, so the next changes apply to it.
+			return copy(next);
+		}
+
+		if (isChangesOf(first, base)) {
+			if (isChangesOf(next, first)) {
+				// Both are changes of the base value.
+				return ((JsonElement<Object>) first).compose((JsonElement<Object>) base, (JsonElement<Object>) next);
+			}
+			return copy(next);
+		}
+
+		// The first value replaced the base value, so the next changes apply to it.
+		Object result = next.equals(first) ? copy(first) : apply(copy(first), next, true, true);
+		if (isChangesOf(result, base)) {
+			// A json element replacing one of the same type can only be stored as changes.
+			return ((JsonElement<Object>) result).changes((JsonElement<Object>) base);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the given value from a changes json would be applied as
+	 * changes to the given current value, rather than replacing it.
+	 * 
+	 * @param changes the value from the changes json.
+	 * @param current the current value.
+	 * @return whether both are json elements supporting changes with the same key
+	 *         type.
+	 */
+	private static boolean isChangesOf(Object changes, Object current) {
+		if (!(changes instanceof JsonElement) || !(current instanceof JsonElement)) {
+			return false;
+		}
+
+		JsonElement<?> changesJson = (JsonElement<?>) changes;
+		JsonElement<?> currentJson = (JsonElement<?>) current;
+		return changesJson.supportsChanges() && currentJson.supportsChanges()
+				&& changesJson.getKeyType().equals(currentJson.getKeyType());
+	}
+
+}
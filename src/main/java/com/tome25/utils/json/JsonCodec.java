@@ -0,0 +1,1577 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.tome25.utils.exception.InvalidTypeException;
+
+/**
+ * A codec converting objects of a class to json and back, by writing their
+ * fields directly to a {@link JsonWriter} and reading them directly from the
+ * tokens of a {@link JsonReader}, without creating an intermediate
+ * {@link JsonObject}.<br>
+ * The codec of a class is created once, the first time it is requested, and
+ * accesses the fields using {@link MethodHandle MethodHandles} rather than
+ * reflection.<br>
+ * All non static, non transient fields of the class and its super classes are
+ * serialized, using the field name as the key. Final fields are written, but
+ * ignored when reading. Supported field types are primitives and their
+ * wrappers, strings, enums, {@link JsonElement JsonElements}, arrays,
+ * collections, maps with string keys and other classes that can be handled by
+ * a JsonCodec. Fields of type Object can contain any json value.<br>
+ * Reading requires the class to have a no-argument constructor, which doesn't
+ * have to be public. Unknown keys are ignored when reading, and fields without
+ * a key in the json keep the value set by the constructor.
+ * 
+ * @author ToMe25
+ *
+ * @param <T> the type of objects handled by this codec.
+ */
+public final class JsonCodec<T> {
+
+	/**
+	 * The lookup used to create the method handles of all codecs.
+	 */
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * The cache of the codecs of all classes for which one was requested.
+	 */
+	private static final ClassValue<JsonCodec<?>> CODECS = new ClassValue<JsonCodec<?>>() {
+
+		@Override
+		protected JsonCodec<?> computeValue(Class<?> type) {
+			return new JsonCodec<>(type);
+		}
+
+	};
+
+	/**
+	 * The class handled by this codec.
+	 */
+	private final Class<T> type;
+
+	/**
+	 * The serialized properties of the class, in the order they are written in.
+	 */
+	private final Property[] properties;
+
+	/**
+	 * The serialized properties of the class, by name.
+	 */
+	private final Map<String, Property> propertyMap;
+
+	/**
+	 * A method handle calling the no-argument constructor of the class, or null
+	 * if there is none.
+	 */
+	private final MethodHandle constructor;
+
+	/**
+	 * Creates a new JsonCodec for the given class.
+	 * 
+	 * @param type the class to create a codec for.
+	 * @throws IllegalArgumentException if the class can't be handled by a codec.
+	 */
+	private JsonCodec(Class<T> type) throws IllegalArgumentException {
+		if (type.isPrimitive() || type.isArray() || type.isEnum() || type.isInterface() || type == String.class
+				|| Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class
+				|| JsonElement.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+				|| Map.class.isAssignableFrom(type)) {
+			throw new IllegalArgumentException("Can't create a codec for " + type.getName() + "!");
+		}
+		this.type = type;
+
+		MethodHandle constructor = null;
+		if (!Modifier.isAbstract(type.getModifiers())) {
+			try {
+				Constructor<T> cons = type.getDeclaredConstructor();
+				cons.setAccessible(true);
+				constructor = LOOKUP.unreflectConstructor(cons).asType(MethodType.methodType(Object.class));
+			} catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+				// Without a constructor, objects can still be written.
+			}
+		}
+		this.constructor = constructor;
+
+		List<Class<?>> hierarchy = new ArrayList<>();
+		for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			hierarchy.add(0, clazz);
+		}
+
+		propertyMap = new LinkedHashMap<>();
+		for (Class<?> clazz : hierarchy) {
+			for (Field field : clazz.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+					propertyMap.put(field.getName(), createProperty(field));
+				}
+			}
+		}
+		properties = propertyMap.values().toArray(new Property[propertyMap.size()]);
+	}
+
+	/**
+	 * Gets the codec for the given class, creating it if it doesn't exist yet.
+	 * 
+	 * @param <T>  the type of objects handled by the codec.
+	 * @param type the class to get the codec for.
+	 * @return the codec for the given class.
+	 * @throws IllegalArgumentException if the class is a primitive, an array, an
+	 *                                  interface, an enum, a json value type, a
+	 *                                  collection, or a map.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> JsonCodec<T> of(Class<T> type) throws IllegalArgumentException {
+		return (JsonCodec<T>) CODECS.get(type);
+	}
+
+	/**
+	 * Gets the class handled by this codec.
+	 * 
+	 * @return the class of the objects handled by this codec.
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * Writes the given object to the given writer, as a json object.
+	 * 
+	 * @param object the object to write. Can be null.
+	 * @param writer the writer to write to.
+	 * @throws IOException if writing to the target of the writer fails.
+	 */
+	public void write(T object, JsonWriter writer) throws IOException {
+		if (object == null) {
+			writer.nullValue();
+			return;
+		}
+
+		writer.beginObject();
+		for (Property property : properties) {
+			property.write(object, writer);
+		}
+		writer.endObject();
+	}
+
+	/**
+	 * Converts the given object to a json string.
+	 * 
+	 * @param object the object to convert.
+	 * @return the json representation of the object.
+	 */
+	public String toJsonString(T object) {
+		JsonWriter writer = new JsonWriter();
+		try {
+			write(object, writer);
+		} catch (IOException e) {
+			// Can't happen since a StringBuilder doesn't throw IOExceptions.
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Reads an object from the given reader.<br>
+	 * The object is read starting with the current token, or the first token if
+	 * {@link JsonReader#next()} wasn't called yet. After reading, the current
+	 * token is the end of the object.
+	 * 
+	 * @param reader the reader to read from.
+	 * @return the object that was read. Null if the json value was null.
+	 * @throws ParseException                if the json is invalid, or doesn't
+	 *                                       match the fields of the class.
+	 * @throws UnsupportedOperationException if the class has no no-argument
+	 *                                       constructor.
+	 */
+	public T read(JsonReader reader) throws ParseException, UnsupportedOperationException {
+		if (reader.getToken() == null || reader.getToken() == JsonToken.KEY) {
+			reader.next();
+		}
+		if (reader.getToken() == JsonToken.NULL) {
+			return null;
+		}
+		return readInto(newInstance(), reader);
+	}
+
+	/**
+	 * Reads an object from the given json string.
+	 * 
+	 * @param json the json to read.
+	 * @return the object that was read. Null if the json is null.
+	 * @throws ParseException                if the json is invalid, or doesn't
+	 *                                       match the fields of the class.
+	 * @throws UnsupportedOperationException if the class has no no-argument
+	 *                                       constructor.
+	 */
+	public T read(CharSequence json) throws ParseException, UnsupportedOperationException {
+		JsonReader reader = new JsonReader(json);
+		T object = read(reader);
+		reader.next();
+		return object;
+	}
+
+	/**
+	 * Reads the fields of the json object starting with the current token of the
+	 * given reader into the given object.<br>
+	 * If {@link JsonReader#next()} wasn't called yet, the first token is used.
+	 * After reading, the current token is the end of the json object.
+	 * 
+	 * @param target the object to write the values to.
+	 * @param reader the reader to read from.
+	 * @return the target object.
+	 * @throws ParseException if the json is invalid, or doesn't match the fields
+	 *                        of the class.
+	 */
+	public T readInto(T target, JsonReader reader) throws ParseException {
+		if (reader.getToken() == null || reader.getToken() == JsonToken.KEY) {
+			reader.next();
+		}
+		expect(reader, JsonToken.START_OBJECT);
+
+		while (reader.next() == JsonToken.KEY) {
+			Property property = propertyMap.get(reader.getString());
+			reader.next();
+			if (property == null || reader.getToken() == JsonToken.NULL && property.primitive) {
+				reader.skipValue();
+			} else {
+				property.read(target, reader);
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * Converts the given object to a {@link JsonObject}.
+	 * 
+	 * @param object the object to convert.
+	 * @return the json representation of the object. Null if the object is null.
+	 */
+	public JsonObject toJson(T object) {
+		if (object == null) {
+			return null;
+		}
+
+		JsonObject json = new JsonObject(new ShapedMap());
+		for (Property property : properties) {
+			json.put(property.name, toJsonValue(property.get(object)));
+		}
+		return json;
+	}
+
+	/**
+	 * Creates an object from the given {@link JsonObject}.
+	 * 
+	 * @param json the json object to convert.
+	 * @return the object represented by the json object. Null if the json object
+	 *         is null.
+	 * @throws InvalidTypeException          if a value doesn't match the type of
+	 *                                       its field.
+	 * @throws UnsupportedOperationException if the class has no no-argument
+	 *                                       constructor.
+	 */
+	public T fromJson(JsonObject json) throws InvalidTypeException, UnsupportedOperationException {
+		if (json == null) {
+			return null;
+		}
+
+		T object = newInstance();
+		for (Property property : properties) {
+			Object value = json.get(property.name);
+			if (value != null || json.containsKey(property.name) && !property.primitive) {
+				property.set(object, value == null ? null : property.codec.fromJson(value));
+			}
+		}
+		return object;
+	}
+
+	/**
+	 * Creates a new instance of the class of this codec, using its no-argument
+	 * constructor.
+	 * 
+	 * @return the new instance.
+	 * @throws UnsupportedOperationException if the class has no no-argument
+	 *                                       constructor.
+	 */
+	private T newInstance() throws UnsupportedOperationException {
+		if (constructor == null) {
+			throw new UnsupportedOperationException(
+					"Can't create instances of " + type.getName() + " without a no-argument constructor!");
+		}
+
+		try {
+			return type.cast((Object) constructor.invokeExact());
+		} catch (Throwable t) {
+			throw propagate(t);
+		}
+	}
+
+	/**
+	 * Converts the given value to the value a {@link JsonObject} or
+	 * {@link JsonArray} would store for it.<br>
+	 * Json values are returned as is, except that numbers are converted to the
+	 * types the {@link JsonParser} would use for them. Other objects are
+	 * converted like the {@link JsonWriter} would write them.
+	 * 
+	 * @param value the value to convert.
+	 * @return the converted value.
+	 */
+	static Object toJsonValue(Object value) {
+		if (value instanceof Float) {
+			return ((Float) value).doubleValue();
+		} else if (value instanceof Short || value instanceof Byte) {
+			return ((Number) value).intValue();
+		} else if (value instanceof Long && (Long) value == ((Long) value).intValue()) {
+			return ((Long) value).intValue();
+		} else if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof JsonElement) {
+			return value;
+		} else if (value instanceof Character) {
+			return value.toString();
+		} else if (value instanceof Enum) {
+			return ((Enum<?>) value).name();
+		} else if (value instanceof Map) {
+			JsonObject object = new JsonObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				object.put(String.valueOf(entry.getKey()), toJsonValue(entry.getValue()));
+			}
+			return object;
+		} else if (value instanceof Collection) {
+			JsonArray array = new JsonArray();
+			for (Object element : (Collection<?>) value) {
+				array.add(toJsonValue(element));
+			}
+			return array;
+		} else if (value.getClass().isArray()) {
+			JsonArray array = new JsonArray();
+			int length = Array.getLength(value);
+			for (int i = 0; i < length; i++) {
+				array.add(toJsonValue(Array.get(value, i)));
+			}
+			return array;
+		}
+		return toJsonObject(of(value.getClass()), value);
+	}
+
+	/**
+	 * Converts the given object to a {@link JsonObject} using the given codec.
+	 * 
+	 * @param <T>    the type of the object.
+	 * @param codec  the codec to use.
+	 * @param object the object to convert.
+	 * @return the json representation of the object.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> JsonObject toJsonObject(JsonCodec<T> codec, Object object) {
+		return codec.toJson((T) object);
+	}
+
+	/**
+	 * Checks that the current token of the given reader is the given token.
+	 * 
+	 * @param reader   the reader to check.
+	 * @param expected the expected token.
+	 * @throws ParseException if the current token is a different one.
+	 */
+	private static void expect(JsonReader reader, JsonToken expected) throws ParseException {
+		if (reader.getToken() != expected) {
+			throw new ParseException(String.format("Expected %s, but found %s!", expected, reader.getToken()),
+					reader.getTokenOffset());
+		}
+	}
+
+	/**
+	 * Converts a {@link Throwable} thrown by a method handle to an unchecked
+	 * exception.
+	 * 
+	 * @param t the throwable to convert.
+	 * @return the exception to throw.
+	 */
+	private static RuntimeException propagate(Throwable t) {
+		if (t instanceof Error) {
+			throw (Error) t;
+		} else if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		}
+		return new IllegalStateException(t);
+	}
+
+	/**
+	 * Creates the property for the given field.
+	 * 
+	 * @param field the field to create a property for.
+	 * @return the new property.
+	 * @throws IllegalArgumentException if the field isn't accessible.
+	 */
+	private static Property createProperty(Field field) throws IllegalArgumentException {
+		MethodHandle getter;
+		MethodHandle setter = null;
+		try {
+			field.setAccessible(true);
+			getter = LOOKUP.unreflectGetter(field);
+			if (!Modifier.isFinal(field.getModifiers())) {
+				setter = LOOKUP.unreflectSetter(field);
+			}
+		} catch (IllegalAccessException | SecurityException e) {
+			throw new IllegalArgumentException("Can't access field " + field + "!", e);
+		}
+
+		Class<?> fieldType = field.getType();
+		Class<?> valueType = fieldType.isPrimitive() ? fieldType : Object.class;
+		getter = getter.asType(MethodType.methodType(valueType, Object.class));
+		if (setter != null) {
+			setter = setter.asType(MethodType.methodType(void.class, Object.class, valueType));
+		}
+
+		ValueCodec codec = ValueCodec.forType(field.getGenericType());
+		if (fieldType == int.class) {
+			return new IntProperty(field.getName(), codec, getter, setter);
+		} else if (fieldType == long.class) {
+			return new LongProperty(field.getName(), codec, getter, setter);
+		} else if (fieldType == double.class) {
+			return new DoubleProperty(field.getName(), codec, getter, setter);
+		} else if (fieldType == boolean.class) {
+			return new BooleanProperty(field.getName(), codec, getter, setter);
+		} else if (fieldType.isPrimitive()) {
+			getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+			if (setter != null) {
+				setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			}
+		}
+		return new ObjectProperty(field.getName(), codec, getter, setter, fieldType.isPrimitive());
+	}
+
+	/**
+	 * A single serialized field of a class.
+	 * 
+	 * @author ToMe25
+	 */
+	private static abstract class Property {
+
+		/**
+		 * The name of the field, used as its key.
+		 */
+		protected final String name;
+
+		/**
+		 * The codec for the values of the field.
+		 */
+		protected final ValueCodec codec;
+
+		/**
+		 * A method handle reading the field.
+		 */
+		protected final MethodHandle getter;
+
+		/**
+		 * A method handle writing the field, or null if the field is final.
+		 */
+		protected final MethodHandle setter;
+
+		/**
+		 * Whether the field is of a primitive type, and thus can't be null.
+		 */
+		protected final boolean primitive;
+
+		/**
+		 * Creates a new Property.
+		 * 
+		 * @param name      the name of the field.
+		 * @param codec     the codec for the values of the field.
+		 * @param getter    the method handle reading the field.
+		 * @param setter    the method handle writing the field. Null if the field is
+		 *                  final.
+		 * @param primitive whether the field is of a primitive type.
+		 */
+		protected Property(String name, ValueCodec codec, MethodHandle getter, MethodHandle setter,
+				boolean primitive) {
+			this.name = name;
+			this.codec = codec;
+			this.getter = getter;
+			this.setter = setter;
+			this.primitive = primitive;
+		}
+
+		/**
+		 * Writes the key and value of this property of the given object.
+		 * 
+		 * @param instance the object to write the value of.
+		 * @param writer   the writer to write to.
+		 * @throws IOException if writing to the target of the writer fails.
+		 */
+		abstract void write(Object instance, JsonWriter writer) throws IOException;
+
+		/**
+		 * Reads the value starting with the current token of the given reader into
+		 * this property of the given object.<br>
+		 * The value is only skipped if the field is final.
+		 * 
+		 * @param instance the object to set the value of.
+		 * @param reader   the reader to read from.
+		 * @throws ParseException if the json is invalid, or doesn't match the type
+		 *                        of the field.
+		 */
+		abstract void read(Object instance, JsonReader reader) throws ParseException;
+
+		/**
+		 * Gets the value of this property of the given object.
+		 * 
+		 * @param instance the object to get the value of.
+		 * @return the boxed value of the field.
+		 */
+		abstract Object get(Object instance);
+
+		/**
+		 * Sets this property of the given object to the given value.<br>
+		 * Does nothing if the field is final.
+		 * 
+		 * @param instance the object to set the value of.
+		 * @param value    the boxed value to set.
+		 */
+		abstract void set(Object instance, Object value);
+
+	}
+
+	/**
+	 * A property of type int.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class IntProperty extends Property {
+
+		/**
+		 * Creates a new IntProperty.
+		 * 
+		 * @param name   the name of the field.
+		 * @param codec  the codec for the values of the field.
+		 * @param getter the method handle reading the field.
+		 * @param setter the method handle writing the field. Null if the field is
+		 *               final.
+		 */
+		IntProperty(String name, ValueCodec codec, MethodHandle getter, MethodHandle setter) {
+			super(name, codec, getter, setter, true);
+		}
+
+		@Override
+		void write(Object instance, JsonWriter writer) throws IOException {
+			writer.key(name).value(getInt(instance));
+		}
+
+		@Override
+		void read(Object instance, JsonReader reader) throws ParseException {
+			if (setter == null) {
+				reader.skipValue();
+			} else if (reader.getToken() == JsonToken.INT) {
+				setInt(instance, reader.getInt());
+			} else {
+				set(instance, codec.read(reader));
+			}
+		}
+
+		@Override
+		Object get(Object instance) {
+			return getInt(instance);
+		}
+
+		@Override
+		void set(Object instance, Object value) {
+			if (setter != null) {
+				setInt(instance, (Integer) value);
+			}
+		}
+
+		/**
+		 * Reads the value of the field of the given object.
+		 * 
+		 * @param instance the object to get the value of.
+		 * @return the value of the field.
+		 */
+		private int getInt(Object instance) {
+			try {
+				return (int) getter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+		/**
+		 * Writes the value of the field of the given object.
+		 * 
+		 * @param instance the object to set the value of.
+		 * @param value    the new value of the field.
+		 */
+		private void setInt(Object instance, int value) {
+			try {
+				setter.invokeExact(instance, value);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+	}
+
+	/**
+	 * A property of type long.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class LongProperty extends Property {
+
+		/**
+		 * Creates a new LongProperty.
+		 * 
+		 * @param name   the name of the field.
+		 * @param codec  the codec for the values of the field.
+		 * @param getter the method handle reading the field.
+		 * @param setter the method handle writing the field. Null if the field is
+		 *               final.
+		 */
+		LongProperty(String name, ValueCodec codec, MethodHandle getter, MethodHandle setter) {
+			super(name, codec, getter, setter, true);
+		}
+
+		@Override
+		void write(Object instance, JsonWriter writer) throws IOException {
+			writer.key(name).value(getLong(instance));
+		}
+
+		@Override
+		void read(Object instance, JsonReader reader) throws ParseException {
+			if (setter == null) {
+				reader.skipValue();
+			} else if (reader.getToken() == JsonToken.INT || reader.getToken() == JsonToken.LONG) {
+				setLong(instance, reader.getLong());
+			} else {
+				set(instance, codec.read(reader));
+			}
+		}
+
+		@Override
+		Object get(Object instance) {
+			return getLong(instance);
+		}
+
+		@Override
+		void set(Object instance, Object value) {
+			if (setter != null) {
+				setLong(instance, (Long) value);
+			}
+		}
+
+		/**
+		 * Reads the value of the field of the given object.
+		 * 
+		 * @param instance the object to get the value of.
+		 * @return the value of the field.
+		 */
+		private long getLong(Object instance) {
+			try {
+				return (long) getter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+		/**
+		 * Writes the value of the field of the given object.
+		 * 
+		 * @param instance the object to set the value of.
+		 * @param value    the new value of the field.
+		 */
+		private void setLong(Object instance, long value) {
+			try {
+				setter.invokeExact(instance, value);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+	}
+
+	/**
+	 * A property of type double.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class DoubleProperty extends Property {
+
+		/**
+		 * Creates a new DoubleProperty.
+		 * 
+		 * @param name   the name of the field.
+		 * @param codec  the codec for the values of the field.
+		 * @param getter the method handle reading the field.
+		 * @param setter the method handle writing the field. Null if the field is
+		 *               final.
+		 */
+		DoubleProperty(String name, ValueCodec codec, MethodHandle getter, MethodHandle setter) {
+			super(name, codec, getter, setter, true);
+		}
+
+		@Override
+		void write(Object instance, JsonWriter writer) throws IOException {
+			writer.key(name).value(getDouble(instance));
+		}
+
+		@Override
+		void read(Object instance, JsonReader reader) throws ParseException {
+			if (setter == null) {
+				reader.skipValue();
+			} else {
+				ValueCodec.expectNumber(reader);
+				setDouble(instance, reader.getDouble());
+			}
+		}
+
+		@Override
+		Object get(Object instance) {
+			return getDouble(instance);
+		}
+
+		@Override
+		void set(Object instance, Object value) {
+			if (setter != null) {
+				setDouble(instance, (Double) value);
+			}
+		}
+
+		/**
+		 * Reads the value of the field of the given object.
+		 * 
+		 * @param instance the object to get the value of.
+		 * @return the value of the field.
+		 */
+		private double getDouble(Object instance) {
+			try {
+				return (double) getter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+		/**
+		 * Writes the value of the field of the given object.
+		 * 
+		 * @param instance the object to set the value of.
+		 * @param value    the new value of the field.
+		 */
+		private void setDouble(Object instance, double value) {
+			try {
+				setter.invokeExact(instance, value);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+	}
+
+	/**
+	 * A property of type boolean.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class BooleanProperty extends Property {
+
+		/**
+		 * Creates a new BooleanProperty.
+		 * 
+		 * @param name   the name of the field.
+		 * @param codec  the codec for the values of the field.
+		 * @param getter the method handle reading the field.
+		 * @param setter the method handle writing the field. Null if the field is
+		 *               final.
+		 */
+		BooleanProperty(String name, ValueCodec codec, MethodHandle getter, MethodHandle setter) {
+			super(name, codec, getter, setter, true);
+		}
+
+		@Override
+		void write(Object instance, JsonWriter writer) throws IOException {
+			writer.key(name).value(getBoolean(instance));
+		}
+
+		@Override
+		void read(Object instance, JsonReader reader) throws ParseException {
+			if (setter == null) {
+				reader.skipValue();
+			} else {
+				expect(reader, JsonToken.BOOLEAN);
+				setBoolean(instance, reader.getBoolean());
+			}
+		}
+
+		@Override
+		Object get(Object instance) {
+			return getBoolean(instance);
+		}
+
+		@Override
+		void set(Object instance, Object value) {
+			if (setter != null) {
+				setBoolean(instance, (Boolean) value);
+			}
+		}
+
+		/**
+		 * Reads the value of the field of the given object.
+		 * 
+		 * @param instance the object to get the value of.
+		 * @return the value of the field.
+		 */
+		private boolean getBoolean(Object instance) {
+			try {
+				return (boolean) getter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+		/**
+		 * Writes the value of the field of the given object.
+		 * 
+		 * @param instance the object to set the value of.
+		 * @param value    the new value of the field.
+		 */
+		private void setBoolean(Object instance, boolean value) {
+			try {
+				setter.invokeExact(instance, value);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+	}
+
+	/**
+	 * A property of any other type, handling its values as objects.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ObjectProperty extends Property {
+
+		/**
+		 * Creates a new ObjectProperty.
+		 * 
+		 * @param name      the name of the field.
+		 * @param codec     the codec for the values of the field.
+		 * @param getter    the method handle reading the field.
+		 * @param setter    the method handle writing the field. Null if the field is
+		 *                  final.
+		 * @param primitive whether the field is of a primitive type.
+		 */
+		ObjectProperty(String name, ValueCodec codec, MethodHandle getter, MethodHandle setter, boolean primitive) {
+			super(name, codec, getter, setter, primitive);
+		}
+
+		@Override
+		void write(Object instance, JsonWriter writer) throws IOException {
+			writer.key(name);
+			codec.write(get(instance), writer);
+		}
+
+		@Override
+		void read(Object instance, JsonReader reader) throws ParseException {
+			if (setter == null) {
+				reader.skipValue();
+			} else {
+				set(instance, reader.getToken() == JsonToken.NULL ? null : codec.read(reader));
+			}
+		}
+
+		@Override
+		Object get(Object instance) {
+			try {
+				return (Object) getter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw propagate(t);
+			}
+		}
+
+		@Override
+		void set(Object instance, Object value) {
+			if (setter != null) {
+				try {
+					setter.invokeExact(instance, value);
+				} catch (Throwable t) {
+					throw propagate(t);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * A converter for the values of a single type, used for fields as well as
+	 * elements of arrays, collections and maps.
+	 * 
+	 * @author ToMe25
+	 */
+	private static abstract class ValueCodec {
+
+		/**
+		 * The class of the values handled by this codec.
+		 */
+		protected final Class<?> type;
+
+		/**
+		 * Creates a new ValueCodec.
+		 * 
+		 * @param type the class of the values handled by this codec.
+		 */
+		protected ValueCodec(Class<?> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Gets the codec for values of the given type.
+		 * 
+		 * @param type the generic type of the values.
+		 * @return the codec for the given type.
+		 * @throws IllegalArgumentException if the type is a map with keys that
+		 *                                  aren't strings.
+		 */
+		static ValueCodec forType(Type type) throws IllegalArgumentException {
+			Class<?> raw = rawType(type);
+			if (raw.isPrimitive()) {
+				raw = MethodType.methodType(raw).wrap().returnType();
+			}
+
+			if (raw == Integer.class || raw == Long.class || raw == Double.class || raw == Float.class
+					|| raw == Short.class || raw == Byte.class) {
+				return new NumberCodec(raw);
+			} else if (raw == String.class || raw == Boolean.class || raw == Character.class) {
+				return new ScalarCodec(raw);
+			} else if (raw.isEnum()) {
+				return new EnumCodec(raw);
+			} else if (raw.isArray()) {
+				Type component = type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType()
+						: raw.getComponentType();
+				return new ArrayCodec(raw, forType(component));
+			} else if (Collection.class.isAssignableFrom(raw) && !JsonElement.class.isAssignableFrom(raw)
+					&& (raw.isAssignableFrom(ArrayList.class) || raw.isAssignableFrom(LinkedHashSet.class))) {
+				return new CollectionCodec(raw, forType(typeArgument(type, 0)));
+			} else if (Map.class.isAssignableFrom(raw) && !JsonElement.class.isAssignableFrom(raw)
+					&& raw.isAssignableFrom(LinkedHashMap.class)) {
+				Class<?> keyType = rawType(typeArgument(type, 0));
+				if (keyType != String.class && keyType != Object.class) {
+					throw new IllegalArgumentException("Can't handle maps with non string keys!");
+				}
+				return new MapCodec(raw, forType(typeArgument(type, 1)));
+			} else if (raw == Object.class || raw.isInterface() || Modifier.isAbstract(raw.getModifiers())
+					|| JsonElement.class.isAssignableFrom(raw) || Number.class.isAssignableFrom(raw)
+					|| Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw)) {
+				return new TreeCodec(raw);
+			}
+			return new ObjectCodec(raw);
+		}
+
+		/**
+		 * Gets the class representing the given type.
+		 * 
+		 * @param type the type to get the class for.
+		 * @return the raw class of the type.
+		 */
+		private static Class<?> rawType(Type type) {
+			if (type instanceof Class) {
+				return (Class<?>) type;
+			} else if (type instanceof ParameterizedType) {
+				return rawType(((ParameterizedType) type).getRawType());
+			} else if (type instanceof GenericArrayType) {
+				return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+			} else if (type instanceof WildcardType) {
+				return rawType(((WildcardType) type).getUpperBounds()[0]);
+			} else if (type instanceof TypeVariable) {
+				return rawType(((TypeVariable<?>) type).getBounds()[0]);
+			}
+			return Object.class;
+		}
+
+		/**
+		 * Gets a type argument of the given type.
+		 * 
+		 * @param type  the parameterized type to get the argument of.
+		 * @param index the index of the type argument.
+		 * @return the type argument, or Object if the type isn't parameterized.
+		 */
+		private static Type typeArgument(Type type, int index) {
+			if (type instanceof ParameterizedType) {
+				Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+				if (index < arguments.length) {
+					return arguments[index];
+				}
+			}
+			return Object.class;
+		}
+
+		/**
+		 * Checks that the current token of the given reader is a number.
+		 * 
+		 * @param reader the reader to check.
+		 * @throws ParseException if the current token isn't a number.
+		 */
+		static void expectNumber(JsonReader reader) throws ParseException {
+			JsonToken token = reader.getToken();
+			if (token != JsonToken.INT && token != JsonToken.LONG && token != JsonToken.DOUBLE) {
+				throw new ParseException(String.format("Expected a number, but found %s!", token),
+						reader.getTokenOffset());
+			}
+		}
+
+		/**
+		 * Writes the given value to the given writer.
+		 * 
+		 * @param value  the value to write. Can be null.
+		 * @param writer the writer to write to.
+		 * @throws IOException if writing to the target of the writer fails.
+		 */
+		void write(Object value, JsonWriter writer) throws IOException {
+			writer.value(value);
+		}
+
+		/**
+		 * Reads the value starting with the current token of the given reader.<br>
+		 * The current token is never {@link JsonToken#NULL}.
+		 * 
+		 * @param reader the reader to read from.
+		 * @return the value that was read.
+		 * @throws ParseException if the json is invalid, or doesn't match the type of
+		 *                        this codec.
+		 */
+		abstract Object read(JsonReader reader) throws ParseException;
+
+		/**
+		 * Converts the given json value to the type of this codec.
+		 * 
+		 * @param json the non null json value to convert.
+		 * @return the converted value.
+		 * @throws InvalidTypeException if the json value can't be converted to the
+		 *                              type of this codec.
+		 */
+		abstract Object fromJson(Object json) throws InvalidTypeException;
+
+		/**
+		 * Creates the exception thrown when a json value can't be converted.
+		 * 
+		 * @param json the json value that was received.
+		 * @return the new exception.
+		 */
+		protected InvalidTypeException invalidType(Object json) {
+			return new InvalidTypeException(type.getSimpleName(), json.getClass().getSimpleName());
+		}
+
+	}
+
+	/**
+	 * The codec for numbers.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class NumberCodec extends ValueCodec {
+
+		/**
+		 * Creates a new NumberCodec.
+		 * 
+		 * @param type the wrapper class of the numbers.
+		 */
+		NumberCodec(Class<?> type) {
+			super(type);
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			expectNumber(reader);
+			Number number;
+			if (reader.getToken() == JsonToken.DOUBLE) {
+				number = reader.getDouble();
+			} else {
+				number = reader.getLong();
+			}
+
+			Number converted = convert(number);
+			if (converted == null) {
+				throw new ParseException(String.format("The number %s doesn't fit into a %s!", number,
+						type.getSimpleName()), reader.getTokenOffset());
+			}
+			return converted;
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (!(json instanceof Number)) {
+				throw invalidType(json);
+			}
+
+			Number converted = convert((Number) json);
+			if (converted == null) {
+				throw new InvalidTypeException(String.format("The number %s doesn't fit into a %s!", json,
+						type.getSimpleName()));
+			}
+			return converted;
+		}
+
+		/**
+		 * Converts the given number to the type of this codec.<br>
+		 * Integral types only accept numbers without a fractional part within their
+		 * range, floats only accept numbers that don't overflow to infinity.
+		 * 
+		 * @param number the number to convert.
+		 * @return the converted number, or null if it can't be represented by the
+		 *         type of this codec.
+		 */
+		private Number convert(Number number) {
+			if (type == Double.class) {
+				return number.doubleValue();
+			} else if (type == Float.class) {
+				float value = number.floatValue();
+				return Float.isInfinite(value) && !Double.isInfinite(number.doubleValue()) ? null : value;
+			}
+
+			long value;
+			if (number instanceof Double || number instanceof Float) {
+				double d = number.doubleValue();
+				// 2^63 is the smallest double that doesn't fit into a long.
+				if (d != Math.rint(d) || d < Long.MIN_VALUE || d >= 0x1p63) {
+					return null;
+				}
+				value = (long) d;
+			} else {
+				value = number.longValue();
+			}
+
+			if (type == Long.class) {
+				return value;
+			} else if (type == Integer.class) {
+				return value == (int) value ? (Number) (int) value : null;
+			} else if (type == Short.class) {
+				return value == (short) value ? (Number) (short) value : null;
+			}
+			return value == (byte) value ? (Number) (byte) value : null;
+		}
+
+	}
+
+	/**
+	 * The codec for strings, booleans and chars.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ScalarCodec extends ValueCodec {
+
+		/**
+		 * Creates a new ScalarCodec.
+		 * 
+		 * @param type the class of the values.
+		 */
+		ScalarCodec(Class<?> type) {
+			super(type);
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			if (type == Boolean.class) {
+				expect(reader, JsonToken.BOOLEAN);
+				return reader.getBoolean();
+			}
+
+			expect(reader, JsonToken.STRING);
+			if (type == String.class) {
+				return reader.getString();
+			} else if (reader.getChars().length() != 1) {
+				throw new ParseException("Expected a single character string!", reader.getTokenOffset());
+			}
+			return reader.getChars().charAt(0);
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (type == Character.class && json instanceof String && ((String) json).length() == 1) {
+				return ((String) json).charAt(0);
+			} else if (!type.isInstance(json)) {
+				throw invalidType(json);
+			}
+			return json;
+		}
+
+	}
+
+	/**
+	 * The codec for enums, writing them as their name.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class EnumCodec extends ValueCodec {
+
+		/**
+		 * The constants of the enum, by name.
+		 */
+		private final Map<String, Object> constants = new HashMap<>();
+
+		/**
+		 * Creates a new EnumCodec.
+		 * 
+		 * @param type the class of the enum.
+		 */
+		EnumCodec(Class<?> type) {
+			super(type);
+			for (Object constant : type.getEnumConstants()) {
+				constants.put(((Enum<?>) constant).name(), constant);
+			}
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			expect(reader, JsonToken.STRING);
+			Object constant = constants.get(reader.getString());
+			if (constant == null) {
+				throw new ParseException(String.format("Unknown %s constant \"%s\"!", type.getSimpleName(),
+						reader.getString()), reader.getTokenOffset());
+			}
+			return constant;
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			Object constant = constants.get(json);
+			if (constant == null) {
+				throw invalidType(json);
+			}
+			return constant;
+		}
+
+	}
+
+	/**
+	 * The codec for values that are stored as they are parsed, like
+	 * {@link JsonElement JsonElements} and fields of type Object.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class TreeCodec extends ValueCodec {
+
+		/**
+		 * Creates a new TreeCodec.
+		 * 
+		 * @param type the class of the values.
+		 */
+		TreeCodec(Class<?> type) {
+			super(type);
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			int offset = reader.getTokenOffset();
+			Object value = reader.readTree();
+			if (!type.isInstance(value)) {
+				throw new ParseException(String.format("Expected a %s, but found a %s!", type.getSimpleName(),
+						value.getClass().getSimpleName()), offset);
+			}
+			return value;
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (!type.isInstance(json)) {
+				throw invalidType(json);
+			}
+			return json;
+		}
+
+	}
+
+	/**
+	 * The codec for arrays.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ArrayCodec extends ValueCodec {
+
+		/**
+		 * The codec for the elements of the arrays.
+		 */
+		private final ValueCodec elements;
+
+		/**
+		 * Creates a new ArrayCodec.
+		 * 
+		 * @param type     the array class.
+		 * @param elements the codec for the elements.
+		 */
+		ArrayCodec(Class<?> type, ValueCodec elements) {
+			super(type);
+			this.elements = elements;
+		}
+
+		@Override
+		void write(Object value, JsonWriter writer) throws IOException {
+			if (value == null) {
+				writer.nullValue();
+				return;
+			}
+
+			writer.beginArray();
+			int length = Array.getLength(value);
+			for (int i = 0; i < length; i++) {
+				elements.write(Array.get(value, i), writer);
+			}
+			writer.endArray();
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			expect(reader, JsonToken.START_ARRAY);
+			List<Object> values = new ArrayList<>();
+			while (reader.next() != JsonToken.END_ARRAY) {
+				values.add(reader.getToken() == JsonToken.NULL ? null : elements.read(reader));
+			}
+			return toArray(values);
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (!(json instanceof JsonArray)) {
+				throw invalidType(json);
+			}
+
+			List<Object> values = new ArrayList<>();
+			for (Object value : (JsonArray) json) {
+				values.add(value == null ? null : elements.fromJson(value));
+			}
+			return toArray(values);
+		}
+
+		/**
+		 * Converts the given list to an array of the type of this codec.
+		 * 
+		 * @param values the values to store in the array.
+		 * @return the new array.
+		 */
+		private Object toArray(List<Object> values) {
+			Object array = Array.newInstance(type.getComponentType(), values.size());
+			for (int i = 0; i < values.size(); i++) {
+				if (values.get(i) != null) {
+					Array.set(array, i, values.get(i));
+				}
+			}
+			return array;
+		}
+
+	}
+
+	/**
+	 * The codec for lists and sets.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class CollectionCodec extends ValueCodec {
+
+		/**
+		 * The codec for the elements of the collections.
+		 */
+		private final ValueCodec elements;
+
+		/**
+		 * Creates a new CollectionCodec.
+		 * 
+		 * @param type     the collection class. Has to be a super type of
+		 *                 {@link ArrayList} or {@link LinkedHashSet}.
+		 * @param elements the codec for the elements.
+		 */
+		CollectionCodec(Class<?> type, ValueCodec elements) {
+			super(type);
+			this.elements = elements;
+		}
+
+		@Override
+		void write(Object value, JsonWriter writer) throws IOException {
+			if (value == null) {
+				writer.nullValue();
+				return;
+			}
+
+			writer.beginArray();
+			for (Object element : (Collection<?>) value) {
+				elements.write(element, writer);
+			}
+			writer.endArray();
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			expect(reader, JsonToken.START_ARRAY);
+			Collection<Object> values = newCollection();
+			while (reader.next() != JsonToken.END_ARRAY) {
+				values.add(reader.getToken() == JsonToken.NULL ? null : elements.read(reader));
+			}
+			return values;
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (!(json instanceof JsonArray)) {
+				throw invalidType(json);
+			}
+
+			Collection<Object> values = newCollection();
+			for (Object value : (JsonArray) json) {
+				values.add(value == null ? null : elements.fromJson(value));
+			}
+			return values;
+		}
+
+		/**
+		 * Creates a new empty collection of the type of this codec.
+		 * 
+		 * @return the new collection.
+		 */
+		private Collection<Object> newCollection() {
+			return type.isAssignableFrom(ArrayList.class) ? new ArrayList<>() : new LinkedHashSet<>();
+		}
+
+	}
+
+	/**
+	 * The codec for maps with string keys.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class MapCodec extends ValueCodec {
+
+		/**
+		 * The codec for the values of the maps.
+		 */
+		private final ValueCodec values;
+
+		/**
+		 * Creates a new MapCodec.
+		 * 
+		 * @param type   the map class. Has to be a super type of
+		 *               {@link LinkedHashMap}.
+		 * @param values the codec for the values.
+		 */
+		MapCodec(Class<?> type, ValueCodec values) {
+			super(type);
+			this.values = values;
+		}
+
+		@Override
+		void write(Object value, JsonWriter writer) throws IOException {
+			if (value == null) {
+				writer.nullValue();
+				return;
+			}
+
+			writer.beginObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				writer.key(String.valueOf(entry.getKey()));
+				values.write(entry.getValue(), writer);
+			}
+			writer.endObject();
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			expect(reader, JsonToken.START_OBJECT);
+			Map<String, Object> map = new LinkedHashMap<>();
+			while (reader.next() == JsonToken.KEY) {
+				String key = reader.getString();
+				reader.next();
+				map.put(key, reader.getToken() == JsonToken.NULL ? null : values.read(reader));
+			}
+			return map;
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (!(json instanceof JsonObject)) {
+				throw invalidType(json);
+			}
+
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (Map.Entry<String, Object> entry : ((JsonObject) json).entrySet()) {
+				map.put(entry.getKey(), entry.getValue() == null ? null : values.fromJson(entry.getValue()));
+			}
+			return map;
+		}
+
+	}
+
+	/**
+	 * The codec for objects handled by a {@link JsonCodec}.<br>
+	 * The JsonCodec is only requested when it is first used, so that classes can
+	 * contain fields of their own type.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ObjectCodec extends ValueCodec {
+
+		/**
+		 * Creates a new ObjectCodec.
+		 * 
+		 * @param type the class of the objects.
+		 */
+		ObjectCodec(Class<?> type) {
+			super(type);
+		}
+
+		@Override
+		void write(Object value, JsonWriter writer) throws IOException {
+			if (value == null) {
+				writer.nullValue();
+			} else {
+				writer.value(value);
+			}
+		}
+
+		@Override
+		Object read(JsonReader reader) throws ParseException {
+			return of(type).read(reader);
+		}
+
+		@Override
+		Object fromJson(Object json) throws InvalidTypeException {
+			if (!(json instanceof JsonObject)) {
+				throw invalidType(json);
+			}
+			return of(type).fromJson((JsonObject) json);
+		}
+
+	}
+
+}
@@ -0,0 +1,423 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Reduces the memory used by long-lived json trees, by replacing equal values
+ * with a single shared instance.<br>
+ * Strings up to a max length, numbers and booleans are canonicalized through a
+ * bounded pool. {@link JsonElement#isFrozen() Frozen} json elements are
+ * shared if an identical frozen element, with the same keys and values in the
+ * same order, was compacted before. The storage of compacted elements is
+ * shrunk to their size.<br>
+ * Once a pool reaches its max size, the least recently used values are evicted
+ * to make room for new ones. Pooled frozen elements are only weakly
+ * referenced, so compacting a tree doesn't keep its subtrees alive after the
+ * tree itself is no longer used.<br>
+ * A compactor can also compact a tree incrementally in a background thread,
+ * started using {@link #startBackground(JsonElement, int, long)}. This only
+ * handles frozen elements and {@link ConcurrentJsonObject
+ * ConcurrentJsonObjects}, since other elements may be modified concurrently.
+ * <br>
+ * All methods of this class are thread safe.
+ * 
+ * @author ToMe25
+ */
+public class JsonCompactor {
+
+	private static final ThreadGroup COMPACTORS_THREAD_GROUP = new ThreadGroup("Json-Compactors");
+	private static int nr = 0;
+
+	/**
+	 * The compactor used by {@link JsonElement#compact()}.
+	 */
+	private static final JsonCompactor DEFAULT = new JsonCompactor(1 << 16, 64, 1 << 12);
+
+	/**
+	 * The max number of pooled strings and numbers.
+	 */
+	private final int maxValues;
+
+	/**
+	 * The max length of pooled strings.
+	 */
+	private final int maxStringLength;
+
+	/**
+	 * The max number of pooled frozen elements.
+	 */
+	private final int maxElements;
+
+	/**
+	 * The pool of canonical strings and numbers, in least recently used order.
+	 * <br>
+	 * Has to be synchronized on.
+	 */
+	private final Map<Object, Object> values;
+
+	/**
+	 * The pool of canonical frozen elements, mapped by their
+	 * {@link JsonElement#digest() digest}, in least recently used order.<br>
+	 * Has to be synchronized on.
+	 */
+	private final Map<Long, ElementReference> elements;
+
+	/**
+	 * The queue receiving the references to pooled elements that were garbage
+	 * collected.
+	 */
+	private final ReferenceQueue<JsonElement<?>> collected = new ReferenceQueue<>();
+
+	/**
+	 * The background compactor thread of this compactor, or null if there is
+	 * none.
+	 */
+	private Thread background;
+
+	/**
+	 * Creates a new JsonCompactor.
+	 * 
+	 * @param maxValues       the max number of pooled strings and numbers.
+	 * @param maxStringLength the max length of pooled strings. Longer strings are
+	 *                        unlikely to be repeated.
+	 * @param maxElements     the max number of pooled frozen elements.
+	 */
+	public JsonCompactor(int maxValues, int maxStringLength, int maxElements) {
+		this.maxValues = maxValues;
+		this.maxStringLength = maxStringLength;
+		this.maxElements = maxElements;
+		values = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 5283307520931286345L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+				return size() > JsonCompactor.this.maxValues;
+			}
+
+		};
+		elements = new LinkedHashMap<Long, ElementReference>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = -1864927312253618006L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ElementReference> eldest) {
+				return size() > JsonCompactor.this.maxElements;
+			}
+
+		};
+	}
+
+	/**
+	 * Gets the compactor used by {@link JsonElement#compact()}.
+	 * 
+	 * @return the default compactor.
+	 */
+	public static JsonCompactor getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Compacts the given element, and all elements inside it.<br>
+	 * Must not be called while other threads access the element.
+	 * 
+	 * @param <T>     the type of the element.
+	 * @param element the element to compact.
+	 * @return the given element.
+	 */
+	public <T extends JsonElement<?>> T compact(T element) {
+		Queue<JsonElement<?>> queue = new ArrayDeque<>();
+		compactElement(element, queue, true);
+		while (!queue.isEmpty()) {
+			compactElement(queue.poll(), queue, true);
+		}
+		return element;
+	}
+
+	/**
+	 * Gets the canonical instance of the given string, number or boolean.<br>
+	 * Other values, like strings longer than the max string length, are returned
+	 * as is.
+	 * 
+	 * @param value the value to get the canonical instance of.
+	 * @return the canonical instance of the value.
+	 */
+	public Object canonicalize(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value ? Boolean.TRUE : Boolean.FALSE;
+		} else if (value instanceof String && ((String) value).length() > maxStringLength
+				|| !(value instanceof String || value instanceof Integer || value instanceof Long
+						|| value instanceof Double)) {
+			return value;
+		}
+
+		if (maxValues <= 0) {
+			return value;
+		}
+
+		synchronized (values) {
+			Object canonical = values.putIfAbsent(value, value);
+			return canonical == null ? value : canonical;
+		}
+	}
+
+	/**
+	 * Gets the canonical instance of the given value, and adds it to the given
+	 * queue if it is a json element that has to be compacted.
+	 * 
+	 * @param value the value to get the canonical instance of.
+	 * @param queue the queue of elements to compact.
+	 * @return the canonical instance of the value.
+	 */
+	Object canonicalize(Object value, Collection<JsonElement<?>> queue) {
+		if (!(value instanceof JsonElement)) {
+			return canonicalize(value);
+		}
+
+		JsonElement<?> element = (JsonElement<?>) value;
+		if (element.isFrozen() && maxElements > 0) {
+			Long digest = element.digest();
+			synchronized (elements) {
+				expungeCollected();
+				ElementReference reference = elements.get(digest);
+				JsonElement<?> shared = reference == null ? null : reference.get();
+				if (shared == element) {
+					// Already compacted when it was added to the pool.
+					return element;
+				} else if (shared != null && identical(shared, element)) {
+					return shared;
+				} else if (shared == null) {
+					elements.put(digest, new ElementReference(digest, element, collected));
+				}
+			}
+		}
+		queue.add(element);
+		return element;
+	}
+
+	/**
+	 * Removes the pooled elements that were garbage collected from the element
+	 * pool.<br>
+	 * Has to be called while synchronized on the element pool.
+	 */
+	private void expungeCollected() {
+		Reference<? extends JsonElement<?>> reference;
+		while ((reference = collected.poll()) != null) {
+			elements.remove(((ElementReference) reference).digest, reference);
+		}
+	}
+
+	/**
+	 * Compacts the values of the given element.
+	 * 
+	 * @param element the element to compact.
+	 * @param queue   the queue to add the elements inside it to.
+	 * @param trim    whether the storage of the element should be shrunk.
+	 */
+	private void compactElement(JsonElement<?> element, Collection<JsonElement<?>> queue, boolean trim) {
+		if (element instanceof JsonObject) {
+			((JsonObject) element).compact(this, queue, trim);
+		} else if (element instanceof JsonArray) {
+			((JsonArray) element).compact(this, queue, trim);
+		}
+	}
+
+	/**
+	 * Checks whether two json values are identical, meaning that they are equal,
+	 * and json objects contain their keys in the same order.
+	 * 
+	 * @param a the first value.
+	 * @param b the second value.
+	 * @return whether the values are identical.
+	 */
+	private static boolean identical(Object a, Object b) {
+		if (a == b) {
+			return true;
+		} else if (a == null || b == null || a.getClass() != b.getClass()) {
+			return false;
+		} else if (a instanceof JsonObject) {
+			JsonObject objectA = (JsonObject) a;
+			JsonObject objectB = (JsonObject) b;
+			if (objectA.size() != objectB.size()) {
+				return false;
+			}
+
+			Iterator<Map.Entry<String, Object>> it = objectB.entrySet().iterator();
+			for (Map.Entry<String, Object> entry : objectA.entrySet()) {
+				Map.Entry<String, Object> other = it.next();
+				if (!entry.getKey().equals(other.getKey()) || !identical(entry.getValue(), other.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		} else if (a instanceof JsonArray) {
+			JsonArray arrayA = (JsonArray) a;
+			JsonArray arrayB = (JsonArray) b;
+			if (arrayA.size() != arrayB.size() || arrayA.getPrimitiveType() != arrayB.getPrimitiveType()) {
+				return false;
+			}
+
+			for (int i = 0; i < arrayA.size(); i++) {
+				if (!identical(arrayA.get(i), arrayB.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return a.equals(b);
+	}
+
+	/**
+	 * Gets the number of pooled strings, numbers and frozen elements.
+	 * 
+	 * @return the number of pooled values.
+	 */
+	public int getPoolSize() {
+		int size;
+		synchronized (values) {
+			size = values.size();
+		}
+		synchronized (elements) {
+			expungeCollected();
+			return size + elements.size();
+		}
+	}
+
+	/**
+	 * Removes all values from the pools of this compactor.
+	 */
+	public void clear() {
+		synchronized (values) {
+			values.clear();
+		}
+		synchronized (elements) {
+			elements.clear();
+			expungeCollected();
+		}
+	}
+
+	/**
+	 * Starts a background thread compacting the given element
+	 * incrementally.<br>
+	 * The thread compacts up to batchSize elements at a time, and then waits for
+	 * the given interval. Once the entire tree was compacted, it starts over.
+	 * <br>
+	 * Only frozen elements and {@link ConcurrentJsonObject ConcurrentJsonObjects}
+	 * are compacted, other elements are skipped together with their content. The
+	 * storage of frozen elements isn't shrunk, since other threads may read from
+	 * it.<br>
+	 * Does nothing if a background thread is already running.
+	 * 
+	 * @param root      the element to compact.
+	 * @param batchSize the max number of elements to compact at a time.
+	 * @param interval  the time to wait between two batches, in milliseconds.
+	 */
+	public synchronized void startBackground(JsonElement<?> root, int batchSize, long interval) {
+		if (background != null) {
+			return;
+		}
+
+		background = new Thread(COMPACTORS_THREAD_GROUP, () -> {
+			Thread current = Thread.currentThread();
+			Queue<JsonElement<?>> queue = new ArrayDeque<>();
+			try {
+				while (true) {
+					synchronized (this) {
+						if (background != current) {
+							return;
+						}
+					}
+
+					if (queue.isEmpty()) {
+						queue.add(root);
+					}
+					for (int i = 0; i < batchSize && !queue.isEmpty(); i++) {
+						JsonElement<?> element = queue.poll();
+						if (element.isFrozen() || element instanceof ConcurrentJsonObject) {
+							compactElement(element, queue, false);
+						}
+					}
+					Thread.sleep(interval);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+		}, "Json-Compactor-" + nr++);
+		background.setDaemon(true);
+		background.start();
+	}
+
+	/**
+	 * Stops the background compactor thread, if there is one.
+	 */
+	public void stopBackground() {
+		Thread thread;
+		synchronized (this) {
+			thread = background;
+			background = null;
+		}
+
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(500);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * A weak reference to a pooled frozen element, that knows the key it is
+	 * pooled with.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ElementReference extends WeakReference<JsonElement<?>> {
+
+		/**
+		 * The digest of the referenced element, used as its key in the pool.
+		 */
+		private final Long digest;
+
+		/**
+		 * Creates a new ElementReference.
+		 * 
+		 * @param digest  the digest of the element.
+		 * @param element the element to reference.
+		 * @param queue   the queue to enqueue this reference in once the element was
+		 *                garbage collected.
+		 */
+		ElementReference(Long digest, JsonElement<?> element, ReferenceQueue<JsonElement<?>> queue) {
+			super(element, queue);
+			this.digest = digest;
+		}
+
+	}
+
+}
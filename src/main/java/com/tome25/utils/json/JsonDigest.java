@@ -0,0 +1,170 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates 64 bit structural digests of json values.<br>
+ * Equal values always have equal digests, so two values with different digests
+ * are known to differ without comparing them. Equal digests however don't
+ * guarantee equal values, so they still have to be compared.<br>
+ * The digest of an object doesn't depend on the order of its keys, while the
+ * digest of an array depends on the order of its elements.
+ * 
+ * @author ToMe25
+ */
+class JsonDigest {
+
+	/**
+	 * The 64 bit FNV prime, used to combine digests.
+	 */
+	private static final long PRIME = 0x100000001B3L;
+
+	/**
+	 * The digest of null.
+	 */
+	private static final long NULL = 0x5BD1E9955BD1E995L;
+
+	/**
+	 * The digest of true.
+	 */
+	private static final long TRUE = 0x27D4EB2F165667C5L;
+
+	/**
+	 * The digest of false.
+	 */
+	private static final long FALSE = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The initial digest of objects.
+	 */
+	private static final long OBJECT_SEED = 0xC2B2AE3D27D4EB4FL;
+
+	/**
+	 * The initial digest of arrays.
+	 */
+	private static final long ARRAY_SEED = 0x165667B19E3779F9L;
+
+	/**
+	 * Calculates the digest of the given json value.<br>
+	 * Uses the cached digest of frozen {@link JsonElement JsonElements}.
+	 * 
+	 * @param value the value to get the digest of.
+	 * @return the digest of the value.
+	 */
+	static long of(Object value) {
+		if (value == null) {
+			return NULL;
+		} else if (value instanceof JsonElement) {
+			return ((JsonElement<?>) value).digest();
+		} else if (value instanceof String) {
+			return mix(ofString((String) value));
+		} else if (value instanceof Double || value instanceof Float) {
+			return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte) {
+			return mix(((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			return (Boolean) value ? TRUE : FALSE;
+		} else {
+			return mix(value.hashCode());
+		}
+	}
+
+	/**
+	 * Calculates the digest of the content of a {@link JsonObject}.
+	 * 
+	 * @param content the map to get the digest of.
+	 * @return the digest of the map.
+	 */
+	static long ofMap(Map<String, Object> content) {
+		long[] sum = new long[1];
+		content.forEach((key, value) -> sum[0] += mix(ofString(key) * PRIME ^ of(value)));
+		return mix(OBJECT_SEED ^ sum[0] ^ content.size());
+	}
+
+	/**
+	 * Calculates the digest of the content of a {@link JsonArray}.
+	 * 
+	 * @param content the list to get the digest of.
+	 * @return the digest of the list.
+	 */
+	static long ofList(List<Object> content) {
+		long digest = ARRAY_SEED;
+		int size = content.size();
+		for (int i = 0; i < size; i++) {
+			digest = (digest ^ of(content.get(i))) * PRIME;
+		}
+		return mix(digest ^ size);
+	}
+
+	/**
+	 * Calculates the FNV-1a hash of the chars of the given string.
+	 * 
+	 * @param string the string to hash.
+	 * @return the hash of the string.
+	 */
+	private static long ofString(String string) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < string.length(); i++) {
+			hash = (hash ^ string.charAt(i)) * PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Calculates a 64 bit hash of the given bytes, reading them eight at a
+	 * time.<br>
+	 * Unlike the other digests this isn't a structural digest, it is used to
+	 * recognize byte identical json documents.
+	 * 
+	 * @param bytes the bytes to hash.
+	 * @return the hash of the bytes.
+	 */
+	static long ofBytes(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		long hash = ARRAY_SEED ^ bytes.length * PRIME;
+		int end = bytes.length & ~7;
+		for (int i = 0; i < end; i += 8) {
+			hash = Long.rotateLeft(hash ^ buffer.getLong(i) * 0x9E3779B97F4A7C15L, 29) * PRIME;
+		}
+
+		long tail = 0;
+		for (int i = bytes.length - 1; i >= end; i--) {
+			tail = tail << 8 | (bytes[i] & 0xFF);
+		}
+		return mix(hash ^ tail * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Mixes the bits of the given value, using the finalizer of SplitMix64.
+	 * 
+	 * @param value the value to mix.
+	 * @return the mixed value.
+	 */
+	static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+}
@@ -362,6 +362,21 @@ public interface JsonElement<K> extends Iterable<Object>, Externalizable, Compar
 	 */
 	public boolean equals(Object obj);
 
+	/**
+	 * Gets a 64 bit structural digest of this JsonElement.<br>
+	 * Equal elements always have equal digests, so elements with different
+	 * digests are known to differ without comparing their content. Equal digests
+	 * don't guarantee equal elements however.<br>
+	 * Frozen elements calculate their digest only once, which allows
+	 * {@link #equals(Object)} and {@link #changes(JsonElement)} to detect changed
+	 * frozen subtrees without comparing their content.
+	 * 
+	 * @return the digest of this element.
+	 */
+	public default long digest() {
+		return JsonDigest.mix(hashCode());
+	}
+
 	/**
 	 * Checks whether this Json is empty.
 	 * 
@@ -374,6 +389,90 @@ public interface JsonElement<K> extends Iterable<Object>, Externalizable, Compar
 	 */
 	public void clear();
 
+	/**
+	 * Checks whether this element supports being frozen.
+	 * 
+	 * @return whether this element can be made immutable using {@link #freeze()}.
+	 */
+	public default boolean supportsFreeze() {
+		return false;
+	}
+
+	/**
+	 * Makes this JsonElement, and all JsonElements inside it, immutable.<br>
+	 * Any attempt to modify a frozen element throws an
+	 * {@link UnsupportedOperationException}. Since frozen elements can't change,
+	 * they calculate their hash code and recursive size only once.<br>
+	 * Clones of frozen elements are not frozen, however JsonElements inside them
+	 * are, unless they were cloned too.
+	 * 
+	 * @return this element.
+	 * @throws UnsupportedOperationException if this element, or an element inside
+	 *                                       it, can't be frozen.
+	 */
+	public default JsonElement<K> freeze() throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("This object does not support being frozen!");
+	}
+
+	/**
+	 * Checks whether this element was made immutable using {@link #freeze()}.
+	 * 
+	 * @return whether this element is frozen.
+	 */
+	public default boolean isFrozen() {
+		return false;
+	}
+
+	/**
+	 * Reduces the memory used by this element, without changing its
+	 * content.<br>
+	 * Replaces equal strings, numbers and frozen sub elements with a single
+	 * shared instance, using the {@link JsonCompactor#getDefault() default
+	 * JsonCompactor}, and shrinks the internal storage of this element and the
+	 * elements inside it to their size.<br>
+	 * Also works on frozen elements. Must not be called while other threads
+	 * access this element, use {@link JsonCompactor#startBackground(JsonElement,
+	 * int, long)} for elements that are in use.<br>
+	 * Does nothing by default.
+	 * 
+	 * @return this element.
+	 */
+	public default JsonElement<K> compact() {
+		return this;
+	}
+
+	/**
+	 * Estimates the heap memory used by this element, including its keys and
+	 * values, based on the object layout of the running JVM.<br>
+	 * Frozen elements calculate their estimate only once, so estimating the size
+	 * of an element containing frozen elements only visits the elements that
+	 * aren't frozen.<br>
+	 * By default this is the {@link #estimateShallowSize() shallow size} of this
+	 * element plus the estimated size of its values.
+	 * 
+	 * @return the estimated size of this element in bytes.
+	 * @see JsonFootprint
+	 */
+	public default long estimateSize() {
+		long size = estimateShallowSize();
+		for (Object value : values()) {
+			size += JsonFootprint.of(value);
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the heap memory used by this element itself and its internal
+	 * storage, excluding its keys and values.<br>
+	 * By default this is the size of an object without any fields.
+	 * 
+	 * @return the estimated shallow size of this element in bytes.
+	 * @see JsonFootprint
+	 */
+	public default long estimateShallowSize() {
+		return JsonFootprint.object(0, 0);
+	}
+
 	/**
 	 * Checks whether this element supports getting the changes against a given
 	 * version.
@@ -472,6 +571,85 @@ public interface JsonElement<K> extends Iterable<Object>, Externalizable, Compar
 		throw new UnsupportedOperationException("This object does not support creating a changes json from it!");
 	}
 
+	/**
+	 * Returns a new JsonElement containing the values of the given JsonElement with
+	 * the changes contained in this JsonElement applied.<br>
+	 * If shareUnchanged is true, the returned JsonElement may reference the values
+	 * of the given JsonElement that were not changed, rather than copies of them,
+	 * so that the cost of reconstructing is proportional to the size of the
+	 * changes rather than the size of the given JsonElement. Neither of them may
+	 * be modified afterwards in that case, unless they are {@link #freeze()
+	 * frozen}.<br>
+	 * JsonElements that don't support sharing values return a full copy.
+	 * 
+	 * @param from           the previous JsonElement.
+	 * @param recursive      whether changed JsonElements inside this one should get
+	 *                       reconstructed too, or just cloned from this one.
+	 * @param shareUnchanged whether unchanged values should be shared with the
+	 *                       given JsonElement.
+	 * @return a new JsonElement containing the values of the given JsonElement with
+	 *         the changes contained in this JsonElement applied.
+	 * @throws UnsupportedOperationException if this JsonElement doesn't support
+	 *                                       generating a changes JsonElement.
+	 */
+	public default JsonElement<K> reconstruct(JsonElement<K> from, boolean recursive, boolean shareUnchanged)
+			throws UnsupportedOperationException {
+		return reconstruct(from, recursive);
+	}
+
+	/**
+	 * Applies the given changes to this JsonElement, modifying it in place.
+	 * Recursively.<br>
+	 * Results in the same content as {@link #reconstruct(JsonElement)
+	 * changes.reconstruct}(this), without copying the unchanged values.
+	 * 
+	 * @param changes the changes to apply.
+	 * @return this JsonElement.
+	 * @throws UnsupportedOperationException if this JsonElement doesn't support
+	 *                                       applying changes, or is frozen.
+	 */
+	public default JsonElement<K> apply(JsonElement<K> changes) throws UnsupportedOperationException {
+		return apply(changes, true);
+	}
+
+	/**
+	 * Applies the given changes to this JsonElement, modifying it in place.<br>
+	 * Results in the same content as {@link #reconstruct(JsonElement, boolean)
+	 * changes.reconstruct}(this, recursive), without copying the unchanged
+	 * values.
+	 * 
+	 * @param changes   the changes to apply.
+	 * @param recursive whether changes of JsonElements inside this one should be
+	 *                  applied to them too, or replace them.
+	 * @return this JsonElement.
+	 * @throws UnsupportedOperationException if this JsonElement doesn't support
+	 *                                       applying changes, or is frozen.
+	 */
+	public default JsonElement<K> apply(JsonElement<K> changes, boolean recursive)
+			throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("This object does not support applying changes to it!");
+	}
+
+	/**
+	 * Combines this changes JsonElement and the given changes made after it into
+	 * a single changes JsonElement.<br>
+	 * Reconstructing from the given JsonElement using the result gives the same
+	 * content as reconstructing using this, and then using the given changes,
+	 * without creating the JsonElement in between.
+	 * 
+	 * @param from the JsonElement this contains the changes from. It is only read,
+	 *             to tell changes of JsonElements inside it from values replacing
+	 *             them.
+	 * @param next the changes made after the changes in this JsonElement.
+	 * @return a new JsonElement containing the combined changes.
+	 * @throws UnsupportedOperationException if this JsonElement doesn't support
+	 *                                       combining changes.
+	 */
+	public default JsonElement<K> compose(JsonElement<K> from, JsonElement<K> next)
+			throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("This object does not support combining changes!");
+	}
+
 	/**
 	 * A utility method to call to.{@link #reconstruct(JsonElement)
 	 * reconstruct}(from).<br>
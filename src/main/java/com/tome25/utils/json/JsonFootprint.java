@@ -0,0 +1,359 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Estimates the heap memory used by json values, for example to bound caches
+ * by their size in bytes rather than their number of entries.<br>
+ * The estimates are based on the object layout of the running JVM, which is
+ * detected once when this class is loaded: the size of references, depending
+ * on whether compressed oops are used, the size of object headers, the object
+ * alignment, and whether strings are stored as bytes or chars. If the layout
+ * can't be detected, because this isn't a HotSpot based JVM, compressed oops
+ * are assumed for 64 bit JVMs with less than 32 GB of heap.<br>
+ * Values referenced multiple times are counted for every reference, except for
+ * the values cached by the JVM, like small integers and booleans, and the keys
+ * of objects sharing a {@link Shape}. So the estimate is an upper bound for
+ * trees sharing values.<br>
+ * {@link JsonElement#estimateSize()} caches the estimate of frozen elements, so
+ * estimating the size of a tree again after modifying it only visits the
+ * elements that aren't frozen. {@link #ofEntry(String, Object)} and
+ * {@link #ofElement(Object)} allow updating a size on every modification
+ * instead.
+ * 
+ * @author ToMe25
+ */
+public final class JsonFootprint {
+
+	/**
+	 * Whether the JVM uses 32 bit references on a 64 bit JVM.
+	 */
+	private static final boolean COMPRESSED_OOPS;
+
+	/**
+	 * The size of a reference in bytes.
+	 */
+	private static final int REFERENCE_SIZE;
+
+	/**
+	 * The size of an object header in bytes.
+	 */
+	private static final int OBJECT_HEADER;
+
+	/**
+	 * The alignment of objects in bytes.
+	 */
+	private static final int OBJECT_ALIGNMENT;
+
+	/**
+	 * Whether strings only containing latin 1 characters use one byte per
+	 * character.
+	 */
+	private static final boolean COMPACT_STRINGS;
+
+	static {
+		boolean is64Bit = !"32".equals(System.getProperty("sun.arch.data.model"));
+		boolean java8 = System.getProperty("java.specification.version", "").startsWith("1.");
+		boolean compressedOops = is64Bit;
+		boolean compressedClassPointers = is64Bit;
+		int alignment = 8;
+		boolean compactStrings = !java8;
+		try {
+			HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			compressedOops = is64Bit && Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedOops").getValue());
+			compressedClassPointers = is64Bit
+					&& Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedClassPointers").getValue());
+			alignment = Integer.parseInt(hotSpot.getVMOption("ObjectAlignmentInBytes").getValue());
+			if (!java8) {
+				compactStrings = Boolean.parseBoolean(hotSpot.getVMOption("CompactStrings").getValue());
+			}
+		} catch (RuntimeException | LinkageError e) {
+			// Not a HotSpot based JVM, so guess based on the max heap size.
+			compressedOops = is64Bit && Runtime.getRuntime().maxMemory() < 32l << 30;
+			compressedClassPointers = compressedOops;
+		}
+
+		COMPRESSED_OOPS = compressedOops;
+		REFERENCE_SIZE = is64Bit && !compressedOops ? 8 : 4;
+		OBJECT_HEADER = is64Bit ? compressedClassPointers ? 12 : 16 : 8;
+		OBJECT_ALIGNMENT = alignment;
+		COMPACT_STRINGS = compactStrings;
+	}
+
+	/**
+	 * JsonFootprint only has static methods.
+	 */
+	private JsonFootprint() {
+	}
+
+	/**
+	 * Checks whether the JVM uses compressed 32 bit references on a 64 bit JVM.
+	 * 
+	 * @return whether compressed oops are used.
+	 */
+	public static boolean isCompressedOops() {
+		return COMPRESSED_OOPS;
+	}
+
+	/**
+	 * Gets the size of a reference in bytes.
+	 * 
+	 * @return the reference size.
+	 */
+	public static int getReferenceSize() {
+		return REFERENCE_SIZE;
+	}
+
+	/**
+	 * Gets the size of an object header in bytes.
+	 * 
+	 * @return the object header size.
+	 */
+	public static int getObjectHeaderSize() {
+		return OBJECT_HEADER;
+	}
+
+	/**
+	 * Gets the alignment of objects in bytes.
+	 * 
+	 * @return the object alignment.
+	 */
+	public static int getObjectAlignment() {
+		return OBJECT_ALIGNMENT;
+	}
+
+	/**
+	 * Estimates the memory used by the given json value, including everything
+	 * inside it.
+	 * 
+	 * @param value the value to estimate the size of.
+	 * @return the estimated size of the value in bytes.
+	 */
+	public static long of(Object value) {
+		if (value == null || value instanceof Boolean) {
+			return 0;
+		} else if (value instanceof JsonElement) {
+			return ((JsonElement<?>) value).estimateSize();
+		} else if (value instanceof String) {
+			return ofString((String) value);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short
+				|| value instanceof Byte) {
+			long number = ((Number) value).longValue();
+			if (number >= -128 && number <= 127) {
+				// Cached by the valueOf methods used for autoboxing.
+				return 0;
+			}
+			return object(0, value instanceof Long ? 8 : 4);
+		} else {
+			return object(0, 8);
+		}
+	}
+
+	/**
+	 * Estimates the memory used by the given string.
+	 * 
+	 * @param string the string to estimate the size of.
+	 * @return the estimated size of the string in bytes.
+	 */
+	public static long ofString(String string) {
+		if (!COMPACT_STRINGS) {
+			return object(1, 4) + array(string.length(), 2);
+		}
+
+		int charSize = 1;
+		for (int i = 0; i < string.length(); i++) {
+			if (string.charAt(i) > 0xFF) {
+				charSize = 2;
+				break;
+			}
+		}
+		return object(1, 6) + array(string.length(), charSize);
+	}
+
+	/**
+	 * Estimates by how much adding the given entry to a {@link JsonObject}
+	 * increases its size.<br>
+	 * The growth of the backing arrays is averaged over all entries, so this is
+	 * an estimate of the average increase.
+	 * 
+	 * @param key   the key of the entry.
+	 * @param value the value of the entry.
+	 * @return the estimated size of the entry in bytes.
+	 */
+	public static long ofEntry(String key, Object value) {
+		return REFERENCE_SIZE * 2 + 4 + (key == null ? 0 : ofString(key)) + of(value);
+	}
+
+	/**
+	 * Estimates by how much adding the given value to a {@link JsonArray}
+	 * increases its size.<br>
+	 * The growth of the backing array is averaged over all values, so this is an
+	 * estimate of the average increase.
+	 * 
+	 * @param value the value to add.
+	 * @return the estimated size of the value in bytes.
+	 */
+	public static long ofElement(Object value) {
+		return REFERENCE_SIZE + of(value);
+	}
+
+	/**
+	 * Estimates the memory used by the given {@link JsonObject} itself and its
+	 * backing map, excluding its keys and values.
+	 * 
+	 * @param object the object to estimate the size of.
+	 * @return the estimated shallow size of the object in bytes.
+	 */
+	static long shallow(JsonObject object) {
+		// The content, the frozen flag, the hash, the digest, the recursive size and the footprint.
+		return object(1, 25) + ofMap(object.getContent());
+	}
+
+	/**
+	 * Estimates the memory used by the given {@link JsonObject}, including its
+	 * keys and values.
+	 * 
+	 * @param object the object to estimate the size of.
+	 * @return the estimated size of the object in bytes.
+	 */
+	static long retained(JsonObject object) {
+		Map<String, Object> content = object.getContent();
+		// The keys of shaped maps are shared with all maps with the same shape.
+		boolean sharedKeys = content instanceof ShapedMap && ((ShapedMap) content).isShaped();
+		long size = shallow(object);
+		for (Map.Entry<String, Object> entry : content.entrySet()) {
+			if (!sharedKeys && entry.getKey() != null) {
+				size += ofString(entry.getKey());
+			}
+			size += of(entry.getValue());
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the memory used by the given {@link JsonArray} itself and its
+	 * backing list, excluding its values.
+	 * 
+	 * @param array the array to estimate the size of.
+	 * @return the estimated shallow size of the array in bytes.
+	 */
+	static long shallow(JsonArray array) {
+		// The content, the indices, the frozen flag, the hash, the digest, the recursive size and the footprint.
+		return object(2, 25) + ofList(array.getContent());
+	}
+
+	/**
+	 * Estimates the memory used by the given {@link JsonArray}, including its
+	 * values.
+	 * 
+	 * @param array the array to estimate the size of.
+	 * @return the estimated size of the array in bytes.
+	 */
+	static long retained(JsonArray array) {
+		List<Object> content = array.getContent();
+		long size = shallow(array);
+		if (!(content instanceof PrimitiveList)) {
+			for (Object value : content) {
+				size += of(value);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the memory used by the given map, excluding its keys and values.
+	 * 
+	 * @param map the map to estimate the size of.
+	 * @return the estimated size of the map in bytes.
+	 */
+	private static long ofMap(Map<String, Object> map) {
+		if (map instanceof CompactMap) {
+			return ((CompactMap) map).footprint();
+		} else if (map instanceof ShapedMap) {
+			return ((ShapedMap) map).footprint();
+		} else if (map instanceof ConcurrentContentMap.CopyOnWrite) {
+			// The map itself, and its atomic reference to the current content.
+			return object(2, 0) + object(1, 0) + ((ConcurrentContentMap.CopyOnWrite) map).snapshot().footprint();
+		}
+
+		// Assume a hash map with linked entries, with the default load factor.
+		int size = map.size();
+		int buckets = size == 0 ? 0 : Integer.highestOneBit(Math.max(size * 4 / 3, 1) * 2 - 1);
+		return object(8, 16) + array(buckets, REFERENCE_SIZE) + size * object(5, 4);
+	}
+
+	/**
+	 * Estimates the memory used by the given list, excluding its values.
+	 * 
+	 * @param list the list to estimate the size of.
+	 * @return the estimated size of the list in bytes.
+	 */
+	private static long ofList(List<Object> list) {
+		if (list instanceof PrimitiveList) {
+			return ((PrimitiveList) list).footprint();
+		}
+
+		// Assume an array list that is on average a quarter larger than its content.
+		int size = list.size();
+		int capacity = size == 0 ? 0 : Math.max(size + (size >> 2), 10);
+		return object(1, 8) + array(capacity, REFERENCE_SIZE);
+	}
+
+	/**
+	 * Estimates the size of an object with the given fields.
+	 * 
+	 * @param references the number of reference fields of the object.
+	 * @param bytes      the total size of the primitive fields of the object.
+	 * @return the estimated size of the object in bytes.
+	 */
+	static long object(int references, int bytes) {
+		return align(OBJECT_HEADER + (long) references * REFERENCE_SIZE + bytes);
+	}
+
+	/**
+	 * Estimates the size of an array.
+	 * 
+	 * @param length      the length of the array.
+	 * @param elementSize the size of a single element of the array in bytes.
+	 * @return the estimated size of the array in bytes.
+	 */
+	static long array(int length, int elementSize) {
+		long header = OBJECT_HEADER + 4;
+		if (elementSize == 8) {
+			header = (header + 7) & ~7;
+		}
+		return align(header + (long) length * elementSize);
+	}
+
+	/**
+	 * Rounds the given size up to the object alignment.
+	 * 
+	 * @param size the size to align.
+	 * @return the aligned size.
+	 */
+	private static long align(long size) {
+		return (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+	}
+
+}
@@ -0,0 +1,424 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A secondary index over the elements of a {@link JsonArray}, mapping the
+ * values of one or more field paths of its elements to the elements containing
+ * them.<br>
+ * Indices are created using {@link JsonArray#createIndex(boolean, String...)},
+ * and kept up to date by the array when elements are added, removed or
+ * replaced.<br>
+ * Hash indices offer constant time lookups by value, sorted indices logarithmic
+ * time lookups and range queries.<br>
+ * Elements that don't contain all the indexed paths aren't indexed.<br>
+ * Integer values of different types are treated as equal, so a lookup for
+ * {@code 1} finds elements containing {@code 1L}.<br>
+ * Changes to the indexed fields of elements already in the array, and changes
+ * made through {@link JsonArray#subList(int, int)} views, are not detected. Use
+ * {@link #rebuild()} after making such changes.
+ * 
+ * @author ToMe25
+ */
+public class JsonIndex {
+
+	/**
+	 * The order of the keys of sorted indices.<br>
+	 * Null is sorted before booleans, booleans before numbers, numbers before
+	 * strings, strings before composite keys, and composite keys before all other
+	 * values.
+	 */
+	private static final Comparator<Object> KEY_ORDER = JsonIndex::compareKeys;
+
+	/**
+	 * The array this index belongs to.
+	 */
+	private final JsonArray array;
+
+	/**
+	 * The field paths whose values are indexed.
+	 */
+	private final JsonPath[] paths;
+
+	/**
+	 * The map from the keys to the elements containing them.
+	 */
+	private final Map<Object, List<Object>> entries;
+
+	/**
+	 * Creates a new JsonIndex, and indexes the current content of the given
+	 * array.
+	 * 
+	 * @param array  the array to index.
+	 * @param sorted whether the index should be sorted.
+	 * @param paths  the field paths to index.
+	 */
+	JsonIndex(JsonArray array, boolean sorted, JsonPath[] paths) {
+		this.array = array;
+		this.paths = paths;
+		entries = sorted ? new TreeMap<>(KEY_ORDER) : new HashMap<>();
+		rebuild();
+	}
+
+	/**
+	 * Clears this index, and indexes all elements of its array again.
+	 */
+	public void rebuild() {
+		entries.clear();
+		for (int i = 0; i < array.size(); i++) {
+			add(array.get(i));
+		}
+	}
+
+	/**
+	 * Checks whether this is a sorted index supporting range queries.
+	 * 
+	 * @return whether this index is sorted.
+	 */
+	public boolean isSorted() {
+		return entries instanceof TreeMap;
+	}
+
+	/**
+	 * Gets the field paths indexed by this index.
+	 * 
+	 * @return the indexed paths.
+	 */
+	public String[] getPaths() {
+		String[] result = new String[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			result[i] = paths[i].getExpression();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the array indexed by this index.
+	 * 
+	 * @return the indexed array.
+	 */
+	public JsonArray getArray() {
+		return array;
+	}
+
+	/**
+	 * Gets all elements with the given values for the indexed paths.
+	 * 
+	 * @param values the values of the indexed paths, in the order the paths were
+	 *               given when creating this index.
+	 * @return an unmodifiable view of the matching elements, in the order they
+	 *         were indexed.
+	 * @throws IllegalArgumentException if the number of values doesn't match the
+	 *                                  number of indexed paths.
+	 */
+	public List<Object> get(Object... values) throws IllegalArgumentException {
+		List<Object> elements = entries.get(toKey(values));
+		return elements == null ? Collections.emptyList() : Collections.unmodifiableList(elements);
+	}
+
+	/**
+	 * Gets the first element with the given values for the indexed paths.
+	 * 
+	 * @param values the values of the indexed paths.
+	 * @return the first matching element, or null if there is none.
+	 * @throws IllegalArgumentException if the number of values doesn't match the
+	 *                                  number of indexed paths.
+	 */
+	public Object getFirst(Object... values) throws IllegalArgumentException {
+		List<Object> elements = entries.get(toKey(values));
+		return elements == null ? null : elements.get(0);
+	}
+
+	/**
+	 * Checks whether the array contains an element with the given values for the
+	 * indexed paths.
+	 * 
+	 * @param values the values of the indexed paths.
+	 * @return whether a matching element exists.
+	 * @throws IllegalArgumentException if the number of values doesn't match the
+	 *                                  number of indexed paths.
+	 */
+	public boolean contains(Object... values) throws IllegalArgumentException {
+		return entries.containsKey(toKey(values));
+	}
+
+	/**
+	 * Gets all elements whose key is in the given range.<br>
+	 * For indices over multiple paths, the bounds have to be lists of values.
+	 * Bounds with fewer values than indexed paths are compared as prefixes, and
+	 * sorted before all keys starting with them.
+	 * 
+	 * @param from          the lower bound, or null for no lower bound.
+	 * @param fromInclusive whether the lower bound is inclusive.
+	 * @param to            the upper bound, or null for no upper bound.
+	 * @param toInclusive   whether the upper bound is inclusive.
+	 * @return a new list containing the matching elements, ordered by their key.
+	 * @throws UnsupportedOperationException if this index isn't sorted.
+	 */
+	public List<Object> range(Object from, boolean fromInclusive, Object to, boolean toInclusive)
+			throws UnsupportedOperationException {
+		if (!isSorted()) {
+			throw new UnsupportedOperationException("Range queries require a sorted index!");
+		}
+
+		NavigableMap<Object, List<Object>> range = (TreeMap<Object, List<Object>>) entries;
+		if (from != null) {
+			range = range.tailMap(toRangeKey(from), fromInclusive);
+		}
+		if (to != null) {
+			range = range.headMap(toRangeKey(to), toInclusive);
+		}
+
+		List<Object> result = new ArrayList<>();
+		for (List<Object> elements : range.values()) {
+			result.addAll(elements);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of distinct keys in this index.
+	 * 
+	 * @return the number of distinct keys.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Adds the given element to this index.
+	 * 
+	 * @param element the element that was added to the array.
+	 */
+	void add(Object element) {
+		Object key = keyOf(element);
+		if (key != JsonPath.MISSING) {
+			entries.computeIfAbsent(key, k -> new ArrayList<>(1)).add(element);
+		}
+	}
+
+	/**
+	 * Removes the given element from this index.
+	 * 
+	 * @param element the element that was removed from the array.
+	 */
+	void remove(Object element) {
+		Object key = keyOf(element);
+		if (key == JsonPath.MISSING) {
+			return;
+		}
+
+		List<Object> elements = entries.get(key);
+		if (elements == null) {
+			return;
+		}
+
+		int index = -1;
+		for (int i = 0; i < elements.size(); i++) {
+			if (elements.get(i) == element) {
+				index = i;
+				break;
+			}
+		}
+		if (index < 0) {
+			index = elements.indexOf(element);
+		}
+		if (index >= 0) {
+			elements.remove(index);
+			if (elements.isEmpty()) {
+				entries.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes all elements from this index.
+	 */
+	void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the key of the given element.
+	 * 
+	 * @param element the element to get the key for.
+	 * @return the key of the element, or {@link JsonPath#MISSING} if it doesn't
+	 *         contain all indexed paths.
+	 */
+	private Object keyOf(Object element) {
+		if (!(element instanceof JsonElement)) {
+			return JsonPath.MISSING;
+		}
+
+		if (paths.length == 1) {
+			return normalize(paths[0].first(element));
+		}
+
+		Object[] key = new Object[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			key[i] = normalize(paths[i].first(element));
+			if (key[i] == JsonPath.MISSING) {
+				return JsonPath.MISSING;
+			}
+		}
+		return Arrays.asList(key);
+	}
+
+	/**
+	 * Converts the given lookup values to a key.
+	 * 
+	 * @param values the values of the indexed paths.
+	 * @return the key for the values.
+	 * @throws IllegalArgumentException if the number of values doesn't match the
+	 *                                  number of indexed paths.
+	 */
+	private Object toKey(Object[] values) throws IllegalArgumentException {
+		if (values == null) {
+			values = new Object[] { null };
+		}
+		if (values.length != paths.length) {
+			throw new IllegalArgumentException(
+					String.format("Expected %d values, but got %d!", paths.length, values.length));
+		}
+
+		if (values.length == 1) {
+			return normalize(values[0]);
+		}
+
+		Object[] key = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			key[i] = normalize(values[i]);
+		}
+		return Arrays.asList(key);
+	}
+
+	/**
+	 * Converts a range bound to a key.
+	 * 
+	 * @param bound the bound to convert. Has to be a list of up to one value per
+	 *              path for composite indices.
+	 * @return the key for the bound.
+	 * @throws IllegalArgumentException if the bound isn't valid for this index.
+	 */
+	private Object toRangeKey(Object bound) throws IllegalArgumentException {
+		if (paths.length == 1) {
+			return normalize(bound);
+		} else if (!(bound instanceof List) || ((List<?>) bound).size() > paths.length) {
+			throw new IllegalArgumentException(
+					String.format("Range bounds of composite indices have to be lists of up to %d values!", paths.length));
+		}
+
+		List<?> values = (List<?>) bound;
+		Object[] key = new Object[values.size()];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = normalize(values.get(i));
+		}
+		return Arrays.asList(key);
+	}
+
+	/**
+	 * Converts integer values to longs, and floats to doubles, so that equal
+	 * numbers of different types result in equal keys.
+	 * 
+	 * @param value the value to normalize.
+	 * @return the normalized value.
+	 */
+	static Object normalize(Object value) {
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		} else if (value instanceof Float) {
+			return ((Float) value).doubleValue();
+		}
+		return value;
+	}
+
+	/**
+	 * Compares two keys of a sorted index.
+	 * 
+	 * @param key1 the first key.
+	 * @param key2 the second key.
+	 * @return the result of the comparison.
+	 * @see #KEY_ORDER
+	 */
+	static int compareKeys(Object key1, Object key2) {
+		int rank1 = rank(key1);
+		int rank2 = rank(key2);
+		if (rank1 != rank2) {
+			return Integer.compare(rank1, rank2);
+		}
+
+		switch (rank1) {
+		case 0:
+			return 0;
+		case 1:
+			return Boolean.compare((Boolean) key1, (Boolean) key2);
+		case 2:
+			if (key1 instanceof Long && key2 instanceof Long) {
+				return Long.compare((Long) key1, (Long) key2);
+			}
+			int result = Double.compare(((Number) key1).doubleValue(), ((Number) key2).doubleValue());
+			return result != 0 ? result : Boolean.compare(key1 instanceof Long, key2 instanceof Long);
+		case 3:
+			return ((String) key1).compareTo((String) key2);
+		case 4:
+			List<?> list1 = (List<?>) key1;
+			List<?> list2 = (List<?>) key2;
+			for (int i = 0; i < list1.size() && i < list2.size(); i++) {
+				int comparison = compareKeys(list1.get(i), list2.get(i));
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return Integer.compare(list1.size(), list2.size());
+		default:
+			return key1.toString().compareTo(key2.toString());
+		}
+	}
+
+	/**
+	 * Gets the rank of the type of the given key in the {@link #KEY_ORDER}.
+	 * 
+	 * @param key the key to get the rank for.
+	 * @return the rank of the key type.
+	 */
+	private static int rank(Object key) {
+		if (key == null) {
+			return 0;
+		} else if (key instanceof Boolean) {
+			return 1;
+		} else if (key instanceof Number) {
+			return 2;
+		} else if (key instanceof String) {
+			return 3;
+		} else if (key instanceof List && !(key instanceof JsonElement)) {
+			return 4;
+		}
+		return 5;
+	}
+
+}
@@ -0,0 +1,559 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal persisting the changes made to a json.<br>
+ * The changes are appended to segment files in the journal directory, and can
+ * be made durable using {@link #sync(long)}, which uses a single fsync for all
+ * threads waiting for their changes to be written at the same time.<br>
+ * Every {@code snapshotInterval} changes the full json is written to a snapshot
+ * file, and the segments containing only older changes are deleted. When
+ * opening a journal, the last snapshot is loaded using memory-mapped I/O, and
+ * only the changes made after it are replayed.<br>
+ * A record that was only partially written, for example because of a crash, is
+ * removed when opening the journal.
+ * 
+ * @author ToMe25
+ *
+ * @param <K> the key type of the json.
+ */
+public class JsonJournal<K> implements Closeable {
+
+	/**
+	 * The default max size of a single segment file, in bytes.
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The default number of changes after which a snapshot is written.
+	 */
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 10000;
+
+	/**
+	 * The size of the header of each record: the payload length, the sequence
+	 * number and the checksum.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SNAPSHOT_SUFFIX = ".json";
+
+	/**
+	 * The directory containing the files of this journal.
+	 */
+	private final Path directory;
+
+	/**
+	 * The max size of a single segment file.
+	 */
+	private final long segmentSize;
+
+	/**
+	 * The number of changes after which a snapshot is written.
+	 */
+	private final int snapshotInterval;
+
+	/**
+	 * The current json, with all changes applied.
+	 */
+	private JsonElement<K> state;
+
+	/**
+	 * The segment file new changes are appended to.
+	 */
+	private FileChannel segment;
+
+	/**
+	 * The sequence number of the last change appended to this journal.
+	 */
+	private long sequence;
+
+	/**
+	 * The size of the current segment before the last record was written to it.
+	 */
+	private long lastRecordStart;
+
+	/**
+	 * The sequence number of the last change contained in the last snapshot.
+	 */
+	private long snapshotSequence;
+
+	/**
+	 * The sequence number of the last change known to be durable.
+	 */
+	private final AtomicLong syncedSequence = new AtomicLong();
+
+	/**
+	 * The lock making sure only one thread syncs the segment file at a time.
+	 */
+	private final Object syncLock = new Object();
+
+	/**
+	 * The lock making sure only one thread writes a snapshot at a time.
+	 */
+	private final Object snapshotLock = new Object();
+
+	/**
+	 * Opens the journal in the given directory, using the default segment size
+	 * and snapshot interval.
+	 * 
+	 * @param directory the directory containing the journal files.
+	 * @param initial   the json to use if the directory doesn't contain a journal
+	 *                  yet. Will be modified by this journal.
+	 * @throws IOException    if reading or creating the journal files fails.
+	 * @throws ParseException if the last snapshot or a logged change is invalid.
+	 */
+	public JsonJournal(File directory, JsonElement<K> initial) throws IOException, ParseException {
+		this(directory.toPath(), initial, DEFAULT_SEGMENT_SIZE, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	/**
+	 * Opens the journal in the given directory, restoring its json from the last
+	 * snapshot and the changes logged after it.
+	 * 
+	 * @param directory        the directory containing the journal files.
+	 * @param initial          the json to use if the directory doesn't contain a
+	 *                         journal yet. Will be modified by this journal.
+	 * @param segmentSize      the max size of a single segment file, in bytes.
+	 * @param snapshotInterval the number of changes after which a snapshot is
+	 *                         written. Zero or less to only write snapshots using
+	 *                         {@link #snapshot()}.
+	 * @throws IOException    if reading or creating the journal files fails.
+	 * @throws ParseException if the last snapshot or a logged change is invalid.
+	 */
+	@SuppressWarnings("unchecked")
+	public JsonJournal(Path directory, JsonElement<K> initial, long segmentSize, int snapshotInterval)
+			throws IOException, ParseException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.snapshotInterval = snapshotInterval;
+		Files.createDirectories(directory);
+
+		List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		if (snapshots.isEmpty()) {
+			state = initial;
+			writeSnapshot(0, initial.toString());
+		} else {
+			snapshotSequence = snapshots.get(snapshots.size() - 1);
+			state = (JsonElement<K>) readSnapshot(file(SNAPSHOT_PREFIX, snapshotSequence, SNAPSHOT_SUFFIX));
+		}
+		sequence = snapshotSequence;
+
+		List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+		for (int i = 0; i < segments.size(); i++) {
+			boolean last = i == segments.size() - 1;
+			if (last || segments.get(i + 1) > snapshotSequence + 1) {
+				replay(file(SEGMENT_PREFIX, segments.get(i), SEGMENT_SUFFIX), last);
+			}
+		}
+		syncedSequence.set(sequence);
+
+		if (segments.isEmpty()) {
+			openSegment();
+		} else {
+			segment = FileChannel.open(file(SEGMENT_PREFIX, segments.get(segments.size() - 1), SEGMENT_SUFFIX),
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+	}
+
+	/**
+	 * Gets the current json, with all changes applied.<br>
+	 * It must not be modified, other than by this journal.
+	 * 
+	 * @return the current json.
+	 */
+	public synchronized JsonElement<K> getState() {
+		return state;
+	}
+
+	/**
+	 * Gets the sequence number of the last change appended to this journal.
+	 * 
+	 * @return the last sequence number.
+	 */
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Appends the changes from the current json to the given json, and makes the
+	 * given json the current one.
+	 * 
+	 * @param newState the new json. Must not be modified afterwards, other than by
+	 *                 this journal.
+	 * @return the sequence number of the appended changes.
+	 * @throws IOException if writing the changes fails.
+	 */
+	public long update(JsonElement<K> newState) throws IOException {
+		long appended;
+		synchronized (this) {
+			appended = write(newState.changes(state));
+			state = newState;
+		}
+		snapshotIfNeeded(appended);
+		return appended;
+	}
+
+	/**
+	 * Appends the given changes to this journal, and applies them to the current
+	 * json in place.<br>
+	 * If the changes can't be applied to the current json, they are removed from
+	 * the journal again, and the exception is rethrown.
+	 * 
+	 * @param changes the changes to append.
+	 * @return the sequence number of the appended changes.
+	 * @throws IOException if writing the changes fails.
+	 */
+	public long append(JsonElement<K> changes) throws IOException {
+		long appended;
+		synchronized (this) {
+			appended = write(changes);
+			try {
+				state.apply(changes);
+			} catch (RuntimeException e) {
+				// Nobody could sync the record yet, since this journal is locked.
+				segment.truncate(lastRecordStart);
+				sequence--;
+				throw e;
+			}
+		}
+		snapshotIfNeeded(appended);
+		return appended;
+	}
+
+	/**
+	 * Makes sure all changes up to the given sequence number are durable.<br>
+	 * All threads waiting for a sync at the same time share a single fsync.
+	 * 
+	 * @param sequence the sequence number of the last change to make durable.
+	 * @throws IOException              if syncing the segment file fails, or this
+	 *                                  journal is closed.
+	 * @throws IllegalArgumentException if the sequence number is greater than the
+	 *                                  last appended one.
+	 */
+	public void sync(long sequence) throws IOException, IllegalArgumentException {
+		if (syncedSequence.get() >= sequence) {
+			return;
+		}
+
+		synchronized (syncLock) {
+			// Another thread may have synced this sequence number while we waited.
+			if (syncedSequence.get() >= sequence) {
+				return;
+			}
+
+			FileChannel channel;
+			long target;
+			synchronized (this) {
+				if (segment == null) {
+					throw new IOException("This journal is closed!");
+				} else if (sequence > this.sequence) {
+					throw new IllegalArgumentException(String.format(
+							"Can't sync sequence number %d, the last appended one is %d!", sequence, this.sequence));
+				}
+				channel = segment;
+				target = this.sequence;
+			}
+
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException e) {
+				// Segments are synced before being closed.
+				if (syncedSequence.get() < sequence) {
+					throw e;
+				}
+				return;
+			}
+			syncedSequence.accumulateAndGet(target, Math::max);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the current json, and deletes the segments and
+	 * snapshots no longer required to restore it.
+	 * 
+	 * @throws IOException if writing the snapshot fails.
+	 */
+	public void snapshot() throws IOException {
+		synchronized (snapshotLock) {
+			long snapshot;
+			String json;
+			synchronized (this) {
+				if (segment == null) {
+					throw new IOException("This journal is closed!");
+				} else if (sequence == snapshotSequence) {
+					return;
+				}
+
+				snapshot = sequence;
+				json = state.toString();
+				closeSegment();
+				openSegment();
+				snapshotSequence = snapshot;
+			}
+
+			writeSnapshot(snapshot, json);
+			for (long older : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+				if (older < snapshot) {
+					Files.deleteIfExists(file(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+				}
+			}
+			for (long start : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+				if (start <= snapshot) {
+					Files.deleteIfExists(file(SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (segment != null) {
+			closeSegment();
+			segment = null;
+		}
+	}
+
+	/**
+	 * Writes a snapshot if at least snapshotInterval changes were appended since
+	 * the last one.
+	 * 
+	 * @param appended the sequence number of the last appended changes.
+	 * @throws IOException if writing the snapshot fails.
+	 */
+	private void snapshotIfNeeded(long appended) throws IOException {
+		boolean needed;
+		synchronized (this) {
+			needed = snapshotInterval > 0 && appended - snapshotSequence >= snapshotInterval;
+		}
+		if (needed) {
+			snapshot();
+		}
+	}
+
+	/**
+	 * Writes a record containing the given changes to the current segment.<br>
+	 * Has to be called while holding the lock of this journal.
+	 * 
+	 * @param changes the changes to write.
+	 * @return the sequence number of the written record.
+	 * @throws IOException if writing the record fails.
+	 */
+	private long write(JsonElement<K> changes) throws IOException {
+		if (segment == null) {
+			throw new IOException("This journal is closed!");
+		}
+		if (segment.size() >= segmentSize) {
+			closeSegment();
+			openSegment();
+		}
+
+		lastRecordStart = segment.size();
+		byte[] payload = changes.toString().getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+		record.putInt(payload.length);
+		record.putLong(sequence + 1);
+		record.putInt((int) crc.getValue());
+		record.put(payload);
+		record.flip();
+		while (record.hasRemaining()) {
+			segment.write(record);
+		}
+		return ++sequence;
+	}
+
+	/**
+	 * Syncs and closes the current segment.<br>
+	 * Has to be called while holding the lock of this journal.
+	 * 
+	 * @throws IOException if syncing or closing the segment fails.
+	 */
+	private void closeSegment() throws IOException {
+		segment.force(false);
+		syncedSequence.accumulateAndGet(sequence, Math::max);
+		segment.close();
+	}
+
+	/**
+	 * Creates a new segment, starting with the next sequence number.<br>
+	 * Has to be called while holding the lock of this journal.
+	 * 
+	 * @throws IOException if creating the segment fails.
+	 */
+	private void openSegment() throws IOException {
+		segment = FileChannel.open(file(SEGMENT_PREFIX, sequence + 1, SEGMENT_SUFFIX), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Applies the changes after the last snapshot from the given segment to the
+	 * current json.<br>
+	 * Truncates the segment after the last valid record, if it is the last one.
+	 * 
+	 * @param file the segment file to replay.
+	 * @param last whether this is the last segment.
+	 * @throws IOException    if reading the segment fails, or a segment other than
+	 *                        the last one is corrupted.
+	 * @throws ParseException if a logged change is invalid.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replay(Path file, boolean last) throws IOException, ParseException {
+		int valid = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			while (buffer.remaining() >= HEADER_SIZE) {
+				int length = buffer.getInt();
+				long recordSequence = buffer.getLong();
+				int checksum = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					break;
+				}
+
+				byte[] payload = new byte[length];
+				buffer.get(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+
+				valid = buffer.position();
+				if (recordSequence > sequence) {
+					JsonElement<K> changes = (JsonElement<K>) JsonParser.parseByteArray(payload, "UTF-8");
+					state.apply(changes);
+					sequence = recordSequence;
+				}
+			}
+
+			if (valid < channel.size() && !last) {
+				throw new IOException(String.format("The journal segment \"%s\" is corrupted!", file));
+			}
+		}
+
+		if (last) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				if (channel.size() > valid) {
+					channel.truncate(valid);
+					channel.force(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot using memory-mapped I/O.
+	 * 
+	 * @param file the snapshot file to read.
+	 * @return the json read from the snapshot.
+	 * @throws IOException    if reading the snapshot fails.
+	 * @throws ParseException if the snapshot is invalid.
+	 */
+	private static Object readSnapshot(Path file) throws IOException, ParseException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			JsonReader reader = new JsonReader(StandardCharsets.UTF_8.decode(buffer));
+			reader.next();
+			return reader.readTree();
+		}
+	}
+
+	/**
+	 * Writes a snapshot, and makes it durable before replacing an existing one.
+	 * 
+	 * @param snapshot the sequence number of the last change in the snapshot.
+	 * @param json     the json to write.
+	 * @throws IOException if writing the snapshot fails.
+	 */
+	private void writeSnapshot(long snapshot, String json) throws IOException {
+		Path temp = directory.resolve(SNAPSHOT_PREFIX + "tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = StandardCharsets.UTF_8.encode(json);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, file(SNAPSHOT_PREFIX, snapshot, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Gets the path of the journal file with the given prefix, sequence number and
+	 * suffix.
+	 * 
+	 * @param prefix   the prefix of the file name.
+	 * @param sequence the sequence number of the file.
+	 * @param suffix   the suffix of the file name.
+	 * @return the path of the file.
+	 */
+	private Path file(String prefix, long sequence, String suffix) {
+		return directory.resolve(String.format("%s%019d%s", prefix, sequence, suffix));
+	}
+
+	/**
+	 * Lists the sequence numbers of the journal files with the given prefix and
+	 * suffix.
+	 * 
+	 * @param prefix the prefix of the file names.
+	 * @param suffix the suffix of the file names.
+	 * @return the sorted sequence numbers.
+	 * @throws IOException if listing the directory fails.
+	 */
+	private List<Long> list(String prefix, String suffix) throws IOException {
+		List<Long> sequences = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					sequences.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+				} catch (NumberFormatException e) {
+					// Not a journal file.
+				}
+			}
+		}
+		Collections.sort(sequences);
+		return sequences;
+	}
+
+}
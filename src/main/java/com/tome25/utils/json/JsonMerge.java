@@ -0,0 +1,175 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deep merges layered {@link JsonObject JsonObjects}, like defaults, overrides
+ * of those defaults, and overrides of the overrides.<br>
+ * Objects existing in more than one layer are merged recursively. Conflicts
+ * between other values are resolved by a {@link ConflictPolicy}.<br>
+ * The merged object shares all values that aren't merged with the layers,
+ * rather than cloning them. So changes to these values, as well as to objects
+ * that only exist in one layer, affect the layers as well. The layers themselves
+ * are never modified.<br>
+ * Use a {@link JsonOverlay} to look up values through the layers without
+ * building a merged object at all.
+ * 
+ * @author ToMe25
+ */
+public final class JsonMerge {
+
+	/**
+	 * A {@link ConflictPolicy} using the value from the layer with the higher
+	 * priority.
+	 */
+	public static final ConflictPolicy OVERRIDE = (path, base, override) -> override;
+
+	/**
+	 * A {@link ConflictPolicy} keeping the value from the layer with the lower
+	 * priority.
+	 */
+	public static final ConflictPolicy KEEP = (path, base, override) -> base;
+
+	/**
+	 * A {@link ConflictPolicy} concatenating conflicting {@link JsonArray
+	 * JsonArrays} into a new array, and using the value from the layer with the
+	 * higher priority for all other conflicts.
+	 */
+	public static final ConflictPolicy CONCAT_ARRAYS = (path, base, override) -> {
+		if (base instanceof JsonArray && override instanceof JsonArray) {
+			JsonArray concatenated = new JsonArray();
+			concatenated.addAll((JsonArray) base);
+			concatenated.addAll((JsonArray) override);
+			return concatenated;
+		}
+		return override;
+	};
+
+	/**
+	 * JsonMerge only has static methods.
+	 */
+	private JsonMerge() {
+	}
+
+	/**
+	 * Deep merges the given objects, using the values from the override for all
+	 * conflicts.
+	 * 
+	 * @param base     the object with the lower priority.
+	 * @param override the object with the higher priority.
+	 * @return a new object containing the merged content.
+	 */
+	public static JsonObject merge(JsonObject base, JsonObject override) {
+		return merge(OVERRIDE, base, override);
+	}
+
+	/**
+	 * Deep merges the given objects.
+	 * 
+	 * @param base     the object with the lower priority.
+	 * @param override the object with the higher priority.
+	 * @param policy   the policy to resolve conflicts with.
+	 * @return a new object containing the merged content.
+	 */
+	public static JsonObject merge(JsonObject base, JsonObject override, ConflictPolicy policy) {
+		return merge(policy, base, override);
+	}
+
+	/**
+	 * Deep merges the given layers.<br>
+	 * The keys of the merged object are ordered by the first layer containing
+	 * them.
+	 * 
+	 * @param policy the policy to resolve conflicts with.
+	 * @param layers the objects to merge, from the lowest priority to the highest.
+	 * @return a new object containing the merged content.
+	 */
+	public static JsonObject merge(ConflictPolicy policy, JsonObject... layers) {
+		JsonObject merged = new JsonObject(new ShapedMap());
+		// The objects created by this merge, which can be modified in place.
+		Set<JsonObject> created = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (JsonObject layer : layers) {
+			mergeInto(merged, layer, policy, "", created);
+		}
+		return merged;
+	}
+
+	/**
+	 * Merges the given object into the given merge result.
+	 * 
+	 * @param target  the merge result to modify.
+	 * @param source  the object with the higher priority to merge into it.
+	 * @param policy  the policy to resolve conflicts with.
+	 * @param path    the JSON Pointer of the target.
+	 * @param created the objects created by this merge.
+	 */
+	private static void mergeInto(JsonObject target, JsonObject source, ConflictPolicy policy, String path,
+			Set<JsonObject> created) {
+		for (Map.Entry<String, Object> entry : source.entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
+			Object old = target.get(key);
+			if (old == null && !target.containsKey(key)) {
+				target.put(key, value);
+				continue;
+			}
+
+			String childPath = path + "/" + JsonPatch.escape(key);
+			if (old instanceof JsonObject && value instanceof JsonObject) {
+				JsonObject merged = (JsonObject) old;
+				if (!created.contains(merged)) {
+					merged = new JsonObject(new ShapedMap());
+					merged.putAll((JsonObject) old);
+					created.add(merged);
+					target.put(key, merged);
+				}
+				mergeInto(merged, (JsonObject) value, policy, childPath, created);
+			} else {
+				target.put(key, policy.resolve(childPath, old, value));
+			}
+		}
+	}
+
+	/**
+	 * A policy deciding the merged value for a key, if two layers contain values
+	 * for it that aren't both {@link JsonObject JsonObjects}.
+	 * 
+	 * @author ToMe25
+	 */
+	@FunctionalInterface
+	public interface ConflictPolicy {
+
+		/**
+		 * Resolves a conflict between two values.
+		 * 
+		 * @param path     the JSON Pointer of the conflicting values, like
+		 *                 {@code /a/b}.
+		 * @param base     the value from the layer with the lower priority.
+		 * @param override the value from the layer with the higher priority.
+		 * @return the merged value.
+		 */
+		Object resolve(String path, Object base, Object override);
+
+	}
+
+}
@@ -22,6 +22,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,6 +30,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.tome25.utils.General;
 import com.tome25.utils.StringUtils;
@@ -37,6 +41,10 @@ import com.tome25.utils.exception.InvalidTypeException;
 
 /**
  * A standard Json object, that can store stuff, and be converted to a string.
+ * <br>
+ * By default JsonObjects store their content in a compact map keeping its keys
+ * and values in arrays, which uses a lot less memory than a {@link HashMap} or
+ * {@link LinkedHashMap} for the small objects most jsons consist of.
  * 
  * @author ToMe25
  *
@@ -46,11 +54,38 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	private static final long serialVersionUID = 8864863917582360165L;
 	private Map<String, Object> content;
 
+	/**
+	 * Whether this JsonObject was made immutable using {@link #freeze()}.
+	 */
+	private transient boolean frozen;
+
+	/**
+	 * The cached hash code of this JsonObject. Only used while it is frozen.
+	 */
+	private transient int hash;
+
+	/**
+	 * The cached structural digest of this JsonObject. Only used while it is frozen.
+	 */
+	private transient long digest;
+
+	/**
+	 * The cached recursive size of this JsonObject, or -1 if it wasn't calculated
+	 * yet. Only used while it is frozen.
+	 */
+	private transient int recursiveSize = -1;
+
+	/**
+	 * The cached estimated memory footprint of this JsonObject, or -1 if it wasn't
+	 * estimated yet. Only used while it is frozen.
+	 */
+	private transient long footprint = -1;
+
 	/**
 	 * Creates a new empty JsonObject.
 	 */
 	public JsonObject() {
-		content = new LinkedHashMap<>();
+		content = new CompactMap();
 	}
 
 	/**
@@ -60,7 +95,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	 * @param value a value to add to the new JsonObject.
 	 */
 	public JsonObject(String key, Object value) {
-		content = new LinkedHashMap<>(1);
+		content = new CompactMap(1);
 		content.put(key, value);
 	}
 
@@ -73,7 +108,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	 * @param value2 a value for key2 to add to the new JsonObject.
 	 */
 	public JsonObject(String key1, Object value1, String key2, Object value2) {
-		content = new LinkedHashMap<>(2);
+		content = new CompactMap(2);
 		content.put(key1, value1);
 		content.put(key2, value2);
 	}
@@ -82,8 +117,8 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	 * Creates a new JsonObject and initializes it with the given content.
 	 * 
 	 * If the given {@link Map} implements {@link Cloneable} it will be used as the
-	 * internal map, if not a new {@link LinkedHashMap} will be used and the values
-	 * from content will be added to it.
+	 * internal map, if not a new compact map will be used and the values from
+	 * content will be added to it.
 	 * 
 	 * @param content the content for the new JsonObject.
 	 */
@@ -91,13 +126,14 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 		if (content instanceof Cloneable) {
 			this.content = content;
 		} else {
-			this.content = new LinkedHashMap<>(content.size());
+			this.content = new CompactMap(content.size());
 			this.content.putAll(content);
 		}
 	}
 
 	@Override
 	public Object add(String key, Object value) throws InvalidKeyException {
+		checkFrozen();
 		if (content.containsKey(key)) {
 			throw new InvalidKeyException(String.valueOf(key), "it exists already!");
 		} else {
@@ -116,6 +152,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	 */
 	@Override
 	public Object put(String key, Object value) {
+		checkFrozen();
 		return content.put(key, value);
 	}
 
@@ -127,6 +164,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	 */
 	@Override
 	public void putAll(Map<? extends String, ? extends Object> m) {
+		checkFrozen();
 		content.putAll(m);
 	}
 
@@ -147,6 +185,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	@Override
 	public Object remove(Object key) throws InvalidTypeException {
 		if (key instanceof String) {
+			checkFrozen();
 			return content.remove(key);
 		} else {
 			throw new InvalidTypeException("String", key.getClass().getSimpleName());
@@ -158,6 +197,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 		if (key) {
 			remove(o);
 		} else {
+			checkFrozen();
 			content.values().remove(o);
 		}
 	}
@@ -190,7 +230,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	 * @return this Jsons keys.
 	 */
 	public Set<String> getKeySet() {
-		return content.keySet();
+		return keySet();
 	}
 
 	@Override
@@ -237,7 +277,9 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 
 	@Override
 	public int size(boolean recursive) {
-		if (recursive) {
+		if (recursive && frozen && recursiveSize >= 0) {
+			return recursiveSize;
+		} else if (recursive) {
 			int size = 0;
 			for (Object key : content.keySet()) {
 				if (content.get(key) instanceof JsonElement) {
@@ -246,6 +288,9 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 					size++;
 				}
 			}
+			if (frozen) {
+				recursiveSize = size;
+			}
 			return size;
 		} else {
 			return content.size();
@@ -300,14 +345,39 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 			});
 		}
 		clone.content = contentClone;
+		clone.frozen = false;
+		clone.hash = 0;
+		clone.digest = 0;
+		clone.recursiveSize = -1;
+		clone.footprint = -1;
 		return clone;
 	}
 
 	@Override
 	public int hashCode() {
+		if (frozen && hash != 0) {
+			return hash;
+		}
+
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((content == null) ? 0 : content.hashCode());
+		if (frozen) {
+			hash = result;
+		}
+		return result;
+	}
+
+	@Override
+	public long digest() {
+		if (frozen && digest != 0) {
+			return digest;
+		}
+
+		long result = JsonDigest.ofMap(content);
+		if (frozen) {
+			digest = result;
+		}
 		return result;
 	}
 
@@ -319,10 +389,13 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 		if (obj == null) {
 			return false;
 		}
-		if (getClass() != obj.getClass()) {
+		if (contentClass(getClass()) != contentClass(obj.getClass())) {
 			return false;
 		}
 		JsonObject other = (JsonObject) obj;
+		if (frozen && other.frozen && digest() != other.digest()) {
+			return false;
+		}
 		if (content == null) {
 			if (other.content != null) {
 				return false;
@@ -333,14 +406,27 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 		return true;
 	}
 
+	/**
+	 * Gets the class to compare when checking whether two objects are equal.<br>
+	 * {@link JsonOverlay JsonOverlays} are compared by their resolved content, so
+	 * they can be equal to plain JsonObjects.
+	 * 
+	 * @param type the class of the object to compare.
+	 * @return the class to compare.
+	 */
+	private static Class<?> contentClass(Class<?> type) {
+		return type == JsonOverlay.class ? JsonObject.class : type;
+	}
+
 	@Override
 	public void clear() {
+		checkFrozen();
 		this.content.clear();
 	}
 
 	@Override
 	public Set<Entry<String, Object>> entrySet() {
-		return content.entrySet();
+		return frozen ? Collections.unmodifiableMap(content).entrySet() : content.entrySet();
 	}
 
 	@Override
@@ -350,19 +436,209 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 
 	@Override
 	public Set<String> keySet() {
-		return content.keySet();
+		return frozen ? Collections.unmodifiableMap(content).keySet() : content.keySet();
 	}
 
 	@Override
 	public Collection<Object> values() {
-		return content.values();
+		return frozen ? Collections.unmodifiableMap(content).values() : content.values();
 	}
 
+	/**
+	 * Returns an iterator over the keys of this Json, in the same order as
+	 * {@link #keySet()}.<br>
+	 * The iterator is a view of this object, not a copy of its keys. Removing a
+	 * key using {@link Iterator#remove()} removes it from this object, or throws
+	 * an {@link UnsupportedOperationException} if this object is frozen. Modifying
+	 * this object while iterating over it makes the iterator throw a
+	 * {@link java.util.ConcurrentModificationException}, unless this is a
+	 * {@link ConcurrentJsonObject}.
+	 * 
+	 * @return an iterator over the keys of this Json.
+	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public Iterator<Object> iterator() {
-		Set<Object> objectSet = new HashSet<Object>();
-		objectSet.addAll(keySet());
-		return objectSet.iterator();
+		// An iterator only returns elements, so an Iterator<String> is a valid
+		// Iterator<Object>.
+		return (Iterator<Object>) (Iterator<?>) keySet().iterator();
+	}
+
+	/**
+	 * Creates a {@link Spliterator} over the entries of this Json, that splits
+	 * the entries into halves of roughly equal size.<br>
+	 * The returned entries are immutable. This Json must not be modified while
+	 * using the spliterator.
+	 * 
+	 * @return a new spliterator over the entries of this Json.
+	 */
+	public Spliterator<Entry<String, Object>> entrySpliterator() {
+		return JsonSpliterators.entries(content, frozen);
+	}
+
+	/**
+	 * Creates a {@link Stream} of the entries of this Json.
+	 * 
+	 * @param parallel whether the stream should be parallel.
+	 * @return a new stream of the entries of this Json.
+	 * @see #entrySpliterator()
+	 */
+	public Stream<Entry<String, Object>> entryStream(boolean parallel) {
+		return StreamSupport.stream(entrySpliterator(), parallel);
+	}
+
+	/**
+	 * Gets the map storing the content of this Json, for the {@link JsonWalker}.
+	 * 
+	 * @return the internal map of this Json.
+	 */
+	Map<String, Object> getContent() {
+		return content;
+	}
+
+	@Override
+	public boolean supportsFreeze() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * Checks whether all elements inside this object can be frozen before
+	 * freezing any of them, so a failed freeze doesn't change anything.
+	 */
+	@Override
+	public JsonObject freeze() throws UnsupportedOperationException {
+		if (!frozen) {
+			checkFreezable(this);
+			freezeTree();
+		}
+		return this;
+	}
+
+	/**
+	 * Freezes this object and all elements inside it, without checking whether
+	 * they can be frozen first.
+	 */
+	void freezeTree() {
+		if (!frozen) {
+			for (Object value : content.values()) {
+				JsonObject.freezeTree(value);
+			}
+			frozen = true;
+		}
+	}
+
+	/**
+	 * Freezes the given value, if it is a json element, without checking whether
+	 * the elements inside it can be frozen first.
+	 * 
+	 * @param value the value to freeze.
+	 */
+	static void freezeTree(Object value) {
+		if (value instanceof JsonObject) {
+			((JsonObject) value).freezeTree();
+		} else if (value instanceof JsonArray) {
+			((JsonArray) value).freezeTree();
+		} else if (value instanceof JsonElement) {
+			((JsonElement<?>) value).freeze();
+		}
+	}
+
+	/**
+	 * Checks whether the given value, and all json elements inside it that aren't
+	 * frozen yet, can be frozen.
+	 * 
+	 * @param value the value to check.
+	 * @throws UnsupportedOperationException if the value contains an element that
+	 *                                       can't be frozen.
+	 */
+	static void checkFreezable(Object value) throws UnsupportedOperationException {
+		if (!(value instanceof JsonElement) || ((JsonElement<?>) value).isFrozen()) {
+			return;
+		}
+
+		JsonElement<?> element = (JsonElement<?>) value;
+		if (!element.supportsFreeze()) {
+			throw new UnsupportedOperationException(
+					String.format("%ss can't be frozen!", element.getClass().getSimpleName()));
+		} else if (element instanceof JsonObject) {
+			for (Object child : ((JsonObject) element).content.values()) {
+				checkFreezable(child);
+			}
+		} else if (element instanceof JsonArray && ((JsonArray) element).getPrimitiveType() == null) {
+			for (Object child : (JsonArray) element) {
+				checkFreezable(child);
+			}
+		}
+	}
+
+	@Override
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	@Override
+	public JsonObject compact() {
+		JsonCompactor.getDefault().compact(this);
+		return this;
+	}
+
+	@Override
+	public long estimateSize() {
+		if (frozen && footprint >= 0) {
+			return footprint;
+		}
+
+		long size = JsonFootprint.retained(this);
+		if (frozen) {
+			footprint = size;
+		}
+		return size;
+	}
+
+	@Override
+	public long estimateShallowSize() {
+		return JsonFootprint.shallow(this);
+	}
+
+	/**
+	 * Replaces the values of this object with their canonical instances from the
+	 * given compactor, and adds the json elements inside it to the given queue.
+	 * <br>
+	 * Doesn't change the content of this object, so this is done for frozen
+	 * objects as well.
+	 * 
+	 * @param compactor the compactor to get the canonical values from.
+	 * @param queue     the queue of elements to compact next.
+	 * @param trim      whether the storage of this object should be shrunk to its
+	 *                  size.
+	 */
+	void compact(JsonCompactor compactor, Collection<JsonElement<?>> queue, boolean trim) {
+		footprint = -1;
+		for (Map.Entry<String, Object> entry : content.entrySet()) {
+			Object value = entry.getValue();
+			Object canonical = compactor.canonicalize(value, queue);
+			if (canonical != value) {
+				entry.setValue(canonical);
+			}
+		}
+
+		if (trim && content instanceof ShapedMap) {
+			((ShapedMap) content).trimToSize();
+		} else if (trim && content instanceof CompactMap) {
+			((CompactMap) content).trimToSize();
+		}
+	}
+
+	/**
+	 * Throws an {@link UnsupportedOperationException} if this JsonObject is frozen.
+	 * 
+	 * @throws UnsupportedOperationException if this JsonObject is frozen.
+	 */
+	private void checkFrozen() throws UnsupportedOperationException {
+		if (frozen) {
+			throw new UnsupportedOperationException("This JsonObject is frozen!");
+		}
 	}
 
 	@Override
@@ -379,13 +655,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	public JsonObject changes(JsonElement<String> from, boolean recursive) {
 		JsonObject last = (JsonObject) from;
 		JsonObject changes = new JsonObject();
-		HashMap<String, Object> lastContentCopy;
-		if (last.content instanceof HashMap) {
-			lastContentCopy = (HashMap<String, Object>) last.content;
-		} else {
-			lastContentCopy = new HashMap<>(last.content.size());
-			lastContentCopy.putAll(last.content);
-		}
+		Map<String, Object> lastContentCopy = lookupMap(last.content);
 
 		content.forEach((key, value) -> {
 			try {
@@ -420,13 +690,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 			}
 		});
 
-		HashMap<String, Object> contentCopy;
-		if (content instanceof HashMap) {
-			contentCopy = (HashMap<String, Object>) content;
-		} else {
-			contentCopy = new HashMap<>(content.size());
-			contentCopy.putAll(content);
-		}
+		Map<String, Object> contentCopy = lookupMap(content);
 		last.content.keySet().forEach(key -> {
 			if (!contentCopy.containsKey(key)) {
 				changes.content.put(key, null);
@@ -444,13 +708,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 	public JsonObject reconstruct(JsonElement<String> from, boolean recursive) {
 		JsonObject last = (JsonObject) from;
 		JsonObject reconstructed = new JsonObject();
-		HashMap<String, Object> lastContentCopy;
-		if (last.content instanceof HashMap) {
-			lastContentCopy = (HashMap<String, Object>) last.content;
-		} else {
-			lastContentCopy = new HashMap<>(last.content.size());
-			lastContentCopy.putAll(last.content);
-		}
+		Map<String, Object> lastContentCopy = lookupMap(last.content);
 
 		content.forEach((key, value) -> {
 			try {
@@ -492,13 +750,7 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 			}
 		});
 
-		HashMap<String, Object> contentCopy;
-		if (content instanceof HashMap) {
-			contentCopy = (HashMap<String, Object>) content;
-		} else {
-			contentCopy = new HashMap<>(content.size());
-			contentCopy.putAll(content);
-		}
+		Map<String, Object> contentCopy = lookupMap(content);
 		last.content.forEach((key, value) -> {
 			if (!contentCopy.containsKey(key)) {
 				if (value instanceof JsonElement && ((JsonElement<?>) value).supportsClone()) {
@@ -517,8 +769,98 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 		return reconstructed;
 	}
 
+	@Override
+	public JsonObject reconstruct(JsonElement<String> from, boolean recursive, boolean shareUnchanged) {
+		if (!shareUnchanged) {
+			return reconstruct(from, recursive);
+		}
+
+		JsonObject reconstructed = ((JsonObject) from).clone(false);
+		reconstructed.applyChanges(this, recursive, false);
+		return reconstructed;
+	}
+
+	@Override
+	public JsonObject apply(JsonElement<String> changes, boolean recursive) throws UnsupportedOperationException {
+		checkFrozen();
+		applyChanges((JsonObject) changes, recursive, true);
+		return this;
+	}
+
+	/**
+	 * Combines these changes and the given changes made after them into a single
+	 * changes object.<br>
+	 * Only the values changed by both are combined, all other values are copied
+	 * from the changes that contain them.
+	 * 
+	 * @param from the JsonObject these changes were created from. Only read to
+	 *             tell changes of json elements from values replacing them.
+	 * @param next the changes made after these changes.
+	 * @return a new JsonObject containing the combined changes.
+	 */
+	@Override
+	public JsonObject compose(JsonElement<String> from, JsonElement<String> next) {
+		JsonObject base = (JsonObject) from;
+		JsonObject later = (JsonObject) next;
+		JsonObject composed = new JsonObject();
+		content.forEach((key, value) -> {
+			if (!later.containsKey(key)) {
+				composed.content.put(key, JsonChanges.copy(value));
+			}
+		});
+
+		later.content.forEach((key, value) -> {
+			if (!content.containsKey(key)) {
+				composed.content.put(key, JsonChanges.copy(value));
+			} else if (value == null) {
+				// Keys added by these changes and removed by the next ones never existed.
+				if (base.containsKey(key)) {
+					composed.content.put(key, null);
+				}
+			} else {
+				Object result = JsonChanges.compose(base.get(key), content.get(key), value);
+				if (!base.containsKey(key) || !result.equals(base.get(key))) {
+					composed.content.put(key, result);
+				}
+			}
+		});
+		return composed;
+	}
+
+	/**
+	 * Applies the given changes to this object.
+	 * 
+	 * @param changes   the changes to apply.
+	 * @param recursive whether changes of json elements should be applied to them,
+	 *                  or the changes should replace the json elements.
+	 * @param inPlace   whether changed json elements should be modified, rather
+	 *                  than replaced with new elements sharing their unchanged
+	 *                  values.
+	 */
+	private void applyChanges(JsonObject changes, boolean recursive, boolean inPlace) {
+		for (Entry<String, Object> change : changes.entrySet()) {
+			String key = change.getKey();
+			Object value = change.getValue();
+			if (!containsKey(key)) {
+				put(key, JsonChanges.copy(value));
+				continue;
+			}
+
+			Object current = get(key);
+			if (value == null) {
+				remove(key);
+			} else if (!value.equals(current)) {
+				Object result = JsonChanges.apply(current, value, recursive, inPlace);
+				if (result != current) {
+					put(key, result);
+				}
+			}
+		}
+	}
+
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		checkFrozen();
 		int entries = in.readInt();
 		for (int i = 0; i < entries; i++) {
 			String key = in.readUTF();
@@ -558,13 +900,15 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 				}
 			});
 		} else {
+			Set<Object> values = new HashSet<Object>(content.values());
+			Set<Object> otherValues = new HashSet<Object>(o.values());
 			content.values().forEach((value) -> {
-				if (!o.containsValue(value)) {
+				if (!otherValues.contains(value)) {
 					diffs1.add(value);
 				}
 			});
 			o.values().forEach((value) -> {
-				if (!content.values().contains(value)) {
+				if (!values.contains(value)) {
 					diffs2.add(value);
 				}
 			});
@@ -586,6 +930,25 @@ public class JsonObject implements JsonElement<String>, Map<String, Object>, Clo
 		return difference[0];
 	}
 
+	/**
+	 * Gets a map with the same content as the given map, that has fast key
+	 * lookups.<br>
+	 * Returns the given map itself if it is a {@link HashMap}, a compact map or a
+	 * shaped map, and a {@link HashMap} copy of it otherwise.
+	 * 
+	 * @param map the map to get a fast lookup map for.
+	 * @return a map with fast key lookups.
+	 */
+	private static Map<String, Object> lookupMap(Map<String, Object> map) {
+		if (map instanceof HashMap || map instanceof CompactMap || map instanceof ShapedMap) {
+			return map;
+		} else {
+			Map<String, Object> copy = new HashMap<>(map.size());
+			copy.putAll(map);
+			return copy;
+		}
+	}
+
 	/**
 	 * Compares the two given objects if they implement {@link Comparable}, and are
 	 * compatible types.<br>
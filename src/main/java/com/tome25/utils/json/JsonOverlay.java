@@ -0,0 +1,347 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only {@link JsonObject} view looking up its values through a stack of
+ * layers, without building a merged object.<br>
+ * The value for a key is the value from the highest priority layer containing
+ * it. If that value is a {@link JsonObject}, and lower priority layers contain
+ * objects for that key as well, the value is another overlay of these objects.
+ * <br>
+ * The result is the same as merging the layers using
+ * {@link JsonMerge#merge(JsonMerge.ConflictPolicy, JsonObject...)} with the
+ * {@link JsonMerge#OVERRIDE} policy, but lookups reflect later changes to the
+ * layers. Lookups take time proportional to the number of layers. Nested
+ * overlays are created on every lookup, so frequently read trees should be
+ * merged instead.<br>
+ * Overlays can't be modified or frozen. Cloning or serializing an overlay
+ * creates a merged {@link JsonObject}.<br>
+ * Overlays are equal to any other overlay or plain {@link JsonObject} with the
+ * same resolved content.
+ * 
+ * @author ToMe25
+ */
+public class JsonOverlay extends JsonObject {
+
+	private static final long serialVersionUID = 2140745062218873615L;
+	private final OverlayMap content;
+
+	/**
+	 * Creates a new JsonOverlay over the given layers.
+	 * 
+	 * @param layers the objects to look up values in, from the lowest priority to
+	 *               the highest.
+	 */
+	public JsonOverlay(JsonObject... layers) {
+		this(new OverlayMap(layers.clone()));
+	}
+
+	/**
+	 * Creates a new JsonOverlay using the given map.
+	 * 
+	 * @param content the map to read the content of the new overlay from.
+	 */
+	private JsonOverlay(OverlayMap content) {
+		super(content);
+		this.content = content;
+	}
+
+	/**
+	 * Gets the layers of this overlay.
+	 * 
+	 * @return an unmodifiable list of the layers, from the lowest priority to the
+	 *         highest.
+	 */
+	public List<JsonObject> getLayers() {
+		return Collections.unmodifiableList(Arrays.asList(content.layers));
+	}
+
+	/**
+	 * Creates a new {@link JsonObject} containing the merged content of the
+	 * layers of this overlay.<br>
+	 * Values that don't have to be merged are shared with the layers.
+	 * 
+	 * @return the merged content of this overlay.
+	 */
+	public JsonObject snapshot() {
+		return JsonMerge.merge(JsonMerge.OVERRIDE, content.layers);
+	}
+
+	@Override
+	public boolean supportsFreeze() {
+		return false;
+	}
+
+	/**
+	 * JsonOverlays can't be frozen, use {@link #snapshot()} to get an object that
+	 * can be frozen instead.
+	 * 
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public JsonObject freeze() throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("JsonOverlays can't be frozen!");
+	}
+
+	@Override
+	void compact(JsonCompactor compactor, Collection<JsonElement<?>> queue, boolean trim) {
+		// The layers have to be compacted themselves.
+	}
+
+	/**
+	 * Estimates the memory used by this overlay and all of its layers.
+	 * 
+	 * @return the estimated size of this overlay in bytes.
+	 */
+	@Override
+	public long estimateSize() {
+		long size = estimateShallowSize();
+		for (JsonObject layer : content.layers) {
+			size += layer.estimateSize();
+		}
+		return size;
+	}
+
+	@Override
+	public long estimateShallowSize() {
+		return JsonFootprint.object(2, 25) + JsonFootprint.object(4, 0)
+				+ JsonFootprint.array(content.layers.length, JsonFootprint.getReferenceSize());
+	}
+
+	@Override
+	public JsonObject clone() {
+		return clone(true);
+	}
+
+	/**
+	 * Creates a merged {@link JsonObject} containing the content of this overlay.
+	 * 
+	 * @param recursive whether the values should be cloned as well.
+	 * @return the merged content of this overlay.
+	 */
+	@Override
+	public JsonObject clone(boolean recursive) {
+		JsonObject merged = snapshot();
+		return recursive ? merged.clone(true) : merged;
+	}
+
+	/**
+	 * Replaces this overlay with its merged content when serializing it.
+	 * 
+	 * @return the object to serialize instead of this overlay.
+	 * @throws ObjectStreamException never.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return snapshot();
+	}
+
+	/**
+	 * The {@link Map} looking up the content of a {@link JsonOverlay} in its
+	 * layers.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class OverlayMap extends AbstractMap<String, Object> implements Cloneable {
+
+		/**
+		 * The layers to look up values in, from the lowest priority to the highest.
+		 */
+		private final JsonObject[] layers;
+
+		/**
+		 * The cached entry set view of this map.
+		 */
+		private Set<Entry<String, Object>> entrySet;
+
+		/**
+		 * Creates a new OverlayMap.
+		 * 
+		 * @param layers the layers to look up values in.
+		 */
+		public OverlayMap(JsonObject[] layers) {
+			this.layers = layers;
+		}
+
+		/**
+		 * Gets the index of the highest priority layer below the given one
+		 * containing the given key.
+		 * 
+		 * @param key   the key to look for.
+		 * @param below the layer to start below.
+		 * @return the index of the layer, or -1 if none contains the key.
+		 */
+		private int layerOf(Object key, int below) {
+			for (int i = below - 1; i >= 0; i--) {
+				if (layers[i].containsKey(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public Object get(Object key) {
+			int layer = layerOf(key, layers.length);
+			if (layer < 0) {
+				return null;
+			}
+
+			Object value = layers[layer].get(key);
+			if (!(value instanceof JsonObject)) {
+				return value;
+			}
+
+			List<JsonObject> objects = null;
+			for (int i = layerOf(key, layer); i >= 0; i = layerOf(key, i)) {
+				Object lower = layers[i].get(key);
+				if (!(lower instanceof JsonObject)) {
+					// Values that aren't objects hide all lower layers.
+					break;
+				}
+				if (objects == null) {
+					objects = new ArrayList<>();
+				}
+				objects.add((JsonObject) lower);
+			}
+
+			if (objects == null) {
+				return value;
+			}
+			Collections.reverse(objects);
+			objects.add((JsonObject) value);
+			return new JsonOverlay(objects.toArray(new JsonObject[objects.size()]));
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return layerOf(key, layers.length) >= 0;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			if (entrySet == null) {
+				entrySet = new EntrySet();
+			}
+			return entrySet;
+		}
+
+		@Override
+		public OverlayMap clone() {
+			return new OverlayMap(layers);
+		}
+
+		/**
+		 * The entry set view of an {@link OverlayMap}.
+		 * 
+		 * @author ToMe25
+		 */
+		private class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				int size = 0;
+				for (Iterator<Entry<String, Object>> it = iterator(); it.hasNext(); it.next()) {
+					size++;
+				}
+				return size;
+			}
+
+		}
+
+		/**
+		 * The iterator over the entries of an {@link OverlayMap}.<br>
+		 * Returns the keys of the lowest priority layer first, followed by the keys
+		 * of higher priority layers that no lower layer contains.
+		 * 
+		 * @author ToMe25
+		 */
+		private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+			/**
+			 * The index of the layer whose keys are currently iterated.
+			 */
+			private int layer = -1;
+
+			/**
+			 * The iterator over the keys of the current layer.
+			 */
+			private Iterator<String> keys = Collections.emptyIterator();
+
+			/**
+			 * The next key to return.
+			 */
+			private String next;
+
+			/**
+			 * Whether {@link #next} is a key that wasn't returned yet.
+			 */
+			private boolean hasNext;
+
+			@Override
+			public boolean hasNext() {
+				while (!hasNext) {
+					while (!keys.hasNext()) {
+						if (++layer >= layers.length) {
+							return false;
+						}
+						keys = layers[layer].keySet().iterator();
+					}
+
+					String key = keys.next();
+					if (layerOf(key, layer) < 0) {
+						next = key;
+						hasNext = true;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public Entry<String, Object> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				hasNext = false;
+				return new SimpleImmutableEntry<>(next, get(next));
+			}
+
+		}
+
+	}
+
+}
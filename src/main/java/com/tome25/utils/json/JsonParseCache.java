@@ -0,0 +1,376 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache for parsed json documents, so that byte identical documents only
+ * have to be parsed once.<br>
+ * Documents are identified by a 64 bit hash of their bytes and their length.
+ * Hits are verified against a copy of the cached bytes, so hash collisions
+ * can't return a wrong document.<br>
+ * The cache is limited both by the number of documents, and by their total
+ * weight, which is the length of their bytes. When full, the least recently
+ * used document is evicted. A frequency sketch of recently requested documents
+ * makes sure that documents that are only requested once don't replace
+ * documents that are requested more often(TinyLFU admission).<br>
+ * The returned {@link JsonElement JsonElements} are {@link JsonElement#freeze()
+ * frozen}, since they are shared between all callers. Use
+ * {@link JsonElement#clone()} to get a modifiable copy.<br>
+ * This class is thread safe. Parsing happens outside of the lock, so multiple
+ * threads can parse different documents at the same time.
+ * 
+ * @author ToMe25
+ */
+public class JsonParseCache {
+
+	/**
+	 * The max number of cached documents.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The max total weight of the cached documents.
+	 */
+	private final long maxWeight;
+
+	/**
+	 * The cached documents, in access order.
+	 */
+	private final LinkedHashMap<Key, JsonElement<?>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The sketch estimating how often documents were requested recently.
+	 */
+	private final FrequencySketch sketch;
+
+	/**
+	 * The total weight of the cached documents.
+	 */
+	private long weight;
+
+	/**
+	 * The number of requests that were answered from this cache.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * The number of requests for which the document had to be parsed.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * The number of documents that were removed to make space for others.
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a new JsonParseCache.
+	 * 
+	 * @param maxEntries the max number of cached documents.
+	 * @param maxWeight  the max total size of the cached documents in bytes.
+	 * @throws IllegalArgumentException if one of the limits isn't positive.
+	 */
+	public JsonParseCache(int maxEntries, long maxWeight) throws IllegalArgumentException {
+		if (maxEntries <= 0 || maxWeight <= 0) {
+			throw new IllegalArgumentException("The cache limits have to be positive!");
+		}
+
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		sketch = new FrequencySketch(maxEntries);
+	}
+
+	/**
+	 * Parses the given byte array using {@link JsonParser#parseByteArray(byte[])},
+	 * or returns the cached result of parsing an identical byte array.
+	 * 
+	 * @param json the json document to parse.
+	 * @return the frozen {@link JsonElement} parsed from the given bytes.
+	 * @throws ParseException if the json is invalid.
+	 */
+	public JsonElement<?> parseByteArray(byte[] json) throws ParseException {
+		Key key = new Key(JsonDigest.ofBytes(json), json);
+		synchronized (this) {
+			sketch.increment(key.hash);
+			JsonElement<?> cached = entries.get(key);
+			if (cached != null) {
+				hits.increment();
+				return cached;
+			}
+		}
+
+		misses.increment();
+		JsonElement<?> element = JsonParser.parseByteArray(json);
+		if (element.supportsFreeze()) {
+			element.freeze();
+			if (json.length <= maxWeight) {
+				element = admit(new Key(key.hash, json.clone()), element);
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * Adds the given element to this cache, if its document was requested often
+	 * enough to replace the documents that would have to be evicted for it.
+	 * 
+	 * @param key     the key of the document.
+	 * @param element the parsed document.
+	 * @return the element to return. Either the given element, or an identical
+	 *         element cached by another thread.
+	 */
+	private synchronized JsonElement<?> admit(Key key, JsonElement<?> element) {
+		JsonElement<?> existing = entries.get(key);
+		if (existing != null) {
+			return existing;
+		}
+
+		// Find all victims first, so that nothing is evicted if one of them wins.
+		int frequency = sketch.frequency(key.hash);
+		int victims = 0;
+		long freed = 0;
+		Iterator<Entry<Key, JsonElement<?>>> iterator = entries.entrySet().iterator();
+		while (entries.size() - victims >= maxEntries || weight - freed + key.bytes.length > maxWeight) {
+			Key victim = iterator.next().getKey();
+			if (frequency <= sketch.frequency(victim.hash)) {
+				return element;
+			}
+
+			victims++;
+			freed += victim.bytes.length;
+		}
+
+		iterator = entries.entrySet().iterator();
+		for (int i = 0; i < victims; i++) {
+			iterator.next();
+			iterator.remove();
+			evictions.increment();
+		}
+		weight -= freed;
+
+		entries.put(key, element);
+		weight += key.bytes.length;
+		return element;
+	}
+
+	/**
+	 * Removes all documents from this cache.<br>
+	 * Doesn't reset the statistics.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Gets the number of cached documents.
+	 * 
+	 * @return the number of documents in this cache.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the total weight of the cached documents.
+	 * 
+	 * @return the total length of the cached documents in bytes.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Gets the number of requests that were answered from this cache.
+	 * 
+	 * @return the number of cache hits.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of requests for which the document had to be parsed.
+	 * 
+	 * @return the number of cache misses.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the number of documents that were removed to make space for other
+	 * documents.
+	 * 
+	 * @return the number of evictions.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Gets the ratio of requests that were answered from this cache.
+	 * 
+	 * @return the hit rate, or 0 if there were no requests yet.
+	 */
+	public double getHitRate() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * The key identifying a json document.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Key {
+
+		/**
+		 * The 64 bit hash of the bytes of the document.
+		 */
+		private final long hash;
+
+		/**
+		 * The bytes of the document.
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * Creates a new Key.
+		 * 
+		 * @param hash  the hash of the bytes.
+		 * @param bytes the bytes of the document.
+		 */
+		Key(long hash, byte[] bytes) {
+			this.hash = hash;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hash ^ hash >>> 32);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return hash == other.hash && bytes.length == other.bytes.length && Arrays.equals(bytes, other.bytes);
+		}
+
+	}
+
+	/**
+	 * A count-min sketch of 4 bit counters, estimating how often a document was
+	 * requested recently.<br>
+	 * All counters are halved periodically, so that documents that were popular
+	 * a long time ago don't stay cached forever.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class FrequencySketch {
+
+		/**
+		 * The seeds used to derive the four counter indices of a hash.
+		 */
+		private static final long[] SEEDS = { 0x97CB3127C9B2FB43L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL,
+				0xCBF29CE484222325L };
+
+		/**
+		 * The counters, sixteen per long.
+		 */
+		private final long[] table;
+
+		/**
+		 * The number of increments after which all counters are halved.
+		 */
+		private final int sampleSize;
+
+		/**
+		 * The number of increments since the last reset.
+		 */
+		private int additions;
+
+		/**
+		 * Creates a new FrequencySketch.
+		 * 
+		 * @param maxEntries the max number of entries of the cache using the sketch.
+		 */
+		FrequencySketch(int maxEntries) {
+			int size = Integer.highestOneBit(Math.max(Math.min(maxEntries, 1 << 24), 8) - 1) << 1;
+			table = new long[size];
+			sampleSize = size * 10;
+		}
+
+		/**
+		 * Estimates how often the document with the given hash was requested.
+		 * 
+		 * @param hash the hash of the document.
+		 * @return the estimated number of requests, up to 15.
+		 */
+		int frequency(long hash) {
+			int frequency = 15;
+			for (long seed : SEEDS) {
+				long index = JsonDigest.mix(hash + seed);
+				int shift = (int) (index >>> 60) << 2;
+				frequency = Math.min(frequency, (int) (table[(int) index & table.length - 1] >>> shift) & 0xF);
+			}
+			return frequency;
+		}
+
+		/**
+		 * Records a request for the document with the given hash.
+		 * 
+		 * @param hash the hash of the document.
+		 */
+		void increment(long hash) {
+			boolean added = false;
+			for (long seed : SEEDS) {
+				long index = JsonDigest.mix(hash + seed);
+				int shift = (int) (index >>> 60) << 2;
+				int slot = (int) index & table.length - 1;
+				if ((table[slot] >>> shift & 0xF) < 15) {
+					table[slot] += 1L << shift;
+					added = true;
+				}
+			}
+
+			if (added && ++additions >= sampleSize) {
+				for (int i = 0; i < table.length; i++) {
+					table[i] = table[i] >>> 1 & 0x7777777777777777L;
+				}
+				additions /= 2;
+			}
+		}
+
+	}
+
+}
@@ -24,7 +24,11 @@ import java.text.ParseException;
 import java.util.Stack;
 
 /**
- * A parser to convert strings to {@link JsonObject}s and {@link JsonArray}s.
+ * A parser to convert strings to {@link JsonObject}s and {@link JsonArray}s.<br>
+ * {@link JsonArray JsonArrays} only containing Integers, Longs, Doubles or
+ * Booleans store their values in a primitive array.<br>
+ * {@link JsonObject JsonObjects} with the same keys in the same order share a
+ * single immutable key index, and only store their values themselves.
  * 
  * @author ToMe25
  *
@@ -52,7 +56,7 @@ public class JsonParser {
 		str = str.trim();
 		if (str.charAt(0) == '{') {
 			if (str.contains("}")) {
-				JsonObject json = new JsonObject();
+				JsonObject json = new JsonObject(new ShapedMap());
 				str = str.substring(1, str.lastIndexOf("}"));
 
 				int index = 0;
@@ -128,6 +132,9 @@ public class JsonParser {
 	 * they are too big(or too small) to be a integer, and as an integer in any
 	 * other case.
 	 * 
+	 * The parsed elements are stored as described in the {@link JsonParser class
+	 * documentation}.
+	 * 
 	 * WARNING: This method may not be safe, over the time i worked on it before
 	 * adding it to this library there were multiple characters that could make it
 	 * crash or break out of string values, though i know of none with this version.
@@ -151,6 +158,9 @@ public class JsonParser {
 	 * they are too big(or too small) to be a integer, and as an integer in any
 	 * other case.
 	 * 
+	 * The parsed elements are stored as described in the {@link JsonParser class
+	 * documentation}.
+	 * 
 	 * WARNING: This method may not be safe, over the time i worked on it before
 	 * adding it to this library there were multiple characters that could make it
 	 * crash or break out of string values, though i know of none with this version.
@@ -174,6 +184,9 @@ public class JsonParser {
 	 * they are too big(or too small) to be a integer, and as an integer in any
 	 * other case.
 	 * 
+	 * The parsed elements are stored as described in the {@link JsonParser class
+	 * documentation}.
+	 * 
 	 * WARNING: This method may not be safe, over the time i worked on it before
 	 * adding it to this library there were multiple characters that could make it
 	 * crash or break out of string values, though i know of none with this version.
@@ -209,6 +222,9 @@ public class JsonParser {
 	 * they are too big(or too small) to be a integer, and as an integer in any
 	 * other case.
 	 * 
+	 * The parsed elements are stored as described in the {@link JsonParser class
+	 * documentation}.
+	 * 
 	 * WARNING: This method may not be safe, over the time i worked on it before
 	 * adding it to this library there were multiple characters that could make it
 	 * crash or break out of string values, though i know of none with this version.
@@ -230,7 +246,7 @@ public class JsonParser {
 		int offset = 0;
 		for (char c : charArr) {
 			if (c == '{') {
-				json = new JsonObject();
+				json = new JsonObject(new ShapedMap());
 				break;
 			} else if (c == '[') {
 				json = new JsonArray();
@@ -250,7 +266,7 @@ public class JsonParser {
 					buffer.append(c);
 				} else {
 					parsing.push(json);
-					subjson = new JsonObject();
+					subjson = new JsonObject(new ShapedMap());
 					if (json instanceof JsonArray) {
 						((JsonArray) json).add(subjson);
 					} else {
@@ -482,7 +498,7 @@ public class JsonParser {
 		}
 
 		if (json instanceof JsonArray) {
-			((JsonArray) json).add(result);
+			((JsonArray) json).addParsed(result);
 		} else {
 			if (key == null) {
 				throw createParseException(String.format("Missing key for value \"%s\" in json '%%s'!", buf), charArr,
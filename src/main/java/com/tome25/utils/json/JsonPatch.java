@@ -0,0 +1,894 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import com.tome25.utils.exception.InvalidKeyException;
+
+/**
+ * Creates and applies standard JSON Patch(RFC 6902) and JSON Merge Patch(RFC
+ * 7386) documents, so changes can be exchanged with other systems without
+ * converting them from or to the format of
+ * {@link JsonElement#changes(JsonElement)}.<br>
+ * Patches are applied in place, modifying the given target json. Applying a
+ * patch is atomic, if one of its operations fails, all changes made by the
+ * patch are rolled back before the exception is thrown.<br>
+ * Paths are JSON Pointers(RFC 6901), like {@code /a/0/b}.
+ * 
+ * @author ToMe25
+ */
+public class JsonPatch {
+
+	/**
+	 * Creates a JSON Patch turning the given source json into the given target
+	 * json.<br>
+	 * Objects are compared key by key, and arrays using the same diff as
+	 * {@link JsonArray#changes(JsonElement)}, including moved values.
+	 * 
+	 * @param source the json before the changes.
+	 * @param target the json after the changes.
+	 * @return a new {@link JsonArray} containing the patch operations.
+	 */
+	public static JsonArray create(Object source, Object target) {
+		JsonArray patch = new JsonArray();
+		if (!Objects.equals(source, target)) {
+			diff(source, target, "", patch);
+		}
+		return patch;
+	}
+
+	/**
+	 * Adds the operations turning the given source into the given target, which
+	 * aren't equal, to the given patch.
+	 * 
+	 * @param source the value before the changes.
+	 * @param target the value after the changes.
+	 * @param path   the pointer to the value.
+	 * @param patch  the patch to add the operations to.
+	 */
+	private static void diff(Object source, Object target, String path, JsonArray patch) {
+		if (source instanceof JsonObject && target instanceof JsonObject) {
+			JsonObject sourceObject = (JsonObject) source;
+			JsonObject targetObject = (JsonObject) target;
+			for (String key : sourceObject.keySet()) {
+				if (!targetObject.containsKey(key)) {
+					patch.add(new JsonObject("op", "remove", "path", path + '/' + escape(key)));
+				}
+			}
+
+			for (Entry<String, Object> entry : targetObject.entrySet()) {
+				String childPath = path + '/' + escape(entry.getKey());
+				if (!sourceObject.containsKey(entry.getKey())) {
+					patch.add(operation("add", childPath, JsonChanges.copy(entry.getValue())));
+				} else {
+					Object sourceValue = sourceObject.get(entry.getKey());
+					if (!Objects.equals(sourceValue, entry.getValue())) {
+						diff(sourceValue, entry.getValue(), childPath, patch);
+					}
+				}
+			}
+		} else if (source instanceof JsonArray && target instanceof JsonArray) {
+			List<Object> current = new ArrayList<>((JsonArray) source);
+			JsonArray changes = ((JsonArray) target).changes((JsonArray) source, false, true);
+			for (Object change : changes) {
+				JsonObject chg = (JsonObject) change;
+				if (chg.containsKey("ins")) {
+					int index = (int) chg.get("ins");
+					patch.add(operation("add", path + '/' + index, chg.get("val")));
+					current.add(index, chg.get("val"));
+				} else if (chg.containsKey("del")) {
+					int index = (int) chg.get("del");
+					int count = chg.containsKey("n") ? (int) chg.get("n") : 1;
+					for (int i = 0; i < count; i++) {
+						patch.add(new JsonObject("op", "remove", "path", path + '/' + index));
+						current.remove(index);
+					}
+				} else if (chg.containsKey("set")) {
+					int index = (int) chg.get("set");
+					Object value = chg.get("val");
+					Object old = current.set(index, value);
+					if ((old instanceof JsonObject && value instanceof JsonObject)
+							|| (old instanceof JsonArray && value instanceof JsonArray)) {
+						diff(old, value, path + '/' + index, patch);
+					} else {
+						patch.add(operation("replace", path + '/' + index, value));
+					}
+				} else if (chg.containsKey("mv")) {
+					int from = (int) chg.get("mv");
+					int to = (int) chg.get("to");
+					JsonObject move = new JsonObject("op", "move", "from", path + '/' + from);
+					move.put("path", path + '/' + to);
+					patch.add(move);
+					current.add(to, current.remove(from));
+				}
+			}
+		} else {
+			patch.add(operation("replace", path, JsonChanges.copy(target)));
+		}
+	}
+
+	/**
+	 * Creates a patch operation with a value.
+	 * 
+	 * @param op    the name of the operation.
+	 * @param path  the path of the operation.
+	 * @param value the value of the operation.
+	 * @return the new operation.
+	 */
+	private static JsonObject operation(String op, String path, Object value) {
+		JsonObject operation = new JsonObject("op", op, "path", path);
+		operation.put("value", value);
+		return operation;
+	}
+
+	/**
+	 * Applies the given JSON Patch to the given json.
+	 * 
+	 * @param target the json to modify.
+	 * @param patch  the patch to apply.
+	 * @return the resulting json. The target itself, unless the patch replaces the
+	 *         root.
+	 * @throws ParseException           if the patch or one of its paths is
+	 *                                  invalid. The offset is the index of the
+	 *                                  invalid operation.
+	 * @throws InvalidKeyException      if a path doesn't exist in the target.
+	 * @throws IllegalArgumentException if a test operation fails.
+	 */
+	public static Object apply(Object target, JsonArray patch)
+			throws ParseException, InvalidKeyException, IllegalArgumentException {
+		Applier applier = new Applier(target);
+		try {
+			applier.applyAll(patch);
+		} catch (ParseException | RuntimeException e) {
+			applier.rollback();
+			throw e;
+		}
+		return applier.root;
+	}
+
+	/**
+	 * Applies all the given JSON Patches to the given json, in order.<br>
+	 * Parsed paths and the containers they point to are reused between the
+	 * operations of all patches, so this is cheaper than applying them one by
+	 * one.<br>
+	 * The patches are applied as a whole, if one of them fails, the changes of
+	 * all of them are rolled back.
+	 * 
+	 * @param target  the json to modify.
+	 * @param patches the patches to apply.
+	 * @return the resulting json. The target itself, unless a patch replaces the
+	 *         root.
+	 * @throws ParseException           if a patch or one of its paths is invalid.
+	 *                                  The offset is the index of the invalid
+	 *                                  operation in its patch.
+	 * @throws InvalidKeyException      if a path doesn't exist in the target.
+	 * @throws IllegalArgumentException if a test operation fails.
+	 */
+	public static Object applyAll(Object target, Iterable<JsonArray> patches)
+			throws ParseException, InvalidKeyException, IllegalArgumentException {
+		Applier applier = new Applier(target);
+		try {
+			for (JsonArray patch : patches) {
+				applier.applyAll(patch);
+			}
+		} catch (ParseException | RuntimeException e) {
+			applier.rollback();
+			throw e;
+		}
+		return applier.root;
+	}
+
+	/**
+	 * Reads a JSON Patch from the given reader, and applies each operation as soon
+	 * as it was read, without building the patch document.<br>
+	 * If the patch turns out to be invalid after some of its operations were
+	 * applied, these operations are rolled back.
+	 * 
+	 * @param target the json to modify.
+	 * @param patch  the reader to read the patch from. Its next value has to be the
+	 *               patch array.
+	 * @return the resulting json. The target itself, unless the patch replaces the
+	 *         root.
+	 * @throws ParseException           if the patch or one of its paths is
+	 *                                  invalid. The offset is the offset in the
+	 *                                  patch text.
+	 * @throws InvalidKeyException      if a path doesn't exist in the target.
+	 * @throws IllegalArgumentException if a test operation fails.
+	 */
+	public static Object apply(Object target, JsonReader patch)
+			throws ParseException, InvalidKeyException, IllegalArgumentException {
+		Applier applier = new Applier(target);
+		try {
+			apply(applier, patch);
+		} catch (ParseException | RuntimeException e) {
+			applier.rollback();
+			throw e;
+		}
+		return applier.root;
+	}
+
+	/**
+	 * Reads a JSON Patch from the given reader, and applies it using the given
+	 * {@link Applier}.
+	 * 
+	 * @param applier the applier to apply the operations with.
+	 * @param patch   the reader to read the patch from.
+	 * @throws ParseException           if the patch or one of its paths is
+	 *                                  invalid.
+	 * @throws InvalidKeyException      if a path doesn't exist in the target.
+	 * @throws IllegalArgumentException if a test operation fails.
+	 */
+	private static void apply(Applier applier, JsonReader patch)
+			throws ParseException, InvalidKeyException, IllegalArgumentException {
+		if (patch.next() != JsonToken.START_ARRAY) {
+			throw new ParseException("A json patch has to be an array!", patch.getTokenOffset());
+		}
+
+		while (patch.next() != JsonToken.END_ARRAY) {
+			int offset = patch.getTokenOffset();
+			if (patch.getToken() != JsonToken.START_OBJECT) {
+				throw new ParseException("A json patch operation has to be an object!", offset);
+			}
+
+			String op = null;
+			String path = null;
+			String from = null;
+			Object value = null;
+			boolean hasValue = false;
+			while (patch.next() == JsonToken.KEY) {
+				String key = patch.getString();
+				patch.next();
+				switch (key) {
+				case "op":
+					op = patch.getString();
+					break;
+				case "path":
+					path = patch.getString();
+					break;
+				case "from":
+					from = patch.getString();
+					break;
+				case "value":
+					value = patch.readTree();
+					hasValue = true;
+					break;
+				default:
+					patch.skipValue();
+				}
+			}
+			applier.apply(op, path, from, value, hasValue, false, offset);
+		}
+	}
+
+	/**
+	 * Creates a JSON Merge Patch turning the given source json into the given
+	 * target json.<br>
+	 * Merge patches can't set values to null, since null marks removed keys, and
+	 * replace changed arrays as a whole.
+	 * 
+	 * @param source the json before the changes.
+	 * @param target the json after the changes.
+	 * @return the merge patch. A {@link JsonObject} if both are objects.
+	 */
+	public static Object createMergePatch(Object source, Object target) {
+		if (!(source instanceof JsonObject) || !(target instanceof JsonObject)) {
+			return JsonChanges.copy(target);
+		}
+
+		JsonObject sourceObject = (JsonObject) source;
+		JsonObject targetObject = (JsonObject) target;
+		JsonObject patch = new JsonObject();
+		for (String key : sourceObject.keySet()) {
+			if (!targetObject.containsKey(key)) {
+				patch.put(key, null);
+			}
+		}
+
+		for (Entry<String, Object> entry : targetObject.entrySet()) {
+			String key = entry.getKey();
+			if (!sourceObject.containsKey(key)) {
+				patch.put(key, JsonChanges.copy(entry.getValue()));
+			} else if (!Objects.equals(sourceObject.get(key), entry.getValue())) {
+				patch.put(key, createMergePatch(sourceObject.get(key), entry.getValue()));
+			}
+		}
+		return patch;
+	}
+
+	/**
+	 * Applies the given JSON Merge Patch to the given json.
+	 * 
+	 * @param target the json to modify.
+	 * @param patch  the merge patch to apply.
+	 * @return the resulting json. The target itself, if both are objects.
+	 */
+	public static Object applyMergePatch(Object target, Object patch) {
+		if (!(patch instanceof JsonObject)) {
+			return JsonChanges.copy(patch);
+		}
+
+		JsonObject result = target instanceof JsonObject ? (JsonObject) target : new JsonObject();
+		for (Entry<String, Object> entry : ((JsonObject) patch).entrySet()) {
+			if (entry.getValue() == null) {
+				result.remove(entry.getKey());
+			} else {
+				Object current = result.get(entry.getKey());
+				Object value = applyMergePatch(current, entry.getValue());
+				if (value != current) {
+					result.put(entry.getKey(), value);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a JSON Merge Patch from the given reader, and applies it while reading
+	 * it, without building the patch document.
+	 * 
+	 * @param target the json to modify.
+	 * @param patch  the reader to read the patch from. Its next value has to be the
+	 *               merge patch.
+	 * @return the resulting json. The target itself, if both are objects.
+	 * @throws ParseException if the patch is invalid.
+	 */
+	public static Object applyMergePatch(Object target, JsonReader patch) throws ParseException {
+		patch.next();
+		return applyMergePatchValue(target, patch);
+	}
+
+	/**
+	 * Applies the merge patch value starting with the current token of the given
+	 * reader.
+	 * 
+	 * @param target the json to modify.
+	 * @param patch  the reader to read the patch from.
+	 * @return the resulting json.
+	 * @throws ParseException if the patch is invalid.
+	 */
+	private static Object applyMergePatchValue(Object target, JsonReader patch) throws ParseException {
+		if (patch.getToken() != JsonToken.START_OBJECT) {
+			return patch.readTree();
+		}
+
+		JsonObject result = target instanceof JsonObject ? (JsonObject) target : new JsonObject();
+		while (patch.next() == JsonToken.KEY) {
+			String key = patch.getString();
+			if (patch.next() == JsonToken.NULL) {
+				result.remove(key);
+			} else {
+				Object current = result.get(key);
+				Object value = applyMergePatchValue(current, patch);
+				if (value != current) {
+					result.put(key, value);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Escapes a key for use in a JSON Pointer.
+	 * 
+	 * @param key the key to escape.
+	 * @return the escaped key.
+	 */
+	static String escape(String key) {
+		if (key.indexOf('~') < 0 && key.indexOf('/') < 0) {
+			return key;
+		}
+		return key.replace("~", "~0").replace("/", "~1");
+	}
+
+	/**
+	 * Parses a JSON Pointer into its unescaped reference tokens.
+	 * 
+	 * @param pointer the pointer to parse.
+	 * @param offset  the offset to use for parse exceptions.
+	 * @return the reference tokens of the pointer. Empty for the root.
+	 * @throws ParseException if the pointer is invalid.
+	 */
+	static String[] parsePointer(String pointer, int offset) throws ParseException {
+		if (pointer == null) {
+			throw new ParseException("Missing json pointer!", offset);
+		} else if (pointer.isEmpty()) {
+			return new String[0];
+		} else if (pointer.charAt(0) != '/') {
+			throw new ParseException(String.format("Json pointer \"%s\" doesn't start with a slash!", pointer), offset);
+		}
+
+		List<String> tokens = new ArrayList<>();
+		int start = 1;
+		while (true) {
+			int end = pointer.indexOf('/', start);
+			String token = pointer.substring(start, end < 0 ? pointer.length() : end);
+			if (token.indexOf('~') >= 0) {
+				for (int i = token.indexOf('~'); i >= 0; i = token.indexOf('~', i + 1)) {
+					if (i + 1 >= token.length() || (token.charAt(i + 1) != '0' && token.charAt(i + 1) != '1')) {
+						throw new ParseException(String.format("Invalid escape in json pointer \"%s\"!", pointer),
+								offset);
+					}
+				}
+				token = token.replace("~1", "/").replace("~0", "~");
+			}
+			tokens.add(token);
+			if (end < 0) {
+				break;
+			}
+			start = end + 1;
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * Checks whether two json values are equal, treating numbers of different
+	 * types with the same value as equal, like the JSON Patch test operation
+	 * requires.
+	 * 
+	 * @param a the first value.
+	 * @param b the second value.
+	 * @return whether the values are equal.
+	 */
+	static boolean jsonEquals(Object a, Object b) {
+		if (a instanceof Number && b instanceof Number) {
+			if ((a instanceof Double || a instanceof Float) || (b instanceof Double || b instanceof Float)) {
+				return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+			}
+			return ((Number) a).longValue() == ((Number) b).longValue();
+		} else if (a instanceof JsonObject && b instanceof JsonObject) {
+			JsonObject objectA = (JsonObject) a;
+			JsonObject objectB = (JsonObject) b;
+			if (objectA.size() != objectB.size()) {
+				return false;
+			}
+			for (Entry<String, Object> entry : objectA.entrySet()) {
+				if (!objectB.containsKey(entry.getKey()) || !jsonEquals(entry.getValue(), objectB.get(entry.getKey()))) {
+					return false;
+				}
+			}
+			return true;
+		} else if (a instanceof JsonArray && b instanceof JsonArray) {
+			JsonArray arrayA = (JsonArray) a;
+			JsonArray arrayB = (JsonArray) b;
+			if (arrayA.size() != arrayB.size()) {
+				return false;
+			}
+			for (int i = 0; i < arrayA.size(); i++) {
+				if (!jsonEquals(arrayA.get(i), arrayB.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return Objects.equals(a, b);
+	}
+
+	/**
+	 * The state of applying one or more JSON Patches to a json.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Applier {
+
+		/**
+		 * The root of the json being modified.
+		 */
+		private Object root;
+
+		/**
+		 * The root of the json before any operation was applied.
+		 */
+		private final Object originalRoot;
+
+		/**
+		 * Shallow copies of the content of all containers modified so far, from
+		 * before their first modification.<br>
+		 * {@link JsonObject JsonObjects} map to a {@link LinkedHashMap}, to restore
+		 * their key order, and {@link JsonArray JsonArrays} map to a {@link List}.
+		 */
+		private final Map<Object, Object> modified = new IdentityHashMap<>();
+
+		/**
+		 * The already parsed pointers.
+		 */
+		private final Map<String, String[]> pointers = new HashMap<>();
+
+		/**
+		 * The reference tokens of the last resolved parent container.
+		 */
+		private String[] cachedPath;
+
+		/**
+		 * The last resolved parent container.
+		 */
+		private Object cachedParent;
+
+		/**
+		 * Creates a new Applier.
+		 * 
+		 * @param root the json to modify.
+		 */
+		public Applier(Object root) {
+			this.root = root;
+			originalRoot = root;
+		}
+
+		/**
+		 * Reverts all changes made by this applier, by restoring the content of every
+		 * modified container and the original root.
+		 */
+		@SuppressWarnings("unchecked")
+		public void rollback() {
+			for (Entry<Object, Object> entry : modified.entrySet()) {
+				if (entry.getKey() instanceof JsonObject) {
+					JsonObject object = (JsonObject) entry.getKey();
+					object.clear();
+					object.putAll((Map<String, Object>) entry.getValue());
+				} else {
+					JsonArray array = (JsonArray) entry.getKey();
+					array.clear();
+					array.addAll((List<Object>) entry.getValue());
+				}
+			}
+			modified.clear();
+			root = originalRoot;
+			cachedPath = null;
+			cachedParent = null;
+		}
+
+		/**
+		 * Records the content of the given container before modifying it, if it
+		 * wasn't modified before.<br>
+		 * Frozen containers are never recorded, since modifying them fails without
+		 * changing them.
+		 * 
+		 * @param container the container that is about to be modified.
+		 */
+		private void record(Object container) {
+			if (container instanceof JsonObject) {
+				JsonObject object = (JsonObject) container;
+				if (!object.isFrozen() && !modified.containsKey(object)) {
+					modified.put(object, new LinkedHashMap<>(object));
+				}
+			} else if (container instanceof JsonArray) {
+				JsonArray array = (JsonArray) container;
+				if (!array.isFrozen() && !modified.containsKey(array)) {
+					modified.put(array, new ArrayList<>(array));
+				}
+			}
+		}
+
+		/**
+		 * Applies all operations of the given patch.
+		 * 
+		 * @param patch the patch to apply.
+		 * @throws ParseException           if the patch is invalid.
+		 * @throws InvalidKeyException      if a path doesn't exist.
+		 * @throws IllegalArgumentException if a test operation fails.
+		 */
+		public void applyAll(JsonArray patch) throws ParseException, InvalidKeyException, IllegalArgumentException {
+			for (int i = 0; i < patch.size(); i++) {
+				if (!(patch.get(i) instanceof JsonObject)) {
+					throw new ParseException("A json patch operation has to be an object!", i);
+				}
+
+				JsonObject operation = (JsonObject) patch.get(i);
+				Object op = operation.get("op");
+				Object path = operation.get("path");
+				Object from = operation.get("from");
+				if ((op != null && !(op instanceof String)) || (path != null && !(path instanceof String))
+						|| (from != null && !(from instanceof String))) {
+					throw new ParseException("The op, path and from of a json patch operation have to be strings!", i);
+				}
+				apply((String) op, (String) path, (String) from, operation.get("value"),
+						operation.containsKey("value"), true, i);
+			}
+		}
+
+		/**
+		 * Applies a single operation.
+		 * 
+		 * @param op       the name of the operation.
+		 * @param path     the path of the operation.
+		 * @param from     the from path of the operation, or null.
+		 * @param value    the value of the operation, or null.
+		 * @param hasValue whether the operation has a value.
+		 * @param copy     whether the value has to be copied before adding it.
+		 * @param offset   the offset to use for parse exceptions.
+		 * @throws ParseException           if the operation is invalid.
+		 * @throws InvalidKeyException      if a path doesn't exist.
+		 * @throws IllegalArgumentException if a test operation fails.
+		 */
+		public void apply(String op, String path, String from, Object value, boolean hasValue, boolean copy,
+				int offset) throws ParseException, InvalidKeyException, IllegalArgumentException {
+			if (op == null) {
+				throw new ParseException("Json patch operation without op!", offset);
+			}
+
+			String[] tokens = pointer(path, offset);
+			boolean needsValue = op.equals("add") || op.equals("replace") || op.equals("test");
+			if (needsValue && !hasValue) {
+				throw new ParseException(String.format("Json patch %s operation without value!", op), offset);
+			}
+			if (copy && !op.equals("test")) {
+				value = JsonChanges.copy(value);
+			}
+
+			switch (op) {
+			case "add":
+				add(tokens, value);
+				break;
+			case "remove":
+				remove(tokens);
+				break;
+			case "replace":
+				remove(tokens);
+				add(tokens, value);
+				break;
+			case "move": {
+				String[] fromTokens = pointer(from, offset);
+				if (fromTokens.length < tokens.length && isPrefix(fromTokens, tokens, fromTokens.length)) {
+					throw new ParseException(
+							String.format("Can't move \"%s\" into its own child \"%s\"!", from, path), offset);
+				}
+				add(tokens, remove(fromTokens));
+				break;
+			}
+			case "copy":
+				add(tokens, JsonChanges.copy(get(pointer(from, offset))));
+				break;
+			case "test":
+				if (!jsonEquals(get(tokens), value)) {
+					throw new IllegalArgumentException(
+							String.format("Json patch test failed, the value at \"%s\" isn't %s!", path, value));
+				}
+				break;
+			default:
+				throw new ParseException(String.format("Unknown json patch operation \"%s\"!", op), offset);
+			}
+		}
+
+		/**
+		 * Parses the given pointer, or gets it from the cache.
+		 * 
+		 * @param pointer the pointer to parse.
+		 * @param offset  the offset to use for parse exceptions.
+		 * @return the reference tokens of the pointer.
+		 * @throws ParseException if the pointer is invalid.
+		 */
+		private String[] pointer(String pointer, int offset) throws ParseException {
+			String[] tokens = pointer == null ? null : pointers.get(pointer);
+			if (tokens == null) {
+				tokens = parsePointer(pointer, offset);
+				pointers.put(pointer, tokens);
+			}
+			return tokens;
+		}
+
+		/**
+		 * Gets the value at the given path.
+		 * 
+		 * @param tokens the reference tokens of the path.
+		 * @return the value at the path.
+		 * @throws InvalidKeyException if the path doesn't exist.
+		 */
+		private Object get(String[] tokens) throws InvalidKeyException {
+			if (tokens.length == 0) {
+				return root;
+			}
+			return child(parent(tokens), tokens, tokens.length - 1, false);
+		}
+
+		/**
+		 * Adds the given value at the given path.
+		 * 
+		 * @param tokens the reference tokens of the path.
+		 * @param value  the value to add.
+		 * @throws InvalidKeyException if the parent of the path doesn't exist.
+		 */
+		private void add(String[] tokens, Object value) throws InvalidKeyException {
+			if (tokens.length == 0) {
+				root = value;
+				cachedPath = null;
+				return;
+			}
+
+			Object parent = parent(tokens);
+			String key = tokens[tokens.length - 1];
+			invalidate(tokens);
+			record(parent);
+			if (parent instanceof JsonObject) {
+				((JsonObject) parent).put(key, value);
+			} else if (parent instanceof JsonArray) {
+				JsonArray array = (JsonArray) parent;
+				if (key.equals("-")) {
+					array.add(value);
+				} else {
+					array.add(index(tokens, tokens.length - 1, array.size() + 1), value);
+				}
+			} else {
+				throw new InvalidKeyException(toPointer(tokens, tokens.length - 1), "it isn't an object or array!");
+			}
+		}
+
+		/**
+		 * Removes the value at the given path.
+		 * 
+		 * @param tokens the reference tokens of the path.
+		 * @return the removed value.
+		 * @throws InvalidKeyException if the path doesn't exist.
+		 */
+		private Object remove(String[] tokens) throws InvalidKeyException {
+			if (tokens.length == 0) {
+				Object old = root;
+				root = null;
+				cachedPath = null;
+				return old;
+			}
+
+			Object parent = parent(tokens);
+			Object old = child(parent, tokens, tokens.length - 1, false);
+			invalidate(tokens);
+			record(parent);
+			if (parent instanceof JsonObject) {
+				((JsonObject) parent).remove(tokens[tokens.length - 1]);
+			} else {
+				((JsonArray) parent).remove(index(tokens, tokens.length - 1, ((JsonArray) parent).size()));
+			}
+			return old;
+		}
+
+		/**
+		 * Gets the parent container of the given path.
+		 * 
+		 * @param tokens the reference tokens of the path.
+		 * @return the parent of the path.
+		 * @throws InvalidKeyException if the parent doesn't exist.
+		 */
+		private Object parent(String[] tokens) throws InvalidKeyException {
+			int depth = tokens.length - 1;
+			if (cachedPath != null && cachedPath.length == depth && isPrefix(cachedPath, tokens, depth)) {
+				return cachedParent;
+			}
+
+			Object current = root;
+			for (int i = 0; i < depth; i++) {
+				current = child(current, tokens, i, true);
+			}
+			cachedPath = depth == 0 ? new String[0] : Arrays.copyOf(tokens, depth);
+			cachedParent = current;
+			return current;
+		}
+
+		/**
+		 * Gets the child of the given container referenced by the given token.
+		 * 
+		 * @param container      the container to get the child from.
+		 * @param tokens         the reference tokens of the path.
+		 * @param index          the index of the token to use.
+		 * @param needsContainer whether the child has to be an object or array.
+		 * @return the referenced child.
+		 * @throws InvalidKeyException if the child doesn't exist.
+		 */
+		private Object child(Object container, String[] tokens, int index, boolean needsContainer)
+				throws InvalidKeyException {
+			Object child;
+			if (container instanceof JsonObject) {
+				JsonObject object = (JsonObject) container;
+				if (!object.containsKey(tokens[index])) {
+					throw new InvalidKeyException(toPointer(tokens, index + 1), "it doesn't exist!");
+				}
+				child = object.get(tokens[index]);
+			} else if (container instanceof JsonArray) {
+				JsonArray array = (JsonArray) container;
+				child = array.get(index(tokens, index, array.size()));
+			} else {
+				throw new InvalidKeyException(toPointer(tokens, index), "it isn't an object or array!");
+			}
+
+			if (needsContainer && !(child instanceof JsonObject || child instanceof JsonArray)) {
+				throw new InvalidKeyException(toPointer(tokens, index + 1), "it isn't an object or array!");
+			}
+			return child;
+		}
+
+		/**
+		 * Parses the given reference token as an array index.
+		 * 
+		 * @param tokens the reference tokens of the path.
+		 * @param index  the index of the token to parse.
+		 * @param limit  the exclusive max valid index.
+		 * @return the parsed index.
+		 * @throws InvalidKeyException if the token isn't a valid index.
+		 */
+		private static int index(String[] tokens, int index, int limit) throws InvalidKeyException {
+			String token = tokens[index];
+			boolean valid = !token.isEmpty() && token.length() < 10 && (token.length() == 1 || token.charAt(0) != '0');
+			for (int i = 0; i < token.length() && valid; i++) {
+				valid = Character.isDigit(token.charAt(i));
+			}
+			if (!valid) {
+				throw new InvalidKeyException(toPointer(tokens, index + 1), "it isn't a valid array index!");
+			}
+
+			int result = Integer.parseInt(token);
+			if (result >= limit) {
+				throw new InvalidKeyException(toPointer(tokens, index + 1), "it is out of bounds!");
+			}
+			return result;
+		}
+
+		/**
+		 * Resets the cached parent, if it may no longer be at its path after a
+		 * modification of the given path.
+		 * 
+		 * @param tokens the reference tokens of the modified path.
+		 */
+		private void invalidate(String[] tokens) {
+			if (cachedPath != null && tokens.length <= cachedPath.length
+					&& isPrefix(tokens, cachedPath, tokens.length - 1)) {
+				cachedPath = null;
+				cachedParent = null;
+			}
+		}
+
+		/**
+		 * Checks whether the first length tokens of two paths are equal.
+		 * 
+		 * @param a      the first path.
+		 * @param b      the second path.
+		 * @param length the number of tokens to compare.
+		 * @return whether the paths share the prefix.
+		 */
+		private static boolean isPrefix(String[] a, String[] b, int length) {
+			for (int i = 0; i < length; i++) {
+				if (!a[i].equals(b[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Converts the first tokens of a path back to a JSON Pointer.
+		 * 
+		 * @param tokens the reference tokens of the path.
+		 * @param length the number of tokens to use.
+		 * @return the pointer.
+		 */
+		private static String toPointer(String[] tokens, int length) {
+			StringBuilder pointer = new StringBuilder();
+			for (int i = 0; i < length; i++) {
+				pointer.append('/').append(escape(tokens[i]));
+			}
+			return pointer.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,1281 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A compiled JSONPath expression, that can be evaluated against trees of
+ * {@link JsonObject JsonObjects} and {@link JsonArray JsonArrays} without
+ * parsing the expression again.<br>
+ * Supported syntax:
+ * <ul>
+ * <li>{@code $} the root element, {@code @} the current element inside a
+ * filter.</li>
+ * <li>{@code .name} or {@code ['name']} a child of an object.</li>
+ * <li>{@code [1]} an element of an array. Negative indices count from the
+ * end.</li>
+ * <li>{@code .*} or {@code [*]} all children of an object or array.</li>
+ * <li>{@code ..name}, {@code ..*} or {@code ..[selector]} recursive descent,
+ * applying the selector to the element and all its descendants.</li>
+ * <li>{@code [start:end:step]} an array slice, like in python. All three parts
+ * are optional.</li>
+ * <li>{@code ['a','b']} or {@code [0,2]} unions of names or indices.</li>
+ * <li>{@code [?(expression)]} a filter, selecting all children for which the
+ * expression is true. Expressions support relative({@code @.a}) and
+ * absolute({@code $.a}) paths, string, number, boolean and null literals, the
+ * comparison operators {@code == != < <= > >=}, the logical operators
+ * {@code && || !} and parentheses. A path on its own checks whether the path
+ * exists.</li>
+ * </ul>
+ * Expressions not starting with {@code $} are relative to the root.<br>
+ * Compiled paths are immutable and thread safe, and {@link #compile(String)}
+ * caches them.
+ * 
+ * @author ToMe25
+ */
+public class JsonPath {
+
+	/**
+	 * The max number of compiled paths kept in the {@link #CACHE}.
+	 */
+	private static final int CACHE_SIZE = 1024;
+
+	/**
+	 * The cache of recently compiled paths, in least recently used order.<br>
+	 * When full, the least recently used path is removed to make space. Has to be
+	 * synchronized on.
+	 */
+	private static final Map<String, JsonPath> CACHE = new LinkedHashMap<String, JsonPath>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = -4407425379612183540L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JsonPath> eldest) {
+			return size() > CACHE_SIZE;
+		}
+
+	};
+
+	/**
+	 * The value of a path that doesn't match anything.
+	 */
+	static final Object MISSING = new Object();
+
+	/**
+	 * The expression this path was compiled from.
+	 */
+	private final String expression;
+
+	/**
+	 * The steps to execute, in order.
+	 */
+	private final Step[] steps;
+
+	/**
+	 * Creates a new JsonPath.
+	 * 
+	 * @param expression the expression the path was compiled from.
+	 * @param steps      the steps of the path.
+	 */
+	private JsonPath(String expression, Step[] steps) {
+		this.expression = expression;
+		this.steps = steps;
+	}
+
+	/**
+	 * Compiles the given JSONPath expression, or gets it from the cache if it was
+	 * compiled recently.
+	 * 
+	 * @param expression the expression to compile.
+	 * @return the compiled path.
+	 * @throws ParseException if the expression is invalid.
+	 */
+	public static JsonPath compile(String expression) throws ParseException {
+		JsonPath path;
+		synchronized (CACHE) {
+			path = CACHE.get(expression);
+		}
+		if (path == null) {
+			Parser parser = new Parser(expression);
+			path = new JsonPath(expression, parser.parsePath(true));
+			if (parser.offset < expression.length()) {
+				throw new ParseException(String.format("Unexpected character '%c' in json path \"%s\"!",
+						expression.charAt(parser.offset), expression), parser.offset);
+			}
+
+			synchronized (CACHE) {
+				CACHE.put(expression, path);
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Compiles the given expression and selects all matching values from the given
+	 * json.
+	 * 
+	 * @param json       the root element to evaluate the path against.
+	 * @param expression the JSONPath expression.
+	 * @return a new {@link JsonArray} containing all matching values.
+	 * @throws ParseException if the expression is invalid.
+	 */
+	public static JsonArray select(Object json, String expression) throws ParseException {
+		return compile(expression).select(json);
+	}
+
+	/**
+	 * Selects all values matching this path from the given json.
+	 * 
+	 * @param json the root element to evaluate this path against.
+	 * @return a new {@link JsonArray} containing all matching values, in document
+	 *         order.
+	 */
+	public JsonArray select(Object json) {
+		JsonArray result = new JsonArray();
+		descend(steps, 0, json, json, value -> {
+			result.add(value);
+			return true;
+		});
+		return result;
+	}
+
+	/**
+	 * Selects the first value matching this path from the given json.<br>
+	 * Stops evaluating as soon as a match was found.
+	 * 
+	 * @param json the root element to evaluate this path against.
+	 * @return the first matching value, or null if there is none.
+	 */
+	public Object selectFirst(Object json) {
+		Object first = first(steps, json, json);
+		return first == MISSING ? null : first;
+	}
+
+	/**
+	 * Checks whether this path matches anything in the given json.
+	 * 
+	 * @param json the root element to evaluate this path against.
+	 * @return whether this path matches at least one value.
+	 */
+	public boolean matches(Object json) {
+		return first(steps, json, json) != MISSING;
+	}
+
+	/**
+	 * Gets the first value matching this path from the given json.
+	 * 
+	 * @param json the root element to evaluate this path against.
+	 * @return the first matching value, or {@link #MISSING} if there is none.
+	 */
+	Object first(Object json) {
+		return first(steps, json, json);
+	}
+
+	/**
+	 * Gets the expression this path was compiled from.
+	 * 
+	 * @return the expression of this path.
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	@Override
+	public int hashCode() {
+		return expression.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return expression.equals(((JsonPath) obj).expression);
+	}
+
+	/**
+	 * Gets the first value matched by the given steps.
+	 * 
+	 * @param steps the steps to execute.
+	 * @param node  the element to start at.
+	 * @param root  the root element of the json.
+	 * @return the first match, or {@link #MISSING}.
+	 */
+	private static Object first(Step[] steps, Object node, Object root) {
+		Object[] first = new Object[] { MISSING };
+		descend(steps, 0, node, root, value -> {
+			first[0] = value;
+			return false;
+		});
+		return first[0];
+	}
+
+	/**
+	 * Executes the step with the given index on the given element, or passes it
+	 * to the collector if all steps were executed.
+	 * 
+	 * @param steps the steps of the path.
+	 * @param index the index of the step to execute.
+	 * @param node  the element to execute the step on.
+	 * @param root  the root element of the json.
+	 * @param out   the collector receiving the matches.
+	 * @return false if the evaluation should stop.
+	 */
+	private static boolean descend(Step[] steps, int index, Object node, Object root, Collector out) {
+		if (index == steps.length) {
+			return out.accept(node);
+		}
+		return steps[index].apply(node, root, steps, index + 1, out);
+	}
+
+	/**
+	 * A receiver for the values matched by a path.
+	 * 
+	 * @author ToMe25
+	 */
+	private interface Collector {
+
+		/**
+		 * Receives a matched value.
+		 * 
+		 * @param value the matched value.
+		 * @return false if the evaluation should stop.
+		 */
+		boolean accept(Object value);
+
+	}
+
+	/**
+	 * A single step of a compiled path, selecting some children of an element.
+	 * 
+	 * @author ToMe25
+	 */
+	private static abstract class Step {
+
+		/**
+		 * Executes this step on the given element, and the remaining steps on all
+		 * selected children.
+		 * 
+		 * @param node  the element to select children from.
+		 * @param root  the root element of the json.
+		 * @param steps the steps of the path.
+		 * @param next  the index of the next step.
+		 * @param out   the collector receiving the matches.
+		 * @return false if the evaluation should stop.
+		 */
+		abstract boolean apply(Object node, Object root, Step[] steps, int next, Collector out);
+
+	}
+
+	/**
+	 * A step selecting the child of an object with a given name.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class NameStep extends Step {
+
+		/**
+		 * The name of the child to select.
+		 */
+		private final String name;
+
+		/**
+		 * Creates a new NameStep.
+		 * 
+		 * @param name the name of the child to select.
+		 */
+		public NameStep(String name) {
+			this.name = name;
+		}
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			if (node instanceof JsonObject) {
+				JsonObject object = (JsonObject) node;
+				Object value = object.get(name);
+				if (value != null || object.containsKey(name)) {
+					return descend(steps, next, value, root, out);
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A step selecting the element of an array with a given index.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class IndexStep extends Step {
+
+		/**
+		 * The index of the element to select. Negative indices count from the end.
+		 */
+		private final int index;
+
+		/**
+		 * Creates a new IndexStep.
+		 * 
+		 * @param index the index of the element to select.
+		 */
+		public IndexStep(int index) {
+			this.index = index;
+		}
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			if (node instanceof JsonArray) {
+				JsonArray array = (JsonArray) node;
+				int i = index < 0 ? array.size() + index : index;
+				if (i >= 0 && i < array.size()) {
+					return descend(steps, next, array.get(i), root, out);
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A step selecting all children of an object or array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class WildcardStep extends Step {
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			if (node instanceof JsonObject) {
+				for (Object value : ((JsonObject) node).values()) {
+					if (!descend(steps, next, value, root, out)) {
+						return false;
+					}
+				}
+			} else if (node instanceof JsonArray) {
+				JsonArray array = (JsonArray) node;
+				for (int i = 0; i < array.size(); i++) {
+					if (!descend(steps, next, array.get(i), root, out)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A step selecting a slice of an array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class SliceStep extends Step {
+
+		/**
+		 * The first index of the slice, or null to start at the start of the
+		 * array(or the end for negative steps).
+		 */
+		private final Integer start;
+
+		/**
+		 * The index after the last index of the slice, or null to go to the end of
+		 * the array(or the start for negative steps).
+		 */
+		private final Integer end;
+
+		/**
+		 * The distance between the selected indices.
+		 */
+		private final int step;
+
+		/**
+		 * Creates a new SliceStep.
+		 * 
+		 * @param start the first index of the slice, or null.
+		 * @param end   the exclusive end of the slice, or null.
+		 * @param step  the distance between selected indices. Must not be zero.
+		 */
+		public SliceStep(Integer start, Integer end, int step) {
+			this.start = start;
+			this.end = end;
+			this.step = step;
+		}
+
+		/**
+		 * Converts a slice bound to an index.
+		 * 
+		 * @param bound the bound to convert.
+		 * @param size  the size of the array.
+		 * @param min   the min index.
+		 * @param max   the max index.
+		 * @return the resulting index.
+		 */
+		private static int normalize(int bound, int size, int min, int max) {
+			int i = bound < 0 ? size + bound : bound;
+			return Math.max(min, Math.min(max, i));
+		}
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			if (!(node instanceof JsonArray)) {
+				return true;
+			}
+
+			JsonArray array = (JsonArray) node;
+			int size = array.size();
+			if (step > 0) {
+				int from = start == null ? 0 : normalize(start, size, 0, size);
+				int to = end == null ? size : normalize(end, size, 0, size);
+				for (int i = from; i < to; i += step) {
+					if (!descend(steps, next, array.get(i), root, out)) {
+						return false;
+					}
+				}
+			} else {
+				int from = start == null ? size - 1 : normalize(start, size, -1, size - 1);
+				int to = end == null ? -1 : normalize(end, size, -1, size - 1);
+				for (int i = from; i > to; i += step) {
+					if (!descend(steps, next, array.get(i), root, out)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A step selecting the union of the children selected by multiple steps.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class UnionStep extends Step {
+
+		/**
+		 * The steps whose selections to combine.
+		 */
+		private final Step[] alternatives;
+
+		/**
+		 * Creates a new UnionStep.
+		 * 
+		 * @param alternatives the steps whose selections to combine.
+		 */
+		public UnionStep(Step[] alternatives) {
+			this.alternatives = alternatives;
+		}
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			for (Step alternative : alternatives) {
+				if (!alternative.apply(node, root, steps, next, out)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A step selecting all children matching a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class FilterStep extends Step {
+
+		/**
+		 * The filter expression.
+		 */
+		private final Expression filter;
+
+		/**
+		 * Creates a new FilterStep.
+		 * 
+		 * @param filter the filter expression.
+		 */
+		public FilterStep(Expression filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			if (node instanceof JsonObject) {
+				for (Object value : ((JsonObject) node).values()) {
+					if (filter.test(value, root) && !descend(steps, next, value, root, out)) {
+						return false;
+					}
+				}
+			} else if (node instanceof JsonArray) {
+				JsonArray array = (JsonArray) node;
+				for (int i = 0; i < array.size(); i++) {
+					Object value = array.get(i);
+					if (filter.test(value, root) && !descend(steps, next, value, root, out)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A step applying another step to an element and all its descendants.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class RecursiveStep extends Step {
+
+		/**
+		 * The step to apply to every descendant.
+		 */
+		private final Step selector;
+
+		/**
+		 * Creates a new RecursiveStep.
+		 * 
+		 * @param selector the step to apply to every descendant.
+		 */
+		public RecursiveStep(Step selector) {
+			this.selector = selector;
+		}
+
+		@Override
+		boolean apply(Object node, Object root, Step[] steps, int next, Collector out) {
+			if (!selector.apply(node, root, steps, next, out)) {
+				return false;
+			}
+
+			if (node instanceof JsonObject) {
+				for (Object value : ((JsonObject) node).values()) {
+					if (!apply(value, root, steps, next, out)) {
+						return false;
+					}
+				}
+			} else if (node instanceof JsonArray) {
+				JsonArray array = (JsonArray) node;
+				for (int i = 0; i < array.size(); i++) {
+					if (!apply(array.get(i), root, steps, next, out)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A part of a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static abstract class Expression {
+
+		/**
+		 * Evaluates this expression.
+		 * 
+		 * @param current the element the filter is currently applied to.
+		 * @param root    the root element of the json.
+		 * @return the value of this expression, or {@link #MISSING}.
+		 */
+		abstract Object evaluate(Object current, Object root);
+
+		/**
+		 * Evaluates this expression as a condition.<br>
+		 * Paths are true if they exist, other values if they are the boolean true.
+		 * 
+		 * @param current the element the filter is currently applied to.
+		 * @param root    the root element of the json.
+		 * @return whether this expression is true.
+		 */
+		boolean test(Object current, Object root) {
+			return Boolean.TRUE.equals(evaluate(current, root));
+		}
+
+	}
+
+	/**
+	 * A constant value in a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class LiteralExpression extends Expression {
+
+		/**
+		 * The value of this literal.
+		 */
+		private final Object value;
+
+		/**
+		 * Creates a new LiteralExpression.
+		 * 
+		 * @param value the value of the literal.
+		 */
+		public LiteralExpression(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		Object evaluate(Object current, Object root) {
+			return value;
+		}
+
+	}
+
+	/**
+	 * A relative or absolute path in a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class PathExpression extends Expression {
+
+		/**
+		 * The steps of the path.
+		 */
+		private final Step[] steps;
+
+		/**
+		 * Whether the path starts at the root, rather than the current element.
+		 */
+		private final boolean absolute;
+
+		/**
+		 * Creates a new PathExpression.
+		 * 
+		 * @param steps    the steps of the path.
+		 * @param absolute whether the path starts at the root.
+		 */
+		public PathExpression(Step[] steps, boolean absolute) {
+			this.steps = steps;
+			this.absolute = absolute;
+		}
+
+		@Override
+		Object evaluate(Object current, Object root) {
+			return first(steps, absolute ? root : current, root);
+		}
+
+		@Override
+		boolean test(Object current, Object root) {
+			return evaluate(current, root) != MISSING;
+		}
+
+	}
+
+	/**
+	 * A logical not in a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class NotExpression extends Expression {
+
+		/**
+		 * The negated expression.
+		 */
+		private final Expression operand;
+
+		/**
+		 * Creates a new NotExpression.
+		 * 
+		 * @param operand the expression to negate.
+		 */
+		public NotExpression(Expression operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		Object evaluate(Object current, Object root) {
+			return !operand.test(current, root);
+		}
+
+	}
+
+	/**
+	 * A logical and or or in a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class LogicalExpression extends Expression {
+
+		/**
+		 * The left operand.
+		 */
+		private final Expression left;
+
+		/**
+		 * The right operand.
+		 */
+		private final Expression right;
+
+		/**
+		 * Whether this is an and, rather than an or.
+		 */
+		private final boolean and;
+
+		/**
+		 * Creates a new LogicalExpression.
+		 * 
+		 * @param left  the left operand.
+		 * @param right the right operand.
+		 * @param and   whether this is an and, rather than an or.
+		 */
+		public LogicalExpression(Expression left, Expression right, boolean and) {
+			this.left = left;
+			this.right = right;
+			this.and = and;
+		}
+
+		@Override
+		Object evaluate(Object current, Object root) {
+			if (and) {
+				return left.test(current, root) && right.test(current, root);
+			} else {
+				return left.test(current, root) || right.test(current, root);
+			}
+		}
+
+	}
+
+	/**
+	 * A comparison in a filter expression.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ComparisonExpression extends Expression {
+
+		/**
+		 * The left operand.
+		 */
+		private final Expression left;
+
+		/**
+		 * The right operand.
+		 */
+		private final Expression right;
+
+		/**
+		 * The comparison operator.
+		 */
+		private final String operator;
+
+		/**
+		 * Creates a new ComparisonExpression.
+		 * 
+		 * @param left     the left operand.
+		 * @param right    the right operand.
+		 * @param operator the comparison operator.
+		 */
+		public ComparisonExpression(Expression left, Expression right, String operator) {
+			this.left = left;
+			this.right = right;
+			this.operator = operator;
+		}
+
+		@Override
+		Object evaluate(Object current, Object root) {
+			Object a = left.evaluate(current, root);
+			Object b = right.evaluate(current, root);
+			if (a == MISSING || b == MISSING) {
+				return false;
+			}
+
+			switch (operator) {
+			case "==":
+				return valueEquals(a, b);
+			case "!=":
+				return !valueEquals(a, b);
+			}
+
+			Integer comparison = compare(a, b);
+			if (comparison == null) {
+				return false;
+			}
+			switch (operator) {
+			case "<":
+				return comparison < 0;
+			case "<=":
+				return comparison <= 0;
+			case ">":
+				return comparison > 0;
+			default:
+				return comparison >= 0;
+			}
+		}
+
+		/**
+		 * Checks whether the given values are equal, treating numbers of different
+		 * types with the same value as equal.
+		 * 
+		 * @param a the first value.
+		 * @param b the second value.
+		 * @return whether the values are equal.
+		 */
+		private static boolean valueEquals(Object a, Object b) {
+			if (a instanceof Number && b instanceof Number) {
+				Integer comparison = compare(a, b);
+				return comparison != null && comparison == 0;
+			}
+			return Objects.equals(a, b);
+		}
+
+		/**
+		 * Compares two numbers or two strings.
+		 * 
+		 * @param a the first value.
+		 * @param b the second value.
+		 * @return the result of the comparison, or null if the values can't be
+		 *         compared.
+		 */
+		private static Integer compare(Object a, Object b) {
+			if (a instanceof Number && b instanceof Number) {
+				if (isIntegral(a) && isIntegral(b)) {
+					return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+				}
+				return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+			} else if (a instanceof String && b instanceof String) {
+				return ((String) a).compareTo((String) b);
+			}
+			return null;
+		}
+
+		/**
+		 * Checks whether the given number is an integer type.
+		 * 
+		 * @param number the number to check.
+		 * @return whether the number is a Byte, Short, Integer or Long.
+		 */
+		private static boolean isIntegral(Object number) {
+			return number instanceof Integer || number instanceof Long || number instanceof Short
+					|| number instanceof Byte;
+		}
+
+	}
+
+	/**
+	 * The parser compiling JSONPath expressions.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Parser {
+
+		/**
+		 * The expression to parse.
+		 */
+		private final String expression;
+
+		/**
+		 * The offset of the next character to parse.
+		 */
+		private int offset;
+
+		/**
+		 * Creates a new Parser.
+		 * 
+		 * @param expression the expression to parse.
+		 */
+		public Parser(String expression) {
+			this.expression = expression;
+		}
+
+		/**
+		 * Parses a path, up to the first character that can't be part of it.
+		 * 
+		 * @param root whether this is the top level path, which doesn't need to start
+		 *             with {@code $}.
+		 * @return the steps of the path.
+		 * @throws ParseException if the path is invalid.
+		 */
+		public Step[] parsePath(boolean root) throws ParseException {
+			List<Step> steps = new ArrayList<>();
+			skipWhitespace();
+			if (peek() == '$' || peek() == '@') {
+				offset++;
+			} else if (!root) {
+				throw error("Expected a path");
+			} else if (offset < expression.length() && peek() != '[' && peek() != '.') {
+				steps.add(new NameStep(parseName()));
+			}
+
+			while (offset < expression.length()) {
+				char c = peek();
+				if (c == '.') {
+					offset++;
+					if (peek() == '.') {
+						offset++;
+						if (peek() == '[') {
+							steps.add(new RecursiveStep(parseBracket()));
+						} else {
+							steps.add(new RecursiveStep(parseDotSelector()));
+						}
+					} else {
+						steps.add(parseDotSelector());
+					}
+				} else if (c == '[') {
+					steps.add(parseBracket());
+				} else {
+					break;
+				}
+			}
+			return steps.toArray(new Step[steps.size()]);
+		}
+
+		/**
+		 * Parses the selector after a dot.
+		 * 
+		 * @return the parsed step.
+		 * @throws ParseException if the selector is invalid.
+		 */
+		private Step parseDotSelector() throws ParseException {
+			if (peek() == '*') {
+				offset++;
+				return new WildcardStep();
+			}
+			return new NameStep(parseName());
+		}
+
+		/**
+		 * Parses an unquoted name.
+		 * 
+		 * @return the parsed name.
+		 * @throws ParseException if there is no valid name at the current offset.
+		 */
+		private String parseName() throws ParseException {
+			int start = offset;
+			while (offset < expression.length()) {
+				char c = expression.charAt(offset);
+				if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '$') {
+					break;
+				}
+				offset++;
+			}
+			if (start == offset) {
+				throw error("Expected a name");
+			}
+			return expression.substring(start, offset);
+		}
+
+		/**
+		 * Parses a bracket selector.
+		 * 
+		 * @return the parsed step.
+		 * @throws ParseException if the selector is invalid.
+		 */
+		private Step parseBracket() throws ParseException {
+			expect('[');
+			skipWhitespace();
+			Step step;
+			if (peek() == '*') {
+				offset++;
+				step = new WildcardStep();
+			} else if (peek() == '?') {
+				offset++;
+				skipWhitespace();
+				expect('(');
+				step = new FilterStep(parseOr());
+				skipWhitespace();
+				expect(')');
+			} else {
+				List<Step> alternatives = new ArrayList<>();
+				do {
+					skipWhitespace();
+					alternatives.add(parseBracketItem());
+					skipWhitespace();
+				} while (tryConsume(','));
+				step = alternatives.size() == 1 ? alternatives.get(0)
+						: new UnionStep(alternatives.toArray(new Step[alternatives.size()]));
+			}
+			skipWhitespace();
+			expect(']');
+			return step;
+		}
+
+		/**
+		 * Parses a single item of a bracket selector, a quoted name, an index, or a
+		 * slice.
+		 * 
+		 * @return the parsed step.
+		 * @throws ParseException if the item is invalid.
+		 */
+		private Step parseBracketItem() throws ParseException {
+			char c = peek();
+			if (c == '\'' || c == '"') {
+				return new NameStep(parseString());
+			}
+
+			Integer start = c == ':' ? null : parseInt();
+			skipWhitespace();
+			if (!tryConsume(':')) {
+				return new IndexStep(start);
+			}
+
+			skipWhitespace();
+			Integer end = peek() == ':' || peek() == ']' || peek() == ',' ? null : parseInt();
+			int step = 1;
+			skipWhitespace();
+			if (tryConsume(':')) {
+				skipWhitespace();
+				if (peek() != ']' && peek() != ',') {
+					int stepOffset = offset;
+					step = parseInt();
+					if (step == 0) {
+						throw new ParseException(
+								String.format("Slice step can't be zero in json path \"%s\"!", expression), stepOffset);
+					}
+				}
+			}
+			return new SliceStep(start, end, step);
+		}
+
+		/**
+		 * Parses an or expression, or anything with a higher precedence.
+		 * 
+		 * @return the parsed expression.
+		 * @throws ParseException if the expression is invalid.
+		 */
+		private Expression parseOr() throws ParseException {
+			Expression left = parseAnd();
+			skipWhitespace();
+			while (tryConsume("||")) {
+				left = new LogicalExpression(left, parseAnd(), false);
+				skipWhitespace();
+			}
+			return left;
+		}
+
+		/**
+		 * Parses an and expression, or anything with a higher precedence.
+		 * 
+		 * @return the parsed expression.
+		 * @throws ParseException if the expression is invalid.
+		 */
+		private Expression parseAnd() throws ParseException {
+			Expression left = parseUnary();
+			skipWhitespace();
+			while (tryConsume("&&")) {
+				left = new LogicalExpression(left, parseUnary(), true);
+				skipWhitespace();
+			}
+			return left;
+		}
+
+		/**
+		 * Parses a negation, a parenthesized expression, or a comparison.
+		 * 
+		 * @return the parsed expression.
+		 * @throws ParseException if the expression is invalid.
+		 */
+		private Expression parseUnary() throws ParseException {
+			skipWhitespace();
+			if (peek() == '!' && !expression.startsWith("!=", offset)) {
+				offset++;
+				return new NotExpression(parseUnary());
+			} else if (tryConsume('(')) {
+				Expression expr = parseOr();
+				skipWhitespace();
+				expect(')');
+				return expr;
+			}
+
+			Expression left = parseOperand();
+			skipWhitespace();
+			for (String operator : new String[] { "==", "!=", "<=", ">=", "<", ">" }) {
+				if (tryConsume(operator)) {
+					skipWhitespace();
+					return new ComparisonExpression(left, parseOperand(), operator);
+				}
+			}
+			return left;
+		}
+
+		/**
+		 * Parses a path or a literal.
+		 * 
+		 * @return the parsed expression.
+		 * @throws ParseException if the operand is invalid.
+		 */
+		private Expression parseOperand() throws ParseException {
+			char c = peek();
+			if (c == '@' || c == '$') {
+				return new PathExpression(parsePath(false), c == '$');
+			} else if (c == '\'' || c == '"') {
+				return new LiteralExpression(parseString());
+			} else if (c == '-' || (c >= '0' && c <= '9')) {
+				int start = offset;
+				offset++;
+				while (offset < expression.length()) {
+					char d = expression.charAt(offset);
+					if ((d < '0' || d > '9') && d != '.' && d != 'e' && d != 'E' && d != '+' && d != '-') {
+						break;
+					}
+					offset++;
+				}
+				try {
+					JsonReader reader = new JsonReader(expression.substring(start, offset));
+					reader.next();
+					return new LiteralExpression(reader.getValue());
+				} catch (ParseException e) {
+					throw new ParseException(
+							String.format("Invalid number literal in json path \"%s\"!", expression), start);
+				}
+			} else if (expression.startsWith("true", offset)) {
+				offset += 4;
+				return new LiteralExpression(true);
+			} else if (expression.startsWith("false", offset)) {
+				offset += 5;
+				return new LiteralExpression(false);
+			} else if (expression.startsWith("null", offset)) {
+				offset += 4;
+				return new LiteralExpression(null);
+			}
+			throw error("Expected a path or literal");
+		}
+
+		/**
+		 * Parses a quoted string.
+		 * 
+		 * @return the content of the string.
+		 * @throws ParseException if the string is invalid.
+		 */
+		private String parseString() throws ParseException {
+			char quote = expression.charAt(offset++);
+			StringBuilder builder = new StringBuilder();
+			while (offset < expression.length()) {
+				char c = expression.charAt(offset++);
+				if (c == quote) {
+					return builder.toString();
+				} else if (c == '\\' && offset < expression.length()) {
+					c = expression.charAt(offset++);
+				}
+				builder.append(c);
+			}
+			throw error("Unterminated string");
+		}
+
+		/**
+		 * Parses a possibly negative integer.
+		 * 
+		 * @return the parsed integer.
+		 * @throws ParseException if there is no valid integer at the current offset.
+		 */
+		private int parseInt() throws ParseException {
+			int start = offset;
+			if (peek() == '-') {
+				offset++;
+			}
+			while (offset < expression.length() && Character.isDigit(expression.charAt(offset))) {
+				offset++;
+			}
+			try {
+				return Integer.parseInt(expression.substring(start, offset));
+			} catch (NumberFormatException e) {
+				offset = start;
+				throw error("Expected an integer");
+			}
+		}
+
+		/**
+		 * Gets the character at the current offset.
+		 * 
+		 * @return the current character, or 0 at the end of the expression.
+		 */
+		private char peek() {
+			return offset < expression.length() ? expression.charAt(offset) : 0;
+		}
+
+		/**
+		 * Skips all whitespace at the current offset.
+		 */
+		private void skipWhitespace() {
+			while (offset < expression.length() && Character.isWhitespace(expression.charAt(offset))) {
+				offset++;
+			}
+		}
+
+		/**
+		 * Consumes the given character if it is at the current offset.
+		 * 
+		 * @param c the character to consume.
+		 * @return whether the character was consumed.
+		 */
+		private boolean tryConsume(char c) {
+			if (peek() == c) {
+				offset++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Consumes the given string if it is at the current offset.
+		 * 
+		 * @param str the string to consume.
+		 * @return whether the string was consumed.
+		 */
+		private boolean tryConsume(String str) {
+			if (expression.startsWith(str, offset)) {
+				offset += str.length();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Consumes the given character, or throws an exception if it isn't at the
+		 * current offset.
+		 * 
+		 * @param c the character to consume.
+		 * @throws ParseException if the current character isn't the given one.
+		 */
+		private void expect(char c) throws ParseException {
+			if (!tryConsume(c)) {
+				throw error("Expected '" + c + "'");
+			}
+		}
+
+		/**
+		 * Creates a {@link ParseException} at the current offset.
+		 * 
+		 * @param message the error message, without the expression.
+		 * @return the new exception.
+		 */
+		private ParseException error(String message) {
+			return new ParseException(String.format("%s at offset %d in json path \"%s\"!", message, offset, expression),
+					offset);
+		}
+
+	}
+
+}
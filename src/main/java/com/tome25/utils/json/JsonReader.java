@@ -0,0 +1,673 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.nio.CharBuffer;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * A pull parser reading a json document one token at a time, without building
+ * {@link JsonObject JsonObjects} or {@link JsonArray JsonArrays}.<br>
+ * Numbers are read as a double if they contain a dot or an exponent, as a long
+ * if they are too big(or too small) to be an integer, and as an integer
+ * otherwise. Unlike the {@link JsonParser}, this reader accepts numbers with an
+ * exponent, like {@code 1.5E3}, as defined by the json specification. Numbers
+ * too big to be represented by a double are rejected.<br>
+ * Strings support all the escape sequences defined by the json specification.
+ * Unescaped control characters are accepted, since
+ * {@link JsonElement#toString()} doesn't escape them.
+ * 
+ * @author ToMe25
+ */
+public class JsonReader {
+
+	/**
+	 * The reader expects a value.
+	 */
+	private static final int EXPECT_VALUE = 0;
+
+	/**
+	 * The reader expects a value, or the end of the current array.
+	 */
+	private static final int EXPECT_VALUE_OR_END = 1;
+
+	/**
+	 * The reader expects a key.
+	 */
+	private static final int EXPECT_KEY = 2;
+
+	/**
+	 * The reader expects a key, or the end of the current object.
+	 */
+	private static final int EXPECT_KEY_OR_END = 3;
+
+	/**
+	 * The reader expects the colon between a key and its value.
+	 */
+	private static final int EXPECT_COLON = 4;
+
+	/**
+	 * The reader expects a comma, or the end of the current object or array.
+	 */
+	private static final int EXPECT_COMMA_OR_END = 5;
+
+	/**
+	 * The reader has read the entire document.
+	 */
+	private static final int EXPECT_NOTHING = 6;
+
+	/**
+	 * The json document to read.
+	 */
+	private final CharSequence json;
+
+	/**
+	 * The offset of the next character to read.
+	 */
+	private int offset;
+
+	/**
+	 * The offset at which the current token starts.
+	 */
+	private int tokenOffset;
+
+	/**
+	 * What the reader expects next.
+	 */
+	private int state = EXPECT_VALUE;
+
+	/**
+	 * For each currently open container, whether it is an object.
+	 */
+	private boolean[] objects = new boolean[16];
+
+	/**
+	 * The number of currently open containers.
+	 */
+	private int depth;
+
+	/**
+	 * The type of the current token.
+	 */
+	private JsonToken token;
+
+	/**
+	 * The buffer containing the current string or key.
+	 */
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * The integral value of the current token, if it is a number or boolean.
+	 */
+	private long longValue;
+
+	/**
+	 * The value of the current token, if it is a double.
+	 */
+	private double doubleValue;
+
+	/**
+	 * Creates a new JsonReader reading the given json document.
+	 * 
+	 * @param json the json document to read.
+	 */
+	public JsonReader(CharSequence json) {
+		this.json = json;
+	}
+
+	/**
+	 * Creates a new JsonReader reading the given json document.
+	 * 
+	 * @param json the json document to read.
+	 */
+	public JsonReader(char[] json) {
+		this(CharBuffer.wrap(json));
+	}
+
+	/**
+	 * Reads the next token from the json document.
+	 * 
+	 * @return the type of the token that was read.
+	 * @throws ParseException if the json is invalid.
+	 */
+	public JsonToken next() throws ParseException {
+		while (true) {
+			skipWhitespace();
+			tokenOffset = offset;
+			if (offset >= json.length()) {
+				if (state == EXPECT_NOTHING) {
+					return token = JsonToken.END_DOCUMENT;
+				}
+				throw new ParseException("Unexpected end of json!", offset);
+			}
+
+			char c = json.charAt(offset);
+			switch (state) {
+			case EXPECT_NOTHING:
+				throw createParseException("Unexpected character '%c' after the end of the json!", c);
+
+			case EXPECT_COLON:
+				if (c != ':') {
+					throw createParseException("Expected a colon, but found '%c'!", c);
+				}
+				offset++;
+				state = EXPECT_VALUE;
+				break;
+
+			case EXPECT_COMMA_OR_END:
+				if (c == ',') {
+					offset++;
+					state = objects[depth - 1] ? EXPECT_KEY : EXPECT_VALUE;
+					break;
+				}
+				return endContainer(c);
+
+			case EXPECT_KEY_OR_END:
+			case EXPECT_KEY:
+				if (c == '}' && state == EXPECT_KEY_OR_END) {
+					return endContainer(c);
+				} else if (c != '"') {
+					throw createParseException("Expected a key, but found '%c'!", c);
+				}
+				readString();
+				state = EXPECT_COLON;
+				return token = JsonToken.KEY;
+
+			case EXPECT_VALUE_OR_END:
+				if (c == ']') {
+					return endContainer(c);
+				}
+				return readValue(c);
+
+			default:
+				return readValue(c);
+			}
+		}
+	}
+
+	/**
+	 * Gets the type of the current token.
+	 * 
+	 * @return the current token, or null if {@link #next()} wasn't called yet.
+	 */
+	public JsonToken getToken() {
+		return token;
+	}
+
+	/**
+	 * Gets the offset in the json document at which the current token starts.
+	 * 
+	 * @return the offset of the current token.
+	 */
+	public int getTokenOffset() {
+		return tokenOffset;
+	}
+
+	/**
+	 * Gets the number of objects and arrays the reader is currently inside of.
+	 * 
+	 * @return the current nesting depth.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the string value of the current {@link JsonToken#STRING} or
+	 * {@link JsonToken#KEY} token.
+	 * 
+	 * @return the current string.
+	 * @throws IllegalStateException if the current token isn't a string or key.
+	 */
+	public String getString() throws IllegalStateException {
+		checkToken(token == JsonToken.STRING || token == JsonToken.KEY, "a string");
+		return buffer.toString();
+	}
+
+	/**
+	 * Gets the characters of the current {@link JsonToken#STRING} or
+	 * {@link JsonToken#KEY} token, without creating a new string.<br>
+	 * The returned sequence is only valid until the next call to {@link #next()}.
+	 * 
+	 * @return the characters of the current string.
+	 * @throws IllegalStateException if the current token isn't a string or key.
+	 */
+	public CharSequence getChars() throws IllegalStateException {
+		checkToken(token == JsonToken.STRING || token == JsonToken.KEY, "a string");
+		return buffer;
+	}
+
+	/**
+	 * Gets the value of the current {@link JsonToken#INT} token.
+	 * 
+	 * @return the current int.
+	 * @throws IllegalStateException if the current token isn't an int.
+	 */
+	public int getInt() throws IllegalStateException {
+		checkToken(token == JsonToken.INT, "an int");
+		return (int) longValue;
+	}
+
+	/**
+	 * Gets the value of the current {@link JsonToken#INT} or
+	 * {@link JsonToken#LONG} token.
+	 * 
+	 * @return the current long.
+	 * @throws IllegalStateException if the current token isn't an integer.
+	 */
+	public long getLong() throws IllegalStateException {
+		checkToken(token == JsonToken.INT || token == JsonToken.LONG, "a long");
+		return longValue;
+	}
+
+	/**
+	 * Gets the value of the current number token.
+	 * 
+	 * @return the current number as a double.
+	 * @throws IllegalStateException if the current token isn't a number.
+	 */
+	public double getDouble() throws IllegalStateException {
+		if (token == JsonToken.INT || token == JsonToken.LONG) {
+			return longValue;
+		}
+		checkToken(token == JsonToken.DOUBLE, "a double");
+		return doubleValue;
+	}
+
+	/**
+	 * Gets the value of the current {@link JsonToken#BOOLEAN} token.
+	 * 
+	 * @return the current boolean.
+	 * @throws IllegalStateException if the current token isn't a boolean.
+	 */
+	public boolean getBoolean() throws IllegalStateException {
+		checkToken(token == JsonToken.BOOLEAN, "a boolean");
+		return longValue != 0;
+	}
+
+	/**
+	 * Gets the value of the current token as an object, in the same types the
+	 * {@link JsonParser} uses.
+	 * 
+	 * @return the value of the current token.
+	 * @throws IllegalStateException if the current token isn't a scalar value.
+	 */
+	public Object getValue() throws IllegalStateException {
+		switch (token) {
+		case STRING:
+			return buffer.toString();
+		case INT:
+			return (int) longValue;
+		case LONG:
+			return longValue;
+		case DOUBLE:
+			return doubleValue;
+		case BOOLEAN:
+			return longValue != 0;
+		case NULL:
+			return null;
+		default:
+			throw new IllegalStateException("The current token " + token + " isn't a value!");
+		}
+	}
+
+	/**
+	 * Reads the value starting with the current token into {@link JsonObject
+	 * JsonObjects}, {@link JsonArray JsonArrays} and scalar values, like the
+	 * {@link JsonParser} would.<br>
+	 * If the current token is the start of an object or array, this reads
+	 * everything up to and including its end. If it is a key, this reads its
+	 * value.
+	 * 
+	 * @return the value starting with the current token.
+	 * @throws ParseException        if the json is invalid.
+	 * @throws IllegalStateException if the current token isn't the start of a
+	 *                               value.
+	 */
+	public Object readTree() throws ParseException, IllegalStateException {
+		if (token == JsonToken.KEY) {
+			next();
+		}
+
+		if (token == JsonToken.START_OBJECT) {
+			JsonObject object = new JsonObject(new ShapedMap());
+			while (next() == JsonToken.KEY) {
+				String key = getString();
+				next();
+				object.put(key, readTree());
+			}
+			return object;
+		} else if (token == JsonToken.START_ARRAY) {
+			JsonArray array = new JsonArray();
+			while (next() != JsonToken.END_ARRAY) {
+				array.addParsed(readTree());
+			}
+			return array;
+		}
+		return getValue();
+	}
+
+	/**
+	 * Skips the value starting with the current token.<br>
+	 * If the current token is the start of an object or array, this skips
+	 * everything up to and including its end. If it is a key, this skips its
+	 * value.
+	 * 
+	 * @throws ParseException if the json is invalid.
+	 */
+	public void skipValue() throws ParseException {
+		if (token == JsonToken.KEY) {
+			next();
+		}
+
+		if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+			int target = depth - 1;
+			while (depth > target) {
+				next();
+			}
+		}
+	}
+
+	/**
+	 * Reads the value starting with the given character.
+	 * 
+	 * @param c the first character of the value.
+	 * @return the type of the value.
+	 * @throws ParseException if the value is invalid.
+	 */
+	private JsonToken readValue(char c) throws ParseException {
+		switch (c) {
+		case '{':
+			offset++;
+			pushContainer(true);
+			state = EXPECT_KEY_OR_END;
+			return token = JsonToken.START_OBJECT;
+		case '[':
+			offset++;
+			pushContainer(false);
+			state = EXPECT_VALUE_OR_END;
+			return token = JsonToken.START_ARRAY;
+		case '"':
+			readString();
+			token = JsonToken.STRING;
+			break;
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			token = readNumber();
+			break;
+		default:
+			token = readLiteral();
+			break;
+		}
+		state = depth == 0 ? EXPECT_NOTHING : EXPECT_COMMA_OR_END;
+		return token;
+	}
+
+	/**
+	 * Handles the end of the current container.
+	 * 
+	 * @param c the character ending the container.
+	 * @return the token type for the end of the container.
+	 * @throws ParseException if the character doesn't match the type of the
+	 *                        current container.
+	 */
+	private JsonToken endContainer(char c) throws ParseException {
+		boolean object = objects[depth - 1];
+		if (c != (object ? '}' : ']')) {
+			throw createParseException(object ? "Expected a comma or curly bracket, but found '%c'!"
+					: "Expected a comma or square bracket, but found '%c'!", c);
+		}
+		offset++;
+		depth--;
+		state = depth == 0 ? EXPECT_NOTHING : EXPECT_COMMA_OR_END;
+		return token = object ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+	}
+
+	/**
+	 * Enters a new object or array.
+	 * 
+	 * @param object whether the new container is an object.
+	 */
+	private void pushContainer(boolean object) {
+		if (depth == objects.length) {
+			objects = Arrays.copyOf(objects, depth * 2);
+		}
+		objects[depth++] = object;
+	}
+
+	/**
+	 * Skips all whitespace characters at the current offset.
+	 */
+	private void skipWhitespace() {
+		int length = json.length();
+		while (offset < length) {
+			char c = json.charAt(offset);
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				return;
+			}
+			offset++;
+		}
+	}
+
+	/**
+	 * Reads the string starting at the current offset into the {@link #buffer}.
+	 * 
+	 * @throws ParseException if the string is invalid.
+	 */
+	private void readString() throws ParseException {
+		buffer.setLength(0);
+		int length = json.length();
+		offset++;
+		while (offset < length) {
+			char c = json.charAt(offset++);
+			if (c == '"') {
+				return;
+			} else if (c != '\\') {
+				buffer.append(c);
+				continue;
+			} else if (offset >= length) {
+				break;
+			}
+
+			c = json.charAt(offset++);
+			switch (c) {
+			case 'b':
+				buffer.append('\b');
+				break;
+			case 'f':
+				buffer.append('\f');
+				break;
+			case 'n':
+				buffer.append('\n');
+				break;
+			case 'r':
+				buffer.append('\r');
+				break;
+			case 't':
+				buffer.append('\t');
+				break;
+			case 'u':
+				if (offset + 4 > length) {
+					throw new ParseException("Incomplete unicode escape sequence in json string!", offset - 2);
+				}
+				int code = 0;
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(json.charAt(offset++), 16);
+					if (digit < 0) {
+						throw new ParseException("Invalid unicode escape sequence in json string!", offset - i - 3);
+					}
+					code = code << 4 | digit;
+				}
+				buffer.append((char) code);
+				break;
+			default:
+				buffer.append(c);
+				break;
+			}
+		}
+		throw new ParseException("Unterminated string in json!", tokenOffset);
+	}
+
+	/**
+	 * Reads the number starting at the current offset.
+	 * 
+	 * @return the type of the number.
+	 * @throws ParseException if the number is invalid.
+	 */
+	private JsonToken readNumber() throws ParseException {
+		int length = json.length();
+		int start = offset;
+		boolean negative = json.charAt(offset) == '-';
+		if (negative) {
+			offset++;
+		}
+
+		long value = 0;
+		boolean overflow = false;
+		int digits = 0;
+		while (offset < length) {
+			char c = json.charAt(offset);
+			if (c < '0' || c > '9') {
+				break;
+			}
+			// Accumulate negatively, since Long.MIN_VALUE has no positive equivalent.
+			long next = value * 10 - (c - '0');
+			if (value < Long.MIN_VALUE / 10 || next > value) {
+				overflow = true;
+			}
+			value = next;
+			digits++;
+			offset++;
+		}
+
+		boolean decimal = false;
+		while (offset < length) {
+			char c = json.charAt(offset);
+			if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' || (c >= '0' && c <= '9')) {
+				decimal = true;
+				offset++;
+			} else {
+				break;
+			}
+		}
+
+		if (digits == 0) {
+			throw new ParseException("Invalid number in json!", start);
+		} else if (decimal || overflow || (!negative && value == Long.MIN_VALUE)) {
+			try {
+				doubleValue = Double.parseDouble(json.subSequence(start, offset).toString());
+			} catch (NumberFormatException e) {
+				throw new ParseException("Invalid number in json!", start);
+			}
+			if (Double.isInfinite(doubleValue)) {
+				// Infinity can't be written as valid json.
+				throw new ParseException("Invalid number in json!", start);
+			}
+			return JsonToken.DOUBLE;
+		}
+
+		longValue = negative ? value : -value;
+		return longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE ? JsonToken.INT : JsonToken.LONG;
+	}
+
+	/**
+	 * Reads the literal starting at the current offset.<br>
+	 * Like the {@link JsonParser}, this ignores the case of the literal.
+	 * 
+	 * @return the type of the literal.
+	 * @throws ParseException if the literal is invalid.
+	 */
+	private JsonToken readLiteral() throws ParseException {
+		int length = json.length();
+		int start = offset;
+		while (offset < length && Character.isLetter(json.charAt(offset))) {
+			offset++;
+		}
+
+		if (matches(start, "true")) {
+			longValue = 1;
+			return JsonToken.BOOLEAN;
+		} else if (matches(start, "false")) {
+			longValue = 0;
+			return JsonToken.BOOLEAN;
+		} else if (matches(start, "null")) {
+			return JsonToken.NULL;
+		} else if (offset == start) {
+			throw createParseException("Unexpected character '%c' in json!", json.charAt(start));
+		} else {
+			throw new ParseException(String.format("Found object \"%s\" of unknown type in json!",
+					json.subSequence(start, offset)), start);
+		}
+	}
+
+	/**
+	 * Checks whether the characters from the given start to the current offset
+	 * match the given literal, ignoring case.
+	 * 
+	 * @param start   the start of the characters to check.
+	 * @param literal the literal to compare them to.
+	 * @return whether the characters match the literal.
+	 */
+	private boolean matches(int start, String literal) {
+		if (offset - start != literal.length()) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			if (Character.toLowerCase(json.charAt(start + i)) != literal.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Throws an {@link IllegalStateException} if the given condition is false.
+	 * 
+	 * @param valid    whether the current token is valid.
+	 * @param expected a description of the expected token.
+	 * @throws IllegalStateException if the current token is invalid.
+	 */
+	private void checkToken(boolean valid, String expected) throws IllegalStateException {
+		if (!valid) {
+			throw new IllegalStateException("The current token " + token + " isn't " + expected + "!");
+		}
+	}
+
+	/**
+	 * Creates a {@link ParseException} with the given message at the current
+	 * offset.
+	 * 
+	 * @param message the format string for the error message.
+	 * @param c       the unexpected character.
+	 * @return the new {@link ParseException}.
+	 */
+	private ParseException createParseException(String message, char c) {
+		return new ParseException(String.format(message, c), offset);
+	}
+
+}
@@ -0,0 +1,1810 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.tome25.utils.StringUtils;
+
+/**
+ * A compiled JSON Schema, validating json values in a single pass.<br>
+ * Supports a subset of JSON Schema draft 7: the type, enum and const keywords,
+ * the numeric, string, array and object keywords, the allOf, anyOf, oneOf,
+ * not and if/then/else combinators, and $ref references within the same
+ * schema. Other keywords, like format, are ignored. Patterns use the java
+ * regex syntax.<br>
+ * A schema is compiled once into a tree of validators specialized for its
+ * keywords. Compiled schemas are immutable, and thus can be cached and used by
+ * multiple threads at the same time.<br>
+ * Besides validating {@link JsonObject JsonObjects}, {@link JsonArray
+ * JsonArrays} and scalar values, a schema can validate a json document while it
+ * is read by a {@link JsonReader}, rejecting it at the first invalid value,
+ * before the rest of it is read.
+ * 
+ * @author ToMe25
+ */
+public final class JsonSchema {
+
+	/**
+	 * The type flag for null.
+	 */
+	private static final int NULL = 1;
+
+	/**
+	 * The type flag for booleans.
+	 */
+	private static final int BOOLEAN = 2;
+
+	/**
+	 * The type flag for objects.
+	 */
+	private static final int OBJECT = 4;
+
+	/**
+	 * The type flag for arrays.
+	 */
+	private static final int ARRAY = 8;
+
+	/**
+	 * The type flag for numbers with a fractional part.
+	 */
+	private static final int NUMBER = 16;
+
+	/**
+	 * The type flag for integral numbers.
+	 */
+	private static final int INTEGER = 32;
+
+	/**
+	 * The type flag for strings.
+	 */
+	private static final int STRING = 64;
+
+	/**
+	 * The type names used in schemas, in the order of their flags.
+	 */
+	private static final String[] TYPE_NAMES = { "null", "boolean", "object", "array", "number", "integer",
+			"string" };
+
+	/**
+	 * The root node of this schema.
+	 */
+	private final Node root;
+
+	/**
+	 * Creates a new JsonSchema with the given root node.
+	 * 
+	 * @param root the root node of the compiled schema.
+	 */
+	private JsonSchema(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Compiles the given schema.
+	 * 
+	 * @param schema the schema to compile. Has to be a {@link JsonObject} or a
+	 *               boolean.
+	 * @return the compiled schema.
+	 * @throws IllegalArgumentException if the schema is invalid.
+	 */
+	public static JsonSchema compile(Object schema) throws IllegalArgumentException {
+		return new JsonSchema(new Compiler(schema).compileRoot());
+	}
+
+	/**
+	 * Checks whether the given value is valid according to this schema.
+	 * 
+	 * @param value the json value to check.
+	 * @return whether the value is valid.
+	 */
+	public boolean isValid(Object value) {
+		return root.validate(value, null, null);
+	}
+
+	/**
+	 * Validates the given value, and returns a description of every violation of
+	 * this schema.<br>
+	 * Each description starts with the JSON Pointer of the invalid value.
+	 * 
+	 * @param value the json value to validate.
+	 * @return the violations of this schema. Empty if the value is valid.
+	 */
+	public List<String> validate(Object value) {
+		if (root.validate(value, null, null)) {
+			return Collections.emptyList();
+		}
+
+		List<String> errors = new ArrayList<>();
+		root.validate(value, "", errors);
+		return errors;
+	}
+
+	/**
+	 * Reads the value starting with the current token of the given reader,
+	 * validating it while reading.<br>
+	 * If {@link JsonReader#next()} wasn't called yet, the first token is used.
+	 * Reading stops at the first invalid value.
+	 * 
+	 * @param reader the reader to read from.
+	 * @return the value that was read.
+	 * @throws ParseException if the json is invalid, or doesn't match this schema.
+	 *                        Its error offset is the offset of the invalid value.
+	 */
+	public Object read(JsonReader reader) throws ParseException {
+		return new Streamer(reader, true).read(root);
+	}
+
+	/**
+	 * Reads the given json document, validating it while reading.
+	 * 
+	 * @param json the json document to read.
+	 * @return the value that was read.
+	 * @throws ParseException if the json is invalid, or doesn't match this schema.
+	 *                        Its error offset is the offset of the invalid value.
+	 */
+	public Object read(CharSequence json) throws ParseException {
+		JsonReader reader = new JsonReader(json);
+		Object value = read(reader);
+		reader.next();
+		return value;
+	}
+
+	/**
+	 * Validates the value starting with the current token of the given reader,
+	 * without building {@link JsonObject JsonObjects} or {@link JsonArray
+	 * JsonArrays} where possible.<br>
+	 * If {@link JsonReader#next()} wasn't called yet, the first token is used.
+	 * 
+	 * @param reader the reader to read from.
+	 * @throws ParseException if the json is invalid, or doesn't match this schema.
+	 *                        Its error offset is the offset of the invalid value.
+	 */
+	public void check(JsonReader reader) throws ParseException {
+		new Streamer(reader, false).read(root);
+	}
+
+	/**
+	 * Gets the type flag of the given value.
+	 * 
+	 * @param value the value to get the type of.
+	 * @return the type flag of the value, or 0 if it isn't a json value.
+	 */
+	private static int typeOf(Object value) {
+		if (value == null) {
+			return NULL;
+		} else if (value instanceof String) {
+			return STRING;
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short
+				|| value instanceof Byte) {
+			return INTEGER;
+		} else if (value instanceof Number) {
+			double number = ((Number) value).doubleValue();
+			return number == Math.rint(number) && !Double.isInfinite(number) ? INTEGER : NUMBER;
+		} else if (value instanceof Boolean) {
+			return BOOLEAN;
+		} else if (value instanceof JsonObject) {
+			return OBJECT;
+		} else if (value instanceof JsonArray) {
+			return ARRAY;
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the name of the type of the given value.
+	 * 
+	 * @param value the value to get the type name of.
+	 * @return the type name, as used in schemas.
+	 */
+	private static String typeName(Object value) {
+		int type = typeOf(value);
+		return type == 0 ? value.getClass().getSimpleName() : TYPE_NAMES[Integer.numberOfTrailingZeros(type)];
+	}
+
+	/**
+	 * Compares two numbers, exactly if both are integral.
+	 * 
+	 * @param a the first number.
+	 * @param b the second number.
+	 * @return a negative number, zero, or a positive number if a is less than,
+	 *         equal to, or greater than b.
+	 */
+	private static int compare(Number a, Number b) {
+		if (isIntegral(a) && isIntegral(b)) {
+			return Long.compare(a.longValue(), b.longValue());
+		}
+		return Double.compare(a.doubleValue(), b.doubleValue());
+	}
+
+	/**
+	 * Checks whether the given number is stored as an integral type.
+	 * 
+	 * @param number the number to check.
+	 * @return whether the number is an Integer, Long, Short or Byte.
+	 */
+	private static boolean isIntegral(Number number) {
+		return number instanceof Integer || number instanceof Long || number instanceof Short
+				|| number instanceof Byte;
+	}
+
+	/**
+	 * Adds an error to the given list, if it isn't null.
+	 * 
+	 * @param errors  the list of errors. Can be null.
+	 * @param path    the JSON Pointer of the invalid value.
+	 * @param message the description of the error.
+	 * @param args    the format arguments for the message.
+	 * @return false, to be returned by the validator.
+	 */
+	private static boolean error(List<String> errors, String path, String message, Object... args) {
+		if (errors != null) {
+			errors.add(String.format("Invalid value at \"%s\": %s", path, String.format(message, args)));
+		}
+		return false;
+	}
+
+	/**
+	 * Appends a key or index to the given JSON Pointer.
+	 * 
+	 * @param path the path to append to. Null if no paths are needed.
+	 * @param key  the key or index to append.
+	 * @return the resulting path, or null if path is null.
+	 */
+	private static String child(String path, Object key) {
+		return path == null ? null : path + '/' + JsonPatch.escape(key.toString());
+	}
+
+	/**
+	 * A compiled schema, or sub schema.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Node {
+
+		/**
+		 * The validators checking the keywords of this schema.
+		 */
+		private Validator[] validators = new Validator[0];
+
+		/**
+		 * The allowed types.
+		 */
+		private int types = NULL | BOOLEAN | OBJECT | ARRAY | NUMBER | INTEGER | STRING;
+
+		/**
+		 * The validator for object keywords, if there are any.
+		 */
+		private ObjectValidator object;
+
+		/**
+		 * The validator for array keywords, if there are any.
+		 */
+		private ArrayValidator array;
+
+		/**
+		 * The validator of the $ref keyword, if this schema is a reference.
+		 */
+		private RefValidator ref;
+
+		/**
+		 * Whether this schema is false, and thus doesn't allow any value.
+		 */
+		private boolean never;
+
+		/**
+		 * Whether this schema can be checked while reading the value, or needs the
+		 * complete value.
+		 */
+		private boolean streamable = true;
+
+		/**
+		 * Validates the given value.
+		 * 
+		 * @param value  the value to validate.
+		 * @param path   the JSON Pointer of the value. Null if errors is null.
+		 * @param errors the list to add errors to. If null, validation stops at the
+		 *               first error.
+		 * @return whether the value is valid.
+		 */
+		boolean validate(Object value, String path, List<String> errors) {
+			boolean valid = true;
+			for (Validator validator : validators) {
+				if (!validator.validate(value, path, errors)) {
+					if (errors == null) {
+						return false;
+					}
+					valid = false;
+				}
+			}
+			return valid;
+		}
+
+		/**
+		 * Gets the node to use for streaming validation, following references.
+		 * 
+		 * @return the node that actually validates values.
+		 */
+		Node resolve() {
+			Node node = this;
+			while (node.ref != null) {
+				node = node.ref.target;
+			}
+			return node;
+		}
+
+	}
+
+	/**
+	 * A validator checking one or more keywords of a schema.
+	 * 
+	 * @author ToMe25
+	 */
+	private static interface Validator {
+
+		/**
+		 * Validates the given value.
+		 * 
+		 * @param value  the value to validate.
+		 * @param path   the JSON Pointer of the value. Null if errors is null.
+		 * @param errors the list to add errors to. If null, validation stops at the
+		 *               first error.
+		 * @return whether the value is valid.
+		 */
+		boolean validate(Object value, String path, List<String> errors);
+
+	}
+
+	/**
+	 * A validator for the false schema, rejecting every value.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class FalseValidator implements Validator {
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			return error(errors, path, "no value is allowed here");
+		}
+
+	}
+
+	/**
+	 * A validator for the type keyword.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class TypeValidator implements Validator {
+
+		/**
+		 * The allowed types.
+		 */
+		private final int types;
+
+		/**
+		 * The description of the allowed types.
+		 */
+		private final String description;
+
+		/**
+		 * Creates a new TypeValidator.
+		 * 
+		 * @param types       the allowed types.
+		 * @param description the description of the allowed types.
+		 */
+		TypeValidator(int types, String description) {
+			this.types = types;
+			this.description = description;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if ((typeOf(value) & types) != 0) {
+				return true;
+			}
+			return error(errors, path, "expected %s, but found %s", description, typeName(value));
+		}
+
+	}
+
+	/**
+	 * A validator for the enum and const keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class EnumValidator implements Validator {
+
+		/**
+		 * The allowed values.
+		 */
+		private final Object[] values;
+
+		/**
+		 * Creates a new EnumValidator.
+		 * 
+		 * @param values the allowed values.
+		 */
+		EnumValidator(Object[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			for (Object allowed : values) {
+				if (JsonPatch.jsonEquals(allowed, value)) {
+					return true;
+				}
+			}
+			return error(errors, path, "%s isn't one of the allowed values", StringUtils.toEscapedString(value));
+		}
+
+	}
+
+	/**
+	 * A validator for the minimum, maximum, exclusiveMinimum and
+	 * exclusiveMaximum keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class RangeValidator implements Validator {
+
+		/**
+		 * The limit to compare numbers with.
+		 */
+		private final Number limit;
+
+		/**
+		 * Whether the limit is a minimum rather than a maximum.
+		 */
+		private final boolean minimum;
+
+		/**
+		 * Whether numbers equal to the limit are invalid.
+		 */
+		private final boolean exclusive;
+
+		/**
+		 * Creates a new RangeValidator.
+		 * 
+		 * @param limit     the limit to compare numbers with.
+		 * @param minimum   whether the limit is a minimum.
+		 * @param exclusive whether the limit itself is invalid.
+		 */
+		RangeValidator(Number limit, boolean minimum, boolean exclusive) {
+			this.limit = limit;
+			this.minimum = minimum;
+			this.exclusive = exclusive;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if (!(value instanceof Number)) {
+				return true;
+			}
+
+			int comparison = compare((Number) value, limit);
+			if (minimum ? comparison > 0 || comparison == 0 && !exclusive
+					: comparison < 0 || comparison == 0 && !exclusive) {
+				return true;
+			}
+			return error(errors, path, "%s has to be %s %s", value,
+					(minimum ? "greater than" : "less than") + (exclusive ? "" : " or equal to"), limit);
+		}
+
+	}
+
+	/**
+	 * A validator for the multipleOf keyword.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class MultipleOfValidator implements Validator {
+
+		/**
+		 * The number values have to be a multiple of.
+		 */
+		private final Number factor;
+
+		/**
+		 * Creates a new MultipleOfValidator.
+		 * 
+		 * @param factor the number values have to be a multiple of.
+		 */
+		MultipleOfValidator(Number factor) {
+			this.factor = factor;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if (!(value instanceof Number)) {
+				return true;
+			}
+
+			Number number = (Number) value;
+			boolean valid;
+			if (isIntegral(number) && isIntegral(factor)) {
+				valid = number.longValue() % factor.longValue() == 0;
+			} else if (Double.isFinite(number.doubleValue())) {
+				valid = new BigDecimal(number.toString()).remainder(new BigDecimal(factor.toString())).signum() == 0;
+			} else {
+				valid = false;
+			}
+			return valid || error(errors, path, "%s isn't a multiple of %s", value, factor);
+		}
+
+	}
+
+	/**
+	 * A validator for the minLength, maxLength and pattern keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class StringValidator implements Validator {
+
+		/**
+		 * The min number of code points.
+		 */
+		private final int minLength;
+
+		/**
+		 * The max number of code points.
+		 */
+		private final int maxLength;
+
+		/**
+		 * The pattern strings have to contain a match of, or null.
+		 */
+		private final Pattern pattern;
+
+		/**
+		 * Creates a new StringValidator.
+		 * 
+		 * @param minLength the min length.
+		 * @param maxLength the max length.
+		 * @param pattern   the pattern to match, or null.
+		 */
+		StringValidator(int minLength, int maxLength, Pattern pattern) {
+			this.minLength = minLength;
+			this.maxLength = maxLength;
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if (!(value instanceof String)) {
+				return true;
+			}
+
+			String string = (String) value;
+			boolean valid = true;
+			if (minLength > 0 || maxLength < Integer.MAX_VALUE) {
+				int length = string.codePointCount(0, string.length());
+				if (length < minLength || length > maxLength) {
+					valid = error(errors, path, "the length of \"%s\" has to be between %d and %d", string, minLength,
+							maxLength);
+				}
+			}
+			if ((valid || errors != null) && pattern != null && !pattern.matcher(string).find()) {
+				valid = error(errors, path, "\"%s\" doesn't match the pattern \"%s\"", string, pattern);
+			}
+			return valid;
+		}
+
+	}
+
+	/**
+	 * A validator for all the object keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ObjectValidator implements Validator {
+
+		/**
+		 * The schemas of specific properties.
+		 */
+		private final Map<String, Node> properties;
+
+		/**
+		 * The patterns of the patternProperties keyword.
+		 */
+		private final Pattern[] patterns;
+
+		/**
+		 * The schemas for properties matching the patterns.
+		 */
+		private final Node[] patternNodes;
+
+		/**
+		 * The schema for properties not matched by any other keyword, or null.
+		 */
+		private final Node additional;
+
+		/**
+		 * The schema property names have to match, or null.
+		 */
+		private final Node propertyNames;
+
+		/**
+		 * The required properties, mapped to their index.
+		 */
+		private final Map<String, Integer> required;
+
+		/**
+		 * The min number of properties.
+		 */
+		private final int minProperties;
+
+		/**
+		 * The max number of properties.
+		 */
+		private final int maxProperties;
+
+		/**
+		 * Creates a new ObjectValidator.
+		 * 
+		 * @param properties    the schemas of specific properties.
+		 * @param patterns      the patterns of the patternProperties keyword.
+		 * @param patternNodes  the schemas of the patternProperties keyword.
+		 * @param additional    the schema for additional properties, or null.
+		 * @param propertyNames the schema for property names, or null.
+		 * @param required      the required properties, mapped to their index.
+		 * @param minProperties the min number of properties.
+		 * @param maxProperties the max number of properties.
+		 */
+		ObjectValidator(Map<String, Node> properties, Pattern[] patterns, Node[] patternNodes, Node additional,
+				Node propertyNames, Map<String, Integer> required, int minProperties, int maxProperties) {
+			this.properties = properties;
+			this.patterns = patterns;
+			this.patternNodes = patternNodes;
+			this.additional = additional;
+			this.propertyNames = propertyNames;
+			this.required = required;
+			this.minProperties = minProperties;
+			this.maxProperties = maxProperties;
+		}
+
+		/**
+		 * Gets the schemas the value of the given property has to match.
+		 * 
+		 * @param key the name of the property.
+		 * @return the schemas for the property.
+		 */
+		List<Node> nodesFor(String key) {
+			Node property = properties.get(key);
+			if (patterns.length == 0) {
+				if (property != null) {
+					return Collections.singletonList(property);
+				}
+				return additional == null ? Collections.emptyList() : Collections.singletonList(additional);
+			}
+
+			List<Node> nodes = new ArrayList<>(2);
+			if (property != null) {
+				nodes.add(property);
+			}
+			for (int i = 0; i < patterns.length; i++) {
+				if (patterns[i].matcher(key).find()) {
+					nodes.add(patternNodes[i]);
+				}
+			}
+			if (nodes.isEmpty() && additional != null) {
+				nodes.add(additional);
+			}
+			return nodes;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if (!(value instanceof JsonObject)) {
+				return true;
+			}
+
+			JsonObject object = (JsonObject) value;
+			boolean valid = true;
+			int size = object.size();
+			if (size < minProperties || size > maxProperties) {
+				valid = error(errors, path, "the number of properties has to be between %d and %d", minProperties,
+						maxProperties);
+				if (errors == null) {
+					return false;
+				}
+			}
+
+			for (String key : required.keySet()) {
+				if (!object.containsKey(key)) {
+					valid = error(errors, path, "the required property \"%s\" is missing", key);
+					if (errors == null) {
+						return false;
+					}
+				}
+			}
+
+			for (Entry<String, Object> entry : object.entrySet()) {
+				String childPath = child(path, entry.getKey());
+				if (propertyNames != null && !propertyNames.validate(entry.getKey(), childPath, errors)) {
+					if (errors == null) {
+						return false;
+					}
+					valid = false;
+				}
+				for (Node node : nodesFor(entry.getKey())) {
+					if (!node.validate(entry.getValue(), childPath, errors)) {
+						if (errors == null) {
+							return false;
+						}
+						valid = false;
+					}
+				}
+			}
+			return valid;
+		}
+
+	}
+
+	/**
+	 * A validator for all the array keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ArrayValidator implements Validator {
+
+		/**
+		 * The schema for all items, or null if {@link #tuple} is used.
+		 */
+		private final Node items;
+
+		/**
+		 * The schemas for the items at the start of the array, or null.
+		 */
+		private final Node[] tuple;
+
+		/**
+		 * The schema for the items after the tuple, or null.
+		 */
+		private final Node additional;
+
+		/**
+		 * The schema at least one item has to match, or null.
+		 */
+		private final Node contains;
+
+		/**
+		 * The min number of items.
+		 */
+		private final int minItems;
+
+		/**
+		 * The max number of items.
+		 */
+		private final int maxItems;
+
+		/**
+		 * Whether all items have to be different.
+		 */
+		private final boolean unique;
+
+		/**
+		 * Creates a new ArrayValidator.
+		 * 
+		 * @param items      the schema for all items, or null.
+		 * @param tuple      the schemas for the first items, or null.
+		 * @param additional the schema for the items after the tuple, or null.
+		 * @param contains   the schema one item has to match, or null.
+		 * @param minItems   the min number of items.
+		 * @param maxItems   the max number of items.
+		 * @param unique     whether all items have to be different.
+		 */
+		ArrayValidator(Node items, Node[] tuple, Node additional, Node contains, int minItems, int maxItems,
+				boolean unique) {
+			this.items = items;
+			this.tuple = tuple;
+			this.additional = additional;
+			this.contains = contains;
+			this.minItems = minItems;
+			this.maxItems = maxItems;
+			this.unique = unique;
+		}
+
+		/**
+		 * Gets the schema the item at the given index has to match.
+		 * 
+		 * @param index the index of the item.
+		 * @return the schema for the item, or null if there is none.
+		 */
+		Node nodeFor(int index) {
+			if (tuple == null) {
+				return items;
+			}
+			return index < tuple.length ? tuple[index] : additional;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if (!(value instanceof JsonArray)) {
+				return true;
+			}
+
+			JsonArray array = (JsonArray) value;
+			boolean valid = true;
+			if (array.size() < minItems || array.size() > maxItems) {
+				valid = error(errors, path, "the number of items has to be between %d and %d", minItems, maxItems);
+				if (errors == null) {
+					return false;
+				}
+			}
+
+			boolean found = contains == null;
+			for (int i = 0; i < array.size(); i++) {
+				Object item = array.get(i);
+				Node node = nodeFor(i);
+				if (node != null && !node.validate(item, child(path, i), errors)) {
+					if (errors == null) {
+						return false;
+					}
+					valid = false;
+				}
+				if (!found && contains.validate(item, null, null)) {
+					found = true;
+				}
+				if (unique) {
+					for (int j = 0; j < i; j++) {
+						if (JsonPatch.jsonEquals(array.get(j), item)) {
+							valid = error(errors, path, "the items %d and %d are equal", j, i);
+							if (errors == null) {
+								return false;
+							}
+						}
+					}
+				}
+			}
+
+			if (!found) {
+				valid = error(errors, path, "no item matches the contains schema");
+			}
+			return valid;
+		}
+
+	}
+
+	/**
+	 * A validator for the allOf, anyOf and oneOf keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class CombinationValidator implements Validator {
+
+		/**
+		 * The keyword this validator checks.
+		 */
+		private final String keyword;
+
+		/**
+		 * The sub schemas to check.
+		 */
+		private final Node[] nodes;
+
+		/**
+		 * Creates a new CombinationValidator.
+		 * 
+		 * @param keyword the keyword to check. Either allOf, anyOf or oneOf.
+		 * @param nodes   the sub schemas of the keyword.
+		 */
+		CombinationValidator(String keyword, Node[] nodes) {
+			this.keyword = keyword;
+			this.nodes = nodes;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			if (keyword.equals("allOf")) {
+				boolean valid = true;
+				for (Node node : nodes) {
+					if (!node.validate(value, path, errors)) {
+						if (errors == null) {
+							return false;
+						}
+						valid = false;
+					}
+				}
+				return valid;
+			}
+
+			int matches = 0;
+			for (Node node : nodes) {
+				if (node.validate(value, null, null)) {
+					matches++;
+					if (keyword.equals("anyOf") || matches > 1) {
+						break;
+					}
+				}
+			}
+
+			if (matches == 0) {
+				return error(errors, path, "the value doesn't match any schema of %s", keyword);
+			} else if (matches > 1 && keyword.equals("oneOf")) {
+				return error(errors, path, "the value matches more than one schema of oneOf");
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * A validator for the not keyword.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class NotValidator implements Validator {
+
+		/**
+		 * The schema values must not match.
+		 */
+		private final Node node;
+
+		/**
+		 * Creates a new NotValidator.
+		 * 
+		 * @param node the schema values must not match.
+		 */
+		NotValidator(Node node) {
+			this.node = node;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			return !node.validate(value, null, null) || error(errors, path, "the value matches the not schema");
+		}
+
+	}
+
+	/**
+	 * A validator for the if, then and else keywords.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ConditionValidator implements Validator {
+
+		/**
+		 * The condition schema.
+		 */
+		private final Node condition;
+
+		/**
+		 * The schema for values matching the condition, or null.
+		 */
+		private final Node then;
+
+		/**
+		 * The schema for values not matching the condition, or null.
+		 */
+		private final Node otherwise;
+
+		/**
+		 * Creates a new ConditionValidator.
+		 * 
+		 * @param condition the condition schema.
+		 * @param then      the schema for values matching the condition, or null.
+		 * @param otherwise the schema for other values, or null.
+		 */
+		ConditionValidator(Node condition, Node then, Node otherwise) {
+			this.condition = condition;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			Node node = condition.validate(value, null, null) ? then : otherwise;
+			return node == null || node.validate(value, path, errors);
+		}
+
+	}
+
+	/**
+	 * A validator for the $ref keyword.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class RefValidator implements Validator {
+
+		/**
+		 * The referenced location.
+		 */
+		private final String reference;
+
+		/**
+		 * The referenced schema. Set after compiling the rest of the schema.
+		 */
+		private Node target;
+
+		/**
+		 * Creates a new RefValidator.
+		 * 
+		 * @param reference the referenced location.
+		 */
+		RefValidator(String reference) {
+			this.reference = reference;
+		}
+
+		@Override
+		public boolean validate(Object value, String path, List<String> errors) {
+			return target.validate(value, path, errors);
+		}
+
+	}
+
+	/**
+	 * The compiler converting a schema to a tree of nodes.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Compiler {
+
+		/**
+		 * The root of the schema to compile.
+		 */
+		private final Object schema;
+
+		/**
+		 * The already compiled sub schemas, so that references to them don't compile
+		 * them again.
+		 */
+		private final Map<Object, Node> compiled = new IdentityHashMap<>();
+
+		/**
+		 * The references that still have to be resolved.
+		 */
+		private final List<RefValidator> references = new ArrayList<>();
+
+		/**
+		 * The compiled schema for true, allowing all values.
+		 */
+		private final Node any = new Node();
+
+		/**
+		 * The compiled schema for false, allowing no values.
+		 */
+		private final Node never = new Node();
+
+		/**
+		 * Creates a new Compiler.
+		 * 
+		 * @param schema the schema to compile.
+		 */
+		Compiler(Object schema) {
+			this.schema = schema;
+			never.validators = new Validator[] { new FalseValidator() };
+			never.never = true;
+			never.types = 0;
+		}
+
+		/**
+		 * Compiles the schema of this compiler, and resolves all references.
+		 * 
+		 * @return the root node of the compiled schema.
+		 * @throws IllegalArgumentException if the schema is invalid.
+		 */
+		Node compileRoot() throws IllegalArgumentException {
+			Node root = compile(schema, "#");
+			for (int i = 0; i < references.size(); i++) {
+				RefValidator ref = references.get(i);
+				ref.target = compile(resolve(ref.reference), ref.reference);
+			}
+
+			for (RefValidator ref : references) {
+				Node target = ref.target;
+				for (int i = 0; target.ref != null; i++) {
+					if (i > references.size()) {
+						throw new IllegalArgumentException("Invalid schema: circular reference " + ref.reference + "!");
+					}
+					target = target.ref.target;
+				}
+			}
+			return root;
+		}
+
+		/**
+		 * Gets the sub schema referenced by the given reference.
+		 * 
+		 * @param reference the reference to resolve.
+		 * @return the referenced schema.
+		 * @throws IllegalArgumentException if the reference can't be resolved.
+		 */
+		private Object resolve(String reference) throws IllegalArgumentException {
+			if (!reference.startsWith("#")) {
+				throw new IllegalArgumentException("Invalid schema: only local references are supported!");
+			}
+
+			Object target = schema;
+			try {
+				for (String token : JsonPatch.parsePointer(reference.substring(1), 0)) {
+					if (target instanceof JsonObject && ((JsonObject) target).containsKey(token)) {
+						target = ((JsonObject) target).get(token);
+					} else if (target instanceof JsonArray && token.matches("\\d+")
+							&& Integer.parseInt(token) < ((JsonArray) target).size()) {
+						target = ((JsonArray) target).get(Integer.parseInt(token));
+					} else {
+						throw new IllegalArgumentException(
+								"Invalid schema: can't resolve reference " + reference + "!");
+					}
+				}
+			} catch (ParseException e) {
+				throw new IllegalArgumentException("Invalid schema: invalid reference " + reference + "!", e);
+			}
+			return target;
+		}
+
+		/**
+		 * Compiles the given sub schema.
+		 * 
+		 * @param schema   the schema to compile.
+		 * @param location the location of the schema, for error messages.
+		 * @return the compiled node.
+		 * @throws IllegalArgumentException if the schema is invalid.
+		 */
+		private Node compile(Object schema, String location) throws IllegalArgumentException {
+			if (Boolean.TRUE.equals(schema)) {
+				return any;
+			} else if (Boolean.FALSE.equals(schema)) {
+				return never;
+			} else if (!(schema instanceof JsonObject)) {
+				throw new IllegalArgumentException("Invalid schema: " + location + " isn't an object or boolean!");
+			}
+
+			Node node = compiled.get(schema);
+			if (node != null) {
+				return node;
+			}
+			node = new Node();
+			compiled.put(schema, node);
+
+			JsonObject object = (JsonObject) schema;
+			List<Validator> validators = new ArrayList<>();
+			if (object.containsKey("$ref")) {
+				node.ref = new RefValidator(getString(object, "$ref", location));
+				references.add(node.ref);
+				validators.add(node.ref);
+				node.validators = validators.toArray(new Validator[validators.size()]);
+				return node;
+			}
+
+			if (object.containsKey("type")) {
+				compileType(node, object.get("type"), location, validators);
+			}
+
+			if (object.containsKey("enum")) {
+				Object values = object.get("enum");
+				if (!(values instanceof JsonArray)) {
+					throw new IllegalArgumentException("Invalid schema: enum of " + location + " isn't an array!");
+				}
+				validators.add(new EnumValidator(((JsonArray) values).toArray()));
+				node.streamable = false;
+			}
+			if (object.containsKey("const")) {
+				validators.add(new EnumValidator(new Object[] { object.get("const") }));
+				node.streamable = false;
+			}
+
+			compileNumber(object, location, validators);
+			compileString(object, location, validators);
+			compileObject(node, object, location, validators);
+			compileArray(node, object, location, validators);
+
+			for (String keyword : new String[] { "allOf", "anyOf", "oneOf" }) {
+				if (object.containsKey(keyword)) {
+					validators.add(new CombinationValidator(keyword, compileAll(object, keyword, location)));
+					node.streamable = false;
+				}
+			}
+			if (object.containsKey("not")) {
+				validators.add(new NotValidator(compile(object.get("not"), location + "/not")));
+				node.streamable = false;
+			}
+			if (object.containsKey("if")) {
+				Node then = object.containsKey("then") ? compile(object.get("then"), location + "/then") : null;
+				Node otherwise = object.containsKey("else") ? compile(object.get("else"), location + "/else") : null;
+				if (then != null || otherwise != null) {
+					Node condition = compile(object.get("if"), location + "/if");
+					validators.add(new ConditionValidator(condition, then, otherwise));
+					node.streamable = false;
+				}
+			}
+
+			node.validators = validators.toArray(new Validator[validators.size()]);
+			return node;
+		}
+
+		/**
+		 * Compiles the type keyword.
+		 * 
+		 * @param node       the node to compile the keyword for.
+		 * @param type       the value of the type keyword.
+		 * @param location   the location of the schema, for error messages.
+		 * @param validators the list to add the validator to.
+		 * @throws IllegalArgumentException if the keyword is invalid.
+		 */
+		private void compileType(Node node, Object type, String location, List<Validator> validators)
+				throws IllegalArgumentException {
+			List<Object> names = type instanceof JsonArray ? (JsonArray) type : Collections.singletonList(type);
+			int types = 0;
+			for (Object name : names) {
+				int index = -1;
+				for (int i = 0; i < TYPE_NAMES.length; i++) {
+					if (TYPE_NAMES[i].equals(name)) {
+						index = i;
+					}
+				}
+				if (index < 0) {
+					throw new IllegalArgumentException(
+							"Invalid schema: unknown type " + name + " in " + location + "!");
+				}
+				types |= 1 << index;
+			}
+
+			if ((types & NUMBER) != 0) {
+				types |= INTEGER;
+			}
+			node.types = types;
+			validators.add(new TypeValidator(types, names.size() == 1 ? String.valueOf(names.get(0))
+					: "one of " + type.toString().replace(",", ", ")));
+		}
+
+		/**
+		 * Compiles the numeric keywords.
+		 * 
+		 * @param object     the schema to compile.
+		 * @param location   the location of the schema, for error messages.
+		 * @param validators the list to add the validators to.
+		 * @throws IllegalArgumentException if a keyword is invalid.
+		 */
+		private void compileNumber(JsonObject object, String location, List<Validator> validators)
+				throws IllegalArgumentException {
+			Number minimum = getNumber(object, "minimum", location);
+			if (minimum != null) {
+				validators.add(new RangeValidator(minimum, true, false));
+			}
+			Number exclusiveMinimum = getNumber(object, "exclusiveMinimum", location);
+			if (exclusiveMinimum != null) {
+				validators.add(new RangeValidator(exclusiveMinimum, true, true));
+			}
+			Number maximum = getNumber(object, "maximum", location);
+			if (maximum != null) {
+				validators.add(new RangeValidator(maximum, false, false));
+			}
+			Number exclusiveMaximum = getNumber(object, "exclusiveMaximum", location);
+			if (exclusiveMaximum != null) {
+				validators.add(new RangeValidator(exclusiveMaximum, false, true));
+			}
+			Number multipleOf = getNumber(object, "multipleOf", location);
+			if (multipleOf != null) {
+				if (multipleOf.doubleValue() <= 0) {
+					throw new IllegalArgumentException(
+							"Invalid schema: multipleOf of " + location + " isn't positive!");
+				}
+				validators.add(new MultipleOfValidator(multipleOf));
+			}
+		}
+
+		/**
+		 * Compiles the string keywords.
+		 * 
+		 * @param object     the schema to compile.
+		 * @param location   the location of the schema, for error messages.
+		 * @param validators the list to add the validator to.
+		 * @throws IllegalArgumentException if a keyword is invalid.
+		 */
+		private void compileString(JsonObject object, String location, List<Validator> validators)
+				throws IllegalArgumentException {
+			int minLength = getCount(object, "minLength", location, 0);
+			int maxLength = getCount(object, "maxLength", location, Integer.MAX_VALUE);
+			Pattern pattern = null;
+			if (object.containsKey("pattern")) {
+				pattern = compilePattern(getString(object, "pattern", location), location);
+			}
+			if (minLength > 0 || maxLength < Integer.MAX_VALUE || pattern != null) {
+				validators.add(new StringValidator(minLength, maxLength, pattern));
+			}
+		}
+
+		/**
+		 * Compiles the object keywords.
+		 * 
+		 * @param node       the node to compile the keywords for.
+		 * @param object     the schema to compile.
+		 * @param location   the location of the schema, for error messages.
+		 * @param validators the list to add the validator to.
+		 * @throws IllegalArgumentException if a keyword is invalid.
+		 */
+		private void compileObject(Node node, JsonObject object, String location, List<Validator> validators)
+				throws IllegalArgumentException {
+			Map<String, Node> properties = new HashMap<>();
+			for (Entry<String, Object> property : getObject(object, "properties", location).entrySet()) {
+				properties.put(property.getKey(), compile(property.getValue(),
+						location + "/properties/" + JsonPatch.escape(property.getKey())));
+			}
+
+			JsonObject patternProperties = getObject(object, "patternProperties", location);
+			Pattern[] patterns = new Pattern[patternProperties.size()];
+			Node[] patternNodes = new Node[patterns.length];
+			int i = 0;
+			for (Entry<String, Object> property : patternProperties.entrySet()) {
+				patterns[i] = compilePattern(property.getKey(), location);
+				patternNodes[i++] = compile(property.getValue(),
+						location + "/patternProperties/" + JsonPatch.escape(property.getKey()));
+			}
+
+			Node additional = null;
+			if (object.containsKey("additionalProperties")) {
+				additional = compile(object.get("additionalProperties"), location + "/additionalProperties");
+			}
+			Node propertyNames = null;
+			if (object.containsKey("propertyNames")) {
+				propertyNames = compile(object.get("propertyNames"), location + "/propertyNames");
+			}
+
+			Map<String, Integer> required = new HashMap<>();
+			if (object.containsKey("required")) {
+				if (!(object.get("required") instanceof JsonArray)) {
+					throw new IllegalArgumentException("Invalid schema: required of " + location + " isn't an array!");
+				}
+				for (Object key : (JsonArray) object.get("required")) {
+					if (!(key instanceof String)) {
+						throw new IllegalArgumentException(
+								"Invalid schema: required of " + location + " contains a non string!");
+					}
+					required.putIfAbsent((String) key, required.size());
+				}
+			}
+
+			int minProperties = getCount(object, "minProperties", location, 0);
+			int maxProperties = getCount(object, "maxProperties", location, Integer.MAX_VALUE);
+			if (!properties.isEmpty() || patterns.length > 0 || additional != null || propertyNames != null
+					|| !required.isEmpty() || minProperties > 0 || maxProperties < Integer.MAX_VALUE) {
+				node.object = new ObjectValidator(properties, patterns, patternNodes, additional, propertyNames,
+						required, minProperties, maxProperties);
+				validators.add(node.object);
+			}
+		}
+
+		/**
+		 * Compiles the array keywords.
+		 * 
+		 * @param node       the node to compile the keywords for.
+		 * @param object     the schema to compile.
+		 * @param location   the location of the schema, for error messages.
+		 * @param validators the list to add the validator to.
+		 * @throws IllegalArgumentException if a keyword is invalid.
+		 */
+		private void compileArray(Node node, JsonObject object, String location, List<Validator> validators)
+				throws IllegalArgumentException {
+			Node items = null;
+			Node[] tuple = null;
+			if (object.get("items") instanceof JsonArray) {
+				tuple = compileAll(object, "items", location);
+			} else if (object.containsKey("items")) {
+				items = compile(object.get("items"), location + "/items");
+			}
+
+			Node additional = null;
+			if (tuple != null && object.containsKey("additionalItems")) {
+				additional = compile(object.get("additionalItems"), location + "/additionalItems");
+			}
+			Node contains = null;
+			if (object.containsKey("contains")) {
+				contains = compile(object.get("contains"), location + "/contains");
+			}
+
+			int minItems = getCount(object, "minItems", location, 0);
+			int maxItems = getCount(object, "maxItems", location, Integer.MAX_VALUE);
+			Object uniqueItems = object.get("uniqueItems");
+			if (uniqueItems != null && !(uniqueItems instanceof Boolean)) {
+				throw new IllegalArgumentException("Invalid schema: uniqueItems of " + location + " isn't a boolean!");
+			}
+			boolean unique = Boolean.TRUE.equals(uniqueItems);
+
+			if (items != null || tuple != null || contains != null || minItems > 0 || maxItems < Integer.MAX_VALUE
+					|| unique) {
+				node.array = new ArrayValidator(items, tuple, additional, contains, minItems, maxItems, unique);
+				validators.add(node.array);
+				if (contains != null || unique) {
+					node.streamable = false;
+				}
+			}
+		}
+
+		/**
+		 * Compiles all the schemas in the given array keyword.
+		 * 
+		 * @param object   the schema containing the keyword.
+		 * @param keyword  the keyword to compile.
+		 * @param location the location of the schema, for error messages.
+		 * @return the compiled schemas.
+		 * @throws IllegalArgumentException if the keyword is invalid.
+		 */
+		private Node[] compileAll(JsonObject object, String keyword, String location)
+				throws IllegalArgumentException {
+			Object value = object.get(keyword);
+			if (!(value instanceof JsonArray) || ((JsonArray) value).isEmpty()) {
+				throw new IllegalArgumentException(
+						String.format("Invalid schema: %s of %s isn't a non empty array!", keyword, location));
+			}
+
+			JsonArray array = (JsonArray) value;
+			Node[] nodes = new Node[array.size()];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = compile(array.get(i), location + '/' + keyword + '/' + i);
+			}
+			return nodes;
+		}
+
+		/**
+		 * Compiles the given regular expression.
+		 * 
+		 * @param regex    the regular expression to compile.
+		 * @param location the location of the schema, for error messages.
+		 * @return the compiled pattern.
+		 * @throws IllegalArgumentException if the regular expression is invalid.
+		 */
+		private Pattern compilePattern(String regex, String location) throws IllegalArgumentException {
+			try {
+				return Pattern.compile(regex);
+			} catch (PatternSyntaxException e) {
+				throw new IllegalArgumentException("Invalid schema: invalid pattern in " + location + "!", e);
+			}
+		}
+
+		/**
+		 * Gets a numeric keyword.
+		 * 
+		 * @param object   the schema containing the keyword.
+		 * @param keyword  the keyword to get.
+		 * @param location the location of the schema, for error messages.
+		 * @return the value of the keyword, or null if it doesn't exist.
+		 * @throws IllegalArgumentException if the value isn't a number.
+		 */
+		private Number getNumber(JsonObject object, String keyword, String location) throws IllegalArgumentException {
+			Object value = object.get(keyword);
+			if (value != null && !(value instanceof Number)) {
+				throw new IllegalArgumentException(
+						String.format("Invalid schema: %s of %s isn't a number!", keyword, location));
+			}
+			return (Number) value;
+		}
+
+		/**
+		 * Gets a non negative integer keyword.
+		 * 
+		 * @param object       the schema containing the keyword.
+		 * @param keyword      the keyword to get.
+		 * @param location     the location of the schema, for error messages.
+		 * @param defaultValue the value to use if the keyword doesn't exist.
+		 * @return the value of the keyword, limited to the int range.
+		 * @throws IllegalArgumentException if the value isn't a non negative
+		 *                                  integer.
+		 */
+		private int getCount(JsonObject object, String keyword, String location, int defaultValue)
+				throws IllegalArgumentException {
+			Number value = getNumber(object, keyword, location);
+			if (value == null) {
+				return defaultValue;
+			} else if ((typeOf(value) & INTEGER) == 0 || value.doubleValue() < 0) {
+				throw new IllegalArgumentException(
+						String.format("Invalid schema: %s of %s isn't a non negative integer!", keyword, location));
+			}
+			return (int) Math.min(value.longValue(), Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Gets a string keyword.
+		 * 
+		 * @param object   the schema containing the keyword.
+		 * @param keyword  the keyword to get.
+		 * @param location the location of the schema, for error messages.
+		 * @return the value of the keyword.
+		 * @throws IllegalArgumentException if the value isn't a string.
+		 */
+		private String getString(JsonObject object, String keyword, String location) throws IllegalArgumentException {
+			Object value = object.get(keyword);
+			if (!(value instanceof String)) {
+				throw new IllegalArgumentException(
+						String.format("Invalid schema: %s of %s isn't a string!", keyword, location));
+			}
+			return (String) value;
+		}
+
+		/**
+		 * Gets an object keyword.
+		 * 
+		 * @param object   the schema containing the keyword.
+		 * @param keyword  the keyword to get.
+		 * @param location the location of the schema, for error messages.
+		 * @return the value of the keyword, or an empty object if it doesn't exist.
+		 * @throws IllegalArgumentException if the value isn't an object.
+		 */
+		private JsonObject getObject(JsonObject object, String keyword, String location)
+				throws IllegalArgumentException {
+			Object value = object.get(keyword);
+			if (value == null) {
+				return new JsonObject();
+			} else if (!(value instanceof JsonObject)) {
+				throw new IllegalArgumentException(
+						String.format("Invalid schema: %s of %s isn't an object!", keyword, location));
+			}
+			return (JsonObject) value;
+		}
+
+	}
+
+	/**
+	 * The state of validating a json document while reading it.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Streamer {
+
+		/**
+		 * The reader to read from.
+		 */
+		private final JsonReader reader;
+
+		/**
+		 * Whether the values have to be returned.
+		 */
+		private final boolean build;
+
+		/**
+		 * The keys and indices of the containers the reader is currently in.
+		 */
+		private final List<Object> path = new ArrayList<>();
+
+		/**
+		 * Creates a new Streamer.
+		 * 
+		 * @param reader the reader to read from.
+		 * @param build  whether the values have to be returned.
+		 */
+		Streamer(JsonReader reader, boolean build) {
+			this.reader = reader;
+			this.build = build;
+		}
+
+		/**
+		 * Reads and validates the value starting with the current token.
+		 * 
+		 * @param node the schema to validate the value with.
+		 * @return the value, or null if values don't have to be returned.
+		 * @throws ParseException if the json is invalid, or doesn't match the
+		 *                        schema.
+		 */
+		Object read(Node node) throws ParseException {
+			if (reader.getToken() == null || reader.getToken() == JsonToken.KEY) {
+				reader.next();
+			}
+
+			node = node.resolve();
+			int offset = reader.getTokenOffset();
+			if (node.never) {
+				throw new ParseException(String.format("Invalid value at \"%s\": no value is allowed here", path()),
+						offset);
+			} else if (!node.streamable) {
+				Object value = reader.readTree();
+				check(node, value, offset);
+				return value;
+			}
+
+			JsonToken token = reader.getToken();
+			if (token == JsonToken.START_OBJECT) {
+				checkType(node, OBJECT, "object", offset);
+				return readObject(node.object);
+			} else if (token == JsonToken.START_ARRAY) {
+				checkType(node, ARRAY, "array", offset);
+				return readArray(node.array);
+			}
+
+			Object value = reader.getValue();
+			check(node, value, offset);
+			return value;
+		}
+
+		/**
+		 * Reads and validates an object.
+		 * 
+		 * @param validator the validator of the object keywords, or null.
+		 * @return the object, or null if values don't have to be returned.
+		 * @throws ParseException if the json is invalid, or doesn't match the
+		 *                        schema.
+		 */
+		private JsonObject readObject(ObjectValidator validator) throws ParseException {
+			JsonObject object = build ? new JsonObject(new ShapedMap()) : null;
+			boolean[] found = validator == null ? null : new boolean[validator.required.size()];
+			int size = 0;
+			while (reader.next() == JsonToken.KEY) {
+				String key = reader.getString();
+				int offset = reader.getTokenOffset();
+				size++;
+				path.add(key);
+				List<Node> nodes = Collections.emptyList();
+				if (validator != null) {
+					if (size > validator.maxProperties) {
+						throw createException(String.format("more than %d properties", validator.maxProperties),
+								offset, true);
+					}
+					if (validator.propertyNames != null) {
+						check(validator.propertyNames, key, offset);
+					}
+					Integer index = validator.required.get(key);
+					if (index != null) {
+						found[index] = true;
+					}
+					nodes = validator.nodesFor(key);
+				}
+
+				Object value;
+				reader.next();
+				if (nodes.size() == 1) {
+					value = read(nodes.get(0));
+				} else if (nodes.isEmpty() && !build) {
+					reader.skipValue();
+					value = null;
+				} else {
+					offset = reader.getTokenOffset();
+					value = reader.readTree();
+					for (Node node : nodes) {
+						check(node, value, offset);
+					}
+				}
+				path.remove(path.size() - 1);
+
+				if (build) {
+					object.put(key, value);
+				}
+			}
+
+			if (validator != null) {
+				int offset = reader.getTokenOffset();
+				if (size < validator.minProperties) {
+					throw createException(String.format("less than %d properties", validator.minProperties), offset,
+							false);
+				}
+				for (Entry<String, Integer> required : validator.required.entrySet()) {
+					if (!found[required.getValue()]) {
+						throw createException(
+								String.format("the required property \"%s\" is missing", required.getKey()), offset,
+								false);
+					}
+				}
+			}
+			return object;
+		}
+
+		/**
+		 * Reads and validates an array.
+		 * 
+		 * @param validator the validator of the array keywords, or null.
+		 * @return the array, or null if values don't have to be returned.
+		 * @throws ParseException if the json is invalid, or doesn't match the
+		 *                        schema.
+		 */
+		private JsonArray readArray(ArrayValidator validator) throws ParseException {
+			JsonArray array = build ? new JsonArray() : null;
+			int size = 0;
+			while (reader.next() != JsonToken.END_ARRAY) {
+				if (validator != null && size >= validator.maxItems) {
+					throw createException(String.format("more than %d items", validator.maxItems),
+							reader.getTokenOffset(), false);
+				}
+
+				Node node = validator == null ? null : validator.nodeFor(size);
+				path.add(size++);
+				Object value;
+				if (node != null) {
+					value = read(node);
+				} else if (build) {
+					value = reader.readTree();
+				} else {
+					reader.skipValue();
+					value = null;
+				}
+				path.remove(path.size() - 1);
+
+				if (build) {
+					array.addParsed(value);
+				}
+			}
+
+			if (validator != null && size < validator.minItems) {
+				throw createException(String.format("less than %d items", validator.minItems), reader.getTokenOffset(),
+						false);
+			}
+			return array;
+		}
+
+		/**
+		 * Checks that the given node allows the given type.
+		 * 
+		 * @param node   the node to check.
+		 * @param type   the type flag of the value.
+		 * @param name   the name of the type.
+		 * @param offset the offset of the value.
+		 * @throws ParseException if the type isn't allowed.
+		 */
+		private void checkType(Node node, int type, String name, int offset) throws ParseException {
+			if ((node.types & type) == 0) {
+				throw createException("unexpected " + name, offset, false);
+			}
+		}
+
+		/**
+		 * Validates the given complete value.
+		 * 
+		 * @param node   the schema to validate the value with.
+		 * @param value  the value to validate.
+		 * @param offset the offset of the value.
+		 * @throws ParseException if the value is invalid.
+		 */
+		private void check(Node node, Object value, int offset) throws ParseException {
+			if (!node.validate(value, null, null)) {
+				List<String> errors = new ArrayList<>();
+				node.validate(value, path(), errors);
+				throw new ParseException(errors.get(0), offset);
+			}
+		}
+
+		/**
+		 * Creates a ParseException for the current container.
+		 * 
+		 * @param message the description of the error.
+		 * @param offset  the offset of the error.
+		 * @param inner   whether the last path element is a key within the
+		 *                container, rather than the container itself.
+		 * @return the new exception.
+		 */
+		private ParseException createException(String message, int offset, boolean inner) {
+			String path = path();
+			if (inner) {
+				path = path.substring(0, path.lastIndexOf('/'));
+			}
+			return new ParseException(String.format("Invalid value at \"%s\": %s", path, message), offset);
+		}
+
+		/**
+		 * Gets the JSON Pointer of the current value.
+		 * 
+		 * @return the current path.
+		 */
+		private String path() {
+			StringBuilder builder = new StringBuilder();
+			for (Object key : path) {
+				builder.append('/').append(JsonPatch.escape(key.toString()));
+			}
+			return builder.toString();
+		}
+
+	}
+
+}
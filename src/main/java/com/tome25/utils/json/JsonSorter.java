@@ -0,0 +1,700 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * A sort order for the values of a {@link JsonArray}, sorting them by the
+ * values of one or more field paths.<br>
+ * Sorters are used by {@link JsonArray#sortBy(JsonSorter)} and
+ * {@link JsonArray#topK(JsonSorter, int)}. They get the sort keys of all values
+ * once before sorting, rather than on every comparison, and store them in
+ * primitive arrays where possible. Large arrays are sorted in parallel.<br>
+ * Sorting is stable, so values with equal keys keep their order.<br>
+ * Keys are ordered like the keys of a sorted {@link JsonIndex}: null and
+ * missing values first, then booleans, numbers, strings, and all other values.
+ * Descending keys reverse this order. Integers in keys that contain doubles as
+ * well are compared as doubles.
+ * 
+ * @author ToMe25
+ */
+public final class JsonSorter {
+
+	/**
+	 * The min number of values to sort in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	/**
+	 * The max number of values to sort using insertion sort.
+	 */
+	private static final int INSERTION_THRESHOLD = 16;
+
+	/**
+	 * The sort key of null values in packed int keys. Smaller than all int
+	 * values.
+	 */
+	private static final long NULL_INT = Integer.MIN_VALUE - 1l;
+
+	/**
+	 * The field paths to sort by, in order of priority.
+	 */
+	private final JsonPath[] paths;
+
+	/**
+	 * Whether the path with the same index is sorted in descending order.
+	 */
+	private final boolean[] descending;
+
+	/**
+	 * Creates a new JsonSorter.
+	 * 
+	 * @param paths      the paths to sort by.
+	 * @param descending which paths to sort in descending order.
+	 */
+	private JsonSorter(JsonPath[] paths, boolean[] descending) {
+		this.paths = paths;
+		this.descending = descending;
+	}
+
+	/**
+	 * Creates a new JsonSorter sorting values by the given path in ascending
+	 * order.
+	 * 
+	 * @param path the {@link JsonPath} of the sort key, relative to the values.
+	 *             For example {@code "score"} or {@code "player.name"}.
+	 * @return the new sorter.
+	 * @throws ParseException if the path is invalid.
+	 */
+	public static JsonSorter by(String path) throws ParseException {
+		return by(path, false);
+	}
+
+	/**
+	 * Creates a new JsonSorter sorting values by the given path.
+	 * 
+	 * @param path       the {@link JsonPath} of the sort key, relative to the
+	 *                   values.
+	 * @param descending whether to sort in descending order.
+	 * @return the new sorter.
+	 * @throws ParseException if the path is invalid.
+	 */
+	public static JsonSorter by(String path, boolean descending) throws ParseException {
+		return new JsonSorter(new JsonPath[] { JsonPath.compile(path) }, new boolean[] { descending });
+	}
+
+	/**
+	 * Creates a new JsonSorter sorting values like this one, and values that are
+	 * equal for this sorter by the given path in ascending order.
+	 * 
+	 * @param path the {@link JsonPath} of the next sort key.
+	 * @return the new sorter.
+	 * @throws ParseException if the path is invalid.
+	 */
+	public JsonSorter thenBy(String path) throws ParseException {
+		return thenBy(path, false);
+	}
+
+	/**
+	 * Creates a new JsonSorter sorting values like this one, and values that are
+	 * equal for this sorter by the given path.
+	 * 
+	 * @param path       the {@link JsonPath} of the next sort key.
+	 * @param descending whether to sort the next key in descending order.
+	 * @return the new sorter.
+	 * @throws ParseException if the path is invalid.
+	 */
+	public JsonSorter thenBy(String path, boolean descending) throws ParseException {
+		JsonPath[] newPaths = Arrays.copyOf(paths, paths.length + 1);
+		newPaths[paths.length] = JsonPath.compile(path);
+		boolean[] newDescending = Arrays.copyOf(this.descending, paths.length + 1);
+		newDescending[paths.length] = descending;
+		return new JsonSorter(newPaths, newDescending);
+	}
+
+	/**
+	 * Gets the sorted order of the given values.
+	 * 
+	 * @param values the values to sort.
+	 * @return the indices of the values, in sorted order.
+	 */
+	int[] order(List<Object> values) {
+		Key[] keys = keys(values);
+		int size = values.size();
+		if (keys.length == 1 && keys[0] instanceof LongKey && ((LongKey) keys[0]).isInt()) {
+			// Single int keys can be sorted as primitives, with the index in the low bits.
+			long[] packed = ((LongKey) keys[0]).pack(descending[0]);
+			if (size < PARALLEL_THRESHOLD) {
+				Arrays.sort(packed);
+			} else {
+				Arrays.parallelSort(packed);
+			}
+
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = (int) (packed[i] & Integer.MAX_VALUE);
+			}
+			return order;
+		}
+
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		sort(order, new KeyComparator(keys, descending));
+		return order;
+	}
+
+	/**
+	 * Gets the first values of the given list in sorted order, without sorting
+	 * all of them.
+	 * 
+	 * @param values the values to get the first values of.
+	 * @param k      the max number of values to get.
+	 * @return the indices of the first values, in sorted order.
+	 */
+	int[] top(List<Object> values, int k) {
+		int size = values.size();
+		if (k >= size / 8) {
+			return Arrays.copyOf(order(values), Math.min(k, size));
+		}
+
+		KeyComparator comparator = new KeyComparator(keys(values), descending);
+		int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), size / PARALLEL_THRESHOLD));
+		IntStream range = IntStream.range(0, chunks);
+		if (chunks > 1) {
+			range = range.parallel();
+		}
+		int[] candidates = range.mapToObj(c -> select(comparator, (int) ((long) size * c / chunks),
+				(int) ((long) size * (c + 1) / chunks), k)).flatMapToInt(Arrays::stream).toArray();
+		mergeSort(candidates, new int[candidates.length], 0, candidates.length, comparator);
+		return Arrays.copyOf(candidates, Math.min(k, candidates.length));
+	}
+
+	/**
+	 * Selects the first values from the given range in sorted order, using a
+	 * bounded heap.
+	 * 
+	 * @param comparator the comparator for the indices of the values.
+	 * @param from       the index of the first value to check.
+	 * @param to         the index after the last value to check.
+	 * @param k          the max number of values to select.
+	 * @return the indices of the selected values, in no particular order.
+	 */
+	private static int[] select(KeyComparator comparator, int from, int to, int k) {
+		// A max heap, so the root is the value to be replaced first.
+		int[] heap = new int[Math.min(k, to - from)];
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (count < heap.length) {
+				int child = count++;
+				while (child > 0 && comparator.compare(heap[(child - 1) / 2], i) < 0) {
+					heap[child] = heap[(child - 1) / 2];
+					child = (child - 1) / 2;
+				}
+				heap[child] = i;
+			} else if (count > 0 && comparator.compare(i, heap[0]) < 0) {
+				int parent = 0;
+				while (parent * 2 + 1 < count) {
+					int child = parent * 2 + 1;
+					if (child + 1 < count && comparator.compare(heap[child + 1], heap[child]) > 0) {
+						child++;
+					}
+					if (comparator.compare(heap[child], i) <= 0) {
+						break;
+					}
+					heap[parent] = heap[child];
+					parent = child;
+				}
+				heap[parent] = i;
+			}
+		}
+		return heap;
+	}
+
+	/**
+	 * Gets the sort keys of the given values.
+	 * 
+	 * @param values the values to get the keys of.
+	 * @return the sort keys for each path of this sorter.
+	 */
+	private Key[] keys(List<Object> values) {
+		Key[] keys = new Key[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			JsonPath path = paths[i];
+			Object[] raw = new Object[values.size()];
+			IntStream range = IntStream.range(0, raw.length);
+			if (raw.length >= PARALLEL_THRESHOLD) {
+				range = range.parallel();
+			}
+			range.forEach(j -> {
+				Object key = path.first(values.get(j));
+				raw[j] = key == JsonPath.MISSING ? null : JsonIndex.normalize(key);
+			});
+			keys[i] = Key.of(raw);
+		}
+		return keys;
+	}
+
+	/**
+	 * Sorts the given indices, in parallel if there are enough of them.
+	 * 
+	 * @param order      the indices to sort.
+	 * @param comparator the comparator to sort them with.
+	 */
+	private static void sort(int[] order, KeyComparator comparator) {
+		int[] buffer = new int[order.length];
+		if (order.length < PARALLEL_THRESHOLD) {
+			mergeSort(order, buffer, 0, order.length, comparator);
+		} else {
+			ForkJoinPool.commonPool().invoke(new SortTask(order, buffer, 0, order.length, comparator));
+		}
+	}
+
+	/**
+	 * Sorts a range of the given indices using merge sort.
+	 * 
+	 * @param order      the indices to sort.
+	 * @param buffer     a buffer of the same length as the indices.
+	 * @param from       the start of the range to sort, inclusive.
+	 * @param to         the end of the range to sort, exclusive.
+	 * @param comparator the comparator to sort them with.
+	 */
+	private static void mergeSort(int[] order, int[] buffer, int from, int to, KeyComparator comparator) {
+		if (to - from <= INSERTION_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				int index = order[i];
+				int j = i - 1;
+				while (j >= from && comparator.compare(order[j], index) > 0) {
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = index;
+			}
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		mergeSort(order, buffer, from, mid, comparator);
+		mergeSort(order, buffer, mid, to, comparator);
+		merge(order, buffer, from, mid, to, comparator);
+	}
+
+	/**
+	 * Merges two adjacent sorted ranges of the given indices.
+	 * 
+	 * @param order      the indices to merge.
+	 * @param buffer     a buffer of the same length as the indices.
+	 * @param from       the start of the first range, inclusive.
+	 * @param mid        the end of the first range, and the start of the second.
+	 * @param to         the end of the second range, exclusive.
+	 * @param comparator the comparator to merge them with.
+	 */
+	private static void merge(int[] order, int[] buffer, int from, int mid, int to, KeyComparator comparator) {
+		if (comparator.compare(order[mid - 1], order[mid]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(order, from, buffer, from, to - from);
+		int i = from;
+		int j = mid;
+		int k = from;
+		while (i < mid && j < to) {
+			order[k++] = comparator.compare(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+		}
+		// The rest of the second range is already in place.
+		while (i < mid) {
+			order[k++] = buffer[i++];
+		}
+	}
+
+	/**
+	 * A {@link RecursiveAction} sorting a range of indices by sorting both halves
+	 * in parallel, and then merging them.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class SortTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 7781298645226417301L;
+
+		/**
+		 * The indices to sort.
+		 */
+		private final int[] order;
+
+		/**
+		 * The buffer to use for merging.
+		 */
+		private final int[] buffer;
+
+		/**
+		 * The start of the range to sort, inclusive.
+		 */
+		private final int from;
+
+		/**
+		 * The end of the range to sort, exclusive.
+		 */
+		private final int to;
+
+		/**
+		 * The comparator to sort the indices with.
+		 */
+		private final KeyComparator comparator;
+
+		/**
+		 * Creates a new SortTask.
+		 * 
+		 * @param order      the indices to sort.
+		 * @param buffer     a buffer of the same length as the indices.
+		 * @param from       the start of the range to sort, inclusive.
+		 * @param to         the end of the range to sort, exclusive.
+		 * @param comparator the comparator to sort them with.
+		 */
+		public SortTask(int[] order, int[] buffer, int from, int to, KeyComparator comparator) {
+			this.order = order;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from < PARALLEL_THRESHOLD) {
+				mergeSort(order, buffer, from, to, comparator);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new SortTask(order, buffer, from, mid, comparator),
+					new SortTask(order, buffer, mid, to, comparator));
+			merge(order, buffer, from, mid, to, comparator);
+		}
+
+	}
+
+	/**
+	 * Compares the indices of values by their sort keys.<br>
+	 * Values with equal keys are ordered by their index, so that sorting is
+	 * stable.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class KeyComparator {
+
+		/**
+		 * The sort keys, in order of priority.
+		 */
+		private final Key[] keys;
+
+		/**
+		 * Which of the keys are sorted in descending order.
+		 */
+		private final boolean[] descending;
+
+		/**
+		 * Creates a new KeyComparator.
+		 * 
+		 * @param keys       the sort keys to compare.
+		 * @param descending which of the keys are sorted in descending order.
+		 */
+		public KeyComparator(Key[] keys, boolean[] descending) {
+			this.keys = keys;
+			this.descending = descending;
+		}
+
+		/**
+		 * Compares the values with the given indices.
+		 * 
+		 * @param i the index of the first value.
+		 * @param j the index of the second value.
+		 * @return the result of the comparison.
+		 */
+		public int compare(int i, int j) {
+			for (int k = 0; k < keys.length; k++) {
+				int result = keys[k].compare(i, j);
+				if (result != 0) {
+					return descending[k] ? -result : result;
+				}
+			}
+			return Integer.compare(i, j);
+		}
+
+	}
+
+	/**
+	 * The sort keys of all values for a single path.
+	 * 
+	 * @author ToMe25
+	 */
+	private abstract static class Key {
+
+		/**
+		 * Creates a new key storing the given key values in the most compact way
+		 * possible.
+		 * 
+		 * @param raw the normalized key values, or null for missing values.
+		 * @return the new key.
+		 */
+		static Key of(Object[] raw) {
+			boolean longs = true;
+			boolean numbers = true;
+			boolean strings = true;
+			for (Object value : raw) {
+				if (value != null) {
+					longs &= value instanceof Long;
+					numbers &= value instanceof Long || value instanceof Double;
+					strings &= value instanceof String;
+				}
+			}
+
+			if (longs) {
+				return new LongKey(raw);
+			} else if (numbers) {
+				return new DoubleKey(raw);
+			} else if (strings) {
+				return new StringKey(raw);
+			} else {
+				return new ObjectKey(raw);
+			}
+		}
+
+		/**
+		 * Creates a marker array for the null values in the given key values.
+		 * 
+		 * @param raw the key values.
+		 * @return an array marking the null values, or null if there are none.
+		 */
+		static boolean[] nulls(Object[] raw) {
+			boolean[] nulls = null;
+			for (int i = 0; i < raw.length; i++) {
+				if (raw[i] == null) {
+					if (nulls == null) {
+						nulls = new boolean[raw.length];
+					}
+					nulls[i] = true;
+				}
+			}
+			return nulls;
+		}
+
+		/**
+		 * Compares the null markers of the given values.
+		 * 
+		 * @param nulls the null markers, or null if there are no null values.
+		 * @param i     the index of the first value.
+		 * @param j     the index of the second value.
+		 * @return the result of the comparison, or 2 if neither is null.
+		 */
+		static int compareNulls(boolean[] nulls, int i, int j) {
+			if (nulls == null || !nulls[i] && !nulls[j]) {
+				return 2;
+			}
+			return Boolean.compare(nulls[j], nulls[i]);
+		}
+
+		/**
+		 * Compares the keys of the values with the given indices in ascending order.
+		 * 
+		 * @param i the index of the first value.
+		 * @param j the index of the second value.
+		 * @return the result of the comparison.
+		 */
+		abstract int compare(int i, int j);
+
+	}
+
+	/**
+	 * A {@link Key} only containing integers, stored in a long array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class LongKey extends Key {
+
+		/**
+		 * The key values. Null values are stored as zero.
+		 */
+		private final long[] values;
+
+		/**
+		 * The null markers, or null if there are no null values.
+		 */
+		private final boolean[] nulls;
+
+		/**
+		 * Creates a new LongKey.
+		 * 
+		 * @param raw the key values. All non-null values have to be longs.
+		 */
+		public LongKey(Object[] raw) {
+			values = new long[raw.length];
+			for (int i = 0; i < raw.length; i++) {
+				values[i] = raw[i] == null ? 0 : (Long) raw[i];
+			}
+			nulls = nulls(raw);
+		}
+
+		/**
+		 * Checks whether all values of this key fit into an int.
+		 * 
+		 * @return whether this key only contains ints.
+		 */
+		boolean isInt() {
+			for (long value : values) {
+				if (value != (int) value) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Packs the values of this key into longs containing the key in the high
+		 * bits, and the index in the low 31 bits, so that sorting them results in
+		 * the stable sort order.<br>
+		 * Requires all values to fit into an int.
+		 * 
+		 * @param descending whether to pack the keys for descending order.
+		 * @return the packed keys.
+		 */
+		long[] pack(boolean descending) {
+			long[] packed = new long[values.length];
+			for (int i = 0; i < values.length; i++) {
+				long key = nulls != null && nulls[i] ? NULL_INT : values[i];
+				packed[i] = (descending ? -key : key) << 31 | i;
+			}
+			return packed;
+		}
+
+		@Override
+		int compare(int i, int j) {
+			int result = compareNulls(nulls, i, j);
+			return result != 2 ? result : Long.compare(values[i], values[j]);
+		}
+
+	}
+
+	/**
+	 * A {@link Key} only containing numbers, stored in a double array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class DoubleKey extends Key {
+
+		/**
+		 * The key values. Null values are stored as zero.
+		 */
+		private final double[] values;
+
+		/**
+		 * The null markers, or null if there are no null values.
+		 */
+		private final boolean[] nulls;
+
+		/**
+		 * Creates a new DoubleKey.
+		 * 
+		 * @param raw the key values. All non-null values have to be numbers.
+		 */
+		public DoubleKey(Object[] raw) {
+			values = new double[raw.length];
+			for (int i = 0; i < raw.length; i++) {
+				values[i] = raw[i] == null ? 0 : ((Number) raw[i]).doubleValue();
+			}
+			nulls = nulls(raw);
+		}
+
+		@Override
+		int compare(int i, int j) {
+			int result = compareNulls(nulls, i, j);
+			return result != 2 ? result : Double.compare(values[i], values[j]);
+		}
+
+	}
+
+	/**
+	 * A {@link Key} only containing strings.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class StringKey extends Key {
+
+		/**
+		 * The key values.
+		 */
+		private final String[] values;
+
+		/**
+		 * Creates a new StringKey.
+		 * 
+		 * @param raw the key values. All non-null values have to be strings.
+		 */
+		public StringKey(Object[] raw) {
+			values = Arrays.copyOf(raw, raw.length, String[].class);
+		}
+
+		@Override
+		int compare(int i, int j) {
+			String value1 = values[i];
+			String value2 = values[j];
+			if (value1 == null || value2 == null) {
+				return Boolean.compare(value2 == null, value1 == null);
+			}
+			return value1.compareTo(value2);
+		}
+
+	}
+
+	/**
+	 * A {@link Key} containing values of different types, compared like the keys
+	 * of a sorted {@link JsonIndex}.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ObjectKey extends Key {
+
+		/**
+		 * The key values.
+		 */
+		private final Object[] values;
+
+		/**
+		 * Creates a new ObjectKey.
+		 * 
+		 * @param raw the normalized key values.
+		 */
+		public ObjectKey(Object[] raw) {
+			values = raw;
+		}
+
+		@Override
+		int compare(int i, int j) {
+			return JsonIndex.compareKeys(values[i], values[j]);
+		}
+
+	}
+
+}
@@ -0,0 +1,530 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The {@link Spliterator Spliterators} used to stream {@link JsonArray
+ * JsonArrays}, the entries of {@link JsonObject JsonObjects}, and the scalar
+ * values of whole json trees.<br>
+ * All of them split their input into halves of roughly equal size, so that
+ * parallel streams divide the work evenly. None of them detect concurrent
+ * modifications, so the streamed json must not be modified while streaming it.
+ * 
+ * @author ToMe25
+ */
+class JsonSpliterators {
+
+	/**
+	 * The min number of elements a spliterator has to contain to be split.
+	 */
+	private static final int MIN_SPLIT = 2;
+
+	/**
+	 * Creates a spliterator over the given list, using random access.
+	 * 
+	 * @param list      the list to split.
+	 * @param immutable whether the list can't be modified.
+	 * @return the new spliterator.
+	 */
+	static Spliterator<Object> list(List<Object> list, boolean immutable) {
+		return new ListSpliterator(list, 0, list.size(), immutable);
+	}
+
+	/**
+	 * Creates a spliterator over the entries of the given map.<br>
+	 * Maps storing their entries in slots are split by slot ranges, other maps use
+	 * the spliterator of their entry set.
+	 * 
+	 * @param map       the map whose entries to split.
+	 * @param immutable whether the map can't be modified.
+	 * @return the new spliterator.
+	 */
+	static Spliterator<Entry<String, Object>> entries(Map<String, Object> map, boolean immutable) {
+		if (map instanceof ConcurrentContentMap) {
+			map = ((ConcurrentContentMap) map).snapshot();
+			immutable = true;
+		}
+
+		if (map instanceof SlotMap) {
+			SlotMap slots = (SlotMap) map;
+			return new SlotSpliterator(slots, 0, slots.slotCount(), map.size(), immutable);
+		}
+		return map.entrySet().spliterator();
+	}
+
+	/**
+	 * Creates a spliterator over all scalar values in the given json tree.
+	 * 
+	 * @param root the root of the tree.
+	 * @return the new spliterator.
+	 * @see JsonWalker#flatten(Object, boolean)
+	 */
+	static Spliterator<Entry<String, Object>> tree(Object root) {
+		long estimate = root instanceof JsonElement ? ((JsonElement<?>) root).size(true) : 1;
+		boolean immutable = root instanceof JsonElement && ((JsonElement<?>) root).isFrozen();
+		Deque<Frame> frames = new ArrayDeque<>();
+		frames.add(new Frame(null, null, new String[] { "$" }, new Object[] { root }, 0, 1));
+		return new TreeSpliterator(frames, Math.max(estimate, 1), immutable);
+	}
+
+	/**
+	 * A spliterator over a range of indices of a random access list.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ListSpliterator implements Spliterator<Object> {
+
+		/**
+		 * The list to split.
+		 */
+		private final List<Object> list;
+
+		/**
+		 * The index of the next element.
+		 */
+		private int index;
+
+		/**
+		 * The index after the last element.
+		 */
+		private final int fence;
+
+		/**
+		 * Whether the list can't be modified.
+		 */
+		private final boolean immutable;
+
+		/**
+		 * Creates a new ListSpliterator.
+		 * 
+		 * @param list      the list to split.
+		 * @param index     the first index to cover.
+		 * @param fence     the index after the last index to cover.
+		 * @param immutable whether the list can't be modified.
+		 */
+		public ListSpliterator(List<Object> list, int index, int fence, boolean immutable) {
+			this.list = list;
+			this.index = index;
+			this.fence = fence;
+			this.immutable = immutable;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Object> action) {
+			if (index < fence) {
+				action.accept(list.get(index++));
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Object> action) {
+			int i = index;
+			index = fence;
+			for (; i < fence; i++) {
+				action.accept(list.get(i));
+			}
+		}
+
+		@Override
+		public Spliterator<Object> trySplit() {
+			if (fence - index < MIN_SPLIT) {
+				return null;
+			}
+
+			int mid = (index + fence) >>> 1;
+			Spliterator<Object> prefix = new ListSpliterator(list, index, mid, immutable);
+			index = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | (immutable ? IMMUTABLE : 0);
+		}
+
+	}
+
+	/**
+	 * A spliterator over a range of slots of a {@link SlotMap}.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class SlotSpliterator implements Spliterator<Entry<String, Object>> {
+
+		/**
+		 * The map to split.
+		 */
+		private final SlotMap map;
+
+		/**
+		 * The next slot to check.
+		 */
+		private int slot;
+
+		/**
+		 * The slot after the last slot to check.
+		 */
+		private final int fence;
+
+		/**
+		 * The estimated number of entries in the remaining slots.
+		 */
+		private long estimate;
+
+		/**
+		 * Whether the map can't be modified.
+		 */
+		private final boolean immutable;
+
+		/**
+		 * Creates a new SlotSpliterator.
+		 * 
+		 * @param map       the map to split.
+		 * @param slot      the first slot to cover.
+		 * @param fence     the slot after the last slot to cover.
+		 * @param estimate  the estimated number of entries in the covered slots.
+		 * @param immutable whether the map can't be modified.
+		 */
+		public SlotSpliterator(SlotMap map, int slot, int fence, long estimate, boolean immutable) {
+			this.map = map;
+			this.slot = slot;
+			this.fence = fence;
+			this.estimate = estimate;
+			this.immutable = immutable;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Entry<String, Object>> action) {
+			while (slot < fence) {
+				int current = slot++;
+				if (map.isSlotUsed(current)) {
+					action.accept(new SimpleImmutableEntry<>(map.getSlotKey(current), map.getSlotValue(current)));
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator<Entry<String, Object>> trySplit() {
+			if (fence - slot < MIN_SPLIT) {
+				return null;
+			}
+
+			int mid = (slot + fence) >>> 1;
+			estimate >>>= 1;
+			Spliterator<Entry<String, Object>> prefix = new SlotSpliterator(map, slot, mid, estimate, immutable);
+			slot = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | (immutable ? IMMUTABLE : 0);
+		}
+
+	}
+
+	/**
+	 * A range of children of a json element, that still have to be visited by a
+	 * {@link TreeSpliterator}.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Frame {
+
+		/**
+		 * The path of the element whose children this frame covers.
+		 */
+		private final String path;
+
+		/**
+		 * The array whose elements this frame covers, or null if this frame covers
+		 * the entries of an object.
+		 */
+		private final JsonArray array;
+
+		/**
+		 * The keys of the object whose entries this frame covers, or null if this
+		 * frame covers the elements of an array.
+		 */
+		private final String[] keys;
+
+		/**
+		 * The values of the object whose entries this frame covers, or null if this
+		 * frame covers the elements of an array.
+		 */
+		private final Object[] values;
+
+		/**
+		 * The index of the next child to visit.
+		 */
+		private int from;
+
+		/**
+		 * The index after the last child to visit.
+		 */
+		private final int to;
+
+		/**
+		 * Creates a new Frame.
+		 * 
+		 * @param path   the path of the element whose children this frame covers.
+		 * @param array  the array whose elements to cover, or null.
+		 * @param keys   the keys of the object whose entries to cover, or null.
+		 * @param values the values of the object whose entries to cover, or null.
+		 * @param from   the index of the first child to cover.
+		 * @param to     the index after the last child to cover.
+		 */
+		public Frame(String path, JsonArray array, String[] keys, Object[] values, int from, int to) {
+			this.path = path;
+			this.array = array;
+			this.keys = keys;
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Creates a frame covering all the children of the given element.
+		 * 
+		 * @param path    the path of the element.
+		 * @param element a {@link JsonObject} or {@link JsonArray}.
+		 * @return the new frame.
+		 */
+		public static Frame of(String path, Object element) {
+			if (element instanceof JsonArray) {
+				JsonArray array = (JsonArray) element;
+				return new Frame(path, array, null, null, 0, array.size());
+			}
+
+			JsonObject object = (JsonObject) element;
+			int size = object.size();
+			String[] keys = new String[size];
+			Object[] values = new Object[size];
+			int i = 0;
+			for (Entry<String, Object> entry : object.entrySet()) {
+				if (i == size) {
+					break;
+				}
+				keys[i] = entry.getKey();
+				values[i++] = entry.getValue();
+			}
+			return new Frame(path, null, keys, values, 0, i);
+		}
+
+		/**
+		 * Creates a frame covering the first part of the remaining children of this
+		 * frame, and removes them from this frame.
+		 * 
+		 * @param mid the index of the first child to keep in this frame.
+		 * @return the new frame.
+		 */
+		public Frame splitAt(int mid) {
+			Frame prefix = new Frame(path, array, keys, values, from, mid);
+			from = mid;
+			return prefix;
+		}
+
+		/**
+		 * Gets the number of remaining children in this frame.
+		 * 
+		 * @return the number of remaining children.
+		 */
+		public int remaining() {
+			return to - from;
+		}
+
+		/**
+		 * Gets the value of the child with the given index.
+		 * 
+		 * @param index the index of the child.
+		 * @return the value of the child.
+		 */
+		public Object value(int index) {
+			return array == null ? values[index] : array.get(index);
+		}
+
+		/**
+		 * Gets the path of the child with the given index.
+		 * 
+		 * @param index the index of the child.
+		 * @return the path of the child, in {@link JsonPath} syntax.
+		 */
+		public String path(int index) {
+			if (path == null) {
+				return keys[index];
+			} else if (array != null) {
+				return path + '[' + index + ']';
+			}
+
+			String key = keys[index];
+			boolean simple = !key.isEmpty();
+			for (int i = 0; i < key.length() && simple; i++) {
+				char c = key.charAt(i);
+				simple = Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '$';
+			}
+			if (simple) {
+				return path + '.' + key;
+			}
+			return path + "['" + key.replace("\\", "\\\\").replace("'", "\\'") + "']";
+		}
+
+	}
+
+	/**
+	 * A spliterator over the scalar values of a json tree, and their paths.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class TreeSpliterator implements Spliterator<Entry<String, Object>> {
+
+		/**
+		 * The ranges of children still to visit, in document order.
+		 */
+		private final Deque<Frame> frames;
+
+		/**
+		 * The estimated number of remaining values.
+		 */
+		private long estimate;
+
+		/**
+		 * Whether the json tree can't be modified.
+		 */
+		private final boolean immutable;
+
+		/**
+		 * Creates a new TreeSpliterator.
+		 * 
+		 * @param frames    the ranges of children to visit.
+		 * @param estimate  the estimated number of values in these ranges.
+		 * @param immutable whether the json tree can't be modified.
+		 */
+		public TreeSpliterator(Deque<Frame> frames, long estimate, boolean immutable) {
+			this.frames = frames;
+			this.estimate = estimate;
+			this.immutable = immutable;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Entry<String, Object>> action) {
+			while (!frames.isEmpty()) {
+				Frame frame = frames.peekFirst();
+				if (frame.remaining() == 0) {
+					frames.pollFirst();
+					continue;
+				}
+
+				int index = frame.from++;
+				Object value = frame.value(index);
+				String path = frame.path(index);
+				if (value instanceof JsonObject || value instanceof JsonArray) {
+					frames.addFirst(Frame.of(path, value));
+				} else {
+					if (estimate > 0) {
+						estimate--;
+					}
+					action.accept(new SimpleImmutableEntry<>(path, value));
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator<Entry<String, Object>> trySplit() {
+			while (true) {
+				if (frames.size() >= 2) {
+					Deque<Frame> prefix = new ArrayDeque<>();
+					for (int i = frames.size() / 2; i > 0; i--) {
+						prefix.addLast(frames.pollFirst());
+					}
+					return split(prefix);
+				} else if (frames.isEmpty()) {
+					return null;
+				}
+
+				Frame frame = frames.peekFirst();
+				if (frame.remaining() >= MIN_SPLIT) {
+					Deque<Frame> prefix = new ArrayDeque<>();
+					prefix.add(frame.splitAt((frame.from + frame.to) >>> 1));
+					return split(prefix);
+				} else if (frame.remaining() == 0) {
+					frames.pollFirst();
+					continue;
+				}
+
+				// Only a single child left, descend into it if it has children itself.
+				Object value = frame.value(frame.from);
+				if (!(value instanceof JsonObject || value instanceof JsonArray)) {
+					return null;
+				}
+				String path = frame.path(frame.from);
+				frames.pollFirst();
+				frames.addFirst(Frame.of(path, value));
+			}
+		}
+
+		/**
+		 * Creates a spliterator for the given prefix frames, and assigns it half of
+		 * the estimated size.
+		 * 
+		 * @param prefix the frames for the new spliterator.
+		 * @return the new spliterator.
+		 */
+		private Spliterator<Entry<String, Object>> split(Deque<Frame> prefix) {
+			long half = estimate >>> 1;
+			estimate -= half;
+			return new TreeSpliterator(prefix, half, immutable);
+		}
+
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | (immutable ? IMMUTABLE : 0);
+		}
+
+	}
+
+}
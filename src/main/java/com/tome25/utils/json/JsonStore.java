@@ -0,0 +1,643 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A small embedded store for json documents, identified by string keys.<br>
+ * The documents are stored in a compact binary encoding in an append-only data
+ * file, so writes are sequential appends. The location of the latest version
+ * of each document is kept in a hash index, which is written to an index file
+ * when closing the store, so it doesn't have to be rebuilt by reading the data
+ * file. Reading a document that isn't cached takes a single positional read and
+ * decode.<br>
+ * Recently read documents are kept in a least recently used cache. The
+ * documents returned by this store are {@link JsonElement#freeze() frozen},
+ * clone them to modify them.<br>
+ * Replaced and removed documents stay in the data file until the store is
+ * {@link #compact() compacted}, which can be done automatically by a background
+ * thread started using {@link #startCompactor(double, long)}.<br>
+ * All methods of this class are thread safe.
+ * 
+ * @author ToMe25
+ */
+public class JsonStore implements Closeable {
+
+	/**
+	 * The default max number of cached documents.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final ThreadGroup COMPACTORS_THREAD_GROUP = new ThreadGroup("Json-Store-Compactors");
+	private static int nr = 0;
+
+	/**
+	 * The magic number at the start of data and index files.
+	 */
+	private static final int MAGIC = 0x544A5331;
+
+	/**
+	 * The size of the data file header: the magic number and the file id.
+	 */
+	private static final int FILE_HEADER_SIZE = 12;
+
+	/**
+	 * The size of the record header: the key length, the value length and the
+	 * checksum.
+	 */
+	private static final int RECORD_HEADER_SIZE = 12;
+
+	private static final String DATA_FILE = "store.dat";
+	private static final String INDEX_FILE = "store.idx";
+	private static final Random RANDOM = new Random();
+
+	/**
+	 * The directory containing the files of this store.
+	 */
+	private final Path directory;
+
+	/**
+	 * The locations of the latest records of all documents in this store.
+	 */
+	private final Map<String, Location> index = new HashMap<>();
+
+	/**
+	 * The recently read documents.
+	 */
+	private final Map<String, JsonElement<?>> cache;
+
+	/**
+	 * The data file of this store, or null if it was closed.
+	 */
+	private FileChannel data;
+
+	/**
+	 * The random id of the current data file, used to detect outdated index files.
+	 */
+	private long fileId;
+
+	/**
+	 * The number of bytes in the data file used by replaced or removed documents.
+	 */
+	private long garbage;
+
+	/**
+	 * The compactor thread of this store, or null if there is none.
+	 */
+	private Thread compactor;
+
+	/**
+	 * Opens the store in the given directory, using the default cache size.
+	 * 
+	 * @param directory the directory containing the store files.
+	 * @throws IOException if reading or creating the store files fails.
+	 */
+	public JsonStore(File directory) throws IOException {
+		this(directory.toPath(), DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Opens the store in the given directory, creating it if it doesn't exist.
+	 * 
+	 * @param directory the directory containing the store files.
+	 * @param cacheSize the max number of cached documents.
+	 * @throws IOException if reading or creating the store files fails.
+	 */
+	public JsonStore(Path directory, int cacheSize) throws IOException {
+		this.directory = directory;
+		cache = new LinkedHashMap<String, JsonElement<?>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = -1586397415276744124L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, JsonElement<?>> eldest) {
+				return size() > cacheSize;
+			}
+
+		};
+
+		Files.createDirectories(directory);
+		Path file = directory.resolve(DATA_FILE);
+		if (!Files.exists(file)) {
+			fileId = RANDOM.nextLong();
+			data = createDataFile(file, fileId);
+		} else {
+			data = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			readFully(header, 0);
+			if (header.getInt(0) != MAGIC) {
+				data.close();
+				throw new IOException(String.format("\"%s\" isn't a json store data file!", file));
+			}
+			fileId = header.getLong(4);
+			scan(readIndex());
+		}
+	}
+
+	/**
+	 * Gets the document with the given key.
+	 * 
+	 * @param key the key of the document.
+	 * @return the frozen document, or null if this store doesn't contain it.
+	 * @throws IOException    if reading the document fails.
+	 * @throws ParseException if the stored document is invalid.
+	 */
+	public synchronized JsonElement<?> get(String key) throws IOException, ParseException {
+		JsonElement<?> document = cache.get(key);
+		if (document != null) {
+			return document;
+		}
+
+		Location location = index.get(key);
+		if (location == null) {
+			return null;
+		}
+
+		checkOpen();
+		ByteBuffer record = ByteBuffer.allocate(location.length);
+		readFully(record, location.offset);
+		record.position(RECORD_HEADER_SIZE + record.getInt(0));
+		document = (JsonElement<?>) JsonBinary.decode(record);
+		document.freeze();
+		cache.put(key, document);
+		return document;
+	}
+
+	/**
+	 * Stores the given document, replacing the current document with the same key.
+	 * 
+	 * @param key      the key of the document.
+	 * @param document the document to store. Later changes to it are not stored.
+	 * @throws IOException if writing the document fails.
+	 */
+	public synchronized void put(String key, JsonElement<?> document) throws IOException {
+		checkOpen();
+		Location location = append(key, JsonBinary.encode(document));
+		Location old = index.put(key, location);
+		if (old != null) {
+			garbage += old.length;
+		}
+		cache.remove(key);
+	}
+
+	/**
+	 * Removes the document with the given key.
+	 * 
+	 * @param key the key of the document.
+	 * @return whether this store contained a document with the given key.
+	 * @throws IOException if writing the removal fails.
+	 */
+	public synchronized boolean remove(String key) throws IOException {
+		checkOpen();
+		if (!index.containsKey(key)) {
+			return false;
+		}
+
+		Location tombstone = append(key, null);
+		garbage += index.remove(key).length + tombstone.length;
+		cache.remove(key);
+		return true;
+	}
+
+	/**
+	 * Checks whether this store contains a document with the given key.
+	 * 
+	 * @param key the key to look for.
+	 * @return whether there is a document with the given key.
+	 */
+	public synchronized boolean containsKey(String key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * Gets a copy of the set of keys of the documents in this store.
+	 * 
+	 * @return the keys of all documents.
+	 */
+	public synchronized Set<String> keySet() {
+		return new HashSet<>(index.keySet());
+	}
+
+	/**
+	 * Gets the number of documents in this store.
+	 * 
+	 * @return the number of documents.
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Gets the part of the data file used by replaced or removed documents.
+	 * 
+	 * @return the garbage ratio, between 0 and 1.
+	 * @throws IOException if getting the size of the data file fails.
+	 */
+	public synchronized double getGarbageRatio() throws IOException {
+		checkOpen();
+		long size = data.size() - FILE_HEADER_SIZE;
+		return size == 0 ? 0 : garbage / (double) size;
+	}
+
+	/**
+	 * Makes all changes to this store durable.
+	 * 
+	 * @throws IOException if syncing the data file fails.
+	 */
+	public synchronized void sync() throws IOException {
+		checkOpen();
+		data.force(false);
+	}
+
+	/**
+	 * Rewrites the data file, only keeping the latest records of the documents in
+	 * this store.
+	 * 
+	 * @throws IOException if rewriting the data file fails.
+	 */
+	public synchronized void compact() throws IOException {
+		checkOpen();
+		Path temp = directory.resolve(DATA_FILE + ".tmp");
+		long compactedId = RANDOM.nextLong();
+		FileChannel compacted = createDataFile(temp, compactedId);
+		long position = FILE_HEADER_SIZE;
+		Map<String, Location> locations = new HashMap<>();
+		try {
+			for (Entry<String, Location> entry : index.entrySet()) {
+				Location location = entry.getValue();
+				long transferred = 0;
+				while (transferred < location.length) {
+					transferred += data.transferTo(location.offset + transferred, location.length - transferred,
+							compacted);
+				}
+				locations.put(entry.getKey(), new Location(position, location.length));
+				position += location.length;
+			}
+			compacted.force(false);
+		} catch (IOException e) {
+			compacted.close();
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		data.close();
+		Files.move(temp, directory.resolve(DATA_FILE), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		data = compacted;
+		fileId = compactedId;
+		index.putAll(locations);
+		garbage = 0;
+		writeIndex();
+	}
+
+	/**
+	 * Starts a daemon thread compacting this store whenever its garbage ratio
+	 * reaches the given value.<br>
+	 * Does nothing if there already is a compactor thread.
+	 * 
+	 * @param garbageRatio the garbage ratio at which to compact this store.
+	 * @param interval     the number of milliseconds between two checks.
+	 */
+	public synchronized void startCompactor(double garbageRatio, long interval) {
+		if (compactor != null) {
+			return;
+		}
+
+		compactor = new Thread(COMPACTORS_THREAD_GROUP, () -> {
+			Thread current = Thread.currentThread();
+			try {
+				while (true) {
+					synchronized (this) {
+						if (compactor != current || data == null) {
+							return;
+						}
+						try {
+							if (getGarbageRatio() >= garbageRatio) {
+								compact();
+							}
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+					Thread.sleep(interval);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+		}, "Json-Store-Compactor-" + nr++);
+		compactor.setDaemon(true);
+		compactor.start();
+	}
+
+	/**
+	 * Stops the compactor thread of this store, if there is one.
+	 */
+	public void stopCompactor() {
+		Thread thread;
+		synchronized (this) {
+			thread = compactor;
+			compactor = null;
+		}
+
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(500);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops the compactor thread, writes the index file and closes the data file.
+	 */
+	@Override
+	public void close() throws IOException {
+		stopCompactor();
+		synchronized (this) {
+			if (data != null) {
+				data.force(false);
+				writeIndex();
+				data.close();
+				data = null;
+				cache.clear();
+			}
+		}
+	}
+
+	/**
+	 * Throws an {@link IOException} if this store was closed.
+	 * 
+	 * @throws IOException if this store was closed.
+	 */
+	private void checkOpen() throws IOException {
+		if (data == null) {
+			throw new IOException("This json store is closed!");
+		}
+	}
+
+	/**
+	 * Appends a record to the data file.
+	 * 
+	 * @param key   the key of the record.
+	 * @param value the encoded document, or null for a removal.
+	 * @return the location of the new record.
+	 * @throws IOException if writing the record fails.
+	 */
+	private Location append(String key, byte[] value) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int valueLength = value == null ? 0 : value.length;
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + valueLength);
+		record.putInt(keyBytes.length);
+		record.putInt(value == null ? -1 : value.length);
+		record.putInt(0);
+		record.put(keyBytes);
+		if (value != null) {
+			record.put(value);
+		}
+		record.putInt(8, checksum(record.array(), keyBytes.length + valueLength));
+		record.flip();
+
+		long offset = data.size();
+		while (record.hasRemaining()) {
+			data.write(record, offset + record.position());
+		}
+		return new Location(offset, record.limit());
+	}
+
+	/**
+	 * Reads all records after the given position of the data file into the index,
+	 * and removes a trailing partially written record.
+	 * 
+	 * @param position the position to start reading from.
+	 * @throws IOException if reading the data file fails.
+	 */
+	private void scan(long position) throws IOException {
+		long size = data.size();
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		while (position + RECORD_HEADER_SIZE <= size) {
+			header.clear();
+			readFully(header, position);
+			int keyLength = header.getInt(0);
+			int valueLength = header.getInt(4);
+			int length = RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+			if (keyLength < 0 || valueLength < -1 || length < 0 || position + length > size) {
+				break;
+			}
+
+			ByteBuffer record = ByteBuffer.allocate(length);
+			readFully(record, position);
+			if (checksum(record.array(), length - RECORD_HEADER_SIZE) != header.getInt(8)) {
+				break;
+			}
+
+			String key = new String(record.array(), RECORD_HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+			Location old = valueLength < 0 ? index.remove(key) : index.put(key, new Location(position, length));
+			if (old != null) {
+				garbage += old.length;
+			}
+			if (valueLength < 0) {
+				garbage += length;
+			}
+			position += length;
+		}
+
+		if (position < size) {
+			data.truncate(position);
+			data.force(false);
+		}
+	}
+
+	/**
+	 * Reads the index file, if it belongs to the current data file.
+	 * 
+	 * @return the position in the data file up to which the index is complete.
+	 * @throws IOException if reading the index file fails.
+	 */
+	private long readIndex() throws IOException {
+		Path file = directory.resolve(INDEX_FILE);
+		if (!Files.exists(file)) {
+			return FILE_HEADER_SIZE;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, Math.max(buffer.limit() - 4, 0));
+		if (buffer.limit() < 32 || buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()
+				|| buffer.getInt() != MAGIC || buffer.getLong() != fileId) {
+			return FILE_HEADER_SIZE;
+		}
+
+		long position = buffer.getLong();
+		long indexGarbage = buffer.getLong();
+		if (position > data.size()) {
+			return FILE_HEADER_SIZE;
+		}
+
+		while (buffer.remaining() > 4) {
+			int keyLength = buffer.getInt();
+			String key = new String(buffer.array(), buffer.position(), keyLength, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + keyLength);
+			index.put(key, new Location(buffer.getLong(), buffer.getInt()));
+		}
+		garbage = indexGarbage;
+		return position;
+	}
+
+	/**
+	 * Writes the index to the index file, replacing the old one atomically.
+	 * 
+	 * @throws IOException if writing the index file fails.
+	 */
+	private void writeIndex() throws IOException {
+		int size = 28;
+		Map<byte[], Location> entries = new LinkedHashMap<>();
+		for (Entry<String, Location> entry : index.entrySet()) {
+			byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			entries.put(key, entry.getValue());
+			size += 16 + key.length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size + 4);
+		buffer.putInt(MAGIC);
+		buffer.putLong(fileId);
+		buffer.putLong(data.size());
+		buffer.putLong(garbage);
+		for (Entry<byte[], Location> entry : entries.entrySet()) {
+			buffer.putInt(entry.getKey().length);
+			buffer.put(entry.getKey());
+			buffer.putLong(entry.getValue().offset);
+			buffer.putInt(entry.getValue().length);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		buffer.flip();
+
+		Path temp = directory.resolve(INDEX_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Creates a new empty data file.
+	 * 
+	 * @param file the path of the file to create.
+	 * @param id   the random id of the new file.
+	 * @return the channel of the new file.
+	 * @throws IOException if creating the file fails.
+	 */
+	private static FileChannel createDataFile(Path file, long id) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putLong(id);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		return channel;
+	}
+
+	/**
+	 * Fills the given buffer with bytes from the data file.
+	 * 
+	 * @param buffer   the buffer to fill.
+	 * @param position the position in the data file to read from.
+	 * @throws IOException if the data file ends before the buffer is full.
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (data.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of the json store data file!");
+			}
+		}
+	}
+
+	/**
+	 * Calculates the checksum of the key and value of a record.
+	 * 
+	 * @param record the bytes of the record.
+	 * @param length the length of the key and value.
+	 * @return the checksum.
+	 */
+	private static int checksum(byte[] record, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(record, RECORD_HEADER_SIZE, length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * The location of a record in the data file.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Location {
+
+		/**
+		 * The position of the start of the record.
+		 */
+		private final long offset;
+
+		/**
+		 * The length of the record, including its header.
+		 */
+		private final int length;
+
+		/**
+		 * Creates a new Location.
+		 * 
+		 * @param offset the position of the start of the record.
+		 * @param length the length of the record.
+		 */
+		public Location(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+	}
+
+}
@@ -0,0 +1,1158 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.tome25.utils.exception.InvalidTypeException;
+
+/**
+ * A read-only, column oriented table containing the records of a
+ * {@link JsonArray} of flat {@link JsonObject JsonObjects}, for aggregating
+ * single fields of lots of records.<br>
+ * Every key of the records becomes a column. Columns only containing integers
+ * or doubles store them in a single primitive array, boolean columns store them
+ * in a {@link BitSet}, and string columns store an index into a dictionary of
+ * their distinct values. Columns containing values of different types, or
+ * nested objects and arrays, store them as objects.<br>
+ * Records not containing a key, or containing it with a null value, have a null
+ * value in its column.<br>
+ * Integer columns are converted to double columns when they contain a double,
+ * so all their values are returned as doubles afterwards.<br>
+ * A table can be created from a {@link JsonArray} using {@link #of(JsonArray)},
+ * or read directly from a json document using {@link #read(JsonReader)}, which
+ * doesn't create a {@link JsonObject} for every record.
+ * 
+ * @author ToMe25
+ */
+public final class JsonTable {
+
+	/**
+	 * The columns of this table, in the order in which their keys were first
+	 * found.
+	 */
+	private final Map<String, Column> columns = new LinkedHashMap<>();
+
+	/**
+	 * The number of rows in this table.
+	 */
+	private int rows;
+
+	/**
+	 * Creates a new empty JsonTable.
+	 */
+	private JsonTable() {
+	}
+
+	/**
+	 * Creates a new JsonTable containing the records of the given array.
+	 * 
+	 * @param records the array of objects to convert.
+	 * @return the table containing the given records.
+	 * @throws InvalidTypeException if the array contains a value that isn't a
+	 *                              {@link JsonObject}.
+	 */
+	public static JsonTable of(JsonArray records) throws InvalidTypeException {
+		JsonTable table = new JsonTable();
+		for (Object record : records) {
+			if (!(record instanceof JsonObject)) {
+				throw new InvalidTypeException("JsonObject",
+						record == null ? "null" : record.getClass().getSimpleName());
+			}
+
+			for (Map.Entry<String, Object> entry : ((JsonObject) record).entrySet()) {
+				Column column = table.columns.getOrDefault(entry.getKey(), NullColumn.EMPTY);
+				table.putColumn(entry.getKey(), column, column.set(table.rows, entry.getValue()));
+			}
+			table.rows++;
+		}
+		table.finish();
+		return table;
+	}
+
+	/**
+	 * Reads a JsonTable from the given reader.<br>
+	 * The array of records is read starting with the current token, or the first
+	 * token if {@link JsonReader#next()} wasn't called yet. After reading, the
+	 * current token is the end of the array.<br>
+	 * The values are written to the columns directly, without creating a
+	 * {@link JsonObject} for the records, or boxing numbers.
+	 * 
+	 * @param reader the reader to read from.
+	 * @return the table containing the records that were read.
+	 * @throws ParseException if the json is invalid, or isn't an array of
+	 *                        objects.
+	 */
+	public static JsonTable read(JsonReader reader) throws ParseException {
+		if (reader.getToken() == null || reader.getToken() == JsonToken.KEY) {
+			reader.next();
+		}
+		if (reader.getToken() != JsonToken.START_ARRAY) {
+			throw new ParseException("Expected an array of objects, but found " + reader.getToken() + "!",
+					reader.getTokenOffset());
+		}
+
+		JsonTable table = new JsonTable();
+		// The keys of the previous record, to avoid creating a string for every key.
+		List<String> keys = new ArrayList<>();
+		while (reader.next() != JsonToken.END_ARRAY) {
+			if (reader.getToken() != JsonToken.START_OBJECT) {
+				throw new ParseException("Expected an object, but found " + reader.getToken() + "!",
+						reader.getTokenOffset());
+			}
+
+			for (int i = 0; reader.next() == JsonToken.KEY; i++) {
+				String key;
+				if (i < keys.size() && keys.get(i).contentEquals(reader.getChars())) {
+					key = keys.get(i);
+				} else {
+					key = reader.getString();
+					if (i < keys.size()) {
+						keys.set(i, key);
+					} else {
+						keys.add(key);
+					}
+				}
+				table.readValue(key, reader);
+			}
+			table.rows++;
+		}
+		table.finish();
+		return table;
+	}
+
+	/**
+	 * Reads a JsonTable from the given json string.
+	 * 
+	 * @param json the json array of objects to read.
+	 * @return the table containing the records that were read.
+	 * @throws ParseException if the json is invalid, or isn't an array of
+	 *                        objects.
+	 */
+	public static JsonTable read(CharSequence json) throws ParseException {
+		JsonReader reader = new JsonReader(json);
+		JsonTable table = read(reader);
+		reader.next();
+		return table;
+	}
+
+	/**
+	 * Reads the value of the given key in the current row from the given reader.
+	 * 
+	 * @param key    the key of the value to read.
+	 * @param reader the reader to read the value from.
+	 * @throws ParseException if the json is invalid.
+	 */
+	private void readValue(String key, JsonReader reader) throws ParseException {
+		Column column = columns.getOrDefault(key, NullColumn.EMPTY);
+		switch (reader.next()) {
+		case INT:
+		case LONG:
+			putColumn(key, column, column.setLong(rows, reader.getLong()));
+			break;
+		case DOUBLE:
+			putColumn(key, column, column.setDouble(rows, reader.getDouble()));
+			break;
+		case START_OBJECT:
+		case START_ARRAY:
+			putColumn(key, column, column.set(rows, reader.readTree()));
+			break;
+		default:
+			putColumn(key, column, column.set(rows, reader.getValue()));
+		}
+	}
+
+	/**
+	 * Stores the given column for the given key, if it differs from the old
+	 * column.
+	 * 
+	 * @param key    the key of the column.
+	 * @param old    the previous column for this key.
+	 * @param column the column to store.
+	 */
+	private void putColumn(String key, Column old, Column column) {
+		if (column != old) {
+			columns.put(key, column);
+		}
+	}
+
+	/**
+	 * Extends all columns to the number of rows in this table, and shrinks their
+	 * storage to it.
+	 */
+	private void finish() {
+		for (Column column : columns.values()) {
+			column.finish(rows);
+		}
+	}
+
+	/**
+	 * Gets the column for the given key.
+	 * 
+	 * @param name the key of the column.
+	 * @return the column, or a column only containing nulls if there is none.
+	 */
+	private Column column(String name) {
+		Column column = columns.get(name);
+		if (column == null) {
+			column = new NullColumn();
+			column.finish(rows);
+		}
+		return column;
+	}
+
+	/**
+	 * Gets the number of rows in this table.
+	 * 
+	 * @return the number of records in this table.
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Gets the names of the columns of this table, in the order in which they
+	 * were first found in the records.
+	 * 
+	 * @return an unmodifiable view of the column names.
+	 */
+	public Set<String> getColumnNames() {
+		return Collections.unmodifiableSet(columns.keySet());
+	}
+
+	/**
+	 * Gets the type of the values in the given column.<br>
+	 * This is {@link Integer}, {@link Long}, {@link Double}, {@link Boolean} or
+	 * {@link String} for columns only containing values of that type, or
+	 * {@link Object} for columns with values of different types, nested values,
+	 * or only null values.
+	 * 
+	 * @param name the name of the column.
+	 * @return the type of the given column.
+	 */
+	public Class<?> getColumnType(String name) {
+		return column(name).getType();
+	}
+
+	/**
+	 * Gets the value of the given column in the given row.
+	 * 
+	 * @param row  the index of the row.
+	 * @param name the name of the column.
+	 * @return the value, or null if the record didn't contain it.
+	 * @throws IndexOutOfBoundsException if the given row doesn't exist.
+	 */
+	public Object get(int row, String name) throws IndexOutOfBoundsException {
+		checkRow(row);
+		Column column = columns.get(name);
+		return column == null ? null : column.get(row);
+	}
+
+	/**
+	 * Creates a new {@link JsonObject} containing the non-null values of the
+	 * given row.
+	 * 
+	 * @param row the index of the row.
+	 * @return the record in the given row.
+	 * @throws IndexOutOfBoundsException if the given row doesn't exist.
+	 */
+	public JsonObject getRow(int row) throws IndexOutOfBoundsException {
+		checkRow(row);
+		JsonObject record = new JsonObject(new ShapedMap());
+		for (Map.Entry<String, Column> entry : columns.entrySet()) {
+			Object value = entry.getValue().get(row);
+			if (value != null) {
+				record.put(entry.getKey(), value);
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * Creates a new {@link JsonArray} containing the records of this table.
+	 * 
+	 * @return a {@link JsonArray} containing a {@link JsonObject} for each row.
+	 */
+	public JsonArray toJsonArray() {
+		JsonArray array = new JsonArray();
+		for (int i = 0; i < rows; i++) {
+			array.add(getRow(i));
+		}
+		return array;
+	}
+
+	/**
+	 * Checks whether the given row exists.
+	 * 
+	 * @param row the index of the row.
+	 * @throws IndexOutOfBoundsException if the given row doesn't exist.
+	 */
+	private void checkRow(int row) throws IndexOutOfBoundsException {
+		if (row < 0 || row >= rows) {
+			throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", row, rows));
+		}
+	}
+
+	/**
+	 * Counts the non-null values in the given column.
+	 * 
+	 * @param name the name of the column.
+	 * @return the number of rows with a value for the given column.
+	 */
+	public int count(String name) {
+		Column column = columns.get(name);
+		return column == null ? 0 : rows - column.nulls;
+	}
+
+	/**
+	 * Calculates the sum of the values in the given numeric column.<br>
+	 * Null values are ignored.
+	 * 
+	 * @param name the name of the column.
+	 * @return the sum as a {@link Long} for integer columns, or a {@link Double}
+	 *         for double columns.
+	 * @throws InvalidTypeException if the column contains values that aren't
+	 *                              numbers.
+	 */
+	public Number sum(String name) throws InvalidTypeException {
+		return column(name).sum();
+	}
+
+	/**
+	 * Gets the smallest value in the given numeric column.<br>
+	 * Null values are ignored.
+	 * 
+	 * @param name the name of the column.
+	 * @return the smallest value, or null if the column has no values.
+	 * @throws InvalidTypeException if the column contains values that aren't
+	 *                              numbers.
+	 */
+	public Number min(String name) throws InvalidTypeException {
+		return column(name).extreme(false);
+	}
+
+	/**
+	 * Gets the biggest value in the given numeric column.<br>
+	 * Null values are ignored.
+	 * 
+	 * @param name the name of the column.
+	 * @return the biggest value, or null if the column has no values.
+	 * @throws InvalidTypeException if the column contains values that aren't
+	 *                              numbers.
+	 */
+	public Number max(String name) throws InvalidTypeException {
+		return column(name).extreme(true);
+	}
+
+	/**
+	 * Counts the rows for each distinct value of the given column.<br>
+	 * Rows without a value are counted for the key null. The groups are ordered
+	 * by the first row containing them.
+	 * 
+	 * @param name the name of the column to group by.
+	 * @return a map containing the number of rows for each value.
+	 */
+	public Map<Object, Integer> countBy(String name) {
+		return column(name).countBy();
+	}
+
+	/**
+	 * A single column of a {@link JsonTable}.<br>
+	 * Columns are filled row by row. Rows that are skipped while filling a column
+	 * are null.
+	 * 
+	 * @author ToMe25
+	 */
+	private abstract static class Column {
+
+		/**
+		 * The capacity for new columns.
+		 */
+		private static final int DEFAULT_CAPACITY = 16;
+
+		/**
+		 * The rows of this column that contain a value.
+		 */
+		protected final BitSet present = new BitSet();
+
+		/**
+		 * The number of rows in this column.
+		 */
+		protected int size;
+
+		/**
+		 * The number of rows without a value. Only valid after {@link #finish(int)}
+		 * was called.
+		 */
+		protected int nulls;
+
+		/**
+		 * Creates a new empty column that can store the given value.
+		 * 
+		 * @param value the first value for the new column.
+		 * @return the new column.
+		 */
+		static Column forValue(Object value) {
+			if (value instanceof Integer) {
+				return new IntColumn();
+			} else if (value instanceof Long) {
+				return new LongColumn();
+			} else if (value instanceof Double) {
+				return new DoubleColumn();
+			} else if (value instanceof Boolean) {
+				return new BooleanColumn();
+			} else if (value instanceof String) {
+				return new StringColumn();
+			} else {
+				return new ObjectColumn();
+			}
+		}
+
+		/**
+		 * Gets the type of the values stored in this column.
+		 * 
+		 * @return the value type of this column.
+		 */
+		abstract Class<?> getType();
+
+		/**
+		 * Checks whether the given value can be stored in this column.
+		 * 
+		 * @param value the value to check. Never null.
+		 * @return whether this column can store the value.
+		 */
+		abstract boolean accepts(Object value);
+
+		/**
+		 * Gets the value in the given row.
+		 * 
+		 * @param row the row to get.
+		 * @return the value in the given row, or null if it has none.
+		 */
+		abstract Object get(int row);
+
+		/**
+		 * Writes the given value to the storage of this column.
+		 * 
+		 * @param row   the row to write to.
+		 * @param value the value to write. Null to clear the row.
+		 */
+		abstract void store(int row, Object value);
+
+		/**
+		 * Gets the current capacity of this column.
+		 * 
+		 * @return the length of the storage of this column.
+		 */
+		abstract int capacity();
+
+		/**
+		 * Replaces the storage of this column with one of the given length.
+		 * 
+		 * @param capacity the new capacity of this column.
+		 */
+		abstract void resize(int capacity);
+
+		/**
+		 * Sets the value in the given row. Has to be the last row of this column, or
+		 * a row after it.
+		 * 
+		 * @param row   the row to set.
+		 * @param value the new value.
+		 * @return the column containing the value. Either this column, or a new
+		 *         column containing the content of this column, if this column can't
+		 *         store the value.
+		 */
+		Column set(int row, Object value) {
+			if (value != null && !accepts(value)) {
+				return widen(value).set(row, value);
+			}
+
+			grow(row);
+			store(row, value);
+			present.set(row, value != null);
+			return this;
+		}
+
+		/**
+		 * Sets the value in the given row to the given integer.
+		 * 
+		 * @param row   the row to set.
+		 * @param value the new value.
+		 * @return the column containing the value.
+		 * @see #set(int, Object)
+		 */
+		Column setLong(int row, long value) {
+			return set(row, value == (int) value ? (Object) (int) value : (Object) value);
+		}
+
+		/**
+		 * Sets the value in the given row to the given double.
+		 * 
+		 * @param row   the row to set.
+		 * @param value the new value.
+		 * @return the column containing the value.
+		 * @see #set(int, Object)
+		 */
+		Column setDouble(int row, double value) {
+			return set(row, value);
+		}
+
+		/**
+		 * Creates a new column containing the content of this column, that can store
+		 * the given value as well.
+		 * 
+		 * @param value the value this column can't store.
+		 * @return the new column.
+		 */
+		Column widen(Object value) {
+			Column column = new ObjectColumn();
+			column.copy(this);
+			return column;
+		}
+
+		/**
+		 * Copies the content of the given column into this column.
+		 * 
+		 * @param from the column to copy.
+		 */
+		void copy(Column from) {
+			if (from.size > 0) {
+				grow(from.size - 1);
+			}
+			for (int i = from.present.nextSetBit(0); i >= 0; i = from.present.nextSetBit(i + 1)) {
+				set(i, from.get(i));
+			}
+		}
+
+		/**
+		 * Makes sure this column contains the given row.
+		 * 
+		 * @param row the row this column has to contain.
+		 */
+		void grow(int row) {
+			if (row >= size) {
+				int capacity = capacity();
+				if (row >= capacity) {
+					resize(Math.max(row + 1, Math.max(capacity + (capacity >> 1), DEFAULT_CAPACITY)));
+				}
+				size = row + 1;
+			}
+		}
+
+		/**
+		 * Extends this column to the given number of rows, shrinks its storage to
+		 * it, and counts its null values.
+		 * 
+		 * @param rows the number of rows in the table.
+		 */
+		void finish(int rows) {
+			if (rows > 0) {
+				grow(rows - 1);
+			}
+			if (capacity() > size) {
+				resize(size);
+			}
+			nulls = size - present.cardinality();
+		}
+
+		/**
+		 * Calculates the sum of the values in this column.
+		 * 
+		 * @return the sum of the values.
+		 * @throws InvalidTypeException if this isn't a numeric column.
+		 */
+		Number sum() throws InvalidTypeException {
+			throw new InvalidTypeException("Number", getType().getSimpleName());
+		}
+
+		/**
+		 * Gets the smallest or biggest value in this column.
+		 * 
+		 * @param max whether to get the biggest value.
+		 * @return the smallest or biggest value, or null if this column has no
+		 *         values.
+		 * @throws InvalidTypeException if this isn't a numeric column.
+		 */
+		Number extreme(boolean max) throws InvalidTypeException {
+			throw new InvalidTypeException("Number", getType().getSimpleName());
+		}
+
+		/**
+		 * Counts the rows for each distinct value of this column.
+		 * 
+		 * @return a map containing the number of rows for each value.
+		 */
+		Map<Object, Integer> countBy() {
+			Map<Object, Integer> counts = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				counts.merge(get(i), 1, Integer::sum);
+			}
+			return counts;
+		}
+
+	}
+
+	/**
+	 * A {@link Column} that doesn't contain any values yet.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class NullColumn extends Column {
+
+		/**
+		 * An empty null column, used as the initial column for new keys.<br>
+		 * Only ever replaced, never modified, since it can't store any values.
+		 */
+		static final NullColumn EMPTY = new NullColumn();
+
+		@Override
+		Class<?> getType() {
+			return Object.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return false;
+		}
+
+		@Override
+		Object get(int row) {
+			return null;
+		}
+
+		@Override
+		void store(int row, Object value) {
+		}
+
+		@Override
+		int capacity() {
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		void resize(int capacity) {
+		}
+
+		@Override
+		Column set(int row, Object value) {
+			if (value != null) {
+				return widen(value).set(row, value);
+			} else if (this == EMPTY) {
+				Column column = new NullColumn();
+				column.grow(row);
+				return column;
+			}
+			grow(row);
+			return this;
+		}
+
+		@Override
+		Column widen(Object value) {
+			Column column = forValue(value);
+			column.copy(this);
+			return column;
+		}
+
+		@Override
+		void finish(int rows) {
+			size = rows;
+			nulls = rows;
+		}
+
+		@Override
+		Number sum() {
+			return 0L;
+		}
+
+		@Override
+		Number extreme(boolean max) {
+			return null;
+		}
+
+	}
+
+	/**
+	 * A {@link Column} storing int values in an int array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class IntColumn extends Column {
+
+		/**
+		 * The values of this column. Null values are stored as zero.
+		 */
+		private int[] values = new int[0];
+
+		@Override
+		Class<?> getType() {
+			return Integer.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Integer;
+		}
+
+		@Override
+		Object get(int row) {
+			return present.get(row) ? values[row] : null;
+		}
+
+		@Override
+		void store(int row, Object value) {
+			values[row] = value == null ? 0 : (Integer) value;
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Column setLong(int row, long value) {
+			if (value != (int) value) {
+				return set(row, value);
+			}
+
+			grow(row);
+			values[row] = (int) value;
+			present.set(row);
+			return this;
+		}
+
+		@Override
+		Column widen(Object value) {
+			Column column;
+			if (value instanceof Long) {
+				column = new LongColumn();
+			} else if (value instanceof Double) {
+				column = new DoubleColumn();
+			} else {
+				return super.widen(value);
+			}
+			column.copy(this);
+			return column;
+		}
+
+		@Override
+		Number sum() {
+			long sum = 0;
+			for (int i = 0; i < size; i++) {
+				sum += values[i];
+			}
+			return sum;
+		}
+
+		@Override
+		Number extreme(boolean max) {
+			if (nulls == size) {
+				return null;
+			}
+
+			int result = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+			if (nulls == 0) {
+				for (int i = 0; i < size; i++) {
+					result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+				}
+			} else {
+				for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+					result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+				}
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 * A {@link Column} storing integer values in a long array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class LongColumn extends Column {
+
+		/**
+		 * The values of this column. Null values are stored as zero.
+		 */
+		private long[] values = new long[0];
+
+		@Override
+		Class<?> getType() {
+			return Long.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Long || value instanceof Integer;
+		}
+
+		@Override
+		Object get(int row) {
+			return present.get(row) ? values[row] : null;
+		}
+
+		@Override
+		void store(int row, Object value) {
+			values[row] = value == null ? 0 : ((Number) value).longValue();
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Column setLong(int row, long value) {
+			grow(row);
+			values[row] = value;
+			present.set(row);
+			return this;
+		}
+
+		@Override
+		Column widen(Object value) {
+			if (!(value instanceof Double)) {
+				return super.widen(value);
+			}
+
+			Column column = new DoubleColumn();
+			column.copy(this);
+			return column;
+		}
+
+		@Override
+		Number sum() {
+			long sum = 0;
+			for (int i = 0; i < size; i++) {
+				sum += values[i];
+			}
+			return sum;
+		}
+
+		@Override
+		Number extreme(boolean max) {
+			if (nulls == size) {
+				return null;
+			}
+
+			long result = max ? Long.MIN_VALUE : Long.MAX_VALUE;
+			if (nulls == 0) {
+				for (int i = 0; i < size; i++) {
+					result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+				}
+			} else {
+				for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+					result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+				}
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 * A {@link Column} storing numbers in a double array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class DoubleColumn extends Column {
+
+		/**
+		 * The values of this column. Null values are stored as zero.
+		 */
+		private double[] values = new double[0];
+
+		@Override
+		Class<?> getType() {
+			return Double.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Double || value instanceof Long || value instanceof Integer;
+		}
+
+		@Override
+		Object get(int row) {
+			return present.get(row) ? values[row] : null;
+		}
+
+		@Override
+		void store(int row, Object value) {
+			values[row] = value == null ? 0 : ((Number) value).doubleValue();
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Column setLong(int row, long value) {
+			return setDouble(row, value);
+		}
+
+		@Override
+		Column setDouble(int row, double value) {
+			grow(row);
+			values[row] = value;
+			present.set(row);
+			return this;
+		}
+
+		@Override
+		Number sum() {
+			double sum = 0;
+			for (int i = 0; i < size; i++) {
+				sum += values[i];
+			}
+			return sum;
+		}
+
+		@Override
+		Number extreme(boolean max) {
+			if (nulls == size) {
+				return null;
+			}
+
+			double result = max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			if (nulls == 0) {
+				for (int i = 0; i < size; i++) {
+					result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+				}
+			} else {
+				for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+					result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+				}
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 * A {@link Column} storing booleans in a {@link BitSet}.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class BooleanColumn extends Column {
+
+		/**
+		 * The rows whose value is true.
+		 */
+		private final BitSet values = new BitSet();
+
+		@Override
+		Class<?> getType() {
+			return Boolean.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Boolean;
+		}
+
+		@Override
+		Object get(int row) {
+			return present.get(row) ? values.get(row) : null;
+		}
+
+		@Override
+		void store(int row, Object value) {
+			values.set(row, value == Boolean.TRUE);
+		}
+
+		@Override
+		int capacity() {
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		void resize(int capacity) {
+		}
+
+	}
+
+	/**
+	 * A {@link Column} storing strings as indices into a dictionary of the
+	 * distinct values of the column.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class StringColumn extends Column {
+
+		/**
+		 * The distinct values of this column, in the order in which they were first
+		 * stored.
+		 */
+		private final List<String> dictionary = new ArrayList<>();
+
+		/**
+		 * The index of each value in the {@link #dictionary}.
+		 */
+		private final Map<String, Integer> indices = new HashMap<>();
+
+		/**
+		 * The index of the value of each row in the dictionary plus one, or zero for
+		 * null values.
+		 */
+		private int[] codes = new int[0];
+
+		@Override
+		Class<?> getType() {
+			return String.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof String;
+		}
+
+		@Override
+		Object get(int row) {
+			int code = codes[row];
+			return code == 0 ? null : dictionary.get(code - 1);
+		}
+
+		@Override
+		void store(int row, Object value) {
+			if (value == null) {
+				codes[row] = 0;
+				return;
+			}
+
+			Integer index = indices.get(value);
+			if (index == null) {
+				index = dictionary.size();
+				dictionary.add((String) value);
+				indices.put((String) value, index);
+			}
+			codes[row] = index + 1;
+		}
+
+		@Override
+		int capacity() {
+			return codes.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			codes = Arrays.copyOf(codes, capacity);
+		}
+
+		@Override
+		Map<Object, Integer> countBy() {
+			int[] counts = new int[dictionary.size() + 1];
+			for (int i = 0; i < size; i++) {
+				counts[codes[i]]++;
+			}
+
+			// Codes are assigned in the order of first occurrence, so only null has to be placed.
+			int nullPosition = dictionary.size();
+			if (nulls > 0) {
+				int firstNull = present.nextClearBit(0);
+				nullPosition = 0;
+				for (int i = 0; i < firstNull; i++) {
+					nullPosition = Math.max(nullPosition, codes[i]);
+				}
+			}
+
+			Map<Object, Integer> result = new LinkedHashMap<>();
+			for (int i = 0; i <= dictionary.size(); i++) {
+				if (i == nullPosition && counts[0] > 0) {
+					result.put(null, counts[0]);
+				}
+				if (i < dictionary.size() && counts[i + 1] > 0) {
+					result.put(dictionary.get(i), counts[i + 1]);
+				}
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 * A {@link Column} storing values of any type in an object array.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class ObjectColumn extends Column {
+
+		/**
+		 * The values of this column.
+		 */
+		private Object[] values = new Object[0];
+
+		@Override
+		Class<?> getType() {
+			return Object.class;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return true;
+		}
+
+		@Override
+		Object get(int row) {
+			return values[row];
+		}
+
+		@Override
+		void store(int row, Object value) {
+			values[row] = value;
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+	}
+
+}
@@ -0,0 +1,723 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A parsed json document stored off-heap as a flat tape of tokens, rather than
+ * as a tree of {@link JsonObject JsonObjects} and {@link JsonArray
+ * JsonArrays}.<br>
+ * The tape is a direct {@link ByteBuffer} of 64 bit entries. The top 8 bits of
+ * each entry contain the type of the token, the rest contain its value.
+ * Objects and arrays start with two entries, containing the index of the first
+ * entry after the container and the number of values in it, so that
+ * containers can be skipped without reading them. Strings are stored UTF-8
+ * encoded in a separate direct buffer, the string arena, and the tape only
+ * stores their offset in the arena.<br>
+ * This uses roughly as much memory as the json text itself, and since the
+ * memory is off-heap it doesn't put any pressure on the garbage collector.<br>
+ * The content can be accessed using {@link #getRoot()}, which returns read-only
+ * JsonObject and JsonArray views decoding the values on access. Cloning these
+ * views creates a regular, modifiable, heap copy.<br>
+ * Both the tape and the string arena are limited to 2GB each.
+ * 
+ * @author ToMe25
+ */
+public class JsonTape {
+
+	/**
+	 * The number of bits the type of an entry is shifted by.
+	 */
+	private static final int TYPE_SHIFT = 56;
+
+	/**
+	 * The mask to get the value of an entry.
+	 */
+	private static final long VALUE_MASK = (1L << TYPE_SHIFT) - 1;
+
+	/**
+	 * The start of an object. Followed by an entry containing the number of key
+	 * value pairs, and the keys and values. The value is the index of the first
+	 * entry after the object.
+	 */
+	private static final int OBJECT = 1;
+
+	/**
+	 * The start of an array. Followed by an entry containing the number of
+	 * values, and the values. The value is the index of the first entry after the
+	 * array.
+	 */
+	private static final int ARRAY = 2;
+
+	/**
+	 * A string, or a key. The value is the offset of the string in the string
+	 * arena.
+	 */
+	private static final int STRING = 3;
+
+	/**
+	 * An int. The value contains the int.
+	 */
+	private static final int INT = 4;
+
+	/**
+	 * A long. Followed by an entry containing the long.
+	 */
+	private static final int LONG = 5;
+
+	/**
+	 * A double. Followed by an entry containing the raw bits of the double.
+	 */
+	private static final int DOUBLE = 6;
+
+	/**
+	 * The boolean true.
+	 */
+	private static final int TRUE = 7;
+
+	/**
+	 * The boolean false.
+	 */
+	private static final int FALSE = 8;
+
+	/**
+	 * Null.
+	 */
+	private static final int NULL = 9;
+
+	/**
+	 * The buffer containing the tape entries.
+	 */
+	private final ByteBuffer tape;
+
+	/**
+	 * The buffer containing the strings referenced by the tape, each prefixed by
+	 * its length in bytes.
+	 */
+	private final ByteBuffer strings;
+
+	/**
+	 * Creates a new JsonTape with the given content.
+	 * 
+	 * @param tape    the buffer containing the tape entries.
+	 * @param strings the string arena.
+	 */
+	private JsonTape(ByteBuffer tape, ByteBuffer strings) {
+		this.tape = tape;
+		this.strings = strings;
+	}
+
+	/**
+	 * Parses the given json document into a new tape.
+	 * 
+	 * @param json the json document to parse.
+	 * @return the tape containing the parsed document.
+	 * @throws ParseException if the json is invalid, or its root isn't an object
+	 *                        or array.
+	 */
+	public static JsonTape parse(char[] json) throws ParseException {
+		return parse(CharBuffer.wrap(json));
+	}
+
+	/**
+	 * Parses the given json document into a new tape.<br>
+	 * To parse huge files without reading them into a string first, pass a
+	 * {@link CharBuffer} decoded from a memory mapped file.
+	 * 
+	 * @param json the json document to parse.
+	 * @return the tape containing the parsed document.
+	 * @throws ParseException if the json is invalid, or its root isn't an object
+	 *                        or array.
+	 */
+	public static JsonTape parse(CharSequence json) throws ParseException {
+		JsonReader reader = new JsonReader(json);
+		JsonToken token = reader.next();
+		if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+			throw new ParseException("Missing curly or square bracket at the start of the json!",
+					reader.getTokenOffset());
+		}
+
+		Builder builder = new Builder(json.length());
+		int[] starts = new int[16];
+		int[] counts = new int[16];
+		int depth = 0;
+		do {
+			if (depth > 0 && token != JsonToken.KEY && token != JsonToken.END_OBJECT
+					&& token != JsonToken.END_ARRAY) {
+				counts[depth - 1]++;
+			}
+
+			switch (token) {
+			case START_OBJECT:
+			case START_ARRAY:
+				if (depth == starts.length) {
+					starts = Arrays.copyOf(starts, depth * 2);
+					counts = Arrays.copyOf(counts, depth * 2);
+				}
+				starts[depth] = builder.size;
+				counts[depth++] = 0;
+				builder.add(0);
+				builder.add(0);
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				builder.set(starts[depth], entry(token == JsonToken.END_OBJECT ? OBJECT : ARRAY, builder.size));
+				builder.set(starts[depth] + 1, counts[depth]);
+				break;
+			case KEY:
+			case STRING:
+				builder.add(entry(STRING, builder.addString(reader.getString())));
+				break;
+			case INT:
+				builder.add(entry(INT, reader.getInt() & 0xFFFFFFFFL));
+				break;
+			case LONG:
+				builder.add(entry(LONG, 0));
+				builder.add(reader.getLong());
+				break;
+			case DOUBLE:
+				builder.add(entry(DOUBLE, 0));
+				builder.add(Double.doubleToRawLongBits(reader.getDouble()));
+				break;
+			case BOOLEAN:
+				builder.add(entry(reader.getBoolean() ? TRUE : FALSE, 0));
+				break;
+			case NULL:
+				builder.add(entry(NULL, 0));
+				break;
+			default:
+				break;
+			}
+			token = reader.next();
+		} while (token != JsonToken.END_DOCUMENT);
+
+		return builder.build();
+	}
+
+	/**
+	 * Creates a tape entry.
+	 * 
+	 * @param type  the type of the entry.
+	 * @param value the value of the entry.
+	 * @return the new entry.
+	 */
+	private static long entry(int type, long value) {
+		return (long) type << TYPE_SHIFT | value;
+	}
+
+	/**
+	 * Gets a read-only view of the root object or array of this tape.
+	 * 
+	 * @return the root element of this tape.
+	 */
+	public JsonElement<?> getRoot() {
+		return (JsonElement<?>) decode(0);
+	}
+
+	/**
+	 * Gets the number of bytes of off-heap memory used by this tape.
+	 * 
+	 * @return the size of the tape and its string arena in bytes.
+	 */
+	public long getMemoryUsage() {
+		return (long) tape.capacity() + strings.capacity();
+	}
+
+	/**
+	 * Gets the entry at the given index.
+	 * 
+	 * @param index the index of the entry.
+	 * @return the entry at the given index.
+	 */
+	private long get(int index) {
+		return tape.getLong(index << 3);
+	}
+
+	/**
+	 * Gets the index of the first entry after the value starting at the given
+	 * index.
+	 * 
+	 * @param index the index of the value to skip.
+	 * @return the index of the next value.
+	 */
+	private int skip(int index) {
+		long entry = get(index);
+		switch ((int) (entry >>> TYPE_SHIFT)) {
+		case OBJECT:
+		case ARRAY:
+			return (int) (entry & VALUE_MASK);
+		case LONG:
+		case DOUBLE:
+			return index + 2;
+		default:
+			return index + 1;
+		}
+	}
+
+	/**
+	 * Decodes the value starting at the given index.
+	 * 
+	 * @param index the index of the value.
+	 * @return the decoded value.
+	 */
+	private Object decode(int index) {
+		long entry = get(index);
+		switch ((int) (entry >>> TYPE_SHIFT)) {
+		case OBJECT:
+			return new JsonObject(new TapeMap(this, index));
+		case ARRAY:
+			return new JsonArray(new TapeList(this, index));
+		case STRING:
+			return decodeString(entry & VALUE_MASK);
+		case INT:
+			return (int) entry;
+		case LONG:
+			return get(index + 1);
+		case DOUBLE:
+			return Double.longBitsToDouble(get(index + 1));
+		case TRUE:
+			return true;
+		case FALSE:
+			return false;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Decodes the string at the given offset in the string arena.
+	 * 
+	 * @param offset the offset of the string.
+	 * @return the decoded string.
+	 */
+	private String decodeString(long offset) {
+		ByteBuffer buffer = strings.duplicate().order(strings.order());
+		buffer.position((int) offset);
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Checks whether the string entry at the given index equals the given UTF-8
+	 * encoded string, without decoding it.
+	 * 
+	 * @param index the index of the string entry.
+	 * @param bytes the UTF-8 bytes to compare to.
+	 * @return whether the strings are equal.
+	 */
+	private boolean stringEquals(int index, byte[] bytes) {
+		int offset = (int) (get(index) & VALUE_MASK);
+		if (strings.getInt(offset) != bytes.length) {
+			return false;
+		}
+		offset += 4;
+		for (int i = 0; i < bytes.length; i++) {
+			if (strings.get(offset + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A helper building the buffers of a new tape.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class Builder {
+
+		/**
+		 * The buffer the tape entries are written to.
+		 */
+		private ByteBuffer tape;
+
+		/**
+		 * The buffer the strings are written to.
+		 */
+		private ByteBuffer strings;
+
+		/**
+		 * The number of entries written so far.
+		 */
+		private int size;
+
+		/**
+		 * Creates a new Builder for a json of the given length.
+		 * 
+		 * @param length the number of characters in the json.
+		 */
+		public Builder(int length) {
+			tape = allocate(Math.max(64, length));
+			strings = allocate(Math.max(64, length / 2));
+		}
+
+		/**
+		 * Appends an entry to the tape.
+		 * 
+		 * @param entry the entry to append.
+		 */
+		public void add(long entry) {
+			if ((size + 1) << 3 > tape.capacity()) {
+				tape = grow(tape, (size + 1) << 3);
+			}
+			tape.putLong(size++ << 3, entry);
+		}
+
+		/**
+		 * Replaces an entry of the tape.
+		 * 
+		 * @param index the index of the entry to replace.
+		 * @param entry the new entry.
+		 */
+		public void set(int index, long entry) {
+			tape.putLong(index << 3, entry);
+		}
+
+		/**
+		 * Appends a string to the string arena.
+		 * 
+		 * @param str the string to append.
+		 * @return the offset of the string in the arena.
+		 */
+		public int addString(String str) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			if (strings.remaining() < bytes.length + 4) {
+				strings = grow(strings, strings.position() + bytes.length + 4);
+			}
+			int offset = strings.position();
+			strings.putInt(bytes.length);
+			strings.put(bytes);
+			return offset;
+		}
+
+		/**
+		 * Creates the tape, trimming the buffers to their used size.
+		 * 
+		 * @return the new tape.
+		 */
+		public JsonTape build() {
+			tape.limit(size << 3);
+			strings.flip();
+			return new JsonTape(copy(tape, tape.limit()), copy(strings, strings.limit()));
+		}
+
+		/**
+		 * Allocates a new direct buffer with the native byte order.
+		 * 
+		 * @param capacity the capacity of the new buffer.
+		 * @return the new buffer.
+		 */
+		private static ByteBuffer allocate(int capacity) {
+			return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+		}
+
+		/**
+		 * Creates a copy of the given buffer with at least the given capacity, and
+		 * at least double the capacity of the given buffer.
+		 * 
+		 * @param buffer   the buffer to grow.
+		 * @param capacity the min capacity of the new buffer.
+		 * @return the new buffer, positioned after the copied content.
+		 * @throws IllegalStateException if the buffer would exceed 2GB.
+		 */
+		private static ByteBuffer grow(ByteBuffer buffer, int capacity) throws IllegalStateException {
+			long newCapacity = Math.max((long) buffer.capacity() * 2, capacity);
+			if (capacity < 0 || newCapacity > Integer.MAX_VALUE - 8) {
+				if (capacity < 0 || capacity > Integer.MAX_VALUE - 8) {
+					throw new IllegalStateException("Json too big for a JsonTape!");
+				}
+				newCapacity = Integer.MAX_VALUE - 8;
+			}
+			int position = buffer.position();
+			ByteBuffer grown = copy(buffer, (int) newCapacity);
+			grown.position(position);
+			return grown;
+		}
+
+		/**
+		 * Copies the content of the given buffer, up to its position or limit,
+		 * whichever is bigger, to a new direct buffer.
+		 * 
+		 * @param buffer   the buffer to copy.
+		 * @param capacity the capacity of the new buffer.
+		 * @return the new buffer.
+		 */
+		private static ByteBuffer copy(ByteBuffer buffer, int capacity) {
+			ByteBuffer copy = allocate(capacity);
+			ByteBuffer source = buffer.duplicate();
+			source.limit(Math.min(Math.max(source.position(), source.limit()), capacity));
+			source.position(0);
+			copy.put(source);
+			copy.clear();
+			return copy;
+		}
+
+	}
+
+	/**
+	 * A read-only map view of an object stored in a {@link JsonTape}.<br>
+	 * Looking up a key searches the object linearly, without decoding the keys.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class TapeMap extends AbstractMap<String, Object> implements Cloneable {
+
+		/**
+		 * The tape containing the object.
+		 */
+		private final JsonTape tape;
+
+		/**
+		 * The index of the start of the object.
+		 */
+		private final int start;
+
+		/**
+		 * The cached entry set view of this map.
+		 */
+		private Set<Entry<String, Object>> entrySet;
+
+		/**
+		 * Creates a new map view for the object at the given index.
+		 * 
+		 * @param tape  the tape containing the object.
+		 * @param start the index of the start of the object.
+		 */
+		public TapeMap(JsonTape tape, int start) {
+			this.tape = tape;
+			this.start = start;
+		}
+
+		/**
+		 * Finds the value for the given key.
+		 * 
+		 * @param key the key to look for.
+		 * @return the index of the value, or -1 if this object doesn't contain the
+		 *         key.
+		 */
+		private int find(Object key) {
+			if (!(key instanceof String)) {
+				return -1;
+			}
+
+			byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+			int end = tape.skip(start);
+			for (int i = start + 2; i < end; i = tape.skip(i + 1)) {
+				if (tape.stringEquals(i, bytes)) {
+					return i + 1;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public Object get(Object key) {
+			int index = find(key);
+			return index < 0 ? null : tape.decode(index);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return find(key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return (int) tape.get(start + 1);
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			if (entrySet == null) {
+				entrySet = new AbstractSet<Entry<String, Object>>() {
+
+					@Override
+					public Iterator<Entry<String, Object>> iterator() {
+						return new Iterator<Entry<String, Object>>() {
+
+							/**
+							 * The index of the next key.
+							 */
+							private int next = start + 2;
+
+							/**
+							 * The index of the first entry after the object.
+							 */
+							private final int end = tape.skip(start);
+
+							@Override
+							public boolean hasNext() {
+								return next < end;
+							}
+
+							@Override
+							public Entry<String, Object> next() {
+								if (next >= end) {
+									throw new NoSuchElementException();
+								}
+								String key = tape.decodeString(tape.get(next) & VALUE_MASK);
+								Object value = tape.decode(next + 1);
+								next = tape.skip(next + 1);
+								return new SimpleImmutableEntry<>(key, value);
+							}
+
+						};
+					}
+
+					@Override
+					public int size() {
+						return TapeMap.this.size();
+					}
+
+				};
+			}
+			return entrySet;
+		}
+
+		/**
+		 * Creates a modifiable heap copy of this map.
+		 * 
+		 * @return a new map containing the content of this map.
+		 */
+		@Override
+		public CompactMap clone() {
+			CompactMap clone = new CompactMap(size());
+			clone.putAll(this);
+			return clone;
+		}
+
+	}
+
+	/**
+	 * A read-only list view of an array stored in a {@link JsonTape}.<br>
+	 * The index of each value is only calculated on the first random access.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class TapeList extends AbstractList<Object> implements RandomAccess, Cloneable {
+
+		/**
+		 * The tape containing the array.
+		 */
+		private final JsonTape tape;
+
+		/**
+		 * The index of the start of the array.
+		 */
+		private final int start;
+
+		/**
+		 * The indices of the values of this array, or null if they weren't needed
+		 * yet.
+		 */
+		private volatile int[] indices;
+
+		/**
+		 * Creates a new list view for the array at the given index.
+		 * 
+		 * @param tape  the tape containing the array.
+		 * @param start the index of the start of the array.
+		 */
+		public TapeList(JsonTape tape, int start) {
+			this.tape = tape;
+			this.start = start;
+		}
+
+		@Override
+		public Object get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+
+			int[] indices = this.indices;
+			if (indices == null) {
+				indices = new int[size()];
+				for (int i = 0, j = start + 2; i < indices.length; i++, j = tape.skip(j)) {
+					indices[i] = j;
+				}
+				this.indices = indices;
+			}
+			return tape.decode(indices[index]);
+		}
+
+		@Override
+		public int size() {
+			return (int) tape.get(start + 1);
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new Iterator<Object>() {
+
+				/**
+				 * The index of the next value.
+				 */
+				private int next = start + 2;
+
+				/**
+				 * The index of the first entry after the array.
+				 */
+				private final int end = tape.skip(start);
+
+				@Override
+				public boolean hasNext() {
+					return next < end;
+				}
+
+				@Override
+				public Object next() {
+					if (next >= end) {
+						throw new NoSuchElementException();
+					}
+					Object value = tape.decode(next);
+					next = tape.skip(next);
+					return value;
+				}
+
+			};
+		}
+
+		/**
+		 * Creates a modifiable heap copy of this list.
+		 * 
+		 * @return a new list containing the content of this list.
+		 */
+		@Override
+		public ArrayList<Object> clone() {
+			return new ArrayList<>(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+/**
+ * The types of tokens returned by a {@link JsonReader}.
+ * 
+ * @author ToMe25
+ */
+public enum JsonToken {
+
+	/**
+	 * The start of a json object.
+	 */
+	START_OBJECT,
+
+	/**
+	 * The end of a json object.
+	 */
+	END_OBJECT,
+
+	/**
+	 * The start of a json array.
+	 */
+	START_ARRAY,
+
+	/**
+	 * The end of a json array.
+	 */
+	END_ARRAY,
+
+	/**
+	 * A key of a json object. Its value is the next token.
+	 */
+	KEY,
+
+	/**
+	 * A string value.
+	 */
+	STRING,
+
+	/**
+	 * An integer number that fits into an int.
+	 */
+	INT,
+
+	/**
+	 * An integer number that is too big or too small for an int.
+	 */
+	LONG,
+
+	/**
+	 * A number with a decimal point or an exponent.
+	 */
+	DOUBLE,
+
+	/**
+	 * A boolean value.
+	 */
+	BOOLEAN,
+
+	/**
+	 * A null value.
+	 */
+	NULL,
+
+	/**
+	 * The end of the json document.
+	 */
+	END_DOCUMENT;
+
+}
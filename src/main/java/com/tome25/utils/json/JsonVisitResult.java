@@ -0,0 +1,54 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+/**
+ * The result of a {@link JsonVisitor} callback, telling the {@link JsonWalker}
+ * how to continue.
+ * 
+ * @author ToMe25
+ */
+public enum JsonVisitResult {
+
+	/**
+	 * Continue walking the json tree normally.
+	 */
+	CONTINUE,
+
+	/**
+	 * Continue without visiting the content of the current object, array or
+	 * value.<br>
+	 * If returned by {@link JsonVisitor#enterObject(JsonObject)} or
+	 * {@link JsonVisitor#enterArray(JsonArray)}, the matching exit callback isn't
+	 * called either.
+	 */
+	SKIP_SUBTREE,
+
+	/**
+	 * Continue without visiting the current element, and the remaining elements
+	 * of the object or array containing it.<br>
+	 * The exit callback of the containing object or array is still called.
+	 */
+	SKIP_SIBLINGS,
+
+	/**
+	 * Stop walking the json tree immediately.
+	 */
+	TERMINATE;
+
+}
@@ -0,0 +1,150 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+/**
+ * A visitor receiving callbacks for the elements of a json tree, walked depth
+ * first by a {@link JsonWalker}.<br>
+ * All callbacks return {@link JsonVisitResult#CONTINUE} by default, so
+ * implementations only have to override the ones they are interested in.<br>
+ * Values in {@link JsonArray JsonArrays} using a primitive storage are passed
+ * to the primitive {@code scalar} callbacks without boxing them. By default
+ * these box the value and call {@link #scalar(Object)}.
+ * 
+ * @author ToMe25
+ */
+public interface JsonVisitor {
+
+	/**
+	 * Called when entering a {@link JsonObject}, before its content is visited.
+	 * 
+	 * @param object the object that is being entered.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult enterObject(JsonObject object) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called for every key of a {@link JsonObject}, before its value is visited.
+	 * 
+	 * @param key the key whose value is visited next.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult key(String key) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called after the content of a {@link JsonObject} was visited.
+	 * 
+	 * @param object the object that is being exited.
+	 * @return how to continue walking the tree. {@link JsonVisitResult#SKIP_SUBTREE}
+	 *         is treated like {@link JsonVisitResult#CONTINUE}.
+	 */
+	public default JsonVisitResult exitObject(JsonObject object) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called when entering a {@link JsonArray}, before its content is visited.
+	 * 
+	 * @param array the array that is being entered.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult enterArray(JsonArray array) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called for every index of a {@link JsonArray}, before its value is visited.
+	 * 
+	 * @param index the index whose value is visited next.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult index(int index) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called after the content of a {@link JsonArray} was visited.
+	 * 
+	 * @param array the array that is being exited.
+	 * @return how to continue walking the tree. {@link JsonVisitResult#SKIP_SUBTREE}
+	 *         is treated like {@link JsonVisitResult#CONTINUE}.
+	 */
+	public default JsonVisitResult exitArray(JsonArray array) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called for every value that isn't a {@link JsonObject} or
+	 * {@link JsonArray}, including null.
+	 * 
+	 * @param value the value to visit.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult scalar(Object value) {
+		return JsonVisitResult.CONTINUE;
+	}
+
+	/**
+	 * Called for every value in a {@link JsonArray} storing its content in an
+	 * int array.
+	 * 
+	 * @param value the value to visit.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult scalar(int value) {
+		return scalar((Object) value);
+	}
+
+	/**
+	 * Called for every value in a {@link JsonArray} storing its content in a long
+	 * array.
+	 * 
+	 * @param value the value to visit.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult scalar(long value) {
+		return scalar((Object) value);
+	}
+
+	/**
+	 * Called for every value in a {@link JsonArray} storing its content in a
+	 * double array.
+	 * 
+	 * @param value the value to visit.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult scalar(double value) {
+		return scalar((Object) value);
+	}
+
+	/**
+	 * Called for every value in a {@link JsonArray} storing its content in a
+	 * boolean array.
+	 * 
+	 * @param value the value to visit.
+	 * @return how to continue walking the tree.
+	 */
+	public default JsonVisitResult scalar(boolean value) {
+		return scalar((Object) value);
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A depth first walker calling a {@link JsonVisitor} for every element of a
+ * json tree.<br>
+ * Walking a tree of {@link JsonObject JsonObjects} and {@link JsonArray
+ * JsonArrays} using the default storages doesn't allocate any objects, except
+ * for boxing primitives for visitors that don't override the primitive
+ * {@code scalar} callbacks. Objects using other maps, like
+ * {@link ConcurrentJsonObject ConcurrentJsonObjects}, are walked using their
+ * entry set iterator.<br>
+ * The walked tree must not be modified while walking it.
+ * 
+ * @author ToMe25
+ */
+public class JsonWalker {
+
+	/**
+	 * Walks the given json tree depth first, calling the given visitor for every
+	 * element.
+	 * 
+	 * @param root    the root of the tree to walk. If this isn't a
+	 *                {@link JsonObject} or {@link JsonArray} it is passed to
+	 *                {@link JsonVisitor#scalar(Object)}.
+	 * @param visitor the visitor to call.
+	 * @return false if the walk was terminated by the visitor returning
+	 *         {@link JsonVisitResult#TERMINATE}, true otherwise.
+	 */
+	public static boolean walk(Object root, JsonVisitor visitor) {
+		return visit(root, visitor) != JsonVisitResult.TERMINATE;
+	}
+
+	/**
+	 * Creates a {@link Stream} of all scalar values in the given json tree, and
+	 * their paths in {@link JsonPath} syntax, like {@code $.a[2].b}.<br>
+	 * Empty objects and arrays have no scalar values, and are therefore not part
+	 * of the stream. The stream is ordered in the order the values would be
+	 * visited by {@link #walk(Object, JsonVisitor)}.<br>
+	 * Parallel streams split the tree into subtrees and ranges of children, so
+	 * that both wide and deep trees are divided evenly. The tree must not be
+	 * modified while streaming it.
+	 * 
+	 * @param root     the root of the tree to stream. If this isn't a
+	 *                 {@link JsonObject} or {@link JsonArray} the stream contains
+	 *                 only the root itself, with the path {@code $}.
+	 * @param parallel whether the stream should be parallel.
+	 * @return a new stream of path value pairs.
+	 */
+	public static Stream<Entry<String, Object>> flatten(Object root, boolean parallel) {
+		return StreamSupport.stream(JsonSpliterators.tree(root), parallel);
+	}
+
+	/**
+	 * Visits the given value, and everything inside it.
+	 * 
+	 * @param value   the value to visit.
+	 * @param visitor the visitor to call.
+	 * @return the result to use for the parent of the value.
+	 */
+	private static JsonVisitResult visit(Object value, JsonVisitor visitor) {
+		if (value instanceof JsonObject) {
+			return visitObject((JsonObject) value, visitor);
+		} else if (value instanceof JsonArray) {
+			return visitArray((JsonArray) value, visitor);
+		} else {
+			return visitor.scalar(value);
+		}
+	}
+
+	/**
+	 * Visits the given {@link JsonObject}, and everything inside it.
+	 * 
+	 * @param object  the object to visit.
+	 * @param visitor the visitor to call.
+	 * @return the result to use for the parent of the object.
+	 */
+	private static JsonVisitResult visitObject(JsonObject object, JsonVisitor visitor) {
+		JsonVisitResult result = visitor.enterObject(object);
+		if (result != JsonVisitResult.CONTINUE) {
+			return result == JsonVisitResult.SKIP_SUBTREE ? JsonVisitResult.CONTINUE : result;
+		}
+
+		Map<String, Object> content = object.getContent();
+		if (content instanceof SlotMap) {
+			SlotMap map = (SlotMap) content;
+			int slots = map.slotCount();
+			for (int i = 0; i < slots; i++) {
+				if (map.isSlotUsed(i)) {
+					result = visitEntry(map.getSlotKey(i), map.getSlotValue(i), visitor);
+					if (result == JsonVisitResult.TERMINATE) {
+						return result;
+					} else if (result == JsonVisitResult.SKIP_SIBLINGS) {
+						break;
+					}
+				}
+			}
+		} else {
+			for (Entry<String, Object> entry : content.entrySet()) {
+				result = visitEntry(entry.getKey(), entry.getValue(), visitor);
+				if (result == JsonVisitResult.TERMINATE) {
+					return result;
+				} else if (result == JsonVisitResult.SKIP_SIBLINGS) {
+					break;
+				}
+			}
+		}
+
+		result = visitor.exitObject(object);
+		return result == JsonVisitResult.SKIP_SUBTREE ? JsonVisitResult.CONTINUE : result;
+	}
+
+	/**
+	 * Visits a single key value pair of a {@link JsonObject}.
+	 * 
+	 * @param key     the key to visit.
+	 * @param value   the value to visit.
+	 * @param visitor the visitor to call.
+	 * @return how to continue with the rest of the object.
+	 */
+	private static JsonVisitResult visitEntry(String key, Object value, JsonVisitor visitor) {
+		JsonVisitResult result = visitor.key(key);
+		if (result == JsonVisitResult.CONTINUE) {
+			return visit(value, visitor);
+		}
+		return result == JsonVisitResult.SKIP_SUBTREE ? JsonVisitResult.CONTINUE : result;
+	}
+
+	/**
+	 * Visits the given {@link JsonArray}, and everything inside it.
+	 * 
+	 * @param array   the array to visit.
+	 * @param visitor the visitor to call.
+	 * @return the result to use for the parent of the array.
+	 */
+	private static JsonVisitResult visitArray(JsonArray array, JsonVisitor visitor) {
+		JsonVisitResult result = visitor.enterArray(array);
+		if (result != JsonVisitResult.CONTINUE) {
+			return result == JsonVisitResult.SKIP_SUBTREE ? JsonVisitResult.CONTINUE : result;
+		}
+
+		List<Object> content = array.getContent();
+		int size = content.size();
+		for (int i = 0; i < size; i++) {
+			result = visitor.index(i);
+			if (result == JsonVisitResult.CONTINUE) {
+				if (content instanceof PrimitiveList.IntList) {
+					result = visitor.scalar(((PrimitiveList.IntList) content).getInt(i));
+				} else if (content instanceof PrimitiveList.LongList) {
+					result = visitor.scalar(((PrimitiveList.LongList) content).getLong(i));
+				} else if (content instanceof PrimitiveList.DoubleList) {
+					result = visitor.scalar(((PrimitiveList.DoubleList) content).getDouble(i));
+				} else if (content instanceof PrimitiveList.BooleanList) {
+					result = visitor.scalar(((PrimitiveList.BooleanList) content).getBoolean(i));
+				} else {
+					result = visit(content.get(i), visitor);
+				}
+			}
+
+			if (result == JsonVisitResult.TERMINATE) {
+				return result;
+			} else if (result == JsonVisitResult.SKIP_SIBLINGS) {
+				break;
+			}
+		}
+
+		result = visitor.exitArray(array);
+		return result == JsonVisitResult.SKIP_SUBTREE ? JsonVisitResult.CONTINUE : result;
+	}
+
+}
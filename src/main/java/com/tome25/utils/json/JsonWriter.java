@@ -0,0 +1,437 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A streaming writer writing a json document one value at a time, without
+ * building {@link JsonObject JsonObjects} or {@link JsonArray JsonArrays}.<br>
+ * The counterpart of the {@link JsonReader}. Commas and colons are inserted
+ * automatically, and strings are escaped as required by the json
+ * specification, including control characters.<br>
+ * Objects that aren't json values are written using their {@link JsonCodec}.
+ * 
+ * @author ToMe25
+ */
+public class JsonWriter {
+
+	/**
+	 * The hexadecimal digits used for unicode escape sequences.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The target to write the json document to.
+	 */
+	private final Appendable out;
+
+	/**
+	 * For each currently open container, whether it is an object.
+	 */
+	private boolean[] objects = new boolean[16];
+
+	/**
+	 * For each currently open container, whether nothing was written to it yet.
+	 */
+	private boolean[] empty = new boolean[16];
+
+	/**
+	 * The number of currently open containers.
+	 */
+	private int depth;
+
+	/**
+	 * Whether a key was written, whose value wasn't written yet.
+	 */
+	private boolean afterKey;
+
+	/**
+	 * Creates a new JsonWriter writing to a new {@link StringBuilder}.<br>
+	 * Use {@link #toString()} to get the written json.
+	 */
+	public JsonWriter() {
+		this(new StringBuilder());
+	}
+
+	/**
+	 * Creates a new JsonWriter writing to the given target.
+	 * 
+	 * @param out the target to write to. Can for example be a
+	 *            {@link StringBuilder} or a {@link java.io.Writer}.
+	 */
+	public JsonWriter(Appendable out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the start of a json object.
+	 * 
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter beginObject() throws IOException, IllegalStateException {
+		beforeValue();
+		out.append('{');
+		push(true);
+		return this;
+	}
+
+	/**
+	 * Writes the end of the current json object.
+	 * 
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if the current container isn't an object, or
+	 *                               the value of the last key is missing.
+	 */
+	public JsonWriter endObject() throws IOException, IllegalStateException {
+		pop(true);
+		out.append('}');
+		return this;
+	}
+
+	/**
+	 * Writes the start of a json array.
+	 * 
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter beginArray() throws IOException, IllegalStateException {
+		beforeValue();
+		out.append('[');
+		push(false);
+		return this;
+	}
+
+	/**
+	 * Writes the end of the current json array.
+	 * 
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if the current container isn't an array.
+	 */
+	public JsonWriter endArray() throws IOException, IllegalStateException {
+		pop(false);
+		out.append(']');
+		return this;
+	}
+
+	/**
+	 * Writes a key of the current json object. It has to be followed by its
+	 * value.
+	 * 
+	 * @param key the key to write.
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if the current container isn't an object, or
+	 *                               the value of the last key is missing.
+	 */
+	public JsonWriter key(String key) throws IOException, IllegalStateException {
+		if (depth == 0 || !objects[depth - 1] || afterKey) {
+			throw new IllegalStateException("Can't write a key here!");
+		}
+		if (!empty[depth - 1]) {
+			out.append(',');
+		}
+		empty[depth - 1] = false;
+		writeString(key);
+		out.append(':');
+		afterKey = true;
+		return this;
+	}
+
+	/**
+	 * Writes a string value.
+	 * 
+	 * @param value the string to write. Can be null.
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter value(String value) throws IOException, IllegalStateException {
+		beforeValue();
+		if (value == null) {
+			out.append("null");
+		} else {
+			writeString(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes an integer value.
+	 * 
+	 * @param value the number to write.
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter value(long value) throws IOException, IllegalStateException {
+		beforeValue();
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+		} else {
+			out.append(Long.toString(value));
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a floating point value.
+	 * 
+	 * @param value the number to write.
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter value(double value) throws IOException, IllegalStateException {
+		beforeValue();
+		out.append(Double.toString(value));
+		return this;
+	}
+
+	/**
+	 * Writes a boolean value.
+	 * 
+	 * @param value the boolean to write.
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter value(boolean value) throws IOException, IllegalStateException {
+		beforeValue();
+		out.append(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Writes a null value.
+	 * 
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter nullValue() throws IOException, IllegalStateException {
+		beforeValue();
+		out.append("null");
+		return this;
+	}
+
+	/**
+	 * Writes the given value.<br>
+	 * Strings, numbers, booleans, null, {@link JsonObject JsonObjects} and
+	 * {@link JsonArray JsonArrays} are written as the json value they represent.
+	 * Maps, collections and arrays are written as json objects and arrays, enums
+	 * as their name, and everything else using its {@link JsonCodec}.
+	 * 
+	 * @param value the value to write.
+	 * @return this writer.
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	public JsonWriter value(Object value) throws IOException, IllegalStateException {
+		if (value == null) {
+			return nullValue();
+		} else if (value instanceof String) {
+			return value((String) value);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short
+				|| value instanceof Byte) {
+			return value(((Number) value).longValue());
+		} else if (value instanceof Number) {
+			return value(((Number) value).doubleValue());
+		} else if (value instanceof Boolean) {
+			return value(((Boolean) value).booleanValue());
+		} else if (value instanceof Character || value instanceof Enum) {
+			return value(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+		} else if (value instanceof JsonObject) {
+			JsonObject object = value instanceof ConcurrentJsonObject ? ((ConcurrentJsonObject) value).snapshot()
+					: (JsonObject) value;
+			beginObject();
+			for (Map.Entry<String, Object> entry : object.entrySet()) {
+				key(entry.getKey());
+				value(entry.getValue());
+			}
+			return endObject();
+		} else if (value instanceof Map) {
+			beginObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				key(String.valueOf(entry.getKey()));
+				value(entry.getValue());
+			}
+			return endObject();
+		} else if (value instanceof Collection || value instanceof JsonArray) {
+			beginArray();
+			for (Object element : (Iterable<?>) value) {
+				value(element);
+			}
+			return endArray();
+		} else if (value instanceof Object[]) {
+			beginArray();
+			for (Object element : (Object[]) value) {
+				value(element);
+			}
+			return endArray();
+		} else if (value.getClass().isArray()) {
+			beginArray();
+			int length = java.lang.reflect.Array.getLength(value);
+			for (int i = 0; i < length; i++) {
+				value(java.lang.reflect.Array.get(value, i));
+			}
+			return endArray();
+		}
+
+		writeObject(JsonCodec.of(value.getClass()), value);
+		return this;
+	}
+
+	/**
+	 * Writes the given object using the given codec.
+	 * 
+	 * @param <T>    the type of the object to write.
+	 * @param codec  the codec to write the object with.
+	 * @param object the object to write.
+	 * @throws IOException if writing to the target fails.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void writeObject(JsonCodec<T> codec, Object object) throws IOException {
+		codec.write((T) object, this);
+	}
+
+	/**
+	 * Checks whether a complete json document was written.
+	 * 
+	 * @return whether all objects and arrays were closed again.
+	 */
+	public boolean isComplete() {
+		return depth == 0 && !afterKey;
+	}
+
+	/**
+	 * Gets the json written so far, if this writer writes to a
+	 * {@link StringBuilder} or another {@link CharSequence}.
+	 * 
+	 * @return the written json.
+	 */
+	@Override
+	public String toString() {
+		return out.toString();
+	}
+
+	/**
+	 * Prepares writing a value, by writing a comma if necessary.
+	 * 
+	 * @throws IOException           if writing to the target fails.
+	 * @throws IllegalStateException if a key was expected.
+	 */
+	private void beforeValue() throws IOException, IllegalStateException {
+		if (afterKey) {
+			afterKey = false;
+		} else if (depth > 0) {
+			if (objects[depth - 1]) {
+				throw new IllegalStateException("Expected a key, but got a value!");
+			}
+			if (!empty[depth - 1]) {
+				out.append(',');
+			}
+			empty[depth - 1] = false;
+		}
+	}
+
+	/**
+	 * Opens a new container.
+	 * 
+	 * @param object whether the new container is an object.
+	 */
+	private void push(boolean object) {
+		if (depth == objects.length) {
+			objects = Arrays.copyOf(objects, depth * 2);
+			empty = Arrays.copyOf(empty, depth * 2);
+		}
+		objects[depth] = object;
+		empty[depth++] = true;
+	}
+
+	/**
+	 * Closes the current container.
+	 * 
+	 * @param object whether the current container is expected to be an object.
+	 * @throws IllegalStateException if the current container is of the wrong
+	 *                               type, or a value is missing.
+	 */
+	private void pop(boolean object) throws IllegalStateException {
+		if (depth == 0 || objects[depth - 1] != object || afterKey) {
+			throw new IllegalStateException("Can't end an " + (object ? "object" : "array") + " here!");
+		}
+		depth--;
+	}
+
+	/**
+	 * Writes the given string in double quotes, escaping all characters that have
+	 * to be escaped.
+	 * 
+	 * @param string the string to write.
+	 * @throws IOException if writing to the target fails.
+	 */
+	private void writeString(String string) throws IOException {
+		out.append('"');
+		int start = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c >= ' ' && c != '"' && c != '\\') {
+				continue;
+			}
+
+			out.append(string, start, i);
+			start = i + 1;
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			case '\b':
+				out.append("\\b");
+				break;
+			case '\f':
+				out.append("\\f");
+				break;
+			default:
+				out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+			}
+		}
+		out.append(string, start, string.length());
+		out.append('"');
+	}
+
+}
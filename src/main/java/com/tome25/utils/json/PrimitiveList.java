@@ -0,0 +1,800 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The base class for the {@link List} implementations storing their values in a
+ * primitive array, used by {@link JsonArray JsonArrays} only containing values
+ * of a single primitive wrapper type.<br>
+ * These lists only accept values of their own type, and throw a
+ * {@link ClassCastException} for everything else. {@link JsonArray} switches to
+ * a generic list before adding any other value.
+ * 
+ * @author ToMe25
+ */
+abstract class PrimitiveList extends AbstractList<Object> implements RandomAccess, Cloneable {
+
+	/**
+	 * The capacity for new lists, if no other capacity is specified.
+	 */
+	private static final int DEFAULT_CAPACITY = 10;
+
+	/**
+	 * The number of values stored in this list.
+	 */
+	protected int size;
+
+	/**
+	 * Checks whether the given value can be stored in this list.
+	 * 
+	 * @param value the value to check.
+	 * @return whether this list can store the given value.
+	 */
+	abstract boolean accepts(Object value);
+
+	/**
+	 * Gets the primitive type of the values stored in this list.
+	 * 
+	 * @return the primitive type of this list.
+	 */
+	abstract Class<?> getPrimitiveType();
+
+	/**
+	 * Gets the current length of the backing array of this list.
+	 * 
+	 * @return the capacity of this list.
+	 */
+	abstract int capacity();
+
+	/**
+	 * Replaces the backing array of this list with one of the given length, and
+	 * copies the values into it.
+	 * 
+	 * @param capacity the new length of the backing array.
+	 */
+	abstract void resize(int capacity);
+
+	/**
+	 * Appends the string representation of all values in this list to the given
+	 * {@link StringBuilder}, separated by commas.
+	 * 
+	 * @param builder the {@link StringBuilder} to write to.
+	 */
+	abstract void appendTo(StringBuilder builder);
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean add(Object value) {
+		add(size, value);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		size = 0;
+	}
+
+	/**
+	 * Makes sure the backing array can hold at least the given number of values.
+	 * 
+	 * @param minCapacity the minimum number of values to be able to store.
+	 */
+	void ensureCapacity(int minCapacity) {
+		int capacity = capacity();
+		if (minCapacity > capacity) {
+			resize(Math.max(minCapacity, Math.max(capacity + (capacity >> 1), DEFAULT_CAPACITY)));
+		}
+	}
+
+	/**
+	 * Shrinks the backing array of this list to its size.
+	 */
+	void trimToSize() {
+		if (size < capacity()) {
+			resize(size);
+		}
+	}
+
+	/**
+	 * Estimates the memory used by this list.
+	 * 
+	 * @return the estimated size of this list in bytes.
+	 * @see JsonFootprint
+	 */
+	long footprint() {
+		Class<?> type = getPrimitiveType();
+		int elementSize = type == long.class || type == double.class ? 8 : type == boolean.class ? 1 : 4;
+		return JsonFootprint.object(1, 8) + JsonFootprint.array(capacity(), elementSize);
+	}
+
+	/**
+	 * Checks whether the given index can be used to access a value in this list.
+	 * 
+	 * @param index the index to check.
+	 * @throws IndexOutOfBoundsException if the given index is out of range.
+	 */
+	protected void checkIndex(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+		}
+	}
+
+	/**
+	 * Checks whether the given index can be used to insert a value into this list.
+	 * 
+	 * @param index the index to check.
+	 * @throws IndexOutOfBoundsException if the given index is out of range.
+	 */
+	protected void checkPositionIndex(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+		}
+	}
+
+	/**
+	 * Checks whether the given value can be stored in this list, and throws an
+	 * exception if it can't.
+	 * 
+	 * @param value the value to check.
+	 * @throws ClassCastException if the value can't be stored in this list.
+	 */
+	protected void checkValue(Object value) throws ClassCastException {
+		if (!accepts(value)) {
+			throw new ClassCastException(String.format("Can't store a value of type %s in a list of %s values.",
+					value == null ? "null" : value.getClass().getName(), getPrimitiveType().getName()));
+		}
+	}
+
+	@Override
+	public PrimitiveList clone() {
+		try {
+			PrimitiveList clone = (PrimitiveList) super.clone();
+			clone.modCount = 0;
+			return clone;
+		} catch (CloneNotSupportedException e) {
+			// Can't happen since this class implements Cloneable.
+			throw new InternalError(e);
+		}
+	}
+
+	/**
+	 * Creates a new empty {@link PrimitiveList} that can store values of the same
+	 * type as the given value.
+	 * 
+	 * @param value the value to get the list type for.
+	 * @return the new list, or null if there is no {@link PrimitiveList} for this
+	 *         value type.
+	 */
+	static PrimitiveList forValue(Object value) {
+		if (value instanceof Integer) {
+			return new IntList(DEFAULT_CAPACITY);
+		} else if (value instanceof Long) {
+			return new LongList(DEFAULT_CAPACITY);
+		} else if (value instanceof Double) {
+			return new DoubleList(DEFAULT_CAPACITY);
+		} else if (value instanceof Boolean) {
+			return new BooleanList(DEFAULT_CAPACITY);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a new {@link PrimitiveList} containing the values of the given list,
+	 * if all of them are of the same primitive wrapper type.
+	 * 
+	 * @param values the values for the new list.
+	 * @return the new list, or null if the given list is empty or contains values
+	 *         that can't be stored in a single {@link PrimitiveList}.
+	 */
+	static PrimitiveList copyOf(List<?> values) {
+		if (values.isEmpty()) {
+			return null;
+		}
+
+		PrimitiveList list = forValue(values.get(0));
+		if (list == null) {
+			return null;
+		}
+
+		for (Object value : values) {
+			if (!list.accepts(value)) {
+				return null;
+			}
+		}
+
+		list.resize(values.size());
+		list.addAll(values);
+		return list;
+	}
+
+	/**
+	 * A {@link PrimitiveList} storing {@link Integer Integers} in an int array.
+	 * 
+	 * @author ToMe25
+	 */
+	static class IntList extends PrimitiveList {
+
+		/**
+		 * The array storing the values of this list.
+		 */
+		private int[] values;
+
+		/**
+		 * Creates a new empty IntList with the given initial capacity.
+		 * 
+		 * @param capacity the initial length of the backing array.
+		 */
+		IntList(int capacity) {
+			values = new int[capacity];
+		}
+
+		/**
+		 * Gets the value at the given index, without boxing it.
+		 * 
+		 * @param index the index of the value to get.
+		 * @return the value at the given index.
+		 */
+		int getInt(int index) {
+			checkIndex(index);
+			return values[index];
+		}
+
+		/**
+		 * Gets the array backing this list. Only the first {@link #size()} values of
+		 * this array are part of this list.
+		 * 
+		 * @return the array backing this list.
+		 */
+		int[] array() {
+			return values;
+		}
+
+		@Override
+		public Object get(int index) {
+			return getInt(index);
+		}
+
+		@Override
+		public Object set(int index, Object value) {
+			checkIndex(index);
+			checkValue(value);
+			int old = values[index];
+			values[index] = (Integer) value;
+			return old;
+		}
+
+		@Override
+		public void add(int index, Object value) {
+			checkPositionIndex(index);
+			checkValue(value);
+			ensureCapacity(size + 1);
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = (Integer) value;
+			size++;
+			modCount++;
+		}
+
+		@Override
+		public Object remove(int index) {
+			checkIndex(index);
+			int old = values[index];
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (o instanceof Integer) {
+				int value = (Integer) o;
+				for (int i = 0; i < size; i++) {
+					if (values[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			if (o instanceof Integer) {
+				int value = (Integer) o;
+				for (int i = size - 1; i >= 0; i--) {
+					if (values[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Integer;
+		}
+
+		@Override
+		Class<?> getPrimitiveType() {
+			return int.class;
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void appendTo(StringBuilder builder) {
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(values[i]);
+			}
+		}
+
+		@Override
+		public IntList clone() {
+			IntList clone = (IntList) super.clone();
+			clone.values = Arrays.copyOf(values, size);
+			return clone;
+		}
+
+	}
+
+	/**
+	 * A {@link PrimitiveList} storing {@link Long Longs} in a long array.
+	 * 
+	 * @author ToMe25
+	 */
+	static class LongList extends PrimitiveList {
+
+		/**
+		 * The array storing the values of this list.
+		 */
+		private long[] values;
+
+		/**
+		 * Creates a new empty LongList with the given initial capacity.
+		 * 
+		 * @param capacity the initial length of the backing array.
+		 */
+		LongList(int capacity) {
+			values = new long[capacity];
+		}
+
+		/**
+		 * Gets the value at the given index, without boxing it.
+		 * 
+		 * @param index the index of the value to get.
+		 * @return the value at the given index.
+		 */
+		long getLong(int index) {
+			checkIndex(index);
+			return values[index];
+		}
+
+		/**
+		 * Gets the array backing this list. Only the first {@link #size()} values of
+		 * this array are part of this list.
+		 * 
+		 * @return the array backing this list.
+		 */
+		long[] array() {
+			return values;
+		}
+
+		@Override
+		public Object get(int index) {
+			return getLong(index);
+		}
+
+		@Override
+		public Object set(int index, Object value) {
+			checkIndex(index);
+			checkValue(value);
+			long old = values[index];
+			values[index] = (Long) value;
+			return old;
+		}
+
+		@Override
+		public void add(int index, Object value) {
+			checkPositionIndex(index);
+			checkValue(value);
+			ensureCapacity(size + 1);
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = (Long) value;
+			size++;
+			modCount++;
+		}
+
+		@Override
+		public Object remove(int index) {
+			checkIndex(index);
+			long old = values[index];
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (o instanceof Long) {
+				long value = (Long) o;
+				for (int i = 0; i < size; i++) {
+					if (values[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			if (o instanceof Long) {
+				long value = (Long) o;
+				for (int i = size - 1; i >= 0; i--) {
+					if (values[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Long;
+		}
+
+		@Override
+		Class<?> getPrimitiveType() {
+			return long.class;
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void appendTo(StringBuilder builder) {
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(values[i]);
+			}
+		}
+
+		@Override
+		public LongList clone() {
+			LongList clone = (LongList) super.clone();
+			clone.values = Arrays.copyOf(values, size);
+			return clone;
+		}
+
+	}
+
+	/**
+	 * A {@link PrimitiveList} storing {@link Double Doubles} in a double array.
+	 * 
+	 * @author ToMe25
+	 */
+	static class DoubleList extends PrimitiveList {
+
+		/**
+		 * The array storing the values of this list.
+		 */
+		private double[] values;
+
+		/**
+		 * Creates a new empty DoubleList with the given initial capacity.
+		 * 
+		 * @param capacity the initial length of the backing array.
+		 */
+		DoubleList(int capacity) {
+			values = new double[capacity];
+		}
+
+		/**
+		 * Gets the value at the given index, without boxing it.
+		 * 
+		 * @param index the index of the value to get.
+		 * @return the value at the given index.
+		 */
+		double getDouble(int index) {
+			checkIndex(index);
+			return values[index];
+		}
+
+		/**
+		 * Gets the array backing this list. Only the first {@link #size()} values of
+		 * this array are part of this list.
+		 * 
+		 * @return the array backing this list.
+		 */
+		double[] array() {
+			return values;
+		}
+
+		@Override
+		public Object get(int index) {
+			return getDouble(index);
+		}
+
+		@Override
+		public Object set(int index, Object value) {
+			checkIndex(index);
+			checkValue(value);
+			double old = values[index];
+			values[index] = (Double) value;
+			return old;
+		}
+
+		@Override
+		public void add(int index, Object value) {
+			checkPositionIndex(index);
+			checkValue(value);
+			ensureCapacity(size + 1);
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = (Double) value;
+			size++;
+			modCount++;
+		}
+
+		@Override
+		public Object remove(int index) {
+			checkIndex(index);
+			double old = values[index];
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (o instanceof Double) {
+				// Compare the bits to match the behavior of Double.equals.
+				long bits = Double.doubleToLongBits((Double) o);
+				for (int i = 0; i < size; i++) {
+					if (Double.doubleToLongBits(values[i]) == bits) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			if (o instanceof Double) {
+				long bits = Double.doubleToLongBits((Double) o);
+				for (int i = size - 1; i >= 0; i--) {
+					if (Double.doubleToLongBits(values[i]) == bits) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Double;
+		}
+
+		@Override
+		Class<?> getPrimitiveType() {
+			return double.class;
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void appendTo(StringBuilder builder) {
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(values[i]);
+			}
+		}
+
+		@Override
+		public DoubleList clone() {
+			DoubleList clone = (DoubleList) super.clone();
+			clone.values = Arrays.copyOf(values, size);
+			return clone;
+		}
+
+	}
+
+	/**
+	 * A {@link PrimitiveList} storing {@link Boolean Booleans} in a boolean array.
+	 * 
+	 * @author ToMe25
+	 */
+	static class BooleanList extends PrimitiveList {
+
+		/**
+		 * The array storing the values of this list.
+		 */
+		private boolean[] values;
+
+		/**
+		 * Creates a new empty BooleanList with the given initial capacity.
+		 * 
+		 * @param capacity the initial length of the backing array.
+		 */
+		BooleanList(int capacity) {
+			values = new boolean[capacity];
+		}
+
+		/**
+		 * Gets the value at the given index, without boxing it.
+		 * 
+		 * @param index the index of the value to get.
+		 * @return the value at the given index.
+		 */
+		boolean getBoolean(int index) {
+			checkIndex(index);
+			return values[index];
+		}
+
+		@Override
+		public Object get(int index) {
+			return getBoolean(index);
+		}
+
+		@Override
+		public Object set(int index, Object value) {
+			checkIndex(index);
+			checkValue(value);
+			boolean old = values[index];
+			values[index] = (Boolean) value;
+			return old;
+		}
+
+		@Override
+		public void add(int index, Object value) {
+			checkPositionIndex(index);
+			checkValue(value);
+			ensureCapacity(size + 1);
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = (Boolean) value;
+			size++;
+			modCount++;
+		}
+
+		@Override
+		public Object remove(int index) {
+			checkIndex(index);
+			boolean old = values[index];
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (o instanceof Boolean) {
+				boolean value = (Boolean) o;
+				for (int i = 0; i < size; i++) {
+					if (values[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			if (o instanceof Boolean) {
+				boolean value = (Boolean) o;
+				for (int i = size - 1; i >= 0; i--) {
+					if (values[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		boolean accepts(Object value) {
+			return value instanceof Boolean;
+		}
+
+		@Override
+		Class<?> getPrimitiveType() {
+			return boolean.class;
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void appendTo(StringBuilder builder) {
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(values[i]);
+			}
+		}
+
+		@Override
+		public BooleanList clone() {
+			BooleanList clone = (BooleanList) super.clone();
+			clone.values = Arrays.copyOf(values, size);
+			return clone;
+		}
+
+	}
+
+}
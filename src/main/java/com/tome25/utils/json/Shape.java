@@ -0,0 +1,284 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable sequence of keys, shared by all {@link ShapedMap ShapedMaps}
+ * containing exactly these keys in exactly this order.<br>
+ * A shape maps each of its keys to the slot of its value in the value arrays of
+ * these maps. Shapes are created by transitions from the empty {@link #ROOT}
+ * shape, which are cached, so that maps adding the same keys in the same order
+ * end up with the same shape instance.<br>
+ * To limit the memory used by shapes, there is a limit to the number of keys in
+ * a shape, the number of transitions from a single shape, and the number of
+ * shapes in use at the same time. Maps that would exceed one of these limits
+ * have to store their keys themselves instead.<br>
+ * Shapes only weakly reference the shapes they transition to, while every shape
+ * strongly references its parent. So shapes no longer used by any map, and not
+ * the parent of a used shape, can be garbage collected.
+ * 
+ * @author ToMe25
+ */
+final class Shape {
+
+	/**
+	 * The max number of keys in a single shape.
+	 */
+	static final int MAX_KEYS = 64;
+
+	/**
+	 * The max number of cached transitions from a single shape.
+	 */
+	static final int MAX_TRANSITIONS = 64;
+
+	/**
+	 * The max number of shapes that can be in use at the same time.
+	 */
+	static final int MAX_SHAPES = 4096;
+
+	/**
+	 * The max number of keys for which a shape is searched linearly.
+	 */
+	private static final int INDEX_THRESHOLD = 8;
+
+	/**
+	 * The number of shapes that weren't garbage collected yet.
+	 */
+	private static final AtomicInteger SHAPE_COUNT = new AtomicInteger();
+
+	/**
+	 * Weak references to all shapes that weren't garbage collected yet.<br>
+	 * Keeps the references reachable until their shape was collected, so they
+	 * get enqueued in {@link #COLLECTED}.
+	 */
+	private static final Set<Reference<Shape>> LIVE_SHAPES = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The queue receiving the references to shapes that were garbage collected.
+	 */
+	private static final ReferenceQueue<Shape> COLLECTED = new ReferenceQueue<>();
+
+	/**
+	 * The shape without any keys, that all other shapes are derived from.
+	 */
+	static final Shape ROOT = new Shape(null, new String[0]);
+
+	/**
+	 * The shape this shape was created from, by adding its last key.<br>
+	 * Referenced to keep the shapes maps with this shape transition through
+	 * alive, so maps adding the same keys keep ending up with this shape.
+	 */
+	@SuppressWarnings("unused")
+	private final Shape parent;
+
+	/**
+	 * The keys of this shape, in the order of their slots.
+	 */
+	private final String[] keys;
+
+	/**
+	 * The hashes of the keys of this shape.
+	 */
+	private final int[] hashes;
+
+	/**
+	 * An open addressing hash table mapping the hashes of the keys to their slot
+	 * plus one, or null if this shape has few enough keys to be searched
+	 * linearly.
+	 */
+	private final int[] index;
+
+	/**
+	 * The cached shapes resulting from adding a key to this shape.
+	 */
+	private final Map<String, Reference<Shape>> additions = new ConcurrentHashMap<>();
+
+	/**
+	 * The cached shapes resulting from removing a key from this shape.
+	 */
+	private final Map<String, Reference<Shape>> removals = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new shape with the given keys.
+	 * 
+	 * @param parent the shape the new shape was created from.
+	 * @param keys   the keys of the new shape.
+	 */
+	private Shape(Shape parent, String[] keys) {
+		this.parent = parent;
+		this.keys = keys;
+		hashes = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			hashes[i] = keys[i].hashCode();
+		}
+
+		if (keys.length > INDEX_THRESHOLD) {
+			index = new int[Integer.highestOneBit(keys.length * 2 - 1) << 1];
+			int mask = index.length - 1;
+			for (int i = 0; i < keys.length; i++) {
+				int j = hashes[i] & mask;
+				while (index[j] != 0) {
+					j = (j + 1) & mask;
+				}
+				index[j] = i + 1;
+			}
+		} else {
+			index = null;
+		}
+	}
+
+	/**
+	 * Gets the number of keys in this shape.
+	 * 
+	 * @return the number of keys in this shape.
+	 */
+	int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Gets the key in the given slot.
+	 * 
+	 * @param slot the slot to get the key for.
+	 * @return the key in the given slot.
+	 */
+	String getKey(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Gets the slot of the given key.
+	 * 
+	 * @param key the key to look for.
+	 * @return the slot of the given key, or -1 if this shape doesn't contain it.
+	 */
+	int slotOf(Object key) {
+		if (!(key instanceof String)) {
+			return -1;
+		}
+
+		int hash = key.hashCode();
+		if (index == null) {
+			for (int i = 0; i < keys.length; i++) {
+				if (hashes[i] == hash && keys[i].equals(key)) {
+					return i;
+				}
+			}
+		} else {
+			int mask = index.length - 1;
+			for (int i = hash & mask; index[i] != 0; i = (i + 1) & mask) {
+				int slot = index[i] - 1;
+				if (hashes[slot] == hash && keys[slot].equals(key)) {
+					return slot;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the shape containing the keys of this shape followed by the given key.
+	 * 
+	 * @param key the key to add. Has to be a key this shape doesn't contain.
+	 * @return the resulting shape, or null if it would exceed one of the shape
+	 *         limits.
+	 */
+	Shape withKey(String key) {
+		Reference<Shape> transition = additions.get(key);
+		Shape shape = transition == null ? null : transition.get();
+		if (shape != null || key == null || keys.length >= MAX_KEYS) {
+			return shape;
+		}
+
+		expungeCollected();
+		synchronized (additions) {
+			transition = additions.get(key);
+			shape = transition == null ? null : transition.get();
+			if (shape == null && transition == null && additions.size() >= MAX_TRANSITIONS) {
+				additions.values().removeIf(r -> r.get() == null);
+			}
+			if (shape == null && (transition != null || additions.size() < MAX_TRANSITIONS)) {
+				if (SHAPE_COUNT.incrementAndGet() > MAX_SHAPES) {
+					SHAPE_COUNT.decrementAndGet();
+					return null;
+				}
+				String[] newKeys = new String[keys.length + 1];
+				System.arraycopy(keys, 0, newKeys, 0, keys.length);
+				newKeys[keys.length] = key;
+				shape = new Shape(this, newKeys);
+				transition = new WeakReference<>(shape, COLLECTED);
+				LIVE_SHAPES.add(transition);
+				additions.put(key, transition);
+			}
+		}
+		return shape;
+	}
+
+	/**
+	 * Gets the shape containing the keys of this shape, except for the given key.
+	 * 
+	 * @param key the key to remove. Has to be a key of this shape.
+	 * @return the resulting shape, or null if it would exceed one of the shape
+	 *         limits.
+	 */
+	Shape withoutKey(String key) {
+		Reference<Shape> removal = removals.get(key);
+		Shape shape = removal == null ? null : removal.get();
+		if (shape == null) {
+			if (removals.size() >= MAX_TRANSITIONS) {
+				removals.values().removeIf(r -> r.get() == null);
+			}
+
+			shape = ROOT;
+			for (int i = 0; i < keys.length && shape != null; i++) {
+				if (!keys[i].equals(key)) {
+					shape = shape.withKey(keys[i]);
+				}
+			}
+
+			if (shape != null && (removal != null || removals.size() < MAX_TRANSITIONS)) {
+				removals.put(key, new WeakReference<>(shape));
+			}
+		}
+		return shape;
+	}
+
+	/**
+	 * Releases the slots of all shapes that were garbage collected since the last
+	 * call, so that new shapes can be created in their place.<br>
+	 * Transitions to collected shapes are removed lazily, once the transition
+	 * limit of their shape is reached.
+	 */
+	private static void expungeCollected() {
+		Reference<? extends Shape> collected;
+		while ((collected = COLLECTED.poll()) != null) {
+			if (LIVE_SHAPES.remove(collected)) {
+				SHAPE_COUNT.decrementAndGet();
+			}
+		}
+	}
+
+}
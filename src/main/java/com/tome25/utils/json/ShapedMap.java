@@ -0,0 +1,487 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Map} implementation storing only an array of values, and a reference
+ * to a {@link Shape} shared with all other maps with the same keys in the same
+ * order.<br>
+ * Used by the {@link JsonParser} for parsed {@link JsonObject JsonObjects}, as
+ * arrays of records tend to contain lots of objects with identical keys.<br>
+ * If a modification would result in a shape exceeding one of the shape limits,
+ * the map switches to a {@link CompactMap} storing its own keys.
+ * 
+ * @author ToMe25
+ */
+class ShapedMap extends AbstractMap<String, Object> implements SlotMap, Cloneable {
+
+	/**
+	 * The value array of empty maps.
+	 */
+	private static final Object[] EMPTY_VALUES = new Object[0];
+
+	/**
+	 * The shape of this map, defining its keys and their slots.
+	 */
+	private Shape shape = Shape.ROOT;
+
+	/**
+	 * The values of this map, in the order of the slots of the {@link #shape}.
+	 */
+	private Object[] values = EMPTY_VALUES;
+
+	/**
+	 * The map storing the content of this map, if it no longer uses shapes.<br>
+	 * Null while this map uses shapes.
+	 */
+	private CompactMap dictionary;
+
+	/**
+	 * The number of structural modifications to this map. Used to detect
+	 * concurrent modifications while iterating.
+	 */
+	private int modCount;
+
+	/**
+	 * The cached entry set view of this map.
+	 */
+	private Set<Entry<String, Object>> entrySet;
+
+	/**
+	 * Creates a new empty ShapedMap.
+	 */
+	ShapedMap() {
+	}
+
+	/**
+	 * Checks whether this map still uses a shared shape.
+	 * 
+	 * @return whether this map uses a shape.
+	 */
+	boolean isShaped() {
+		return dictionary == null;
+	}
+
+	/**
+	 * Gets the shape of this map.
+	 * 
+	 * @return the shape of this map, or null if it doesn't use one.
+	 */
+	Shape getShape() {
+		return dictionary == null ? shape : null;
+	}
+
+	/**
+	 * Makes this map store its content in a {@link CompactMap}, rather than using
+	 * a shape.
+	 */
+	private void toDictionary() {
+		CompactMap map = new CompactMap(shape.size() + 1);
+		for (int i = 0; i < shape.size(); i++) {
+			map.put(shape.getKey(i), values[i]);
+		}
+		dictionary = map;
+		shape = Shape.ROOT;
+		values = EMPTY_VALUES;
+	}
+
+	/**
+	 * Shrinks the value array of this map to the number of entries it contains.
+	 */
+	void trimToSize() {
+		if (dictionary != null) {
+			dictionary.trimToSize();
+		} else if (values.length > shape.size()) {
+			values = Arrays.copyOf(values, shape.size());
+		}
+	}
+
+	/**
+	 * Estimates the memory used by this map, excluding its values and the shared
+	 * shape.
+	 * 
+	 * @return the estimated size of this map in bytes.
+	 * @see JsonFootprint
+	 */
+	long footprint() {
+		long size = JsonFootprint.object(4, 4);
+		if (dictionary != null) {
+			return size + dictionary.footprint();
+		} else if (values.length > 0) {
+			size += JsonFootprint.array(values.length, JsonFootprint.getReferenceSize());
+		}
+		return size;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (dictionary != null) {
+			return dictionary.get(key);
+		}
+
+		int slot = shape.slotOf(key);
+		return slot < 0 ? null : values[slot];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (dictionary != null) {
+			return dictionary.containsKey(key);
+		}
+		return shape.slotOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (dictionary != null) {
+			return dictionary.containsValue(value);
+		}
+
+		for (int i = 0; i < shape.size(); i++) {
+			if (Objects.equals(values[i], value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (dictionary != null) {
+			return dictionary.put(key, value);
+		}
+
+		int slot = shape.slotOf(key);
+		if (slot >= 0) {
+			Object old = values[slot];
+			values[slot] = value;
+			return old;
+		}
+
+		Shape next = shape.withKey(key);
+		modCount++;
+		if (next == null) {
+			toDictionary();
+			return dictionary.put(key, value);
+		}
+
+		slot = shape.size();
+		if (slot >= values.length) {
+			values = Arrays.copyOf(values, Math.max(4, values.length + (values.length >> 1)));
+		}
+		values[slot] = value;
+		shape = next;
+		return null;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (dictionary != null) {
+			return dictionary.remove(key);
+		}
+
+		int slot = shape.slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+
+		return removeSlot(slot);
+	}
+
+	/**
+	 * Removes the entry in the given slot from this shaped map.
+	 * 
+	 * @param slot the slot to remove.
+	 * @return the value of the removed entry.
+	 */
+	private Object removeSlot(int slot) {
+		modCount++;
+		Object old = values[slot];
+		String key = shape.getKey(slot);
+		Shape next = shape.withoutKey(key);
+		if (next == null) {
+			toDictionary();
+			return dictionary.remove(key);
+		}
+
+		System.arraycopy(values, slot + 1, values, slot, shape.size() - slot - 1);
+		values[shape.size() - 1] = null;
+		shape = next;
+		return old;
+	}
+
+	@Override
+	public int size() {
+		return dictionary == null ? shape.size() : dictionary.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		shape = Shape.ROOT;
+		values = EMPTY_VALUES;
+		dictionary = null;
+	}
+
+	@Override
+	public int slotCount() {
+		return dictionary == null ? shape.size() : dictionary.slotCount();
+	}
+
+	@Override
+	public boolean isSlotUsed(int slot) {
+		return dictionary == null || dictionary.isSlotUsed(slot);
+	}
+
+	@Override
+	public String getSlotKey(int slot) {
+		return dictionary == null ? shape.getKey(slot) : dictionary.getSlotKey(slot);
+	}
+
+	@Override
+	public Object getSlotValue(int slot) {
+		return dictionary == null ? values[slot] : dictionary.getSlotValue(slot);
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object> action) {
+		if (dictionary != null) {
+			dictionary.forEach(action);
+			return;
+		}
+
+		Shape current = shape;
+		for (int i = 0; i < current.size(); i++) {
+			action.accept(current.getKey(i), values[i]);
+			if (shape != current) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	@Override
+	public ShapedMap clone() {
+		try {
+			ShapedMap clone = (ShapedMap) super.clone();
+			clone.values = values.length == 0 ? EMPTY_VALUES : Arrays.copyOf(values, shape.size());
+			clone.dictionary = dictionary == null ? null : dictionary.clone();
+			clone.entrySet = null;
+			clone.modCount = 0;
+			return clone;
+		} catch (CloneNotSupportedException e) {
+			// Can't happen since this class implements Cloneable.
+			throw new InternalError(e);
+		}
+	}
+
+	/**
+	 * The entry set view of a {@link ShapedMap}.
+	 * 
+	 * @author ToMe25
+	 */
+	private class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			if (dictionary != null) {
+				return dictionary.entrySet().iterator();
+			}
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return ShapedMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			ShapedMap.this.clear();
+		}
+
+	}
+
+	/**
+	 * The iterator used to iterate over the entries of a {@link ShapedMap} using a
+	 * shape.<br>
+	 * If removing an entry makes the map switch to a {@link CompactMap}, this
+	 * iterator continues using an iterator of that map.
+	 * 
+	 * @author ToMe25
+	 */
+	private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+		/**
+		 * The slot of the next entry to return.
+		 */
+		private int next;
+
+		/**
+		 * The slot of the entry last returned by {@link #next()}, or -1 if there is
+		 * none.
+		 */
+		private int last = -1;
+
+		/**
+		 * The modification count of the map this iterator expects.
+		 */
+		private int expectedModCount = modCount;
+
+		/**
+		 * The iterator of the {@link CompactMap} to continue with, if the map
+		 * switched to one while iterating.
+		 */
+		private Iterator<Entry<String, Object>> dictionaryIterator;
+
+		@Override
+		public boolean hasNext() {
+			if (dictionaryIterator != null) {
+				return dictionaryIterator.hasNext();
+			}
+			return next < shape.size();
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (dictionaryIterator != null) {
+				return dictionaryIterator.next();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= shape.size()) {
+				throw new NoSuchElementException();
+			}
+
+			last = next++;
+			return new SlotEntry(shape.getKey(last));
+		}
+
+		@Override
+		public void remove() {
+			if (dictionaryIterator != null) {
+				dictionaryIterator.remove();
+				return;
+			}
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+
+			removeSlot(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+			if (dictionary != null) {
+				// The dictionary keeps the order, so skip the entries already returned.
+				dictionaryIterator = dictionary.entrySet().iterator();
+				for (int i = 0; i < next; i++) {
+					dictionaryIterator.next();
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * A map entry reading from and writing to a {@link ShapedMap}.
+	 * 
+	 * @author ToMe25
+	 */
+	private class SlotEntry implements Entry<String, Object> {
+
+		/**
+		 * The key of this entry.
+		 */
+		private final String key;
+
+		/**
+		 * Creates a new SlotEntry for the given key.
+		 * 
+		 * @param key the key of the new entry.
+		 */
+		public SlotEntry(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return get(key);
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			if (!containsKey(key)) {
+				throw new IllegalStateException("This entry was removed from the map.");
+			}
+			return put(key, value);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> other = (Entry<?, ?>) obj;
+			return Objects.equals(key, other.getKey()) && Objects.equals(getValue(), other.getValue());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+
+	}
+
+}
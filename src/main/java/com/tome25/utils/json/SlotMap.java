@@ -0,0 +1,60 @@
+/*
+ * ToMe25s-Java-Utilities is a collection of common java utilities.
+ * Copyright (C) 2020-2021  ToMe25
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tome25.utils.json;
+
+/**
+ * A map storing its entries in numbered slots, that can be iterated without
+ * allocating an iterator.<br>
+ * Used by the {@link JsonWalker} to walk {@link JsonObject JsonObjects}.
+ * 
+ * @author ToMe25
+ */
+interface SlotMap {
+
+	/**
+	 * Gets the number of slots of this map, including empty ones.
+	 * 
+	 * @return the number of slots.
+	 */
+	int slotCount();
+
+	/**
+	 * Checks whether the given slot contains an entry.
+	 * 
+	 * @param slot the slot to check.
+	 * @return whether the slot is used.
+	 */
+	boolean isSlotUsed(int slot);
+
+	/**
+	 * Gets the key of the entry in the given slot.
+	 * 
+	 * @param slot the slot to get the key from. Has to be a used slot.
+	 * @return the key in the slot.
+	 */
+	String getSlotKey(int slot);
+
+	/**
+	 * Gets the value of the entry in the given slot.
+	 * 
+	 * @param slot the slot to get the value from. Has to be a used slot.
+	 * @return the value in the slot.
+	 */
+	Object getSlotValue(int slot);
+
+}
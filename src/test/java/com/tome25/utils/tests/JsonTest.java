@@ -29,19 +29,67 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.tome25.utils.exception.InvalidKeyException;
+import com.tome25.utils.exception.InvalidTypeException;
+import com.tome25.utils.json.ConcurrentJsonObject;
+import com.tome25.utils.json.IJsonSerializable;
 import com.tome25.utils.json.JsonArray;
+import com.tome25.utils.json.JsonChangeLog;
+import com.tome25.utils.json.JsonCodec;
+import com.tome25.utils.json.JsonCompactor;
 import com.tome25.utils.json.JsonElement;
+import com.tome25.utils.json.JsonFootprint;
+import com.tome25.utils.json.JsonIndex;
+import com.tome25.utils.json.JsonJournal;
+import com.tome25.utils.json.JsonMerge;
 import com.tome25.utils.json.JsonObject;
+import com.tome25.utils.json.JsonOverlay;
+import com.tome25.utils.json.JsonParseCache;
 import com.tome25.utils.json.JsonParser;
+import com.tome25.utils.json.JsonPatch;
+import com.tome25.utils.json.JsonPath;
+import com.tome25.utils.json.JsonReader;
+import com.tome25.utils.json.JsonSchema;
+import com.tome25.utils.json.JsonSorter;
+import com.tome25.utils.json.JsonStore;
+import com.tome25.utils.json.JsonTable;
+import com.tome25.utils.json.JsonTape;
+import com.tome25.utils.json.JsonToken;
+import com.tome25.utils.json.JsonVisitResult;
+import com.tome25.utils.json.JsonVisitor;
+import com.tome25.utils.json.JsonWalker;
+import com.tome25.utils.json.JsonWriter;
 
 public class JsonTest {
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	/**
 	 * A full function test for the fast json
 	 * {@link JsonParser#parseStringFast(String) parsing algorithm}.
@@ -223,6 +271,1652 @@ public class JsonTest {
 		assertEquals(jsonArray, parsedJsonArray);
 	}
 
+	/**
+	 * Tests the primitive array storage of {@link JsonArray}s, and switching back
+	 * to a generic list.
+	 * 
+	 * @throws ParseException if parsing a json array fails.
+	 */
+	@Test
+	public void primitiveArrayTest() throws ParseException {
+		// test that the parser selects primitive storage
+		JsonArray intArray = (JsonArray) JsonParser.parseString("[1, 2, 3, -4]");
+		assertEquals(int.class, intArray.getPrimitiveType());
+		assertEquals(new JsonArray(1, 2, 3, -4), intArray);
+		assertEquals(new JsonArray(1, 2, 3, -4).hashCode(), intArray.hashCode());
+		assertEquals("[1,2,3,-4]", intArray.toString());
+		// test primitive accessors and streams
+		assertEquals(-4, intArray.getInt(3));
+		assertEquals(2l, intArray.getLong(1));
+		assertEquals(2, intArray.intStream().sum());
+		assertEquals(2.0, intArray.doubleStream().sum(), 0);
+		// test the other primitive types
+		JsonArray doubleArray = (JsonArray) JsonParser.parseString("[1.5,2.25]");
+		assertEquals(double.class, doubleArray.getPrimitiveType());
+		assertEquals(3.75, doubleArray.doubleStream().sum(), 0);
+		JsonArray longArray = (JsonArray) JsonParser.parseString("[10000000000,-10000000000]");
+		assertEquals(long.class, longArray.getPrimitiveType());
+		assertEquals(Long.valueOf(10000000000l), longArray.get(0));
+		JsonArray booleanArray = (JsonArray) JsonParser.parseString("[true,false]");
+		assertEquals(boolean.class, booleanArray.getPrimitiveType());
+		assertFalse(booleanArray.getBoolean(1));
+		// test that mixed arrays use a generic list
+		assertEquals(null, ((JsonArray) JsonParser.parseString("[1,10000000000]")).getPrimitiveType());
+		assertEquals(null, ((JsonArray) JsonParser.parseString("[\"test\",1]")).getPrimitiveType());
+		// test switching to a generic list on a heterogeneous insert
+		JsonArray clonedArray = intArray.clone();
+		assertEquals(int.class, clonedArray.getPrimitiveType());
+		clonedArray.add("test");
+		assertEquals(null, clonedArray.getPrimitiveType());
+		assertEquals(new JsonArray(1, 2, 3, -4, "test"), clonedArray);
+		assertEquals(new JsonArray(1, 2, 3, -4), intArray);
+		clonedArray = intArray.clone();
+		ListIterator<Object> iterator = clonedArray.listIterator(2);
+		iterator.next();
+		iterator.set(2.5);
+		assertEquals(new JsonArray(1, 2, 2.5, -4), clonedArray);
+		// test converting an existing array
+		JsonArray jsonArray = new JsonArray(1.0, 2.0);
+		assertTrue(jsonArray.usePrimitiveStorage());
+		assertEquals(double.class, jsonArray.getPrimitiveType());
+		assertFalse(clonedArray.usePrimitiveStorage());
+		// test deduplication with primitive arrays
+		clonedArray = intArray.clone();
+		clonedArray.add(5);
+		assertEquals(clonedArray, clonedArray.changes(intArray).reconstruct(intArray));
+	}
+
+	/**
+	 * Tests the compact map used as the default content of {@link JsonObject}s,
+	 * both with few and with many keys.
+	 */
+	@Test
+	public void compactObjectTest() {
+		// test insertion order and lookups of a small json object
+		JsonObject json = new JsonObject();
+		LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+		for (int i = 0; i < 5; i++) {
+			json.put("key" + i, i);
+			map.put("key" + i, i);
+		}
+		assertEquals(map, json);
+		assertEquals(new JsonObject(map).hashCode(), json.hashCode());
+		assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(json.keySet()));
+		assertEquals(3, json.get("key3"));
+		// test growing past the linear search threshold
+		for (int i = 5; i < 100; i++) {
+			json.put("key" + i, i);
+			map.put("key" + i, i);
+		}
+		assertEquals(map, json);
+		assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(json.keySet()));
+		assertEquals(99, json.get("key99"));
+		assertFalse(json.containsKey("key100"));
+		// test removing entries and reusing their keys
+		for (int i = 0; i < 100; i += 3) {
+			json.remove("key" + i);
+			map.remove("key" + i);
+		}
+		json.put("key0", "readded");
+		map.put("key0", "readded");
+		assertEquals(map, json);
+		assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(json.keySet()));
+		// test removing entries using the iterator, and changing values using entries
+		Iterator<Entry<String, Object>> iterator = json.entrySet().iterator();
+		iterator.next().setValue("changed");
+		iterator.next();
+		iterator.remove();
+		map.put("key1", "changed");
+		map.remove("key2");
+		assertEquals(map, json);
+		// test null values and cloning
+		json.put("nullTest", null);
+		map.put("nullTest", null);
+		assertTrue(json.containsKey("nullTest"));
+		assertEquals(map, json.clone());
+	}
+
+	/**
+	 * Tests that parsed {@link JsonObject}s with the same keys share their key
+	 * index, and that they still work correctly when being modified.
+	 * 
+	 * @throws ParseException           if parsing the test json fails.
+	 * @throws SecurityException        if the reflection for checking the shared
+	 *                                  shapes fails.
+	 * @throws NoSuchFieldException     if the reflection for checking the shared
+	 *                                  shapes fails.
+	 * @throws IllegalAccessException   if the reflection for checking the shared
+	 *                                  shapes fails.
+	 * @throws IllegalArgumentException if the reflection for checking the shared
+	 *                                  shapes fails.
+	 */
+	@Test
+	public void sharedShapeTest() throws ParseException, NoSuchFieldException, SecurityException,
+			IllegalArgumentException, IllegalAccessException {
+		// test that sibling records share their shape
+		JsonArray records = (JsonArray) JsonParser
+				.parseString("[{\"id\":1,\"name\":\"first\"},{\"id\":2,\"name\":\"second\"}]");
+		Field content = JsonObject.class.getDeclaredField("content");
+		content.setAccessible(true);
+		Object map1 = content.get(records.get(0));
+		Object map2 = content.get(records.get(1));
+		Field shape = map1.getClass().getDeclaredField("shape");
+		shape.setAccessible(true);
+		assertTrue("Parsed records with the same keys don't share a shape!", shape.get(map1) == shape.get(map2));
+		assertEquals(new JsonObject("id", 2, "name", "second"), records.get(1));
+		// test adding and removing keys
+		JsonObject record = (JsonObject) records.get(0);
+		record.put("extra", true);
+		assertEquals(true, record.get("extra"));
+		record.remove("id");
+		JsonObject expected = new JsonObject("name", "first", "extra", true);
+		assertEquals(expected, record);
+		assertEquals(expected.toString(), record.toString());
+		assertEquals(new JsonObject("id", 2, "name", "second"), records.get(1));
+		// test removing a key of a clone not affecting the original
+		JsonObject clone = record.clone();
+		clone.remove("name");
+		assertEquals(expected, record);
+		// test objects with too many keys for a shape
+		JsonObject big = new JsonObject();
+		StringBuilder builder = new StringBuilder("{");
+		for (int i = 0; i < 100; i++) {
+			big.put("key" + i, i);
+			builder.append("\"key").append(i).append("\":").append(i).append(',');
+		}
+		builder.setCharAt(builder.length() - 1, '}');
+		JsonObject parsedBig = (JsonObject) JsonParser.parseString(builder.toString());
+		assertEquals(big, parsedBig);
+		Iterator<Entry<String, Object>> iterator = parsedBig.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if ((Integer) iterator.next().getValue() % 2 == 0) {
+				iterator.remove();
+			}
+		}
+		assertEquals(50, parsedBig.size());
+		assertEquals(99, parsedBig.get("key99"));
+		// test that shapes that are no longer used get reclaimed
+		Field dictionary = map1.getClass().getDeclaredField("dictionary");
+		dictionary.setAccessible(true);
+		JsonArray shapes = new JsonArray();
+		for (int i = 0; i < 5000; i++) {
+			shapes.add(JsonParser.parseString("{\"shapeTest\":0,\"a" + i % 64 + "\":0,\"b" + i / 64 + "\":0}"));
+		}
+		Object last = content.get(shapes.get(shapes.size() - 1));
+		assertTrue("More shapes than the limit were created!", dictionary.get(last) != null);
+		shapes = null;
+		last = null;
+		Object reclaimed = null;
+		for (int i = 0; i < 20 && (reclaimed == null || dictionary.get(reclaimed) != null); i++) {
+			System.gc();
+			reclaimed = content.get(JsonParser.parseString("{\"shapeTest\":0,\"a0\":0,\"b99\":0}"));
+		}
+		assertTrue("Unused shapes weren't reclaimed!", dictionary.get(reclaimed) == null);
+	}
+
+	/**
+	 * Tests the thread safety and snapshots of {@link ConcurrentJsonObject}s.
+	 * 
+	 * @throws InterruptedException if the test gets interrupted while waiting for
+	 *                              its threads.
+	 */
+	@Test
+	public void concurrentObjectTest() throws InterruptedException {
+		for (boolean ordered : new boolean[] { true, false }) {
+			// test concurrent writes to different and identical keys
+			ConcurrentJsonObject json = new ConcurrentJsonObject(ordered);
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				final int thread = i;
+				threads[i] = new Thread(() -> {
+					for (int j = 0; j < 250; j++) {
+						json.put("thread" + thread + "key" + j, j);
+						json.merge("counter", 1, (a, b) -> (Integer) a + (Integer) b);
+						json.toString();
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(1001, json.size());
+			assertEquals(1000, json.get("counter"));
+			// test null values and atomic adding
+			json.put("null", null);
+			assertTrue(json.containsKey("null"));
+			try {
+				json.add("null", 1);
+				assertTrue("Adding an existing key didn't throw an exception!", false);
+			} catch (InvalidKeyException e) {
+			}
+			assertEquals(null, json.putIfAbsent("new", 5));
+			assertEquals(5, json.putIfAbsent("new", 6));
+			assertFalse(json.replace("new", 6, 7));
+			assertTrue(json.remove("new", 5));
+			// test snapshots, clones and changes
+			JsonObject snapshot = json.snapshot();
+			ConcurrentJsonObject clone = json.clone();
+			json.remove("counter");
+			assertEquals(1002, snapshot.size());
+			assertEquals(1000, snapshot.get("counter"));
+			assertEquals(clone.getClass(), ConcurrentJsonObject.class);
+			assertEquals(ordered, clone.isInsertionOrdered());
+			assertNotEquals(json, clone);
+			JsonObject changes = json.changes(clone);
+			assertEquals(new JsonObject("counter", null), changes);
+			assertEquals(json.snapshot(), changes.reconstruct(clone));
+		}
+		// test insertion order iteration
+		ConcurrentJsonObject ordered = new ConcurrentJsonObject();
+		ordered.put("b", 1);
+		ordered.put("a", 2);
+		ordered.put("c", null);
+		ordered.remove("a");
+		ordered.put("a", 3);
+		assertEquals("{\"b\":1,\"c\":null,\"a\":3}", ordered.toString());
+	}
+
+	/**
+	 * Tests freezing {@link JsonObject}s and {@link JsonArray}s.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void freezeTest() throws ParseException {
+		JsonObject json = (JsonObject) JsonParser
+				.parseString("{\"name\":\"test\",\"values\":[1,2,3],\"records\":[{\"id\":1},{\"id\":2}]}");
+		int hash = json.hashCode();
+		int size = json.size(true);
+		assertEquals(json, json.freeze());
+		assertTrue(json.isFrozen());
+		assertTrue(((JsonArray) json.get("records")).isFrozen());
+		assertTrue(((JsonObject) ((JsonArray) json.get("records")).get(0)).isFrozen());
+		assertEquals(hash, json.hashCode());
+		assertEquals(size, json.size(true));
+		// test that modifications fail
+		Runnable[] modifications = new Runnable[] { () -> json.put("name", "other"), () -> json.remove("name"),
+				() -> json.clear(), () -> json.entrySet().iterator().next().setValue(1),
+				() -> json.keySet().remove("name"), () -> json.merge("name", "x", (a, b) -> b),
+				() -> ((JsonArray) json.get("values")).add(4), () -> ((JsonArray) json.get("values")).set(0, (Object) 5),
+				() -> ((JsonArray) json.get("values")).removeIf(value -> true),
+				() -> ((JsonArray) json.get("values")).sort(null),
+				() -> ((JsonObject) ((JsonArray) json.get("records")).get(1)).put("id", 3) };
+		for (Runnable modification : modifications) {
+			try {
+				modification.run();
+				assertTrue("Modifying a frozen json didn't throw an exception!", false);
+			} catch (UnsupportedOperationException e) {
+			}
+		}
+		assertEquals(hash, json.hashCode());
+		assertEquals(size, json.size(true));
+		// test that clones can be modified
+		JsonObject clone = json.clone();
+		assertFalse(clone.isFrozen());
+		clone.put("name", "other");
+		((JsonArray) clone.get("values")).add(4);
+		assertNotEquals(json, clone);
+		assertEquals(size + 1, clone.size(true));
+		assertTrue(((JsonArray) json.clone(false).get("values")).isFrozen());
+		// test that failing to freeze a tree doesn't freeze any of it
+		JsonObject first = new JsonObject("a", 1);
+		JsonArray array = new JsonArray(new JsonObject("b", 2), new ConcurrentJsonObject());
+		JsonObject mixed = new JsonObject("first", first, "array", array);
+		try {
+			mixed.freeze();
+			assertTrue("Freezing a ConcurrentJsonObject didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+		assertFalse(mixed.isFrozen());
+		assertFalse(first.isFrozen());
+		assertFalse(array.isFrozen());
+		assertFalse(((JsonObject) array.get(0)).isFrozen());
+		// test removing keys using the iterator
+		Iterator<Object> keys = first.iterator();
+		assertEquals("a", keys.next());
+		keys.remove();
+		assertTrue(first.isEmpty());
+		keys = json.iterator();
+		keys.next();
+		try {
+			keys.remove();
+			assertTrue("Removing a key of a frozen object didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	/**
+	 * Tests walking json trees using a {@link JsonVisitor}.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void visitorTest() throws ParseException {
+		JsonObject json = (JsonObject) JsonParser.parseString(
+				"{\"name\":\"test\",\"values\":[1,2,3],\"skip\":{\"a\":1},\"records\":[{\"id\":4},{\"id\":5}],\"last\":null}");
+		// test the order of the callbacks
+		StringBuilder events = new StringBuilder();
+		assertTrue(JsonWalker.walk(json, new JsonVisitor() {
+
+			@Override
+			public JsonVisitResult enterObject(JsonObject object) {
+				events.append('{');
+				return JsonVisitResult.CONTINUE;
+			}
+
+			@Override
+			public JsonVisitResult key(String key) {
+				events.append(key).append(':');
+				return key.equals("skip") ? JsonVisitResult.SKIP_SUBTREE : JsonVisitResult.CONTINUE;
+			}
+
+			@Override
+			public JsonVisitResult exitObject(JsonObject object) {
+				events.append('}');
+				return JsonVisitResult.CONTINUE;
+			}
+
+			@Override
+			public JsonVisitResult enterArray(JsonArray array) {
+				events.append('[');
+				return JsonVisitResult.CONTINUE;
+			}
+
+			@Override
+			public JsonVisitResult exitArray(JsonArray array) {
+				events.append(']');
+				return JsonVisitResult.CONTINUE;
+			}
+
+			@Override
+			public JsonVisitResult scalar(Object value) {
+				events.append(value).append(',');
+				return JsonVisitResult.CONTINUE;
+			}
+
+		}));
+		assertEquals("{name:test,values:[1,2,3,]skip:records:[{id:4,}{id:5,}]last:null,}", events.toString());
+		// test primitive callbacks, skipping siblings and termination
+		long[] sum = new long[1];
+		assertFalse(JsonWalker.walk(json, new JsonVisitor() {
+
+			@Override
+			public JsonVisitResult scalar(int value) {
+				sum[0] += value;
+				return value == 2 ? JsonVisitResult.SKIP_SIBLINGS : JsonVisitResult.CONTINUE;
+			}
+
+			@Override
+			public JsonVisitResult scalar(Object value) {
+				if (value instanceof Integer) {
+					sum[0] += 100 * (Integer) value;
+				}
+				return value instanceof Integer && (Integer) value == 4 ? JsonVisitResult.TERMINATE
+						: JsonVisitResult.CONTINUE;
+			}
+
+		}));
+		assertEquals(503, sum[0]);
+		// test a walk over a concurrent object
+		ConcurrentJsonObject concurrent = new ConcurrentJsonObject(json);
+		int[] count = new int[1];
+		JsonWalker.walk(concurrent, new JsonVisitor() {
+
+			@Override
+			public JsonVisitResult scalar(Object value) {
+				count[0]++;
+				return JsonVisitResult.CONTINUE;
+			}
+
+		});
+		assertEquals(json.size(true), count[0]);
+	}
+
+	/**
+	 * Tests reading json documents using a {@link JsonReader}, and parsing them
+	 * into a {@link JsonTape}.
+	 * 
+	 * @throws ParseException if parsing a test json fails.
+	 */
+	@Test
+	public void tapeTest() throws ParseException {
+		// test reading tokens
+		JsonReader reader = new JsonReader("{\"a\": [1, 3000000000, 1.5e2, \"x\\\"\\u0041\"], \"b\": {\"c\": true}, \"d\": null}");
+		JsonToken[] expected = new JsonToken[] { JsonToken.START_OBJECT, JsonToken.KEY, JsonToken.START_ARRAY,
+				JsonToken.INT, JsonToken.LONG, JsonToken.DOUBLE, JsonToken.STRING, JsonToken.END_ARRAY, JsonToken.KEY,
+				JsonToken.START_OBJECT, JsonToken.KEY, JsonToken.BOOLEAN, JsonToken.END_OBJECT, JsonToken.KEY,
+				JsonToken.NULL, JsonToken.END_OBJECT, JsonToken.END_DOCUMENT };
+		for (JsonToken token : expected) {
+			assertEquals(token, reader.next());
+			if (token == JsonToken.STRING) {
+				assertEquals("x\"A", reader.getString());
+			} else if (token == JsonToken.DOUBLE) {
+				assertEquals(150.0, reader.getDouble(), 0);
+			} else if (token == JsonToken.LONG) {
+				assertEquals(3000000000l, reader.getLong());
+			}
+		}
+		// test skipping values
+		reader = new JsonReader("[{\"a\": [1, {}]}, 2]");
+		reader.next();
+		reader.next();
+		reader.skipValue();
+		assertEquals(JsonToken.INT, reader.next());
+		assertEquals(2, reader.getInt());
+		// test invalid json
+		String[] invalid = new String[] { "{\"a\" 1}", "[1, 2", "[1}", "{\"a\": tru}", "[1] 2", "{1: 2}", "[1E400]",
+				"[-1e309]" };
+		for (String json : invalid) {
+			try {
+				reader = new JsonReader(json);
+				while (reader.next() != JsonToken.END_DOCUMENT)
+					;
+				assertTrue(String.format("Reading invalid json \"%s\" didn't fail!", json), false);
+			} catch (ParseException e) {
+			}
+		}
+		reader = new JsonReader("[1.5E3]");
+		reader.next();
+		assertEquals(JsonToken.DOUBLE, reader.next());
+		assertEquals(1500, reader.getDouble(), 0);
+		// test tape views
+		String json = "{\"name\":\"t\u00e4pe\",\"values\":[1,2,3000000000,-4.5],\"records\":[{\"id\":1,\"tags\":[]},{\"id\":2,\"ok\":false}],\"none\":null}";
+		JsonTape tape = JsonTape.parse(json);
+		JsonObject root = (JsonObject) tape.getRoot();
+		assertEquals(JsonParser.parseString(json), root);
+		assertEquals(json, root.toString());
+		assertEquals(JsonParser.parseString(json).hashCode(), root.hashCode());
+		assertEquals("t\u00e4pe", root.get("name"));
+		assertEquals(3000000000l, ((JsonArray) root.get("values")).get(2));
+		assertEquals(false, ((JsonObject) ((JsonArray) root.get("records")).get(1)).get("ok"));
+		assertTrue(root.containsKey("none"));
+		assertFalse(root.containsKey("other"));
+		assertEquals(9, root.size(true));
+		try {
+			root.put("name", "other");
+			assertTrue("Modifying a tape view didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+		// test cloning a tape view into a modifiable json
+		JsonObject clone = root.clone();
+		((JsonArray) clone.get("values")).add(5);
+		((JsonObject) ((JsonArray) clone.get("records")).get(0)).put("id", 3);
+		assertEquals(JsonParser.parseString(json), root);
+		assertEquals(5, ((JsonArray) clone.get("values")).get(4));
+		assertEquals(3, ((JsonObject) ((JsonArray) clone.get("records")).get(0)).get("id"));
+	}
+
+	/**
+	 * Tests evaluating compiled {@link JsonPath JsonPaths}.
+	 * 
+	 * @throws ParseException if parsing a test json or path fails.
+	 */
+	@Test
+	public void pathTest() throws ParseException {
+		JsonObject json = (JsonObject) JsonParser.parseString(
+				"{\"store\": {\"book\": [{\"title\": \"A\", \"price\": 8.95, \"tags\": [\"x\"]}, {\"title\": \"B\", \"price\": 12}, "
+						+ "{\"title\": \"C\", \"price\": 22.5, \"isbn\": \"1-2\"}], \"bicycle\": {\"price\": 19.95}}, \"limit\": 10}");
+		// test simple paths
+		assertEquals(new JsonArray("A"), JsonPath.select(json, "$.store.book[0].title"));
+		assertEquals(new JsonArray("C"), JsonPath.select(json, "$['store']['book'][-1].title"));
+		assertEquals(new JsonArray("A", "B", "C"), JsonPath.select(json, "store.book[*].title"));
+		assertEquals(new JsonArray(), JsonPath.select(json, "$.store.missing.title"));
+		// test recursive descent and wildcards
+		assertEquals(new JsonArray(8.95, 12, 22.5, 19.95), JsonPath.select(json, "$..price"));
+		assertEquals(2, JsonPath.select(json, "$.store.*").size());
+		assertEquals(new JsonArray("x"), JsonPath.select(json, "$..tags[0]"));
+		// test slices and unions
+		assertEquals(new JsonArray("A", "B"), JsonPath.select(json, "$.store.book[:2].title"));
+		assertEquals(new JsonArray("C", "A"), JsonPath.select(json, "$.store.book[::-2].title"));
+		assertEquals(new JsonArray("B", "C"), JsonPath.select(json, "$.store.book[-2:].title"));
+		assertEquals(new JsonArray("A", "C"), JsonPath.select(json, "$.store.book[0,2].title"));
+		assertEquals(new JsonArray(10), JsonPath.select(json, "$['limit', \"missing\"]"));
+		// test filters
+		assertEquals(new JsonArray("A", "B"), JsonPath.select(json, "$.store.book[?(@.price < $.limit || @.title == 'B')].title"));
+		assertEquals(new JsonArray("C"), JsonPath.select(json, "$.store.book[?(@.isbn)].title"));
+		assertEquals(new JsonArray("A", "B"), JsonPath.select(json, "$.store.book[?(!@.isbn && @.price >= 8.95)].title"));
+		assertEquals(new JsonArray("B"), JsonPath.select(json, "$.store.book[?(@.price == 12.0)].title"));
+		// test compiled paths
+		JsonPath path = JsonPath.compile("$..book[?(@.title != \"A\")].price");
+		assertTrue(path == JsonPath.compile("$..book[?(@.title != \"A\")].price"));
+		assertEquals(12, path.selectFirst(json));
+		assertTrue(path.matches(json));
+		assertFalse(path.matches(new JsonObject()));
+		assertEquals(null, path.selectFirst(new JsonArray()));
+		// test that recently used paths stay cached
+		for (int i = 0; i < 2000; i++) {
+			JsonPath.compile("$.cacheTest" + i);
+			assertTrue(path == JsonPath.compile("$..book[?(@.title != \"A\")].price"));
+		}
+		// test invalid paths
+		String[] invalid = new String[] { "$.", "$[1", "$[?(@.a ==)]", "$[::0]", "$.a b", "$['a]" };
+		for (String expression : invalid) {
+			try {
+				JsonPath.compile(expression);
+				assertTrue(String.format("Compiling invalid path \"%s\" didn't fail!", expression), false);
+			} catch (ParseException e) {
+			}
+		}
+	}
+
+	/**
+	 * Tests looking up elements of {@link JsonArray JsonArrays} using
+	 * {@link JsonIndex JsonIndices}.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void indexTest() throws ParseException {
+		JsonArray array = (JsonArray) JsonParser.parseString(
+				"[{\"id\": 1, \"name\": \"a\", \"pos\": {\"x\": 5}}, {\"id\": 2, \"name\": \"b\", \"pos\": {\"x\": 3}}, "
+						+ "{\"id\": 3, \"name\": \"a\", \"pos\": {\"x\": 5}}, {\"name\": \"c\"}]");
+		JsonIndex ids = array.createIndex(false, "id");
+		JsonIndex names = array.createIndex(true, "name");
+		JsonIndex composite = array.createIndex(true, "name", "pos.x");
+		// test lookups
+		assertEquals(array.get(1), ids.getFirst(2));
+		assertEquals(array.get(1), ids.getFirst(2l));
+		assertEquals(null, ids.getFirst(4));
+		assertEquals(2, names.get("a").size());
+		assertEquals(array.get(3), names.getFirst("c"));
+		assertEquals(array.get(2), composite.get("a", 5).get(1));
+		assertFalse(composite.contains("b", 5));
+		// test range queries
+		assertEquals(3, names.range("a", true, "b", true).size());
+		assertEquals(new JsonArray(array.get(1), array.get(3)), new JsonArray(names.range("a", false, null, false)));
+		assertEquals(1, composite.range(new JsonArray("b"), true, null, false).size());
+		try {
+			ids.range(1, true, 2, true);
+			assertTrue("Range querying a hash index didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+		// test index maintenance
+		JsonObject added = new JsonObject("id", 4);
+		added.put("name", "b");
+		array.add(added);
+		assertEquals(added, ids.getFirst(4));
+		assertEquals(2, names.get("b").size());
+		array.remove(0);
+		assertFalse(ids.contains(1));
+		assertEquals(1, names.get("a").size());
+		JsonObject replacement = new JsonObject("id", 5);
+		array.set(0, replacement);
+		assertFalse(ids.contains(2));
+		assertEquals(replacement, ids.getFirst(5));
+		Iterator<Object> it = array.iterator();
+		it.next();
+		it.next();
+		it.remove();
+		assertEquals(0, names.get("a").size());
+		array.removeIf(value -> ((JsonObject) value).containsKey("id") && ((JsonObject) value).get("id").equals(4));
+		assertFalse(ids.contains(4));
+		array.removeAll(names.get("c"));
+		assertEquals(1, array.size());
+		assertEquals(1, ids.size());
+		assertEquals(0, names.size());
+		array.clear();
+		assertEquals(0, ids.size());
+		// test dropping indices
+		assertTrue(array.dropIndex(names));
+		assertEquals(2, array.getIndices().size());
+		array.add(added);
+		assertEquals(0, names.size());
+		names.rebuild();
+		assertEquals(added, names.getFirst("b"));
+		assertEquals(0, array.clone().getIndices().size());
+	}
+
+	/**
+	 * Tests streaming {@link JsonArray JsonArrays}, the entries of
+	 * {@link JsonObject JsonObjects}, and whole json trees.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void streamTest() throws ParseException {
+		// test array spliterators
+		JsonArray numbers = new JsonArray();
+		for (int i = 0; i < 1000; i++) {
+			numbers.add(i);
+		}
+		assertEquals(499500, numbers.parallelStream().mapToInt(value -> (Integer) value).sum());
+		numbers.usePrimitiveStorage();
+		assertEquals(499500, numbers.parallelStream().mapToInt(value -> (Integer) value).sum());
+		Spliterator<Object> split = numbers.spliterator();
+		Spliterator<Object> prefix = split.trySplit();
+		assertEquals(500, prefix.estimateSize());
+		assertEquals(500, split.estimateSize());
+		prefix.tryAdvance(value -> assertEquals(0, value));
+		// test object entry streams
+		JsonObject object = new JsonObject();
+		for (int i = 0; i < 100; i++) {
+			object.put("key" + i, i);
+		}
+		object.remove("key50");
+		assertEquals(4900, object.entryStream(true).mapToInt(entry -> (Integer) entry.getValue()).sum());
+		assertEquals(new ArrayList<>(object.keySet()),
+				object.entryStream(true).map(Entry::getKey).collect(Collectors.toList()));
+		ConcurrentJsonObject concurrent = new ConcurrentJsonObject(object);
+		assertEquals(99, concurrent.entryStream(true).count());
+		// test tree streams
+		String json = "{\"a\": [1, {\"b\": true, \"c d\": null}, []], \"e\": {\"f\": [\"g\", 2.5]}, \"h\": {}}";
+		JsonObject tree = (JsonObject) JsonParser.parseString(json);
+		List<String> paths = JsonWalker.flatten(tree, false).map(Entry::getKey).collect(Collectors.toList());
+		assertEquals(Arrays.asList("$.a[0]", "$.a[1].b", "$.a[1]['c d']", "$.e.f[0]", "$.e.f[1]"), paths);
+		assertEquals(paths, JsonWalker.flatten(tree, true).map(Entry::getKey).collect(Collectors.toList()));
+		for (Entry<String, Object> entry : JsonWalker.flatten(tree, false).collect(Collectors.toList())) {
+			assertEquals(entry.getValue(), JsonPath.compile(entry.getKey()).selectFirst(tree));
+		}
+		assertEquals(1, JsonWalker.flatten("scalar", true).count());
+		JsonArray big = new JsonArray();
+		for (int i = 0; i < 200; i++) {
+			big.add(new JsonObject("values", numbers.clone()));
+		}
+		assertEquals(200 * 499500l, JsonWalker.flatten(big.freeze(), true)
+				.mapToLong(entry -> ((Number) entry.getValue()).longValue()).sum());
+	}
+
+	/**
+	 * Tests creating and applying JSON Patch and JSON Merge Patch documents.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void patchTest() throws ParseException {
+		// test the example from RFC 6902
+		JsonObject target = (JsonObject) JsonParser.parseString("{\"foo\": [\"bar\", \"baz\"], \"a/b\": 1}");
+		String patchJson = "[{\"op\": \"add\", \"path\": \"/foo/1\", \"value\": \"qux\"},"
+				+ "{\"op\": \"test\", \"path\": \"/a~1b\", \"value\": 1.0},"
+				+ "{\"op\": \"copy\", \"from\": \"/foo\", \"path\": \"/copy\"},"
+				+ "{\"op\": \"move\", \"from\": \"/foo/0\", \"path\": \"/foo/-\"},"
+				+ "{\"op\": \"replace\", \"path\": \"/a~1b\", \"value\": {\"c\": null}},"
+				+ "{\"op\": \"remove\", \"path\": \"/copy/2\"}]";
+		JsonObject expected = (JsonObject) JsonParser
+				.parseString("{\"foo\": [\"qux\", \"baz\", \"bar\"], \"a/b\": {\"c\": null}, \"copy\": [\"bar\", \"qux\"]}");
+		JsonObject streamed = target.clone();
+		assertEquals(target, JsonPatch.apply(target, (JsonArray) JsonParser.parseString(patchJson)));
+		assertEquals(expected, target);
+		assertEquals(streamed, JsonPatch.apply(streamed, new JsonReader(patchJson)));
+		assertEquals(expected, streamed);
+		// test invalid patches
+		try {
+			JsonPatch.apply(target, (JsonArray) JsonParser.parseString("[{\"op\": \"test\", \"path\": \"/foo/0\", \"value\": \"bar\"}]"));
+			assertTrue("A failed test operation didn't throw an exception.", false);
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			JsonPatch.apply(target, (JsonArray) JsonParser.parseString("[{\"op\": \"remove\", \"path\": \"/missing/a\"}]"));
+			assertTrue("Removing a missing value didn't throw an exception.", false);
+		} catch (InvalidKeyException e) {
+		}
+		try {
+			JsonPatch.apply(target, (JsonArray) JsonParser.parseString("[{\"op\": \"add\", \"path\": \"/a\"}]"));
+			assertTrue("An add operation without value didn't throw an exception.", false);
+		} catch (ParseException e) {
+		}
+		assertEquals(expected, target);
+		// test rolling back failed patches
+		String failing = "[{\"op\": \"remove\", \"path\": \"/foo/0\"}, {\"op\": \"add\", \"path\": \"/b\", "
+				+ "\"value\": 2}, {\"op\": \"remove\", \"path\": \"/a~1b\"}, {\"op\": \"add\", \"path\": \"/a~1b\", "
+				+ "\"value\": 3}, {\"op\": \"move\", \"from\": \"/copy/0\", \"path\": \"/foo/0\"}, "
+				+ "{\"op\": \"test\", \"path\": \"/b\", \"value\": 5}]";
+		String partial = failing.substring(0, failing.lastIndexOf(", {"));
+		String before = target.toString();
+		try {
+			JsonPatch.apply(target, (JsonArray) JsonParser.parseString(failing));
+			assertTrue("A failed test operation didn't throw an exception.", false);
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(before, target.toString());
+		try {
+			JsonPatch.apply(target, new JsonReader(partial));
+			assertTrue("Applying a truncated patch didn't throw an exception.", false);
+		} catch (ParseException e) {
+		}
+		assertEquals(before, target.toString());
+		try {
+			JsonPatch.applyAll(target, Arrays.asList((JsonArray) JsonParser.parseString(partial + "]"),
+					(JsonArray) JsonParser.parseString("[{\"op\": \"remove\", \"path\": \"/missing\"}]")));
+			assertTrue("Removing a missing value didn't throw an exception.", false);
+		} catch (InvalidKeyException e) {
+		}
+		assertEquals(before, target.toString());
+		assertEquals("new", JsonPatch.apply(target,
+				(JsonArray) JsonParser.parseString("[{\"op\": \"replace\", \"path\": \"\", \"value\": \"new\"}]")));
+		// test creating patches
+		Random random = new Random(25);
+		for (int run = 0; run < 100; run++) {
+			JsonObject from = new JsonObject();
+			JsonObject to = new JsonObject();
+			for (int i = 0; i < 10; i++) {
+				JsonArray fromArray = new JsonArray();
+				JsonArray toArray = new JsonArray();
+				for (int j = random.nextInt(8); j > 0; j--) {
+					fromArray.add(random.nextInt(4) == 0 ? new JsonObject("v", random.nextInt(3)) : (Object) random.nextInt(5));
+				}
+				for (int j = random.nextInt(8); j > 0; j--) {
+					toArray.add(random.nextInt(4) == 0 ? new JsonObject("v", random.nextInt(3)) : (Object) random.nextInt(5));
+				}
+				if (random.nextInt(5) > 0) {
+					from.put("k/" + i, fromArray);
+				}
+				if (random.nextInt(5) > 0) {
+					to.put("k/" + i, random.nextInt(6) == 0 ? "~" : toArray);
+				}
+			}
+			JsonArray patch = JsonPatch.create(from, to);
+			JsonObject copy = from.clone();
+			assertEquals(to, JsonPatch.apply(copy, patch));
+			assertEquals(to, JsonPatch.apply(from.clone(), new JsonReader(patch.toString())));
+			assertEquals(to, JsonPatch.applyMergePatch(from.clone(), JsonPatch.createMergePatch(from, to)));
+			assertEquals(to, JsonPatch.applyMergePatch(from.clone(),
+					new JsonReader(JsonPatch.createMergePatch(from, to).toString())));
+			assertEquals(to, JsonPatch.applyAll(from.clone(), Arrays.asList(patch, JsonPatch.create(to, to))));
+		}
+		// test applying multiple patches
+		JsonObject base = new JsonObject("list", new JsonArray());
+		List<JsonArray> patches = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			patches.add((JsonArray) JsonParser.parseString("[{\"op\": \"add\", \"path\": \"/list/-\", \"value\": " + i + "}]"));
+		}
+		patches.add((JsonArray) JsonParser.parseString("[{\"op\": \"move\", \"from\": \"/list\", \"path\": \"/moved\"},"
+				+ "{\"op\": \"add\", \"path\": \"/list\", \"value\": []}, {\"op\": \"add\", \"path\": \"/list/0\", \"value\": 1}]"));
+		JsonPatch.applyAll(base, patches);
+		assertEquals(50, ((JsonArray) base.get("moved")).size());
+		assertEquals(new JsonArray((Object) 1), base.get("list"));
+		// test merge patches
+		JsonObject merged = (JsonObject) JsonParser.parseString("{\"a\": \"b\", \"c\": {\"d\": \"e\", \"f\": \"g\"}}");
+		JsonPatch.applyMergePatch(merged, JsonParser.parseString("{\"a\": \"z\", \"c\": {\"f\": null}}"));
+		assertEquals(JsonParser.parseString("{\"a\": \"z\", \"c\": {\"d\": \"e\"}}"), merged);
+	}
+
+	/**
+	 * Tests the structural digests of {@link JsonObject JsonObjects} and
+	 * {@link JsonArray JsonArrays}, and comparing frozen json trees.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void digestTest() throws ParseException {
+		// test digests of equal and different trees
+		JsonObject json = (JsonObject) JsonParser.parseString("{\"a\": [1, \"b\", {\"c\": null}], \"d\": 2.5, \"e\": true}");
+		JsonObject reordered = (JsonObject) JsonParser.parseString("{\"e\": true, \"d\": 2.5, \"a\": [1, \"b\", {\"c\": null}]}");
+		assertEquals(json.digest(), reordered.digest());
+		assertEquals(json.digest(), new ConcurrentJsonObject(json).digest());
+		JsonObject changed = json.clone();
+		((JsonArray) changed.get("a")).add(0, ((JsonArray) changed.get("a")).remove(1));
+		assertNotEquals(json.digest(), changed.digest());
+		((JsonArray) changed.get("a")).add(1, ((JsonArray) changed.get("a")).remove(0));
+		assertEquals(json.digest(), changed.digest());
+		changed.put("d", 2);
+		assertNotEquals(json.digest(), changed.digest());
+		// test frozen trees
+		JsonArray values = new JsonArray();
+		for (int i = 0; i < 1000; i++) {
+			values.add(new JsonObject("value", new JsonArray(i, "v" + i)));
+		}
+		JsonObject state = new JsonObject("values", values);
+		state.put("other", json);
+		JsonObject newState = state.clone();
+		((JsonArray) ((JsonObject) ((JsonArray) newState.get("values")).get(500)).get("value")).set(1, "changed");
+		long digest = state.freeze().digest();
+		newState.freeze();
+		assertEquals(digest, state.digest());
+		assertNotEquals(digest, newState.digest());
+		assertNotEquals(state, newState);
+		assertEquals(state, state.clone().freeze());
+		assertNotEquals(0, state.compareTo(newState));
+		JsonObject changes = newState.changes(state);
+		assertEquals(1, changes.size());
+		assertEquals(newState, changes.reconstruct(state));
+		// test comparing objects and arrays
+		JsonArray array = new JsonArray(1, 2, 3);
+		JsonObject object = new JsonObject("a", 1, "b", 2);
+		assertEquals(1, array.compareTo(object));
+		object.put("c", 3);
+		assertEquals(1, object.compareTo(array));
+		object.put("c", 4);
+		assertEquals(1, object.compareTo(array));
+	}
+
+	/**
+	 * Tests combining multiple changes jsons into one, and the
+	 * {@link JsonChangeLog}.
+	 * 
+	 * @throws CloneNotSupportedException if cloning a json fails.
+	 * @throws InterruptedException       if waiting for the compactor is
+	 *                                    interrupted.
+	 */
+	@Test
+	public void composeTest() throws CloneNotSupportedException, InterruptedException {
+		// test combining random changes
+		Random random = new Random(25);
+		for (int run = 0; run < 200; run++) {
+			JsonObject base = (JsonObject) randomJson(random, 3, true);
+			JsonObject current = base;
+			JsonObject composed = null;
+			for (int i = 0; i < 5; i++) {
+				JsonObject next = current.clone();
+				mutateJson(random, next, 3);
+				JsonObject changes = next.changes(current);
+				composed = composed == null ? changes : composed.compose(base, changes);
+				assertEquals(next, composed.reconstruct(base));
+				current = next;
+			}
+		}
+		// test combining array changes
+		JsonArray array = new JsonArray(1, 2, 3);
+		JsonArray changes = new JsonArray(new JsonObject("ins", 0, "val", 0), new JsonObject("chg", 0, "val", 5));
+		changes = changes.compose(array, new JsonArray(new JsonObject("set", 0, "val", 4)));
+		changes = changes.compose(array, new JsonArray(new JsonObject("rm", 0), new JsonObject("after", 3, "val", 7)));
+		assertEquals(new JsonArray(new JsonObject("ins", 2, "val", 7)), changes);
+		assertEquals(new JsonArray(1, 2, 7, 3), changes.reconstruct(array));
+		// test change logs
+		JsonObject state = new JsonObject("count", 0);
+		JsonChangeLog<String> log = new JsonChangeLog<>(state.clone());
+		for (int i = 1; i <= 100; i++) {
+			JsonObject next = state.clone();
+			next.put("count", i);
+			next.put("key" + i % 10, i);
+			log.append(next.changes(state));
+			state = next;
+		}
+		assertEquals(state, log.reconstruct());
+		assertEquals(1, log.size());
+		log.startCompactor(10, 0);
+		for (int i = 101; i <= 200; i++) {
+			JsonObject next = state.clone();
+			next.put("count", i);
+			log.append(next.changes(state));
+			state = next;
+		}
+		for (int i = 0; i < 100 && log.size() >= 10; i++) {
+			Thread.sleep(10);
+		}
+		log.stopCompactor();
+		assertTrue(log.size() < 10);
+		assertEquals(state, log.checkpoint());
+		assertEquals(0, log.size());
+		assertEquals(state, log.getBase());
+	}
+
+	/**
+	 * Creates a random json value for the change tests.
+	 * 
+	 * @param random the random to use.
+	 * @param depth  the max number of nested json elements.
+	 * @param object whether the value has to be a {@link JsonObject}.
+	 * @return the random value.
+	 */
+	private static Object randomJson(Random random, int depth, boolean object) {
+		int type = object ? 0 : depth > 0 ? random.nextInt(5) : 2 + random.nextInt(2);
+		switch (type) {
+		case 0:
+			JsonObject json = new JsonObject();
+			for (int i = random.nextInt(4); i >= 0; i--) {
+				json.put("k" + random.nextInt(6), randomJson(random, depth - 1, false));
+			}
+			return json;
+		case 1:
+			JsonArray array = new JsonArray();
+			for (int i = random.nextInt(5); i >= 0; i--) {
+				array.add(randomJson(random, depth - 1, false));
+			}
+			return array;
+		case 2:
+			return random.nextInt(3);
+		case 3:
+			return "s" + random.nextInt(3);
+		default:
+			return random.nextBoolean() ? new JsonObject() : new JsonArray();
+		}
+	}
+
+	/**
+	 * Randomly modifies the given json element for the change tests.
+	 * 
+	 * @param random the random to use.
+	 * @param json   the json to modify.
+	 * @param depth  the max number of nested json elements.
+	 */
+	private static void mutateJson(Random random, JsonElement<?> json, int depth) {
+		for (int i = random.nextInt(3); i >= 0; i--) {
+			if (json instanceof JsonObject) {
+				JsonObject object = (JsonObject) json;
+				String key = "k" + random.nextInt(6);
+				Object value = object.get(key);
+				if (value instanceof JsonElement && random.nextBoolean()) {
+					mutateJson(random, (JsonElement<?>) value, depth - 1);
+				} else if (random.nextInt(3) == 0) {
+					object.remove(key);
+				} else {
+					object.put(key, randomJson(random, depth - 1, false));
+				}
+			} else {
+				JsonArray array = (JsonArray) json;
+				int index = array.isEmpty() ? 0 : random.nextInt(array.size());
+				Object value = array.isEmpty() ? null : array.get(index);
+				if (value instanceof JsonElement && random.nextBoolean()) {
+					mutateJson(random, (JsonElement<?>) value, depth - 1);
+				} else if (!array.isEmpty() && random.nextInt(3) == 0) {
+					array.remove(index);
+				} else if (!array.isEmpty() && random.nextBoolean()) {
+					array.set(index, randomJson(random, depth - 1, false));
+				} else {
+					array.add(index, randomJson(random, depth - 1, false));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests persisting changes using a {@link JsonJournal}, and restoring the json
+	 * from it.
+	 * 
+	 * @throws IOException    if writing or reading the journal fails.
+	 * @throws ParseException if reading the journal fails.
+	 */
+	@Test
+	public void journalTest() throws IOException, ParseException {
+		Path directory = tempFolder.newFolder("json-journal").toPath();
+		// test appending and restoring changes
+		JsonJournal<String> journal = new JsonJournal<>(directory, new JsonObject("count", 0), 256, 0);
+		JsonObject expected = new JsonObject("count", 0);
+		for (int i = 1; i <= 50; i++) {
+			JsonObject next = expected.clone();
+			next.put("count", i);
+			next.put("key" + i % 7, new JsonArray(i, "value" + i));
+			journal.sync(journal.update(next.clone()));
+			expected = next;
+		}
+		assertEquals(50, journal.getSequence());
+		assertEquals(expected, journal.getState());
+		journal.close();
+		journal = new JsonJournal<>(directory, new JsonObject(), 256, 0);
+		assertEquals(expected, journal.getState());
+		assertEquals(50, journal.getSequence());
+		// test snapshots
+		journal.snapshot();
+		JsonObject changes = new JsonObject("count", 51);
+		journal.append(changes);
+		expected.put("count", 51);
+		assertEquals(expected, journal.getState());
+		journal.close();
+		long segments = Files.list(directory).filter(file -> file.toString().endsWith(".log")).count();
+		assertEquals(1, segments);
+		journal = new JsonJournal<>(directory.toFile(), new JsonObject());
+		assertEquals(expected, journal.getState());
+		// test partially written records
+		long sequence = journal.append(new JsonObject("count", 52));
+		journal.sync(sequence);
+		journal.close();
+		Path segment = Files.list(directory).filter(file -> file.toString().endsWith(".log")).findFirst().get();
+		Files.write(segment, new byte[] { 0, 0, 1, 0, 0 }, StandardOpenOption.APPEND);
+		journal = new JsonJournal<>(directory.toFile(), new JsonObject());
+		expected.put("count", 52);
+		assertEquals(expected, journal.getState());
+		journal.sync(journal.append(new JsonObject("count", 53)));
+		journal.close();
+		journal = new JsonJournal<>(directory.toFile(), new JsonObject());
+		assertEquals(53, ((JsonObject) journal.getState()).get("count"));
+		// test syncing invalid sequence numbers
+		try {
+			journal.sync(54);
+			assertTrue("Syncing a sequence number that wasn't appended didn't fail.", false);
+		} catch (IllegalArgumentException e) {
+		}
+		journal.close();
+		try {
+			journal.sync(53);
+		} catch (IOException e) {
+			assertTrue("Syncing an already synced sequence number failed.", false);
+		}
+		try {
+			journal.sync(54);
+			assertTrue("Syncing a closed journal didn't fail.", false);
+		} catch (IOException e) {
+		}
+		// test appending changes that can't be applied
+		Path arrayDirectory = tempFolder.newFolder("json-journal-array").toPath();
+		JsonJournal<Integer> arrayJournal = new JsonJournal<>(arrayDirectory.toFile(), new JsonArray(1, 2));
+		try {
+			arrayJournal.append(new JsonArray(new JsonObject("set", "invalid")));
+			assertTrue("Appending invalid changes didn't fail.", false);
+		} catch (RuntimeException e) {
+		}
+		assertEquals(0, arrayJournal.getSequence());
+		arrayJournal.sync(arrayJournal.append(new JsonArray(1, 2, 3).changes(arrayJournal.getState())));
+		arrayJournal.close();
+		arrayJournal = new JsonJournal<>(arrayDirectory.toFile(), new JsonArray());
+		assertEquals(new JsonArray(1, 2, 3), arrayJournal.getState());
+		assertEquals(1, arrayJournal.getSequence());
+		arrayJournal.close();
+		try {
+			arrayJournal.sync(2);
+			assertTrue("Syncing a closed journal didn't fail.", false);
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Tests storing documents in a {@link JsonStore}.
+	 * 
+	 * @throws IOException          if writing or reading the store fails.
+	 * @throws ParseException       if parsing the test json or reading the store
+	 *                              fails.
+	 * @throws InterruptedException if waiting for the compactor is interrupted.
+	 */
+	@Test
+	public void storeTest() throws IOException, ParseException, InterruptedException {
+		Path directory = tempFolder.newFolder("json-store").toPath();
+		// test storing documents
+		JsonStore store = new JsonStore(directory, 16);
+		JsonObject document = (JsonObject) JsonParser
+				.parseString("{\"name\": \"test\", \"values\": [1, 2, 3], \"big\": 12345678901, \"pi\": 3.14, \"empty\": null}");
+		for (int i = 0; i < 100; i++) {
+			JsonObject doc = document.clone();
+			doc.put("id", i);
+			store.put("doc" + i, doc);
+		}
+		assertEquals(100, store.size());
+		JsonObject expected = document.clone();
+		expected.put("id", 5);
+		assertEquals(expected, store.get("doc5"));
+		assertTrue(store.get("doc5").isFrozen());
+		assertEquals(null, store.get("missing"));
+		// test replacing and removing documents
+		for (int i = 0; i < 50; i++) {
+			store.put("doc" + i, new JsonArray(i, "replaced"));
+		}
+		assertTrue(store.remove("doc99"));
+		assertFalse(store.remove("doc99"));
+		assertEquals(new JsonArray(7, "replaced"), store.get("doc7"));
+		assertTrue(store.getGarbageRatio() > 0.3);
+		store.close();
+		// test reopening the store
+		store = new JsonStore(directory.toFile());
+		assertEquals(99, store.size());
+		assertEquals(new JsonArray(5, "replaced"), store.get("doc5"));
+		assertEquals(new JsonArray(7, "replaced"), store.get("doc7"));
+		store.put("doc7", new JsonObject("after", "reopen"));
+		store.close();
+		Files.write(directory.resolve("store.dat"), new byte[] { 0, 0, 0, 3 }, StandardOpenOption.APPEND);
+		Files.delete(directory.resolve("store.idx"));
+		store = new JsonStore(directory, 16);
+		assertEquals(new JsonObject("after", "reopen"), store.get("doc7"));
+		expected.put("id", 60);
+		assertEquals(expected, store.get("doc60"));
+		// test compaction
+		store.compact();
+		assertEquals(0, store.getGarbageRatio(), 0);
+		assertEquals(expected, store.get("doc60"));
+		store.put("doc60", new JsonObject());
+		store.startCompactor(0.001, 1);
+		for (int i = 0; i < 100 && store.getGarbageRatio() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, store.getGarbageRatio(), 0);
+		store.close();
+		store = new JsonStore(directory, 16);
+		assertEquals(99, store.size());
+		assertEquals(new JsonObject(), store.get("doc60"));
+		store.close();
+	}
+
+	/**
+	 * Tests converting objects to json and back using {@link JsonCodec}s and
+	 * {@link IJsonSerializable}.
+	 * 
+	 * @throws ParseException         if reading the written json fails.
+	 * @throws IOException            if writing to the {@link JsonWriter} or
+	 *                                serializing an object fails.
+	 * @throws ClassNotFoundException if the class of a serialized object cannot be
+	 *                                found.
+	 */
+	@Test
+	public void codecTest() throws ParseException, IOException, ClassNotFoundException {
+		// test writing and reading a simple object
+		TestRecord record = new TestRecord();
+		record.id = 12;
+		record.timestamp = Integer.MAX_VALUE * 3l;
+		record.score = 1.5;
+		record.active = true;
+		record.ratio = 0.25f;
+		record.letter = 'x';
+		record.name = "Line\n\"Quoted\"\t\u0001";
+		record.kind = TestKind.SECOND;
+		record.tags = new ArrayList<>(Arrays.asList("a", "b", null));
+		record.values = new int[] { 1, 2, 3 };
+		record.extra = new JsonObject("key", new JsonArray(1, "two", null));
+		record.counts = new LinkedHashMap<>();
+		record.counts.put("first", Integer.MAX_VALUE + 1L);
+		record.child = new TestRecord();
+		record.child.name = "child";
+		JsonCodec<TestRecord> codec = JsonCodec.of(TestRecord.class);
+		String json = codec.toJsonString(record);
+		JsonReader treeReader = new JsonReader(json);
+		treeReader.next();
+		assertEquals(treeReader.readTree(), codec.toJson(record));
+		TestRecord read = codec.read(json);
+		assertEquals(record, read);
+		assertEquals(read, codec.fromJson(codec.toJson(record)));
+		// test unknown keys, nulls for primitives and missing keys
+		read = codec.read("{\"id\": 5, \"unknown\": {\"a\": [1, 2]}, \"score\": null, \"kind\": \"FIRST\"}");
+		assertEquals(5, read.id);
+		assertEquals(0, read.score, 0);
+		assertEquals(TestKind.FIRST, read.kind);
+		assertEquals("default", read.name);
+		// test writing objects as part of a larger document
+		JsonWriter writer = new JsonWriter();
+		writer.beginArray().value(record).value(record.child).nullValue().endArray();
+		assertTrue(writer.isComplete());
+		JsonReader reader = new JsonReader(writer.toString());
+		reader.next();
+		reader.next();
+		assertEquals(record, codec.read(reader));
+		reader.next();
+		assertEquals(record.child, codec.read(reader));
+		reader.next();
+		assertEquals(null, codec.read(reader));
+		// test type mismatches
+		try {
+			codec.read("{\"id\": \"text\"}");
+			assertTrue("Reading a string into an int field didn't fail.", false);
+		} catch (ParseException e) {
+			assertEquals(7, e.getErrorOffset());
+		}
+		// test longs that don't fit into a double, and numbers that don't fit
+		read = codec.read("{\"timestamp\": 9007199254740993, \"counts\": {\"a\": 9007199254740993}}");
+		assertEquals(9007199254740993l, read.timestamp);
+		assertEquals((Long) 9007199254740993l, read.counts.get("a"));
+		assertEquals(read.counts, codec.fromJson(codec.toJson(read)).counts);
+		String[] unfit = { "{\"id\": 5000000000}", "{\"id\": 1.5}", "{\"timestamp\": 10000000000000000000.0}",
+				"{\"counts\": {\"a\": 0.5}}" };
+		for (String document : unfit) {
+			try {
+				codec.read(document);
+				assertTrue("Reading " + document + " didn't fail.", false);
+			} catch (ParseException e) {
+			}
+			try {
+				codec.fromJson((JsonObject) JsonParser.parseString(document));
+				assertTrue("Converting " + document + " didn't fail.", false);
+			} catch (InvalidTypeException e) {
+			}
+		}
+		assertEquals(3, codec.read("{\"id\": 3.0}").id);
+		// test IJsonSerializable
+		TestSerializable serializable = new TestSerializable();
+		serializable.text = "serialized";
+		serializable.number = 42;
+		assertEquals(new JsonObject("text", "serialized", "number", 42), serializable.toJson());
+		PipedOutputStream pOut = new PipedOutputStream();
+		PipedInputStream pIn = new PipedInputStream(pOut, 4096);
+		ObjectOutputStream oOut = new ObjectOutputStream(pOut);
+		ObjectInputStream oIn = new ObjectInputStream(pIn);
+		oOut.writeObject(serializable);
+		oOut.flush();
+		TestSerializable deserialized = (TestSerializable) oIn.readObject();
+		assertEquals(serializable.text, deserialized.text);
+		assertEquals(serializable.number, deserialized.number);
+		oIn.close();
+	}
+
+	/**
+	 * Tests validating json values with a {@link JsonSchema}, both as trees and
+	 * while reading them.
+	 * 
+	 * @throws ParseException if parsing a json fails.
+	 */
+	@Test
+	public void schemaTest() throws ParseException {
+		JsonSchema schema = JsonSchema.compile(JsonParser.parseString("{\"type\": \"object\", "
+				+ "\"required\": [\"id\", \"name\"], \"additionalProperties\": false, \"properties\": {"
+				+ "\"id\": {\"type\": \"integer\", \"minimum\": 1}, "
+				+ "\"name\": {\"type\": \"string\", \"minLength\": 2, \"pattern\": \"^[A-Z]\"}, "
+				+ "\"score\": {\"type\": [\"number\", \"null\"], \"exclusiveMaximum\": 10, \"multipleOf\": 0.5}, "
+				+ "\"tags\": {\"type\": \"array\", \"items\": {\"enum\": [\"a\", \"b\", \"c\"]}, \"uniqueItems\": true}, "
+				+ "\"child\": {\"$ref\": \"#\"}, "
+				+ "\"kind\": {\"oneOf\": [{\"const\": 1}, {\"type\": \"string\"}]}}}"));
+		String valid = "{\"id\": 3, \"name\": \"Test\", \"score\": 9.5, \"tags\": [\"a\", \"c\"], "
+				+ "\"child\": {\"id\": 4, \"name\": \"Child\", \"kind\": 1.0}, \"kind\": \"text\"}";
+		Object json = JsonParser.parseString(valid);
+		assertTrue(schema.isValid(json));
+		assertEquals(new ArrayList<>(), schema.validate(json));
+		assertEquals(json, schema.read(valid));
+		schema.check(new JsonReader(valid));
+		// test tree validation errors
+		JsonObject invalid = (JsonObject) JsonParser.parseString(valid);
+		invalid.put("score", 10);
+		((JsonObject) invalid.get("child")).remove("name");
+		((JsonArray) invalid.get("tags")).add("a");
+		assertFalse(schema.isValid(invalid));
+		List<String> errors = schema.validate(invalid);
+		assertEquals(errors.toString(), 3, errors.size());
+		assertEquals("Invalid value at \"/child\": the required property \"name\" is missing", errors.get(2));
+		// test streaming validation errors
+		String[][] documents = { { "{\"id\": 3, \"name\": \"Test\", \"other\": [1, 2]}", "35" },
+				{ "{\"id\": 0, \"name\": \"Test\"}", "7" }, { "{\"id\": 3, \"name\": \"test\"}", "18" },
+				{ "{\"id\": 3}", "8" }, { "{\"id\": 3, \"name\": \"Test\", \"tags\": [\"a\", \"d\"]}", "34" },
+				{ "{\"id\": 3, \"name\": \"Test\", \"child\": {\"id\": \"1\"}}", "42" }, { "[]", "0" } };
+		for (String[] document : documents) {
+			try {
+				schema.read(document[0]);
+				assertTrue("Reading " + document[0] + " didn't fail.", false);
+			} catch (ParseException e) {
+				assertEquals(e.getMessage(), Integer.parseInt(document[1]), e.getErrorOffset());
+			}
+		}
+		// test boolean schemas
+		assertTrue(JsonSchema.compile(true).isValid(json));
+		assertFalse(JsonSchema.compile(false).isValid(null));
+	}
+
+	/**
+	 * Tests caching parsed json documents using a {@link JsonParseCache}.
+	 * 
+	 * @throws ParseException if parsing a json fails.
+	 */
+	@Test
+	public void parseCacheTest() throws ParseException {
+		JsonParseCache cache = new JsonParseCache(2, 1024);
+		byte[] first = "{\"key\": \"value\", \"array\": [1, 2, 3]}".getBytes();
+		JsonElement<?> json = cache.parseByteArray(first);
+		assertTrue(json.isFrozen());
+		assertEquals(JsonParser.parseByteArray(first), json);
+		assertTrue(json == cache.parseByteArray(first.clone()));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(first.length, cache.getWeight());
+		// test that modifying the input doesn't modify the cached key
+		byte[] modified = first.clone();
+		modified[9] = 'V';
+		assertNotEquals(json, cache.parseByteArray(modified));
+		assertEquals(2, cache.size());
+		// test that documents requested once don't replace more frequent ones
+		cache.parseByteArray(first);
+		byte[] third = "[\"third\"]".getBytes();
+		cache.parseByteArray(third);
+		assertEquals(2, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+		cache.parseByteArray(third);
+		cache.parseByteArray(third);
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(json == cache.parseByteArray(first));
+		assertEquals(4, cache.getHitCount());
+		// test the weight limit
+		JsonParseCache small = new JsonParseCache(10, first.length);
+		small.parseByteArray(first);
+		small.parseByteArray(third);
+		assertEquals(1, small.size());
+		assertEquals(first.length, small.getWeight());
+		// test that nothing is evicted if the document isn't admitted
+		JsonParseCache weighted = new JsonParseCache(10, 100);
+		byte[] cold = ("[\"" + String.join("", Collections.nCopies(46, "a")) + "\"]").getBytes();
+		byte[] hot = ("[\"" + String.join("", Collections.nCopies(46, "b")) + "\"]").getBytes();
+		byte[] large = ("[\"" + String.join("", Collections.nCopies(56, "c")) + "\"]").getBytes();
+		weighted.parseByteArray(cold);
+		for (int i = 0; i < 4; i++) {
+			weighted.parseByteArray(hot);
+		}
+		weighted.parseByteArray(large);
+		weighted.parseByteArray(large);
+		assertEquals(2, weighted.size());
+		assertEquals(100, weighted.getWeight());
+		assertEquals(0, weighted.getEvictionCount());
+	}
+
+	/**
+	 * Tests reducing the memory used by json trees using {@link JsonCompactor}s.
+	 * 
+	 * @throws InterruptedException if waiting for the background compactor is
+	 *                              interrupted.
+	 */
+	@Test
+	public void compactTest() throws InterruptedException {
+		// test canonicalizing strings and numbers
+		JsonArray records = new JsonArray();
+		for (int i = 0; i < 3; i++) {
+			JsonObject record = new JsonObject("state", new String("active"));
+			record.put("count", Long.valueOf(Integer.MAX_VALUE * 2l));
+			record.put("values", new JsonArray(1, 2, 3));
+			records.add(record);
+		}
+		JsonArray copy = records.clone();
+		assertTrue(records == records.compact());
+		assertEquals(copy, records);
+		JsonObject first = (JsonObject) records.get(0);
+		JsonObject second = (JsonObject) records.get(1);
+		assertTrue(first.get("state") == second.get("state"));
+		assertTrue(first.get("count") == second.get("count"));
+		assertEquals(int.class, ((JsonArray) first.get("values")).getPrimitiveType());
+		// test sharing identical frozen elements
+		JsonCompactor compactor = new JsonCompactor(100, 10, 100);
+		JsonArray frozen = new JsonArray();
+		frozen.add(new JsonObject("key", "value", "other", new JsonArray("a", "b")).freeze());
+		frozen.add(new JsonObject("key", "value", "other", new JsonArray("a", "b")).freeze());
+		frozen.add(new JsonObject("other", new JsonArray("a", "b"), "key", "value").freeze());
+		compactor.compact(frozen);
+		assertTrue(frozen.get(0) == frozen.get(1));
+		assertFalse(frozen.get(0) == frozen.get(2));
+		assertEquals(frozen.get(0), frozen.get(2));
+		assertTrue(((JsonObject) frozen.get(0)).get("other") == ((JsonObject) frozen.get(2)).get("other"));
+		// test the string length limit
+		JsonObject longStrings = new JsonObject("a", new String("a long string value"), "b",
+				new String("a long string value"));
+		compactor.compact(longStrings);
+		assertFalse(longStrings.get("a") == longStrings.get("b"));
+		// test evicting the least recently used values from full pools
+		JsonCompactor small = new JsonCompactor(2, 10, 10);
+		String a = new String("a");
+		String c = new String("c");
+		assertTrue(a == small.canonicalize(a));
+		small.canonicalize(new String("b"));
+		assertTrue(c == small.canonicalize(c));
+		assertEquals(2, small.getPoolSize());
+		assertTrue(c == small.canonicalize(new String("c")));
+		assertFalse(a == small.canonicalize(new String("a")));
+		// test that pooled frozen elements don't stay alive
+		JsonArray pooled = new JsonArray();
+		for (int i = 0; i < 5; i++) {
+			pooled.add(new JsonObject("id", i, "nested", new JsonObject("index", i)).freeze());
+		}
+		small.compact(pooled);
+		assertEquals(12, small.getPoolSize());
+		pooled = null;
+		for (int i = 0; i < 20 && small.getPoolSize() > 2; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(2, small.getPoolSize());
+		// test background compaction of a frozen tree
+		JsonCompactor background = new JsonCompactor(100, 10, 0);
+		JsonArray tree = new JsonArray();
+		for (int i = 0; i < 5; i++) {
+			tree.add(new JsonObject("name", new String("name"), "nested", new JsonObject("id", new String("id"))));
+		}
+		tree.freeze();
+		JsonObject nested0 = (JsonObject) ((JsonObject) tree.get(0)).get("nested");
+		JsonObject nested4 = (JsonObject) ((JsonObject) tree.get(4)).get("nested");
+		background.startBackground(tree, 2, 1);
+		for (int i = 0; i < 100 && nested0.get("id") != nested4.get("id"); i++) {
+			Thread.sleep(10);
+		}
+		background.stopBackground();
+		assertTrue(((JsonObject) tree.get(0)).get("name") == ((JsonObject) tree.get(4)).get("name"));
+		assertTrue(nested0.get("id") == nested4.get("id"));
+	}
+
+	/**
+	 * Tests converting arrays of records into {@link JsonTable}s, and aggregating
+	 * their columns.
+	 * 
+	 * @throws ParseException if parsing a test json fails.
+	 */
+	@Test
+	public void tableTest() throws ParseException {
+		String json = "[{\"id\":1,\"name\":\"a\",\"price\":2.5,\"active\":true},"
+				+ "{\"id\":2,\"name\":\"b\",\"price\":1,\"active\":false},"
+				+ "{\"id\":3,\"active\":true,\"extra\":[1]},"
+				+ "{\"id\":4,\"name\":\"a\",\"price\":4.5,\"active\":false,\"extra\":\"x\"}]";
+		JsonArray records = (JsonArray) JsonParser.parseString(json);
+		for (JsonTable table : new JsonTable[] { JsonTable.of(records), JsonTable.read(json) }) {
+			assertEquals(4, table.getRowCount());
+			assertEquals(Arrays.asList("id", "name", "price", "active", "extra"),
+					new ArrayList<>(table.getColumnNames()));
+			assertEquals(Integer.class, table.getColumnType("id"));
+			assertEquals(String.class, table.getColumnType("name"));
+			assertEquals(Double.class, table.getColumnType("price"));
+			assertEquals(Boolean.class, table.getColumnType("active"));
+			assertEquals(Object.class, table.getColumnType("extra"));
+			assertEquals(10l, table.sum("id"));
+			assertEquals(8.0, table.sum("price"));
+			assertEquals(1, table.min("id"));
+			assertEquals(4, table.max("id"));
+			assertEquals(1.0, table.min("price"));
+			assertEquals(3, table.count("price"));
+			assertEquals(1.0, table.get(1, "price"));
+			assertEquals(null, table.get(2, "name"));
+			assertEquals(new JsonArray(1), table.get(2, "extra"));
+			assertEquals(records.get(0), table.getRow(0));
+			assertEquals(records.get(2), table.getRow(2));
+			Map<Object, Integer> names = new LinkedHashMap<>();
+			names.put("a", 2);
+			names.put("b", 1);
+			names.put(null, 1);
+			assertEquals(names, table.countBy("name"));
+			assertEquals(Arrays.asList("a", "b", null), new ArrayList<>(table.countBy("name").keySet()));
+			assertEquals(Arrays.asList(true, false), new ArrayList<>(table.countBy("active").keySet()));
+			assertEquals(Arrays.asList(4), new ArrayList<>(table.countBy("missing").values()));
+			assertEquals(0l, table.sum("missing"));
+			assertEquals(null, table.max("missing"));
+			try {
+				table.sum("name");
+				assertTrue("Summing a string column didn't throw an exception!", false);
+			} catch (InvalidTypeException e) {
+			}
+		}
+		// test columns being widened to fit new values
+		JsonTable table = JsonTable.read("[{\"v\":1},{\"v\":3000000000},{},{\"v\":-2}]");
+		assertEquals(Long.class, table.getColumnType("v"));
+		assertEquals(2999999999l, table.sum("v"));
+		assertEquals(-2l, table.min("v"));
+		assertEquals(null, table.get(2, "v"));
+		table = JsonTable.read("[{\"v\":1},{\"v\":0.5},{\"v\":null}]");
+		assertEquals(Double.class, table.getColumnType("v"));
+		assertEquals(1.5, table.sum("v"));
+		assertEquals(1.0, table.max("v"));
+		table = JsonTable.read("[{},{\"v\":1},{\"v\":\"1\"}]");
+		assertEquals(Object.class, table.getColumnType("v"));
+		assertEquals(Arrays.asList(null, 1, "1"), new ArrayList<>(table.countBy("v").keySet()));
+		assertEquals(new JsonArray(new JsonObject(), new JsonObject("v", 1), new JsonObject("v", "1")),
+				table.toJsonArray());
+		try {
+			JsonTable.read("[{\"v\":1},2]");
+			assertTrue("Reading an array containing a number as a table didn't fail!", false);
+		} catch (ParseException e) {
+		}
+	}
+
+	/**
+	 * Tests sorting {@link JsonArray}s and getting their first values using
+	 * {@link JsonSorter}s.
+	 * 
+	 * @throws ParseException if compiling a sort path fails.
+	 */
+	@Test
+	public void sortTest() throws ParseException {
+		JsonArray array = (JsonArray) JsonParser.parseString("[{\"id\":1,\"score\":5,\"player\":{\"name\":\"c\"}},"
+				+ "{\"id\":2,\"score\":7,\"player\":{\"name\":\"a\"}},{\"id\":3,\"player\":{\"name\":\"d\"}},"
+				+ "{\"id\":4,\"score\":5,\"player\":{\"name\":\"b\"}},{\"id\":5,\"score\":7.5}]");
+		JsonArray sorted = array.clone();
+		sorted.sortBy(JsonSorter.by("score"));
+		assertEquals(Arrays.asList(3, 1, 4, 2, 5), sorted.stream().map(o -> ((JsonObject) o).get("id"))
+				.collect(Collectors.toList()));
+		sorted.sortBy(JsonSorter.by("id"));
+		assertEquals(array, sorted);
+		sorted.sortBy(JsonSorter.by("score", true).thenBy("player.name"));
+		assertEquals(Arrays.asList(5, 2, 4, 1, 3), sorted.stream().map(o -> ((JsonObject) o).get("id"))
+				.collect(Collectors.toList()));
+		sorted.sortBy(JsonSorter.by("player.name", true));
+		assertEquals(Arrays.asList(3, 1, 4, 2, 5), sorted.stream().map(o -> ((JsonObject) o).get("id"))
+				.collect(Collectors.toList()));
+		assertEquals(new JsonArray(array.get(4), array.get(1)), array.topK(JsonSorter.by("score", true), 2));
+		assertEquals(new JsonArray(), array.topK(JsonSorter.by("score"), 0));
+		assertEquals(5, array.topK(JsonSorter.by("score"), 10).size());
+		// test big arrays against a stable sort using a comparator
+		Random random = new Random(25);
+		JsonArray big = new JsonArray();
+		for (int i = 0; i < 50000; i++) {
+			JsonObject record = new JsonObject("id", i);
+			record.put("score", random.nextInt(1000) - 500);
+			record.put("rating", random.nextInt(100) / 4.0);
+			if (random.nextInt(10) > 0) {
+				record.put("name", Integer.toString(random.nextInt(500), 36));
+			}
+			big.add(record);
+		}
+		Comparator<Object> byScore = Comparator.comparing(o -> (Integer) ((JsonObject) o).get("score"));
+		Comparator<Object> byName = Comparator.comparing(o -> (String) ((JsonObject) o).get("name"),
+				Comparator.nullsFirst(Comparator.naturalOrder()));
+		Comparator<Object> byRating = Comparator.comparing(o -> (Double) ((JsonObject) o).get("rating"));
+		List<Object> expected = new ArrayList<>(big);
+		expected.sort(byScore.reversed());
+		JsonArray actual = big.clone();
+		actual.sortBy(JsonSorter.by("score", true));
+		assertEquals(expected, actual);
+		expected.sort(byName.thenComparing(byRating.reversed()));
+		actual.sortBy(JsonSorter.by("name").thenBy("rating", true));
+		assertEquals(expected, actual);
+		expected = new ArrayList<>(big);
+		expected.sort(byName.thenComparing(byRating.reversed()));
+		assertEquals(expected.subList(0, 100), big.topK(JsonSorter.by("name").thenBy("rating", true), 100));
+		expected = new ArrayList<>(big);
+		expected.sort(byScore);
+		assertEquals(expected.subList(0, 10), big.topK(JsonSorter.by("score"), 10));
+		big.freeze();
+		try {
+			big.sortBy(JsonSorter.by("score"));
+			assertTrue("Sorting a frozen array didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	/**
+	 * Tests deep merging layered {@link JsonObject}s using {@link JsonMerge}, and
+	 * looking values up through them using {@link JsonOverlay}s.
+	 * 
+	 * @throws ParseException if parsing a test json fails.
+	 */
+	@Test
+	public void mergeTest() throws ParseException {
+		JsonObject defaults = (JsonObject) JsonParser
+				.parseString("{\"a\":1,\"nested\":{\"x\":1,\"y\":2},\"list\":[1],\"other\":{\"k\":true}}");
+		JsonObject tenant = (JsonObject) JsonParser.parseString("{\"nested\":{\"y\":3},\"b\":2}");
+		JsonObject request = (JsonObject) JsonParser.parseString("{\"nested\":{\"z\":4},\"list\":[2]}");
+		JsonObject defaultsCopy = defaults.clone();
+		JsonObject merged = JsonMerge.merge(JsonMerge.OVERRIDE, defaults, tenant, request);
+		assertEquals(JsonParser.parseString(
+				"{\"a\":1,\"nested\":{\"x\":1,\"y\":3,\"z\":4},\"list\":[2],\"other\":{\"k\":true},\"b\":2}"),
+				merged);
+		assertEquals(defaultsCopy, defaults);
+		assertTrue(merged.get("list") == request.get("list"));
+		assertTrue(merged.get("other") == defaults.get("other"));
+		assertEquals(JsonParser.parseString("{\"a\":1,\"nested\":{\"x\":1,\"y\":2},\"list\":[1],"
+				+ "\"other\":{\"k\":true},\"b\":2}"), JsonMerge.merge(defaults, tenant, JsonMerge.KEEP));
+		assertEquals(new JsonArray(1, 2), JsonMerge.merge(defaults, request, JsonMerge.CONCAT_ARRAYS).get("list"));
+		List<String> paths = new ArrayList<>();
+		merged = JsonMerge.merge((path, base, override) -> {
+			paths.add(path);
+			return base instanceof Integer ? (Integer) base + (Integer) override : override;
+		}, defaults, tenant, request, new JsonObject("a/b", 5, "a", 2));
+		assertEquals(Arrays.asList("/nested/y", "/list", "/a"), paths);
+		assertEquals(3, merged.get("a"));
+		assertEquals(5, ((JsonObject) merged.get("nested")).get("y"));
+		// test overlays
+		JsonOverlay overlay = new JsonOverlay(defaults, tenant, request);
+		assertEquals(JsonMerge.merge(JsonMerge.OVERRIDE, defaults, tenant, request), overlay.snapshot());
+		assertEquals(overlay.snapshot().toString(), overlay.toString());
+		assertEquals(overlay.snapshot(), overlay.clone());
+		assertEquals(JsonObject.class, overlay.clone().getClass());
+		assertEquals(Arrays.asList("a", "nested", "list", "other", "b"), new ArrayList<>(overlay.keySet()));
+		assertEquals(5, overlay.size());
+		assertTrue(overlay.get("nested") instanceof JsonOverlay);
+		assertEquals(3, ((JsonObject) overlay.get("nested")).get("y"));
+		assertTrue(overlay.get("other") == defaults.get("other"));
+		assertFalse(overlay.containsKey("c"));
+		tenant.put("c", 5);
+		((JsonObject) request.get("nested")).put("x", 7);
+		assertEquals(5, overlay.get("c"));
+		assertEquals(7, ((JsonObject) overlay.get("nested")).get("x"));
+		try {
+			overlay.put("d", 1);
+			assertTrue("Modifying an overlay didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			overlay.freeze();
+			assertTrue("Freezing an overlay didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+		// test comparing overlays by their resolved content
+		assertEquals(overlay.snapshot(), overlay);
+		assertEquals(overlay, overlay.snapshot());
+		assertEquals(overlay.get("nested"), ((JsonObject) overlay.snapshot()).get("nested"));
+		JsonObject base = (JsonObject) JsonParser.parseString("{\"a\": {\"x\": 1}}");
+		JsonOverlay single = new JsonOverlay(base);
+		JsonOverlay layered = new JsonOverlay(base, new JsonObject("a", new JsonObject()));
+		assertEquals(single, layered);
+		assertEquals(single.hashCode(), layered.hashCode());
+		assertEquals(new JsonObject(), layered.changes(single));
+		assertNotEquals(single, new JsonOverlay(base, new JsonObject("a", new JsonObject("x", 2))));
+	}
+
+	/**
+	 * Tests estimating the memory used by json elements using
+	 * {@link JsonFootprint}.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void footprintTest() throws ParseException {
+		assertTrue(JsonFootprint.getReferenceSize() == 4 || JsonFootprint.getReferenceSize() == 8);
+		assertEquals(1, Integer.bitCount(JsonFootprint.getObjectAlignment()));
+		assertTrue(JsonFootprint.getObjectHeaderSize() >= 8);
+		assertEquals(0, JsonFootprint.of(null));
+		assertEquals(0, JsonFootprint.of(true));
+		assertEquals(0, JsonFootprint.of(5));
+		assertTrue(JsonFootprint.of(500) >= 16);
+		assertTrue(JsonFootprint.of(500l) >= JsonFootprint.of(500));
+		assertTrue(JsonFootprint.ofString("a longer string") > JsonFootprint.ofString("short"));
+		assertTrue(JsonFootprint.ofString("\u4e2d\u6587\u5b57\u7b26") >= JsonFootprint.ofString("abcd"));
+		// test objects and arrays
+		JsonObject object = new JsonObject();
+		long empty = object.estimateSize();
+		assertTrue(empty > 0);
+		assertEquals(empty, object.estimateShallowSize());
+		object.put("key", "value");
+		assertEquals(object.estimateShallowSize() + JsonFootprint.ofString("key") + JsonFootprint.ofString("value"),
+				object.estimateSize());
+		for (int i = 0; i < 100; i++) {
+			object.put("key" + i, i * 1000);
+		}
+		long full = object.estimateSize();
+		assertTrue(full > empty + 100 * JsonFootprint.ofEntry("key0", 1000) / 2);
+		for (int i = 0; i < 100; i++) {
+			object.remove("key" + i);
+		}
+		assertTrue(object.estimateSize() < full);
+		long removed = object.estimateSize();
+		object.compact();
+		assertTrue(object.estimateSize() < removed);
+		JsonArray array = new JsonArray();
+		for (int i = 0; i < 1000; i++) {
+			array.add((Object) (i + 1000));
+		}
+		long boxed = 0;
+		for (Object value : array) {
+			boxed += JsonFootprint.of(value);
+		}
+		assertEquals(array.estimateShallowSize() + boxed, array.estimateSize());
+		long generic = array.estimateSize();
+		array.usePrimitiveStorage();
+		assertTrue(array.estimateSize() < generic);
+		assertEquals(array.estimateShallowSize(), array.estimateSize());
+		// test frozen and nested elements
+		JsonObject tree = (JsonObject) JsonParser
+				.parseString("{\"name\":\"tree\",\"values\":[1,2,3],\"nested\":{\"a\":\"b\",\"c\":[true]}}");
+		long size = tree.estimateSize();
+		assertTrue(size > tree.estimateShallowSize() + ((JsonObject) tree.get("nested")).estimateSize());
+		tree.freeze();
+		assertEquals(size, tree.estimateSize());
+		assertEquals(size, tree.estimateSize());
+		JsonObject parent = new JsonObject("child", tree);
+		assertEquals(parent.estimateShallowSize() + JsonFootprint.ofString("child") + size, parent.estimateSize());
+		assertTrue(tree.clone().estimateSize() <= size);
+	}
+
 	/**
 	 * Tests the cloning of {@link JsonObject}s and {@link JsonArray}s.
 	 * 
@@ -362,6 +2056,130 @@ public class JsonTest {
 		assertEquals(jsonArray2, reconstructedJsonArray);
 	}
 
+	/**
+	 * Tests creating and applying the changes of {@link JsonArray JsonArrays}
+	 * with duplicates, moved values and changed sub jsons.
+	 */
+	@Test
+	public void arrayChangesTest() {
+		// test changing a single sub json of a large array
+		JsonArray array1 = new JsonArray();
+		for (int i = 0; i < 1000; i++) {
+			array1.add(new JsonObject("id", i, "name", "record " + i));
+		}
+		JsonArray array2 = array1.clone();
+		((JsonObject) array2.get(500)).put("name", "changed");
+		JsonArray changes = array2.changes(array1);
+		assertEquals(1, changes.size());
+		assertEquals(new JsonObject("chg", 500, "val", new JsonObject("name", "changed")), changes.get(0));
+		assertEquals(array2, changes.reconstruct(array1));
+		// test moving a value
+		array2 = array1.clone();
+		array2.add(10, array2.remove(900));
+		changes = array2.changes(array1);
+		assertEquals(1, changes.size());
+		assertEquals(new JsonObject("mv", 900, "to", 10), changes.get(0));
+		assertEquals(array2, changes.reconstruct(array1));
+		assertEquals(array2, array2.changes(array1, true, false).reconstruct(array1));
+		// test duplicates
+		array1 = new JsonArray(1, 2, 1, 3, 1);
+		array2 = new JsonArray(1, 1, 3, 2, 1, 1);
+		assertEquals(array2, array2.changes(array1).reconstruct(array1));
+		assertEquals(array1, array1.changes(array2).reconstruct(array2));
+		// test random changes
+		Random random = new Random(25);
+		for (int run = 0; run < 200; run++) {
+			array1 = new JsonArray();
+			for (int i = random.nextInt(30); i > 0; i--) {
+				array1.add(random.nextInt(3) == 0 ? new JsonObject("value", random.nextInt(5)) : random.nextInt(8));
+			}
+			array2 = array1.clone();
+			for (int i = random.nextInt(10); i > 0; i--) {
+				int op = random.nextInt(4);
+				if (op == 0 || array2.isEmpty()) {
+					array2.add(random.nextInt(array2.size() + 1), (Object) random.nextInt(8));
+				} else if (op == 1) {
+					array2.remove(random.nextInt(array2.size()));
+				} else if (op == 2) {
+					array2.add(random.nextInt(array2.size()), array2.remove(random.nextInt(array2.size())));
+				} else {
+					array2.set(random.nextInt(array2.size()), new JsonObject("value", random.nextInt(5)));
+				}
+			}
+			for (boolean moves : new boolean[] { true, false }) {
+				changes = array2.changes(array1, true, moves);
+				assertEquals(String.format("Reconstruction from %s to %s using %s failed!", array1, array2, changes),
+						array2, changes.reconstruct(array1));
+			}
+		}
+		// test arrays too different for a shortest edit script
+		array1 = new JsonArray();
+		array2 = new JsonArray();
+		for (int i = 0; i < 1500; i++) {
+			array1.add(i);
+			array2.add(0, (Object) i);
+		}
+		assertEquals(array2, array2.changes(array1).reconstruct(array1));
+		assertEquals(array2, array2.changes(array1, true, false).reconstruct(array1));
+		// test changes in the format of older versions
+		array1 = new JsonArray("a", "b", "c");
+		changes = new JsonArray(new JsonObject("val", "x", "after", 1), new JsonObject("rm", 2));
+		assertEquals(new JsonArray("a", "x", "b"), changes.reconstruct(array1));
+	}
+
+	/**
+	 * Tests applying changes in place, and reconstructing jsons sharing their
+	 * unchanged values with the previous version.
+	 * 
+	 * @throws ParseException if parsing the test json fails.
+	 */
+	@Test
+	public void applyChangesTest() throws ParseException {
+		JsonObject base = (JsonObject) JsonParser.parseString(
+				"{\"a\": {\"b\": 1, \"c\": [1, 2, {\"d\": true}]}, \"e\": {\"f\": \"g\"}, \"h\": 5, \"i\": [3, 4]}");
+		JsonObject changed = base.clone();
+		((JsonObject) changed.get("a")).put("b", 2);
+		((JsonObject) ((JsonArray) ((JsonObject) changed.get("a")).get("c")).get(2)).put("d", false);
+		changed.remove("h");
+		changed.put("j", new JsonArray(1));
+		JsonObject changes = changed.changes(base);
+		// test applying changes in place
+		JsonObject target = base.clone();
+		JsonObject nested = (JsonObject) target.get("a");
+		assertTrue(target == target.apply(changes));
+		assertEquals(changed, target);
+		assertTrue(nested == target.get("a"));
+		((JsonArray) changes.get("j")).add(2);
+		assertEquals(new JsonArray(1), target.get("j"));
+		((JsonArray) changes.get("j")).remove(1);
+		// test reconstructing with shared values
+		base.freeze();
+		JsonObject shared = changes.reconstruct(base, true, true);
+		assertEquals(changed, shared);
+		assertFalse(shared.isFrozen());
+		assertTrue(shared.get("e") == base.get("e"));
+		assertTrue(shared.get("i") == base.get("i"));
+		assertFalse(shared.get("a") == base.get("a"));
+		assertTrue(((JsonObject) shared.get("a")).get("c") != ((JsonObject) base.get("a")).get("c"));
+		assertEquals(1, ((JsonObject) base.get("a")).get("b"));
+		assertEquals(changed, changes.reconstruct(base));
+		// test applying changes to json arrays
+		JsonArray array = new JsonArray(new JsonObject("x", 1), new JsonObject("x", 2), 3);
+		JsonArray changedArray = array.clone();
+		((JsonObject) changedArray.get(1)).put("x", 5);
+		changedArray.add(0, (Object) 4);
+		JsonArray arrayChanges = changedArray.changes(array);
+		Object element = array.get(1);
+		array.apply(arrayChanges);
+		assertEquals(changedArray, array);
+		assertTrue(element == array.get(2));
+		try {
+			base.apply(changes);
+			assertTrue("Applying changes to a frozen json didn't throw an exception!", false);
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
 	/**
 	 * Test the serialization and deserialization of {@link JsonObject}s and
 	 * {@link JsonArray}s.
@@ -547,4 +2365,65 @@ public class JsonTest {
 		}
 	}
 
+	/**
+	 * The kinds of {@link TestRecord TestRecords}.
+	 * 
+	 * @author ToMe25
+	 */
+	private static enum TestKind {
+		FIRST, SECOND
+	}
+
+	/**
+	 * A simple object used to test {@link JsonCodec JsonCodecs}.
+	 * 
+	 * @author ToMe25
+	 */
+	private static class TestRecord {
+		private int id;
+		private long timestamp;
+		private double score;
+		private boolean active;
+		private float ratio;
+		private char letter;
+		private String name = "default";
+		private TestKind kind;
+		private List<String> tags;
+		private int[] values;
+		private JsonObject extra;
+		private Map<String, Long> counts;
+		private TestRecord child;
+		private transient int ignored = 7;
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TestRecord)) {
+				return false;
+			}
+			TestRecord other = (TestRecord) obj;
+			return id == other.id && timestamp == other.timestamp && score == other.score
+					&& active == other.active && ratio == other.ratio && letter == other.letter
+					&& Objects.equals(name, other.name) && kind == other.kind && Objects.equals(tags, other.tags)
+					&& Arrays.equals(values, other.values) && Objects.equals(extra, other.extra)
+					&& Objects.equals(counts, other.counts) && Objects.equals(child, other.child)
+					&& ignored == other.ignored;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(id, name);
+		}
+
+	}
+
+	/**
+	 * A simple {@link IJsonSerializable} implementation.
+	 * 
+	 * @author ToMe25
+	 */
+	public static class TestSerializable implements IJsonSerializable {
+		private String text;
+		private int number;
+	}
+
 }